@@ -46,6 +46,8 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
 
   protected String remoteSlaveServerName;
 
+  protected volatile RowSetSignal readerSignal;
+
   /**
    * Create new non-blocking-queue with maxSize capacity.
    *
@@ -128,6 +130,7 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
   @Override
   public void setDone() {
     done.set( true );
+    signalReader();
   }
 
   /*
@@ -307,4 +310,18 @@ abstract class BaseRowSet implements Comparable<RowSet>, RowSet {
     return false;
   }
 
+  @Override
+  public void setReaderSignal( RowSetSignal readerSignal ) {
+    this.readerSignal = readerSignal;
+  }
+
+  /**
+   * Wake up the reading thread if it asked to be signalled when rows arrive.
+   */
+  protected void signalReader() {
+    RowSetSignal signal = readerSignal;
+    if ( signal != null ) {
+      signal.signal();
+    }
+  }
 }
@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.Arrays;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -106,6 +107,7 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
       try {
         getArray.offer( inputBuffer, time, tu );
         inputBuffer = null;
+        signalReader();
       } catch ( InterruptedException e ) {
         return false;
       }
@@ -114,6 +116,47 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
     return true;
   }
 
+  /**
+   * Copies the rows straight into the current input buffer. Full buffers are handed over to the reading side as usual.
+   */
+  @Override
+  public int putRows( RowMetaInterface rowMeta, Object[][] rows, int offset, int length ) {
+
+    this.rowMeta = rowMeta;
+
+    int count = 0;
+    while ( count < length ) {
+      if ( inputBuffer == null ) {
+        try {
+          inputBuffer = putArray.poll( Const.TIMEOUT_PUT_MILLIS, TimeUnit.MILLISECONDS );
+        } catch ( InterruptedException e ) {
+          return count;
+        }
+        if ( inputBuffer == null ) {
+          return count;
+        }
+        putIndex = 0;
+      }
+
+      int nr = Math.min( size - putIndex, length - count );
+      System.arraycopy( rows, offset + count, inputBuffer, putIndex, nr );
+      putIndex += nr;
+      count += nr;
+
+      if ( putIndex == size ) {
+        try {
+          getArray.offer( inputBuffer, Const.TIMEOUT_PUT_MILLIS, TimeUnit.MILLISECONDS );
+          inputBuffer = null;
+          signalReader();
+        } catch ( InterruptedException e ) {
+          return count;
+        }
+      }
+    }
+
+    return count;
+  }
+
   // default getRow with wait time = 100ms
   //
   /*
@@ -161,6 +204,44 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
     return row;
   }
 
+  /**
+   * Copies the rows of the buffers that were handed over by the writing side, without waiting for more.
+   */
+  @Override
+  public int drainTo( Object[][] rows, int offset, int max ) {
+    int count = 0;
+    while ( count < max ) {
+      if ( outputBuffer == null ) {
+        outputBuffer = getArray.poll();
+        if ( outputBuffer == null ) {
+          break;
+        }
+        getIndex = 0;
+      }
+
+      // A partially filled buffer is terminated with a null row
+      //
+      int nr = 0;
+      int available = Math.min( size - getIndex, max - count );
+      while ( nr < available && outputBuffer[getIndex + nr] != null ) {
+        nr++;
+      }
+      System.arraycopy( outputBuffer, getIndex, rows, offset + count, nr );
+      Arrays.fill( outputBuffer, getIndex, getIndex + nr, null ); // prevent any hold-up to GC
+      getIndex += nr;
+      count += nr;
+
+      if ( getIndex == size ) {
+        putArray.offer( outputBuffer );
+        outputBuffer = null;
+      } else if ( nr < available ) {
+        // end of a partial buffer: leave it to getRow()
+        break;
+      }
+    }
+    return count;
+  }
+
   @Override
   public int size() {
     // does BlockingQueue.size() grab a lock? If so, frequent call to this method
@@ -179,6 +260,7 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
       getArray.offer( inputBuffer );
     }
     putArray.clear();
+    signalReader();
   }
 
   @Override
@@ -22,6 +22,8 @@
 
 package org.pentaho.di.core;
 
+import java.util.AbstractCollection;
+import java.util.Iterator;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -78,7 +80,11 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
     this.rowMeta = rowMeta;
     try {
 
-      return queArray.offer( rowData, time, tu );
+      if ( queArray.offer( rowData, time, tu ) ) {
+        signalReader();
+        return true;
+      }
+      return false;
     } catch ( InterruptedException e ) {
       return false;
     } catch ( NullPointerException e ) {
@@ -125,6 +131,17 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
     }
   }
 
+  /**
+   * Moves the available rows with a single lock on the queue.
+   */
+  @Override
+  public int drainTo( Object[][] rows, int offset, int max ) {
+    if ( max <= 0 ) {
+      return 0;
+    }
+    return queArray.drainTo( new RowArrayFiller( rows, offset ), max );
+  }
+
   @Override
   public int size() {
     return queArray.size();
@@ -136,4 +153,34 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
     done.set( false );
   }
 
+  /**
+   * A write-only collection that stores whatever is added to it in a row array, so that the queue can be drained
+   * without allocating an intermediate list.
+   */
+  private static class RowArrayFiller extends AbstractCollection<Object[]> {
+    private final Object[][] rows;
+    private int index;
+
+    RowArrayFiller( Object[][] rows, int offset ) {
+      this.rows = rows;
+      this.index = offset;
+    }
+
+    @Override
+    public boolean add( Object[] row ) {
+      rows[index++] = row;
+      return true;
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+      return index;
+    }
+  }
+
 }
@@ -584,6 +584,18 @@ public class Condition implements Cloneable, XMLInterface {
     return retval;
   }
 
+  /**
+   * Compile the condition for rows with the given layout. The compiled condition gives the same results as
+   * {@link #evaluate(RowMetaInterface, Object[])}, without looking up fields and converting constants for every row.
+   *
+   * @param rowMeta
+   *          the row metadata
+   * @return the compiled condition, for the use of one thread
+   */
+  public ConditionEvaluator compile( RowMetaInterface rowMeta ) {
+    return ConditionEvaluator.compile( this, rowMeta );
+  }
+
   public void addCondition( Condition cb ) {
     if ( isAtomic() && getLeftValuename() != null ) {
       /*
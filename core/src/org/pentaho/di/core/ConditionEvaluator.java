@@ -0,0 +1,553 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaAndData;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * A {@link Condition} compiled for one row layout. The field indexes, the constants converted to the type of the field
+ * they are compared with, the in-lists and the regular expressions are all worked out once, when the condition is
+ * compiled, instead of for every row.<br>
+ * <br>
+ * The operands of a list of conditions that are all combined with AND (or all with OR) are re-ordered while rows are
+ * evaluated: the operand that most often decides the outcome on its own is evaluated first. Conditions don't have
+ * side effects, so this only changes the number of operands evaluated per row, and with it which rows reach an
+ * operand that can't evaluate them.<br>
+ * <br>
+ * The result is the same as {@link Condition#evaluate(RowMetaInterface, Object[])} for every row. The rare atomic
+ * conditions that compare with another field of the row are evaluated by the condition itself. An evaluator keeps
+ * statistics, so every step copy needs its own.
+ */
+public abstract class ConditionEvaluator {
+
+  /** The number of rows after which the operands of a list are re-ordered */
+  static final int REORDER_INTERVAL = 1024;
+
+  protected final Condition condition;
+
+  protected ConditionEvaluator( Condition condition ) {
+    this.condition = condition;
+  }
+
+  /**
+   * Compile a condition.
+   *
+   * @param condition
+   *          the condition to compile
+   * @param rowMeta
+   *          the layout of the rows the condition will be evaluated for
+   * @return the evaluator of the condition for these rows
+   */
+  public static ConditionEvaluator compile( Condition condition, RowMetaInterface rowMeta ) {
+    if ( condition.isAtomic() ) {
+      return compileAtomic( condition, rowMeta );
+    }
+
+    // Leave out the conditions with an operator that doesn't combine, they are never evaluated
+    //
+    List<ConditionEvaluator> operands = new ArrayList<ConditionEvaluator>();
+    List<Integer> operators = new ArrayList<Integer>();
+    operands.add( compile( condition.getCondition( 0 ), rowMeta ) );
+    operators.add( Condition.OPERATOR_NONE );
+    boolean allAnd = true;
+    boolean allOr = true;
+    for ( int i = 1; i < condition.nrConditions(); i++ ) {
+      Condition sub = condition.getCondition( i );
+      switch ( sub.getOperator() ) {
+        case Condition.OPERATOR_AND:
+        case Condition.OPERATOR_AND_NOT:
+          allOr = false;
+          break;
+        case Condition.OPERATOR_OR:
+        case Condition.OPERATOR_OR_NOT:
+          allAnd = false;
+          break;
+        case Condition.OPERATOR_XOR:
+          allAnd = false;
+          allOr = false;
+          break;
+        default:
+          continue;
+      }
+      operands.add( compile( sub, rowMeta ) );
+      operators.add( sub.getOperator() );
+    }
+
+    ConditionEvaluator[] operandArray = operands.toArray( new ConditionEvaluator[operands.size()] );
+    int[] operatorArray = new int[operators.size()];
+    for ( int i = 0; i < operatorArray.length; i++ ) {
+      operatorArray[i] = operators.get( i );
+    }
+    if ( operandArray.length > 1 && ( allAnd || allOr ) ) {
+      return new ShortCircuitEvaluator( condition, operandArray, operatorArray, allAnd );
+    }
+    return new SequenceEvaluator( condition, operandArray, operatorArray );
+  }
+
+  private static ConditionEvaluator compileAtomic( Condition condition, RowMetaInterface rowMeta ) {
+    final boolean negate = condition.isNegated();
+    if ( condition.getFunction() == Condition.FUNC_TRUE ) {
+      return new ConstantEvaluator( condition, !negate );
+    }
+
+    String leftName = condition.getLeftValuename();
+    int leftIndex = Const.isEmpty( leftName ) ? -1 : rowMeta.indexOfValue( leftName );
+    if ( leftIndex < 0 ) {
+      // No field to evaluate: false, even when negated
+      return new ConstantEvaluator( condition, false );
+    }
+    ValueMetaInterface fieldMeta = rowMeta.getValueMeta( leftIndex );
+
+    ValueMetaAndData rightExact = condition.getRightExact();
+    String rightName = condition.getRightValuename();
+    ValueMetaInterface constantMeta = null;
+    Object constant = null;
+    if ( rightExact != null && rightExact.getValueData() != null ) {
+      constantMeta = rightExact.getValueMeta();
+      constant = rightExact.getValueData();
+    } else if ( !Const.isEmpty( rightName ) && rowMeta.indexOfValue( rightName ) >= 0 ) {
+      // Compared with another field of the row
+      return new DelegateEvaluator( condition, rowMeta );
+    }
+
+    try {
+      switch ( condition.getFunction() ) {
+        case Condition.FUNC_NULL:
+          return new NullEvaluator( condition, leftIndex, fieldMeta, !negate );
+        case Condition.FUNC_NOT_NULL:
+          return new NullEvaluator( condition, leftIndex, fieldMeta, negate );
+        default:
+          break;
+      }
+      if ( constant == null ) {
+        // Nothing to compare with, let the condition report that
+        return new DelegateEvaluator( condition, rowMeta );
+      }
+
+      switch ( condition.getFunction() ) {
+        case Condition.FUNC_EQUAL:
+        case Condition.FUNC_NOT_EQUAL:
+        case Condition.FUNC_SMALLER:
+        case Condition.FUNC_SMALLER_EQUAL:
+        case Condition.FUNC_LARGER:
+        case Condition.FUNC_LARGER_EQUAL:
+          return new CompareEvaluator( condition, leftIndex, fieldMeta, constantMeta, constant );
+        case Condition.FUNC_REGEXP:
+          return new PatternEvaluator( condition, leftIndex, fieldMeta, Pattern.compile( constantMeta
+            .getCompatibleString( constant ) ) );
+        case Condition.FUNC_LIKE:
+          String regex = constantMeta.getCompatibleString( constant );
+          regex = regex.replace( "%", ".*" );
+          regex = regex.replace( "?", "." );
+          return new PatternEvaluator( condition, leftIndex, fieldMeta, Pattern.compile( regex ) );
+        case Condition.FUNC_IN_LIST:
+          String[] inList = Const.splitString( constantMeta.getString( constant ), ';', true );
+          for ( int i = 0; i < inList.length; i++ ) {
+            inList[i] = inList[i] == null ? null : inList[i].replace( "\\", "" );
+          }
+          Arrays.sort( inList );
+          return new InListEvaluator( condition, leftIndex, fieldMeta, inList );
+        case Condition.FUNC_CONTAINS:
+        case Condition.FUNC_STARTS_WITH:
+        case Condition.FUNC_ENDS_WITH:
+          String string = constantMeta.getCompatibleString( constant );
+          if ( string == null ) {
+            return new DelegateEvaluator( condition, rowMeta );
+          }
+          return new StringEvaluator( condition, leftIndex, fieldMeta, string );
+        default:
+          // Unknown functions are false
+          return new ConstantEvaluator( condition, negate );
+      }
+    } catch ( Exception e ) {
+      // The condition itself reports the error for every row
+      return new DelegateEvaluator( condition, rowMeta );
+    }
+  }
+
+  /**
+   * Evaluate the condition...
+   *
+   * @param r
+   *          the row data
+   * @return true if the condition evaluates to true.
+   */
+  public boolean evaluate( Object[] r ) {
+    try {
+      return test( r );
+    } catch ( Exception e ) {
+      throw new RuntimeException( "Unexpected error evaluation condition [" + condition.toString() + "]", e );
+    }
+  }
+
+  protected abstract boolean test( Object[] r ) throws Exception;
+
+  private static class ConstantEvaluator extends ConditionEvaluator {
+    private final boolean result;
+
+    ConstantEvaluator( Condition condition, boolean result ) {
+      super( condition );
+      this.result = result;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) {
+      return result;
+    }
+
+    @Override
+    protected boolean test( Object[] r ) {
+      return result;
+    }
+  }
+
+  private static class DelegateEvaluator extends ConditionEvaluator {
+    private final RowMetaInterface rowMeta;
+
+    DelegateEvaluator( Condition condition, RowMetaInterface rowMeta ) {
+      super( condition );
+      this.rowMeta = rowMeta;
+    }
+
+    @Override
+    public boolean evaluate( Object[] r ) {
+      return condition.evaluate( rowMeta, r );
+    }
+
+    @Override
+    protected boolean test( Object[] r ) {
+      return condition.evaluate( rowMeta, r );
+    }
+  }
+
+  private static class NullEvaluator extends ConditionEvaluator {
+    private final int index;
+    private final ValueMetaInterface fieldMeta;
+    private final boolean whenNull;
+
+    NullEvaluator( Condition condition, int index, ValueMetaInterface fieldMeta, boolean whenNull ) {
+      super( condition );
+      this.index = index;
+      this.fieldMeta = fieldMeta;
+      this.whenNull = whenNull;
+    }
+
+    @Override
+    protected boolean test( Object[] r ) throws Exception {
+      return fieldMeta.isNull( r[index] ) == whenNull;
+    }
+  }
+
+  private static class CompareEvaluator extends ConditionEvaluator {
+    private final int index;
+    private final ValueMetaInterface fieldMeta;
+    private final ValueMetaInterface constantMeta;
+    private final Object constant;
+    private final boolean converted;
+    private final int function;
+    private final boolean negate;
+
+    CompareEvaluator( Condition condition, int index, ValueMetaInterface fieldMeta,
+      ValueMetaInterface constantMeta, Object constant ) {
+      super( condition );
+      this.index = index;
+      this.fieldMeta = fieldMeta;
+      this.function = condition.getFunction();
+      this.negate = condition.isNegated();
+
+      // Convert the constant to the type and storage of the field now, like the comparison would for every row
+      //
+      Object value = null;
+      boolean isConverted = false;
+      try {
+        if ( fieldMeta.getType() != constantMeta.getType() ) {
+          value = fieldMeta.convertData( constantMeta, constant );
+          isConverted = true;
+        } else if ( fieldMeta.getStorageType() == constantMeta.getStorageType() ) {
+          value = constant;
+          isConverted = true;
+        } else if ( fieldMeta.getStorageType() == ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+          value = constantMeta.convertToNormalStorageType( constant );
+          isConverted = true;
+        } else if ( fieldMeta.getStorageType() == ValueMetaInterface.STORAGE_TYPE_BINARY_STRING ) {
+          value = constantMeta.convertToBinaryStringStorageType( constant );
+          isConverted = true;
+        }
+      } catch ( Exception e ) {
+        // Compare the hard way, and fail the same way, for every row
+        isConverted = false;
+      }
+      this.constantMeta = constantMeta;
+      this.constant = isConverted ? value : constant;
+      this.converted = isConverted;
+    }
+
+    @Override
+    protected boolean test( Object[] r ) throws Exception {
+      int cmp;
+      if ( converted ) {
+        cmp = fieldMeta.compare( r[index], constant );
+      } else {
+        cmp = fieldMeta.compare( r[index], constantMeta, constant );
+      }
+      boolean result;
+      switch ( function ) {
+        case Condition.FUNC_EQUAL:
+          result = cmp == 0;
+          break;
+        case Condition.FUNC_NOT_EQUAL:
+          result = cmp != 0;
+          break;
+        case Condition.FUNC_SMALLER:
+          result = cmp < 0;
+          break;
+        case Condition.FUNC_SMALLER_EQUAL:
+          result = cmp <= 0;
+          break;
+        case Condition.FUNC_LARGER:
+          result = cmp > 0;
+          break;
+        default:
+          result = cmp >= 0;
+          break;
+      }
+      return result != negate;
+    }
+  }
+
+  private static class PatternEvaluator extends ConditionEvaluator {
+    private final int index;
+    private final ValueMetaInterface fieldMeta;
+    private final Pattern pattern;
+    private final boolean negate;
+
+    PatternEvaluator( Condition condition, int index, ValueMetaInterface fieldMeta, Pattern pattern ) {
+      super( condition );
+      this.index = index;
+      this.fieldMeta = fieldMeta;
+      this.pattern = pattern;
+      this.negate = condition.isNegated();
+    }
+
+    @Override
+    protected boolean test( Object[] r ) throws Exception {
+      Object field = r[index];
+      boolean result =
+        !fieldMeta.isNull( field ) && pattern.matcher( fieldMeta.getCompatibleString( field ) ).matches();
+      return result != negate;
+    }
+  }
+
+  private static class InListEvaluator extends ConditionEvaluator {
+    private final int index;
+    private final ValueMetaInterface fieldMeta;
+    private final String[] inList;
+    private final boolean negate;
+
+    InListEvaluator( Condition condition, int index, ValueMetaInterface fieldMeta, String[] inList ) {
+      super( condition );
+      this.index = index;
+      this.fieldMeta = fieldMeta;
+      this.inList = inList;
+      this.negate = condition.isNegated();
+    }
+
+    @Override
+    protected boolean test( Object[] r ) throws Exception {
+      String searchString = fieldMeta.getCompatibleString( r[index] );
+      boolean result = searchString != null && Arrays.binarySearch( inList, searchString ) >= 0;
+      return result != negate;
+    }
+  }
+
+  private static class StringEvaluator extends ConditionEvaluator {
+    private final int index;
+    private final ValueMetaInterface fieldMeta;
+    private final String string;
+    private final int function;
+    private final boolean negate;
+
+    StringEvaluator( Condition condition, int index, ValueMetaInterface fieldMeta, String string ) {
+      super( condition );
+      this.index = index;
+      this.fieldMeta = fieldMeta;
+      this.string = string;
+      this.function = condition.getFunction();
+      this.negate = condition.isNegated();
+    }
+
+    @Override
+    protected boolean test( Object[] r ) throws Exception {
+      String field = fieldMeta.getCompatibleString( r[index] );
+      boolean result;
+      switch ( function ) {
+        case Condition.FUNC_CONTAINS:
+          result = field != null && field.indexOf( string ) >= 0;
+          break;
+        case Condition.FUNC_STARTS_WITH:
+          result = field != null && field.startsWith( string );
+          break;
+        default:
+          result = !Const.isEmpty( field ) && field.endsWith( string );
+          break;
+      }
+      return result != negate;
+    }
+  }
+
+  /**
+   * Evaluates the operands one after the other, in the order in which they are found.
+   */
+  private static class SequenceEvaluator extends ConditionEvaluator {
+    private final ConditionEvaluator[] operands;
+    private final int[] operators;
+    private final boolean negate;
+
+    SequenceEvaluator( Condition condition, ConditionEvaluator[] operands, int[] operators ) {
+      super( condition );
+      this.operands = operands;
+      this.operators = operators;
+      this.negate = condition.isNegated();
+    }
+
+    @Override
+    protected boolean test( Object[] r ) {
+      boolean result = operands[0].evaluate( r );
+      for ( int i = 1; i < operands.length; i++ ) {
+        switch ( operators[i] ) {
+          case Condition.OPERATOR_OR:
+            result = result || operands[i].evaluate( r );
+            break;
+          case Condition.OPERATOR_AND:
+            result = result && operands[i].evaluate( r );
+            break;
+          case Condition.OPERATOR_OR_NOT:
+            result = result || !operands[i].evaluate( r );
+            break;
+          case Condition.OPERATOR_AND_NOT:
+            result = result && !operands[i].evaluate( r );
+            break;
+          default:
+            result = result ^ operands[i].evaluate( r );
+            break;
+        }
+      }
+      return result != negate;
+    }
+  }
+
+  /**
+   * Evaluates a list of operands that are all combined with AND, or all with OR. It stops at the first operand that
+   * decides the outcome and moves the operands that decide most often to the front.
+   */
+  static class ShortCircuitEvaluator extends ConditionEvaluator {
+    private final ConditionEvaluator[] operands;
+    /** Per operand: true if its result is negated before it is combined */
+    private final boolean[] negated;
+    private final boolean and;
+    private final boolean negate;
+
+    /** The number of times every operand was evaluated and the number of times it decided the outcome */
+    private final long[] evaluated;
+    private final long[] decided;
+    private int nrRows;
+
+    ShortCircuitEvaluator( Condition condition, ConditionEvaluator[] operands, int[] operators, boolean and ) {
+      super( condition );
+      this.operands = operands.clone();
+      this.negated = new boolean[operands.length];
+      for ( int i = 1; i < operands.length; i++ ) {
+        negated[i] = operators[i] == Condition.OPERATOR_AND_NOT || operators[i] == Condition.OPERATOR_OR_NOT;
+      }
+      this.and = and;
+      this.negate = condition.isNegated();
+      this.evaluated = new long[operands.length];
+      this.decided = new long[operands.length];
+    }
+
+    @Override
+    protected boolean test( Object[] r ) {
+      if ( ++nrRows == REORDER_INTERVAL ) {
+        reorder();
+        nrRows = 0;
+      }
+
+      // AND is decided by the first false operand, OR by the first true one
+      boolean decisive = !and;
+      for ( int i = 0; i < operands.length; i++ ) {
+        evaluated[i]++;
+        if ( operands[i].evaluate( r ) != negated[i] == decisive ) {
+          decided[i]++;
+          return decisive != negate;
+        }
+      }
+      return !decisive != negate;
+    }
+
+    /**
+     * Sort the operands on the fraction of their evaluations in which they decided the outcome, highest first.
+     */
+    private void reorder() {
+      for ( int i = 1; i < operands.length; i++ ) {
+        ConditionEvaluator operand = operands[i];
+        boolean operandNegated = negated[i];
+        long operandEvaluated = evaluated[i];
+        long operandDecided = decided[i];
+        int j = i;
+        while ( j > 0 && isMoreDecisive( operandDecided, operandEvaluated, decided[j - 1], evaluated[j - 1] ) ) {
+          operands[j] = operands[j - 1];
+          negated[j] = negated[j - 1];
+          evaluated[j] = evaluated[j - 1];
+          decided[j] = decided[j - 1];
+          j--;
+        }
+        operands[j] = operand;
+        negated[j] = operandNegated;
+        evaluated[j] = operandEvaluated;
+        decided[j] = operandDecided;
+      }
+
+      // Let the recent rows weigh more than the old ones
+      for ( int i = 0; i < operands.length; i++ ) {
+        evaluated[i] /= 2;
+        decided[i] /= 2;
+      }
+    }
+
+    private static boolean isMoreDecisive( long decided1, long evaluated1, long decided2, long evaluated2 ) {
+      // decided1/evaluated1 > decided2/evaluated2, operands that were never evaluated keep their place
+      return evaluated1 > 0 && decided1 * Math.max( evaluated2, 1 ) > decided2 * evaluated1;
+    }
+
+    ConditionEvaluator getOperand( int i ) {
+      return operands[i];
+    }
+  }
+}
@@ -925,6 +925,37 @@ public class Const {
    */
   public static final String KETTLE_BATCHING_ROWSET = "KETTLE_BATCHING_ROWSET";
 
+  /**
+   * Set this variable to N to use the blocking row set instead of the lock-free ring buffer row set on hops between a
+   * single step copy and a single step copy. (default = Y)
+   */
+  public static final String KETTLE_RING_BUFFER_ROWSET = "KETTLE_RING_BUFFER_ROWSET";
+
+  /**
+   * The name of the variable that optionally contains the wait strategy of the ring buffer row set: SPIN, YIELD or
+   * PARK. (default = PARK)
+   */
+  public static final String KETTLE_ROWSET_WAIT_STRATEGY = "KETTLE_ROWSET_WAIT_STRATEGY";
+
+  /**
+   * Set this variable to Y to let the steps that support it process their input in column batches instead of row by
+   * row. (default = N)
+   */
+  public static final String KETTLE_COLUMNAR_BATCH_MODE = "KETTLE_COLUMNAR_BATCH_MODE";
+
+  /**
+   * Set this variable to N to let the Calculator step do its calculations one by one instead of in code generated for
+   * all of them. (default = Y)
+   */
+  public static final String KETTLE_CALCULATOR_COMPILE = "KETTLE_CALCULATOR_COMPILE";
+
+  /**
+   * Set this variable to N to compile the classes of the User Defined Java Class, Janino and Calculator steps for every
+   * run instead of keeping them in a cache for the whole JVM. Classes with static fields, other than constants, are
+   * compiled for every run anyway. (default = Y)
+   */
+  public static final String KETTLE_JANINO_CLASS_CACHE = "KETTLE_JANINO_CLASS_CACHE";
+
   /**
    * Set this variable to Y to disable standard Kettle logging to the console. (stdout)
    */
@@ -999,6 +1030,70 @@ public class Const {
   public static final String KETTLE_AGGREGATION_MIN_NULL_IS_VALUED = "KETTLE_AGGREGATION_MIN_NULL_IS_VALUED";
   public static final String KETTLE_AGGREGATION_ALL_NULLS_ARE_ZERO = "KETTLE_AGGREGATION_ALL_NULLS_ARE_ZERO";
 
+  /**
+   * The maximum number of groups the Memory Group By step keeps in memory. The rows of the other groups are spread over
+   * temporary files and aggregated afterwards. (default = 0, no limit)
+   */
+  public static final String KETTLE_MEMORY_GROUP_BY_MAX_GROUPS = "KETTLE_MEMORY_GROUP_BY_MAX_GROUPS";
+
+  /**
+   * The percentage of free memory below which the Memory Group By step stops adding groups in memory and spreads the
+   * rows of the other groups over temporary files. (default = 0, no limit)
+   */
+  public static final String KETTLE_MEMORY_GROUP_BY_FREE_MEMORY_LIMIT = "KETTLE_MEMORY_GROUP_BY_FREE_MEMORY_LIMIT";
+
+  /**
+   * Set this variable to N to let the Sort rows step sort on a single thread and write its temporary files on the step
+   * thread instead of sorting on all cores while the next buffer is being filled. The rows of the buffer being written
+   * still count against the sort size and the free memory limit of the step. (default = Y)
+   */
+  public static final String KETTLE_SORT_ROWS_PARALLEL = "KETTLE_SORT_ROWS_PARALLEL";
+
+  /**
+   * Set this variable to Y to let the Sort rows step encode the sort fields of every row into a byte key once and
+   * compare those keys instead of the fields. Only String, Integer, Number, Date and Boolean fields are encoded.
+   * (default = N)
+   */
+  public static final String KETTLE_SORT_ROWS_NORMALIZED_KEYS = "KETTLE_SORT_ROWS_NORMALIZED_KEYS";
+
+  /**
+   * The compression codec of the temporary files of the Sort rows step when file compression is enabled: GZIP or LZ4.
+   * LZ4 compresses less but takes a fraction of the CPU time. (default = GZIP)
+   */
+  public static final String KETTLE_SORT_ROWS_COMPRESSION_CODEC = "KETTLE_SORT_ROWS_COMPRESSION_CODEC";
+
+  /**
+   * The size in bytes of the read buffer of every temporary file the Sort rows step merges. (default = 50000)
+   */
+  public static final String KETTLE_SORT_ROWS_READ_BUFFER_SIZE = "KETTLE_SORT_ROWS_READ_BUFFER_SIZE";
+
+  /**
+   * The maximum number of temporary files the Sort rows step merges at once. When there are more files, they are first
+   * merged into fewer, larger files. (default = 0, no limit)
+   */
+  public static final String KETTLE_SORT_ROWS_MAX_OPEN_FILES = "KETTLE_SORT_ROWS_MAX_OPEN_FILES";
+
+  /**
+   * Set this variable to HEAP or OFF_HEAP to let the Stream lookup step keep the lookup data serialized in large byte
+   * slabs on the Java heap or in direct memory, rather than in a hash map or the memory preserving hash index. Keys are
+   * compared on their serialized bytes, as in the memory preserving mode. The sorted list and integer pair algorithms
+   * are left alone. (default = empty, no slab storage)
+   */
+  public static final String KETTLE_STREAM_LOOKUP_STORAGE = "KETTLE_STREAM_LOOKUP_STORAGE";
+
+  /**
+   * Set this variable to LRU to let the Database lookup step evict the least recently used rows from its cache once it
+   * is full. The default, TINY_LFU, only lets a new row in at the expense of a row that has been used less often
+   * recently, which keeps the popular keys of a skewed distribution in the cache.
+   */
+  public static final String KETTLE_DATABASE_LOOKUP_CACHE_POLICY = "KETTLE_DATABASE_LOOKUP_CACHE_POLICY";
+
+  /**
+   * The maximum estimated memory in MB taken by the rows in the cache of a Database lookup step, besides the maximum
+   * number of rows of the step. (default = 0, no memory limit)
+   */
+  public static final String KETTLE_DATABASE_LOOKUP_CACHE_MAX_MEMORY = "KETTLE_DATABASE_LOOKUP_CACHE_MAX_MEMORY";
+
   /**
    * The name of the variable containing an alternative default timestamp format
    */
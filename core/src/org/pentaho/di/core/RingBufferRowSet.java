@@ -0,0 +1,416 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A lock-free row buffer for hops with exactly one writing thread and one reading thread (single producer, single
+ * consumer). Rows are kept in a fixed size ring and the two sides only communicate through a pair of ever increasing
+ * sequence counters, so no monitor is taken for a row handed over.<br>
+ * <br>
+ * This row set is NOT safe to use with more than one producer or more than one consumer thread. Use
+ * {@link BlockingRowSet} in those situations.<br>
+ * <br>
+ * When the buffer is full (on put) or empty (on get) the calling thread waits according to the configured
+ * {@link WaitStrategy} until the peer changes the state of the buffer or the timeout expires.
+ */
+public class RingBufferRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+
+  /**
+   * Describes what a thread does while it waits for room (producer) or for a row (consumer).
+   */
+  public enum WaitStrategy {
+    /** Busy spin on the sequence counters. Lowest latency, burns a core while waiting. */
+    SPIN,
+    /** Call {@link Thread#yield()} between checks. */
+    YIELD,
+    /** Park the thread and have the peer unpark it when the state of the buffer changes. (default) */
+    PARK;
+
+    /**
+     * Look up a wait strategy by name, case insensitive.
+     *
+     * @param name
+     *          the name of the strategy
+     * @param defaultStrategy
+     *          the strategy to return when the name is empty or unknown
+     * @return the wait strategy
+     */
+    public static WaitStrategy getWaitStrategy( String name, WaitStrategy defaultStrategy ) {
+      if ( !Const.isEmpty( name ) ) {
+        for ( WaitStrategy strategy : values() ) {
+          if ( strategy.name().equalsIgnoreCase( name.trim() ) ) {
+            return strategy;
+          }
+        }
+      }
+      return defaultStrategy;
+    }
+  }
+
+  /**
+   * The number of times we check the counters before we start yielding or parking.
+   */
+  private static final int SPIN_TRIES = 100;
+
+  private final Object[][] buffer;
+  private final int mask;
+  private final int capacity;
+
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * The sequence of the next row to read, only written by the consumer.
+   */
+  private final AtomicLong head;
+
+  /**
+   * The sequence of the next row to write, only written by the producer.
+   */
+  private final AtomicLong tail;
+
+  /**
+   * Cached copy of head, only used by the producer to avoid reading the shared counter for every row.
+   */
+  private long headCache;
+
+  /**
+   * Cached copy of tail, only used by the consumer to avoid reading the shared counter for every row.
+   */
+  private long tailCache;
+
+  private volatile Thread waitingProducer;
+  private volatile Thread waitingConsumer;
+
+  private int timeoutPut;
+  private int timeoutGet;
+
+  /**
+   * Create a new ring buffer row set with maxSize capacity using the wait strategy configured with the
+   * KETTLE_ROWSET_WAIT_STRATEGY variable.
+   *
+   * @param maxSize
+   *          the maximum number of rows in the buffer
+   */
+  public RingBufferRowSet( int maxSize ) {
+    this( maxSize, WaitStrategy.getWaitStrategy( System.getProperty( Const.KETTLE_ROWSET_WAIT_STRATEGY ),
+      WaitStrategy.PARK ) );
+  }
+
+  /**
+   * Create a new ring buffer row set with maxSize capacity.
+   *
+   * @param maxSize
+   *          the maximum number of rows in the buffer
+   * @param waitStrategy
+   *          what to do while waiting for room or rows
+   */
+  public RingBufferRowSet( int maxSize, WaitStrategy waitStrategy ) {
+    super();
+
+    capacity = Math.max( 1, maxSize );
+
+    // The ring itself is sized to a power of 2 so that we can mask instead of using a modulo
+    //
+    int ringSize = Integer.highestOneBit( capacity );
+    if ( ringSize < capacity ) {
+      ringSize <<= 1;
+    }
+    buffer = new Object[ringSize][];
+    mask = ringSize - 1;
+
+    this.waitStrategy = waitStrategy == null ? WaitStrategy.PARK : waitStrategy;
+
+    head = new AtomicLong( 0L );
+    tail = new AtomicLong( 0L );
+
+    timeoutGet = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_GET_TIMEOUT ), Const.TIMEOUT_GET_MILLIS );
+    timeoutPut = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_PUT_TIMEOUT ), Const.TIMEOUT_PUT_MILLIS );
+  }
+
+  @Override
+  public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
+    return putRowWait( rowMeta, rowData, timeoutPut, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
+    if ( rowData == null ) {
+      // Same behavior as the blocking queue based row set
+      return false;
+    }
+    this.rowMeta = rowMeta;
+
+    long sequence = tail.get();
+    if ( sequence - headCache >= capacity ) {
+      headCache = head.get();
+      if ( sequence - headCache >= capacity ) {
+        if ( !waitForRoom( sequence, tu.toNanos( time ) ) ) {
+          return false;
+        }
+      }
+    }
+
+    buffer[(int) sequence & mask] = rowData;
+    publish( tail, sequence + 1 );
+    signalReader();
+
+    Thread consumer = waitingConsumer;
+    if ( consumer != null ) {
+      LockSupport.unpark( consumer );
+    }
+    return true;
+  }
+
+  /**
+   * Copies as many rows as there is room for in one go and publishes them with a single counter update.
+   */
+  @Override
+  public int putRows( RowMetaInterface rowMeta, Object[][] rows, int offset, int length ) {
+    this.rowMeta = rowMeta;
+
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos( timeoutPut );
+    int count = 0;
+    while ( count < length ) {
+      long sequence = tail.get();
+      if ( sequence - headCache >= capacity ) {
+        headCache = head.get();
+        if ( sequence - headCache >= capacity ) {
+          if ( !waitForRoom( sequence, timeoutNanos ) ) {
+            break;
+          }
+        }
+      }
+
+      int nr = (int) Math.min( capacity - ( sequence - headCache ), length - count );
+      for ( int i = 0; i < nr; i++ ) {
+        Object[] row = rows[offset + count + i];
+        if ( row == null ) {
+          // Same behavior as putRow(): a null row is refused
+          nr = i;
+          break;
+        }
+        buffer[(int) ( sequence + i ) & mask] = row;
+      }
+      if ( nr == 0 ) {
+        break;
+      }
+      publish( tail, sequence + nr );
+      count += nr;
+      signalReader();
+
+      Thread consumer = waitingConsumer;
+      if ( consumer != null ) {
+        LockSupport.unpark( consumer );
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Copies all the rows that are available in one go and releases the slots with a single counter update.
+   */
+  @Override
+  public int drainTo( Object[][] rows, int offset, int max ) {
+    long sequence = head.get();
+    tailCache = tail.get();
+    int nr = (int) Math.min( tailCache - sequence, max );
+    if ( nr <= 0 ) {
+      return 0;
+    }
+    for ( int i = 0; i < nr; i++ ) {
+      int index = (int) ( sequence + i ) & mask;
+      rows[offset + i] = buffer[index];
+      buffer[index] = null; // prevent any hold-up to GC
+    }
+    publish( head, sequence + nr );
+
+    Thread producer = waitingProducer;
+    if ( producer != null ) {
+      LockSupport.unpark( producer );
+    }
+    return nr;
+  }
+
+  @Override
+  public Object[] getRow() {
+    return getRowWait( timeoutGet, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public Object[] getRowImmediate() {
+    long sequence = head.get();
+    if ( sequence >= tailCache ) {
+      tailCache = tail.get();
+      if ( sequence >= tailCache ) {
+        return null;
+      }
+    }
+    return take( sequence );
+  }
+
+  @Override
+  public Object[] getRowWait( long timeout, TimeUnit tu ) {
+    long sequence = head.get();
+    if ( sequence >= tailCache ) {
+      tailCache = tail.get();
+      if ( sequence >= tailCache ) {
+        if ( !waitForRow( sequence, tu.toNanos( timeout ) ) ) {
+          return null;
+        }
+      }
+    }
+    return take( sequence );
+  }
+
+  private Object[] take( long sequence ) {
+    int index = (int) sequence & mask;
+    Object[] row = buffer[index];
+    buffer[index] = null; // prevent any hold-up to GC
+    publish( head, sequence + 1 );
+
+    Thread producer = waitingProducer;
+    if ( producer != null ) {
+      LockSupport.unpark( producer );
+    }
+    return row;
+  }
+
+  /**
+   * When parking, the counter needs a full fence so that the peer's check of the waiting thread can't be reordered
+   * before it. Otherwise an ordered (lazy) write is enough to publish the row.
+   */
+  private void publish( AtomicLong sequence, long value ) {
+    if ( waitStrategy == WaitStrategy.PARK ) {
+      sequence.set( value );
+    } else {
+      sequence.lazySet( value );
+    }
+  }
+
+  private boolean waitForRoom( long sequence, long timeoutNanos ) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    int tries = 0;
+    try {
+      while ( true ) {
+        if ( waitStrategy == WaitStrategy.PARK && tries >= SPIN_TRIES ) {
+          waitingProducer = Thread.currentThread();
+        }
+        headCache = head.get();
+        if ( sequence - headCache < capacity ) {
+          return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if ( remaining <= 0 ) {
+          return false;
+        }
+        tries = idle( tries, remaining );
+        if ( Thread.interrupted() ) {
+          return false;
+        }
+      }
+    } finally {
+      waitingProducer = null;
+    }
+  }
+
+  private boolean waitForRow( long sequence, long timeoutNanos ) {
+    long deadline = System.nanoTime() + timeoutNanos;
+    int tries = 0;
+    try {
+      while ( true ) {
+        if ( waitStrategy == WaitStrategy.PARK && tries >= SPIN_TRIES ) {
+          waitingConsumer = Thread.currentThread();
+        }
+        tailCache = tail.get();
+        if ( sequence < tailCache ) {
+          return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if ( remaining <= 0 ) {
+          return false;
+        }
+        tries = idle( tries, remaining );
+        if ( Thread.interrupted() ) {
+          return false;
+        }
+      }
+    } finally {
+      waitingConsumer = null;
+    }
+  }
+
+  private int idle( int tries, long remainingNanos ) {
+    if ( tries < SPIN_TRIES ) {
+      return tries + 1;
+    }
+    switch ( waitStrategy ) {
+      case YIELD:
+        Thread.yield();
+        break;
+      case PARK:
+        LockSupport.parkNanos( this, remainingNanos );
+        break;
+      default:
+        break;
+    }
+    return tries;
+  }
+
+  @Override
+  public int size() {
+    // Read head first: tail only grows, so the result can never be negative
+    //
+    long h = head.get();
+    long t = tail.get();
+    return (int) ( t - h );
+  }
+
+  /**
+   * Clear this rowset: remove all rows and remove the "done" flag. This should only be called when neither the
+   * producer nor the consumer is active.
+   */
+  @Override
+  public void clear() {
+    for ( int i = 0; i < buffer.length; i++ ) {
+      buffer[i] = null;
+    }
+    head.set( 0L );
+    tail.set( 0L );
+    headCache = 0L;
+    tailCache = 0L;
+    done.set( false );
+  }
+
+  /**
+   * @return the wait strategy used by this row set
+   */
+  public WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+}
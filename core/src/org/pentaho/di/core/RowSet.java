@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -56,6 +57,73 @@ public interface RowSet {
    */
   public abstract boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu );
 
+  /**
+   * Offer a batch of rows to this rowset providing for the description (metadata) of the rows. Rows are added in order
+   * until all of them are in the buffer or until the buffer stays full for the small period of time that
+   * {@link #putRow(RowMetaInterface, Object[])} would wait. By default the rows are added one by one, row sets that can
+   * move a batch of rows more efficiently override this.
+   *
+   * @param rowMeta
+   *          The description of the row data
+   * @param rows
+   *          the rows of data
+   * @param offset
+   *          the index of the first row in the array to add
+   * @param length
+   *          the number of rows to add
+   * @return the number of rows that were added to the rowset, starting at offset.
+   */
+  public default int putRows( RowMetaInterface rowMeta, Object[][] rows, int offset, int length ) {
+    int count = 0;
+    while ( count < length && putRow( rowMeta, rows[offset + count] ) ) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Get a batch of rows from the input buffer. It blocks for a short period until a first row becomes available, then
+   * takes up to max rows that are available at that time.
+   *
+   * @param max
+   *          the maximum number of rows to return
+   * @return an array with at least one and at most max rows or null if no row is available.
+   */
+  public default Object[][] getRows( int max ) {
+    Object[] row = getRow();
+    if ( row == null ) {
+      return null;
+    }
+    Object[][] rows = new Object[Math.max( 1, max )][];
+    rows[0] = row;
+    int count = 1 + drainTo( rows, 1, rows.length - 1 );
+    return count == rows.length ? rows : Arrays.copyOf( rows, count );
+  }
+
+  /**
+   * Move the rows that are available in the buffer right now to the given array, without waiting. By default the rows
+   * are taken one by one with {@link #getRowImmediate()}.
+   *
+   * @param rows
+   *          the array to move the rows into
+   * @param offset
+   *          the index in the array to store the first row at
+   * @param max
+   *          the maximum number of rows to move
+   * @return the number of rows moved into the array
+   */
+  public default int drainTo( Object[][] rows, int offset, int max ) {
+    int count = 0;
+    while ( count < max ) {
+      Object[] row = getRowImmediate();
+      if ( row == null ) {
+        break;
+      }
+      rows[offset + count++] = row;
+    }
+    return count;
+  }
+
   /**
    * Get a row from the input buffer, it blocks for a short period until a new row becomes available. Otherwise, it
    * returns null.
@@ -154,4 +222,15 @@ public interface RowSet {
    * Clear this rowset: remove all rows and remove the "done" flag.
    */
   public abstract void clear();
+
+  /**
+   * Set the signal to give when a row is added to this row set or when the row set is marked as done. This allows the
+   * reading step to wait for rows on several input row sets at once. By default the signal is ignored, so the reader
+   * only notices new rows the next time it looks.
+   *
+   * @param readerSignal
+   *          the signal of the reading thread or null if the reader doesn't want to be signalled
+   */
+  public default void setReaderSignal( RowSetSignal readerSignal ) {
+  }
 }
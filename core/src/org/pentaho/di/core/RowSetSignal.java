@@ -0,0 +1,85 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A wake-up signal for a single waiting thread. The thread that owns the signal parks in {@link #await(long, TimeUnit)}
+ * until another thread calls {@link #signal()}, for example because it put a row in one of the row sets the owner is
+ * reading from.<br>
+ * <br>
+ * A signal that is given while nobody is waiting is remembered, so the next call to await() returns immediately. This
+ * means the owner can safely check its row sets first and wait afterwards without missing a wake-up.
+ */
+public class RowSetSignal {
+
+  private volatile Thread waiter;
+  private volatile boolean signalled;
+
+  /**
+   * Wake up the waiting thread, or make the next wait return immediately if no thread is waiting.
+   */
+  public void signal() {
+    if ( !signalled ) {
+      signalled = true;
+    }
+    Thread thread = waiter;
+    if ( thread != null ) {
+      LockSupport.unpark( thread );
+    }
+  }
+
+  /**
+   * Wait until the signal is given or the timeout expires, whichever comes first. The signal is consumed.
+   *
+   * @param timeout
+   *          the maximum time to wait
+   * @param tu
+   *          the unit of the timeout
+   * @return true if the signal was given, false if the timeout expired or the thread was interrupted
+   */
+  public boolean await( long timeout, TimeUnit tu ) {
+    if ( signalled ) {
+      signalled = false;
+      return true;
+    }
+
+    long deadline = System.nanoTime() + tu.toNanos( timeout );
+    waiter = Thread.currentThread();
+    try {
+      while ( !signalled ) {
+        long remaining = deadline - System.nanoTime();
+        if ( remaining <= 0 || Thread.currentThread().isInterrupted() ) {
+          return false;
+        }
+        LockSupport.parkNanos( this, remaining );
+      }
+      signalled = false;
+      return true;
+    } finally {
+      waiter = null;
+    }
+  }
+}
@@ -23,6 +23,7 @@
 
 package org.pentaho.di.core.database;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -41,6 +42,7 @@ import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.encryption.Encr;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.repository.ObjectId;
@@ -2284,4 +2286,15 @@ public abstract class BaseDatabaseMeta implements Cloneable, DatabaseInterfaceEx
   public boolean fullExceptionLog( Exception e ) {
     return true;
   }
+
+  @Override
+  public boolean supportsBulkLoadChannel() {
+    return false;
+  }
+
+  @Override
+  public BulkLoadChannel openBulkLoadChannel( Connection connection, String schemaTable, String[] columnNames,
+    RowMetaInterface rowMeta ) throws KettleDatabaseException {
+    return null;
+  }
 }
@@ -0,0 +1,50 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.database;
+
+import org.pentaho.di.core.exception.KettleDatabaseException;
+
+/**
+ * A stream of rows into a table over the bulk load protocol of a database, as opened by
+ * {@link Database#openBulkLoadChannel(String, String, org.pentaho.di.core.row.RowMetaInterface)}. The rows become
+ * visible in the table after {@link #endLoad()} and a commit of the connection. While the channel is open the
+ * connection can't be used for anything else.
+ */
+public interface BulkLoadChannel {
+
+  /**
+   * Send a row, the values are in the layout of the row metadata the channel was opened with.
+   */
+  public void writeRow( Object[] row ) throws KettleDatabaseException;
+
+  /**
+   * Send the last rows and close the channel.
+   *
+   * @return the number of rows loaded
+   */
+  public long endLoad() throws KettleDatabaseException;
+
+  /**
+   * Close the channel without loading any of the rows.
+   */
+  public void cancel() throws KettleDatabaseException;
+}
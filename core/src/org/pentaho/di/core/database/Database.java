@@ -1169,6 +1169,31 @@ public class Database implements VariableSpace, LoggingObjectInterface {
     return ins.toString();
   }
 
+  /**
+   * Start streaming rows into a table over the bulk load protocol of the database, for example COPY for PostgreSQL.
+   * This is a lot faster than batched inserts, but a bad row fails the whole load.
+   *
+   * @param schemaName
+   *          the schema of the table
+   * @param tableName
+   *          the table to load
+   * @param fields
+   *          the columns to load, the layout of the rows
+   * @return the channel or null if the database doesn't offer one
+   * @throws KettleDatabaseException
+   *           in case the load can't be started
+   * @see DatabaseMeta#supportsBulkLoadChannel()
+   */
+  public BulkLoadChannel openBulkLoadChannel( String schemaName, String tableName, RowMetaInterface fields )
+    throws KettleDatabaseException {
+    String schemaTable = databaseMeta.getQuotedSchemaTableCombination( schemaName, tableName );
+    String[] columnNames = new String[fields.size()];
+    for ( int i = 0; i < fields.size(); i++ ) {
+      columnNames[i] = databaseMeta.quoteField( fields.getValueMeta( i ).getName() );
+    }
+    return databaseMeta.openBulkLoadChannel( connection, schemaTable, columnNames, fields );
+  }
+
   public void insertRow() throws KettleDatabaseException {
     insertRow( prepStatementInsert );
   }
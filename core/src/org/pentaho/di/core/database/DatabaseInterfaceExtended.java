@@ -22,6 +22,11 @@
  ******************************************************************************/
 package org.pentaho.di.core.database;
 
+import java.sql.Connection;
+
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
 /**
  * @deprecated As of release 6.1. The methods will be added to the existing interface at the next major release.
  * {@link DatabaseMeta#getDropTableIfExistsStatement(String)} which is using those new methods can be freely used,
@@ -47,4 +52,25 @@ public interface DatabaseInterfaceExtended extends DatabaseInterface {
    * @return decision result
    */
   public boolean fullExceptionLog( Exception e );
+
+  /**
+   * @return true if the database can stream rows into a table with {@link #openBulkLoadChannel}
+   */
+  public boolean supportsBulkLoadChannel();
+
+  /**
+   * Start streaming rows into a table over the bulk load protocol of the database.
+   *
+   * @param connection
+   *          the connection to load over, it can't be used for anything else until the channel is closed
+   * @param schemaTable
+   *          the quoted schema and table name
+   * @param columnNames
+   *          the quoted names of the columns to load, in the order of the row metadata
+   * @param rowMeta
+   *          the layout of the rows
+   * @return the channel or null if the database doesn't offer one
+   */
+  public BulkLoadChannel openBulkLoadChannel( Connection connection, String schemaTable, String[] columnNames,
+    RowMetaInterface rowMeta ) throws KettleDatabaseException;
 }
@@ -55,6 +55,7 @@ import org.pentaho.di.shared.SharedObjectBase;
 import org.pentaho.di.shared.SharedObjectInterface;
 import org.w3c.dom.Node;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -3018,6 +3019,31 @@ public class DatabaseMeta extends SharedObjectBase implements Cloneable, XMLInte
     return DROP_TABLE_STATEMENT + tableName;
   }
 
+  /**
+   * @return true if the database can stream rows into a table over its bulk load protocol
+   * @see Database#openBulkLoadChannel(String, String, RowMetaInterface)
+   */
+  public boolean supportsBulkLoadChannel() {
+    if ( databaseInterface instanceof DatabaseInterfaceExtended ) {
+      return ( (DatabaseInterfaceExtended) databaseInterface ).supportsBulkLoadChannel();
+    }
+    return false;
+  }
+
+  /**
+   * Start streaming rows into a table over the bulk load protocol of the database.
+   *
+   * @return the channel or null if the database doesn't offer one
+   */
+  public BulkLoadChannel openBulkLoadChannel( Connection connection, String schemaTable, String[] columnNames,
+    RowMetaInterface rowMeta ) throws KettleDatabaseException {
+    if ( databaseInterface instanceof DatabaseInterfaceExtended ) {
+      return ( (DatabaseInterfaceExtended) databaseInterface ).openBulkLoadChannel( connection, schemaTable,
+        columnNames, rowMeta );
+    }
+    return null;
+  }
+
   /**
    * For testing
    */
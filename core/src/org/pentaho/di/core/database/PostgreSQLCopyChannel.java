@@ -0,0 +1,282 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.database;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Streams rows into a PostgreSQL table with COPY ... FROM STDIN in the text format. The rows are encoded straight into
+ * a buffer that is handed to the CopyIn API of the PostgreSQL JDBC driver. The driver classes are looked up through
+ * the connection, so there is no compile time dependency on the driver.<br>
+ * <br>
+ * Values are written the way the server parses them: dates and timestamps with the offset of the local time zone, like
+ * the JDBC driver sends them, booleans as t/f and binaries as hex escaped bytea. Kettle nulls are written as \N.
+ */
+public class PostgreSQLCopyChannel implements BulkLoadChannel {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * The receiving end of the copy.
+   */
+  abstract static class CopyTarget {
+    abstract void write( byte[] buffer, int length ) throws KettleDatabaseException;
+
+    abstract long end() throws KettleDatabaseException;
+
+    abstract void cancel() throws KettleDatabaseException;
+  }
+
+  private final RowMetaInterface rowMeta;
+  private final CopyTarget target;
+
+  private final SimpleDateFormat dateFormat = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss.SSSXXX" );
+  private final SimpleDateFormat secondsFormat = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" );
+  private final SimpleDateFormat zoneFormat = new SimpleDateFormat( "XXX" );
+
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private int length;
+
+  /**
+   * Start a copy on the connection.
+   *
+   * @param connection
+   *          a connection of the PostgreSQL JDBC driver, or a wrapper of one
+   * @param sql
+   *          the COPY ... FROM STDIN statement, in the default text format
+   * @param rowMeta
+   *          the layout of the rows
+   * @throws KettleDatabaseException
+   *           in case the driver doesn't offer the CopyIn API or the server refuses the copy
+   */
+  public PostgreSQLCopyChannel( Connection connection, String sql, RowMetaInterface rowMeta )
+    throws KettleDatabaseException {
+    this( rowMeta, openCopyIn( connection, sql ) );
+  }
+
+  PostgreSQLCopyChannel( RowMetaInterface rowMeta, CopyTarget target ) {
+    this.rowMeta = rowMeta;
+    this.target = target;
+  }
+
+  private static CopyTarget openCopyIn( Connection connection, String sql ) throws KettleDatabaseException {
+    try {
+      ClassLoader loader = connection.getClass().getClassLoader();
+      Class<?> pgConnectionClass = Class.forName( "org.postgresql.PGConnection", true, loader );
+      Class<?> copyManagerClass = Class.forName( "org.postgresql.copy.CopyManager", true, loader );
+      Class<?> copyInClass = Class.forName( "org.postgresql.copy.CopyIn", true, loader );
+
+      Object pgConnection = connection.unwrap( pgConnectionClass );
+      Object copyManager = pgConnectionClass.getMethod( "getCopyAPI" ).invoke( pgConnection );
+      final Object copyIn = copyManagerClass.getMethod( "copyIn", String.class ).invoke( copyManager, sql );
+      final Method writeToCopy = copyInClass.getMethod( "writeToCopy", byte[].class, int.class, int.class );
+      final Method endCopy = copyInClass.getMethod( "endCopy" );
+      final Method cancelCopy = copyInClass.getMethod( "cancelCopy" );
+
+      return new CopyTarget() {
+        @Override
+        void write( byte[] buffer, int length ) throws KettleDatabaseException {
+          invoke( writeToCopy, copyIn, buffer, 0, length );
+        }
+
+        @Override
+        long end() throws KettleDatabaseException {
+          return ( (Long) invoke( endCopy, copyIn ) ).longValue();
+        }
+
+        @Override
+        void cancel() throws KettleDatabaseException {
+          invoke( cancelCopy, copyIn );
+        }
+      };
+    } catch ( InvocationTargetException e ) {
+      throw new KettleDatabaseException( "Unable to start the copy: " + sql, e.getCause() );
+    } catch ( ClassNotFoundException e ) {
+      throw new KettleDatabaseException( "The JDBC driver doesn't offer the PostgreSQL copy API", e );
+    } catch ( SQLException e ) {
+      throw new KettleDatabaseException( "The connection isn't a PostgreSQL JDBC driver connection", e );
+    } catch ( Exception e ) {
+      throw new KettleDatabaseException( "Unable to start the copy: " + sql, e );
+    }
+  }
+
+  private static Object invoke( Method method, Object object, Object... args ) throws KettleDatabaseException {
+    try {
+      return method.invoke( object, args );
+    } catch ( InvocationTargetException e ) {
+      throw new KettleDatabaseException( "Error copying rows to the database", e.getCause() );
+    } catch ( IllegalAccessException e ) {
+      throw new KettleDatabaseException( "Error copying rows to the database", e );
+    }
+  }
+
+  @Override
+  public void writeRow( Object[] row ) throws KettleDatabaseException {
+    try {
+      for ( int i = 0; i < rowMeta.size(); i++ ) {
+        if ( i > 0 ) {
+          append( '\t' );
+        }
+        ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+        if ( valueMeta.isNull( row[i] ) ) {
+          append( '\\' );
+          append( 'N' );
+        } else {
+          appendEscaped( format( valueMeta, valueMeta.getNativeDataType( row[i] ) ) );
+        }
+      }
+      append( '\n' );
+    } catch ( KettleValueException e ) {
+      throw new KettleDatabaseException( "Unable to encode row for the copy", e );
+    }
+
+    if ( length >= BUFFER_SIZE ) {
+      flush();
+    }
+  }
+
+  @Override
+  public long endLoad() throws KettleDatabaseException {
+    flush();
+    return target.end();
+  }
+
+  @Override
+  public void cancel() throws KettleDatabaseException {
+    length = 0;
+    target.cancel();
+  }
+
+  private void flush() throws KettleDatabaseException {
+    if ( length > 0 ) {
+      target.write( buffer, length );
+      length = 0;
+    }
+  }
+
+  private String format( ValueMetaInterface valueMeta, Object value ) {
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return ( (Boolean) value ).booleanValue() ? "t" : "f";
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        if ( value instanceof Timestamp ) {
+          Timestamp timestamp = (Timestamp) value;
+          StringBuilder nanos = new StringBuilder( Integer.toString( timestamp.getNanos() ) );
+          while ( nanos.length() < 9 ) {
+            nanos.insert( 0, '0' );
+          }
+          return secondsFormat.format( timestamp ) + "." + nanos + zoneFormat.format( timestamp );
+        }
+        return dateFormat.format( (Date) value );
+      case ValueMetaInterface.TYPE_DATE:
+        return dateFormat.format( (Date) value );
+      case ValueMetaInterface.TYPE_BINARY:
+        byte[] bytes = (byte[]) value;
+        char[] hex = new char[2 + bytes.length * 2];
+        hex[0] = '\\';
+        hex[1] = 'x';
+        for ( int i = 0; i < bytes.length; i++ ) {
+          hex[2 + i * 2] = HEX[( bytes[i] >> 4 ) & 0x0F];
+          hex[3 + i * 2] = HEX[bytes[i] & 0x0F];
+        }
+        return new String( hex );
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return ( (BigDecimal) value ).toString();
+      case ValueMetaInterface.TYPE_INET:
+        return ( (InetAddress) value ).getHostAddress();
+      default:
+        return value.toString();
+    }
+  }
+
+  /**
+   * Append a value in UTF-8, the client encoding of the JDBC driver, escaping the delimiters of the text format.
+   */
+  private void appendEscaped( String value ) {
+    int n = value.length();
+    for ( int i = 0; i < n; i++ ) {
+      char c = value.charAt( i );
+      switch ( c ) {
+        case '\\':
+          append( '\\' );
+          append( '\\' );
+          break;
+        case '\n':
+          append( '\\' );
+          append( 'n' );
+          break;
+        case '\r':
+          append( '\\' );
+          append( 'r' );
+          break;
+        case '\t':
+          append( '\\' );
+          append( 't' );
+          break;
+        default:
+          if ( c < 0x80 ) {
+            append( c );
+          } else if ( c < 0x800 ) {
+            append( 0xC0 | ( c >> 6 ) );
+            append( 0x80 | ( c & 0x3F ) );
+          } else if ( Character.isHighSurrogate( c ) && i + 1 < n
+            && Character.isLowSurrogate( value.charAt( i + 1 ) ) ) {
+            int codePoint = Character.toCodePoint( c, value.charAt( ++i ) );
+            append( 0xF0 | ( codePoint >> 18 ) );
+            append( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) );
+            append( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );
+            append( 0x80 | ( codePoint & 0x3F ) );
+          } else if ( Character.isSurrogate( c ) ) {
+            append( '?' );
+          } else {
+            append( 0xE0 | ( c >> 12 ) );
+            append( 0x80 | ( ( c >> 6 ) & 0x3F ) );
+            append( 0x80 | ( c & 0x3F ) );
+          }
+          break;
+      }
+    }
+  }
+
+  private void append( int b ) {
+    if ( length == buffer.length ) {
+      byte[] larger = new byte[buffer.length * 2];
+      System.arraycopy( buffer, 0, larger, 0, length );
+      buffer = larger;
+    }
+    buffer[length++] = (byte) b;
+  }
+}
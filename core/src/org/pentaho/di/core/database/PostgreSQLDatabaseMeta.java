@@ -22,7 +22,11 @@
 
 package org.pentaho.di.core.database;
 
+import java.sql.Connection;
+
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 
 /**
@@ -551,4 +555,26 @@ public class PostgreSQLDatabaseMeta extends BaseDatabaseMeta implements Database
   public boolean useSafePoints() {
     return true;
   }
+
+  @Override
+  public boolean supportsBulkLoadChannel() {
+    return true;
+  }
+
+  /**
+   * Streams the rows with COPY ... FROM STDIN, see {@link PostgreSQLCopyChannel}.
+   */
+  @Override
+  public BulkLoadChannel openBulkLoadChannel( Connection connection, String schemaTable, String[] columnNames,
+    RowMetaInterface rowMeta ) throws KettleDatabaseException {
+    StringBuilder sql = new StringBuilder( "COPY " ).append( schemaTable ).append( " ( " );
+    for ( int i = 0; i < columnNames.length; i++ ) {
+      if ( i > 0 ) {
+        sql.append( ", " );
+      }
+      sql.append( columnNames[i] );
+    }
+    sql.append( " ) FROM STDIN" );
+    return new PostgreSQLCopyChannel( connection, sql.toString(), rowMeta );
+  }
 }
@@ -21,6 +21,11 @@
  ******************************************************************************/
 package org.pentaho.di.core.database;
 
+import java.sql.Connection;
+
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
 /**
  * @author mbatchelor
  *
@@ -90,4 +95,20 @@ public class RedshiftDatabaseMeta extends PostgreSQLDatabaseMeta {
   public String[] getUsedLibraries() {
     return new String[] { "RedshiftJDBC4_1.0.10.1010.jar" };
   }
+
+  /**
+   * Redshift only copies from S3 and other AWS sources, not from the client
+   *
+   * @return false
+   */
+  @Override
+  public boolean supportsBulkLoadChannel() {
+    return false;
+  }
+
+  @Override
+  public BulkLoadChannel openBulkLoadChannel( Connection connection, String schemaTable, String[] columnNames,
+    RowMetaInterface rowMeta ) throws KettleDatabaseException {
+    return null;
+  }
 }
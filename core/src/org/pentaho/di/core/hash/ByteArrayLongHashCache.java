@@ -0,0 +1,244 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import java.util.Arrays;
+
+/**
+ * Cache of serialized keys and primitive long values, for instance the technical keys of a dimension. The entries are
+ * kept in parallel arrays and found back through an open addressing table of entry numbers, so a cached value costs
+ * its key bytes and about 30 bytes, without a single boxed object.<br>
+ * <br>
+ * A cache with a maximum size evicts with the CLOCK algorithm: a lookup marks the entry as used and the clock hand
+ * evicts the first entry that wasn't used since its previous pass. Eviction takes constant time on average and reuses
+ * the place of the evicted entry.<br>
+ * <br>
+ * Keys are equal when their bytes are equal, just like in {@link ByteArrayHashIndex}.
+ */
+public class ByteArrayLongHashCache {
+
+  private static final int STANDARD_CAPACITY = 1024;
+  private static final float STANDARD_LOAD_FACTOR = 0.75f;
+
+  private final int maxSize;
+
+  private byte[][] keys;
+  private long[] values;
+  private int[] hashCodes;
+  private boolean[] used;
+  private int size;
+  private int clockHand;
+
+  /** For every slot the number of the entry plus one, 0 for an empty slot */
+  private int[] slots;
+  private int resizeThreshold;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxSize
+   *          the maximum number of entries, 0 or less for an unlimited cache
+   */
+  public ByteArrayLongHashCache( int maxSize ) {
+    this.maxSize = Math.max( 0, maxSize );
+    int capacity = this.maxSize > 0 ? Math.min( this.maxSize, STANDARD_CAPACITY ) : STANDARD_CAPACITY;
+    keys = new byte[capacity][];
+    values = new long[capacity];
+    hashCodes = new int[capacity];
+    used = new boolean[capacity];
+    slots = new int[STANDARD_CAPACITY * 2];
+    resizeThreshold = (int) ( slots.length * STANDARD_LOAD_FACTOR );
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the value of the key or the default value if the key is not in the cache
+   */
+  public long get( byte[] key, long defaultValue ) {
+    int slot = findSlot( key, hashCode( key ) );
+    if ( slot < 0 ) {
+      misses++;
+      return defaultValue;
+    }
+    hits++;
+    int entry = slots[slot] - 1;
+    used[entry] = true;
+    return values[entry];
+  }
+
+  public boolean containsKey( byte[] key ) {
+    return findSlot( key, hashCode( key ) ) >= 0;
+  }
+
+  /**
+   * Store the value of a key, evicting another entry if the cache is full.
+   */
+  public void put( byte[] key, long value ) {
+    int hashCode = hashCode( key );
+    int slot = findSlot( key, hashCode );
+    if ( slot >= 0 ) {
+      values[slots[slot] - 1] = value;
+      return;
+    }
+
+    int entry;
+    if ( maxSize > 0 && size == maxSize ) {
+      entry = evict();
+    } else {
+      if ( size == keys.length ) {
+        grow();
+      }
+      entry = size;
+    }
+    keys[entry] = key;
+    values[entry] = value;
+    hashCodes[entry] = hashCode;
+    used[entry] = false;
+    insertSlot( entry );
+    if ( ++size >= resizeThreshold ) {
+      resize();
+    }
+  }
+
+  public void clear() {
+    Arrays.fill( keys, 0, size, null );
+    Arrays.fill( used, false );
+    Arrays.fill( slots, 0 );
+    size = 0;
+    clockHand = 0;
+  }
+
+  private int findSlot( byte[] key, int hashCode ) {
+    int mask = slots.length - 1;
+    for ( int slot = hashCode & mask; slots[slot] != 0; slot = ( slot + 1 ) & mask ) {
+      int entry = slots[slot] - 1;
+      if ( hashCodes[entry] == hashCode && Arrays.equals( keys[entry], key ) ) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void insertSlot( int entry ) {
+    int mask = slots.length - 1;
+    int slot = hashCodes[entry] & mask;
+    while ( slots[slot] != 0 ) {
+      slot = ( slot + 1 ) & mask;
+    }
+    slots[slot] = entry + 1;
+  }
+
+  /**
+   * Empty a slot and move the following entries of the probe sequence back, so that lookups never need tombstones.
+   */
+  private void removeSlot( int slot ) {
+    int mask = slots.length - 1;
+    int hole = slot;
+    slots[hole] = 0;
+    for ( int next = ( hole + 1 ) & mask; slots[next] != 0; next = ( next + 1 ) & mask ) {
+      int home = hashCodes[slots[next] - 1] & mask;
+      boolean movable = next > hole ? ( home <= hole || home > next ) : ( home <= hole && home > next );
+      if ( movable ) {
+        slots[hole] = slots[next];
+        slots[next] = 0;
+        hole = next;
+      }
+    }
+  }
+
+  /**
+   * Move the clock hand to the first entry that wasn't used since the previous pass and remove it.
+   *
+   * @return the number of the free entry
+   */
+  private int evict() {
+    while ( used[clockHand] ) {
+      used[clockHand] = false;
+      clockHand = ( clockHand + 1 ) % size;
+    }
+    int victim = clockHand;
+    clockHand = ( clockHand + 1 ) % size;
+
+    removeSlot( findSlot( keys[victim], hashCodes[victim] ) );
+    keys[victim] = null;
+    size--;
+    evictions++;
+    return victim;
+  }
+
+  private void grow() {
+    int capacity = keys.length * 2;
+    if ( maxSize > 0 ) {
+      capacity = Math.min( capacity, maxSize );
+    }
+    keys = Arrays.copyOf( keys, capacity );
+    values = Arrays.copyOf( values, capacity );
+    hashCodes = Arrays.copyOf( hashCodes, capacity );
+    used = Arrays.copyOf( used, capacity );
+  }
+
+  private void resize() {
+    slots = new int[slots.length * 2];
+    for ( int entry = 0; entry < size; entry++ ) {
+      insertSlot( entry );
+    }
+    resizeThreshold = (int) ( slots.length * STANDARD_LOAD_FACTOR );
+  }
+
+  private static int hashCode( byte[] key ) {
+    int hash = 1;
+    for ( byte b : key ) {
+      hash = 31 * hash + b;
+    }
+    // Spread the bits, the lower ones select the slot
+    hash *= 0x9E3779B9;
+    return hash ^ ( hash >>> 16 );
+  }
+}
@@ -0,0 +1,261 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hash index of serialized keys and values that avoids any per entry object. Entries are appended back to back to
+ * large byte slabs, either on the heap or in direct (off-heap) memory, as the length of the key, the length of the
+ * value, the key and the value. An open addressing table of slab addresses and hash codes finds them back.<br>
+ * <br>
+ * An entry costs its key and value bytes, 2 to 10 bytes for the lengths and 16 to 32 bytes of index. Putting a key
+ * that is already present appends the new entry and leaves the old one unused in its slab, like the tail of a log.<br>
+ * <br>
+ * Keys are equal when their bytes are equal, just like in {@link ByteArrayHashIndex}.
+ */
+public class ByteArraySlabHashIndex {
+
+  public static final int DEFAULT_SLAB_SIZE = 8 * 1024 * 1024;
+
+  private static final int STANDARD_INDEX_SIZE = 1024;
+  private static final float STANDARD_LOAD_FACTOR = 0.75f;
+
+  private static final long EMPTY = -1L;
+
+  private final boolean offHeap;
+  private final int slabSize;
+
+  private ByteBuffer[] slabs;
+  private int nrSlabs;
+  private int slabOffset;
+  private long slabBytes;
+
+  /** For every slot the slab (high 32 bits) and the offset in the slab (low 32 bits) of the entry */
+  private long[] addresses;
+  private int[] hashCodes;
+  private int size;
+  private int resizeThreshold;
+
+  /**
+   * Create a new index.
+   *
+   * @param offHeap
+   *          true to allocate the slabs in direct memory, outside of the Java heap
+   * @param slabSize
+   *          the size of a slab in bytes, larger entries get a slab of their own
+   */
+  public ByteArraySlabHashIndex( boolean offHeap, int slabSize ) {
+    this.offHeap = offHeap;
+    this.slabSize = slabSize;
+    this.slabs = new ByteBuffer[16];
+    this.addresses = new long[STANDARD_INDEX_SIZE];
+    this.hashCodes = new int[STANDARD_INDEX_SIZE];
+    Arrays.fill( addresses, EMPTY );
+    this.resizeThreshold = (int) ( STANDARD_INDEX_SIZE * STANDARD_LOAD_FACTOR );
+  }
+
+  public ByteArraySlabHashIndex( boolean offHeap ) {
+    this( offHeap, DEFAULT_SLAB_SIZE );
+  }
+
+  /**
+   * @return the number of keys in the index
+   */
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * @return the number of bytes allocated by the index: the slabs and the table
+   */
+  public long getMemoryUsage() {
+    return slabBytes + addresses.length * 12L;
+  }
+
+  public byte[] get( byte[] key ) {
+    int hashCode = hashCode( key );
+    int mask = addresses.length - 1;
+    for ( int slot = hashCode & mask; addresses[slot] != EMPTY; slot = ( slot + 1 ) & mask ) {
+      if ( hashCodes[slot] == hashCode ) {
+        byte[] value = readValueIfKeyEquals( addresses[slot], key );
+        if ( value != null ) {
+          return value;
+        }
+      }
+    }
+    return null;
+  }
+
+  public void put( byte[] key, byte[] value ) {
+    int hashCode = hashCode( key );
+    long address = append( key, value );
+
+    int mask = addresses.length - 1;
+    int slot = hashCode & mask;
+    for ( ; addresses[slot] != EMPTY; slot = ( slot + 1 ) & mask ) {
+      if ( hashCodes[slot] == hashCode && keyEquals( addresses[slot], key ) ) {
+        // Overwrite, the previous entry stays behind in its slab
+        addresses[slot] = address;
+        return;
+      }
+    }
+    addresses[slot] = address;
+    hashCodes[slot] = hashCode;
+    if ( ++size >= resizeThreshold ) {
+      resize();
+    }
+  }
+
+  private void resize() {
+    long[] oldAddresses = addresses;
+    int[] oldHashCodes = hashCodes;
+    int newLength = oldAddresses.length * 2;
+    addresses = new long[newLength];
+    hashCodes = new int[newLength];
+    Arrays.fill( addresses, EMPTY );
+
+    int mask = newLength - 1;
+    for ( int i = 0; i < oldAddresses.length; i++ ) {
+      if ( oldAddresses[i] != EMPTY ) {
+        int slot = oldHashCodes[i] & mask;
+        while ( addresses[slot] != EMPTY ) {
+          slot = ( slot + 1 ) & mask;
+        }
+        addresses[slot] = oldAddresses[i];
+        hashCodes[slot] = oldHashCodes[i];
+      }
+    }
+    resizeThreshold = (int) ( newLength * STANDARD_LOAD_FACTOR );
+  }
+
+  /**
+   * Write an entry to the current slab, start a new slab if it doesn't fit.
+   *
+   * @return the address of the entry
+   */
+  private long append( byte[] key, byte[] value ) {
+    int length = varIntLength( key.length ) + varIntLength( value.length ) + key.length + value.length;
+    if ( nrSlabs == 0 || slabOffset + length > slabs[nrSlabs - 1].capacity() ) {
+      if ( nrSlabs == slabs.length ) {
+        slabs = Arrays.copyOf( slabs, nrSlabs * 2 );
+      }
+      int capacity = Math.max( slabSize, length );
+      slabs[nrSlabs++] = offHeap ? ByteBuffer.allocateDirect( capacity ) : ByteBuffer.allocate( capacity );
+      slabBytes += capacity;
+      slabOffset = 0;
+    }
+
+    ByteBuffer slab = slabs[nrSlabs - 1].duplicate();
+    slab.position( slabOffset );
+    writeVarInt( slab, key.length );
+    writeVarInt( slab, value.length );
+    slab.put( key );
+    slab.put( value );
+
+    long address = ( (long) ( nrSlabs - 1 ) << 32 ) | slabOffset;
+    slabOffset += length;
+    return address;
+  }
+
+  private boolean keyEquals( long address, byte[] key ) {
+    ByteBuffer slab = slabs[(int) ( address >>> 32 )];
+    int offset = (int) address;
+
+    int keyLength = readVarInt( slab, offset );
+    if ( keyLength != key.length ) {
+      return false;
+    }
+    offset += varIntLength( keyLength );
+    offset += varIntLength( readVarInt( slab, offset ) );
+    for ( int i = 0; i < keyLength; i++ ) {
+      if ( slab.get( offset + i ) != key[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private byte[] readValueIfKeyEquals( long address, byte[] key ) {
+    if ( !keyEquals( address, key ) ) {
+      return null;
+    }
+    ByteBuffer slab = slabs[(int) ( address >>> 32 )].duplicate();
+    int offset = (int) address;
+    offset += varIntLength( key.length );
+    int valueLength = readVarInt( slab, offset );
+    offset += varIntLength( valueLength ) + key.length;
+
+    byte[] value = new byte[valueLength];
+    slab.position( offset );
+    slab.get( value );
+    return value;
+  }
+
+  private static int hashCode( byte[] key ) {
+    int hash = 1;
+    for ( byte b : key ) {
+      hash = 31 * hash + b;
+    }
+    // Spread the bits, the lower ones select the slot
+    hash *= 0x9E3779B9;
+    return hash ^ ( hash >>> 16 );
+  }
+
+  private static int varIntLength( int value ) {
+    int length = 1;
+    while ( ( value >>>= 7 ) != 0 ) {
+      length++;
+    }
+    return length;
+  }
+
+  private static void writeVarInt( ByteBuffer buffer, int value ) {
+    while ( ( value & ~0x7F ) != 0 ) {
+      buffer.put( (byte) ( ( value & 0x7F ) | 0x80 ) );
+      value >>>= 7;
+    }
+    buffer.put( (byte) value );
+  }
+
+  private static int readVarInt( ByteBuffer buffer, int offset ) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get( offset++ );
+      value |= ( b & 0x7F ) << shift;
+      shift += 7;
+    } while ( b < 0 );
+    return value;
+  }
+}
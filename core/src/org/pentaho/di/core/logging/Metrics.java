@@ -133,6 +133,14 @@ public class Metrics implements MetricsInterface {
     MetricsSnapshotType.START, "METRIC_STEP_INIT", "Initialize a step" );
   public static Metrics METRIC_STEP_INIT_STOP = new Metrics(
     MetricsSnapshotType.STOP, "METRIC_STEP_INIT", "Initialize a step" );
+  public static Metrics METRIC_STEP_CACHE_HITS = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_CACHE_HITS", "Number of lookups found in the cache of a step" );
+  public static Metrics METRIC_STEP_CACHE_MISSES = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_CACHE_MISSES", "Number of lookups not found in the cache of a step" );
+  public static Metrics METRIC_STEP_CACHE_EVICTIONS = new Metrics(
+    MetricsSnapshotType.SUM, "METRIC_STEP_CACHE_EVICTIONS", "Number of entries evicted from the cache of a step" );
+  public static Metrics METRIC_STEP_CACHE_MEMORY = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STEP_CACHE_MEMORY", "Estimated memory used by the cache of a step in bytes" );
 
   // Logging back-end
   //
@@ -0,0 +1,191 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * The values of a single field for all the rows in a {@link RowBatch}. Sub-classes keep the values in a primitive or
+ * otherwise compact form. Null values are tracked in a bitmap so that the value arrays can stay primitive.
+ */
+public abstract class ColumnVector {
+
+  protected final int size;
+
+  /**
+   * One bit per row, set when the value is null. Only allocated when the first null value is seen.
+   */
+  private long[] nulls;
+
+  protected ColumnVector( int size ) {
+    this.size = size;
+  }
+
+  /**
+   * @return the number of values in this column
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param row
+   *          the row index
+   * @return true if the value in the given row is null
+   */
+  public boolean isNull( int row ) {
+    return nulls != null && ( nulls[row >>> 6] & ( 1L << row ) ) != 0;
+  }
+
+  /**
+   * Flag the value in the given row as null or not null.
+   *
+   * @param row
+   *          the row index
+   * @param isNull
+   *          true to mark the value as null
+   */
+  public void setNull( int row, boolean isNull ) {
+    if ( isNull ) {
+      if ( nulls == null ) {
+        nulls = new long[( size + 63 ) >>> 6];
+      }
+      nulls[row >>> 6] |= 1L << row;
+    } else if ( nulls != null ) {
+      nulls[row >>> 6] &= ~( 1L << row );
+    }
+  }
+
+  /**
+   * @return true if at least one of the values could be null, false if none of them are
+   */
+  public boolean hasNulls() {
+    return nulls != null;
+  }
+
+  /**
+   * @param row
+   *          the row index
+   * @return the value in the given row in the regular Kettle data type, null if the value is null
+   */
+  public abstract Object getObject( int row );
+
+  /**
+   * Set the value in the given row from the regular Kettle data type.
+   *
+   * @param row
+   *          the row index
+   * @param value
+   *          the value to set, can be null
+   * @throws ClassCastException
+   *           in case the value is of a class this column can't hold
+   */
+  public abstract void setObject( int row, Object value );
+
+  /**
+   * Copy the values of one field from a set of rows into this column.
+   *
+   * @param rows
+   *          the rows to copy from
+   * @param index
+   *          the index of the field in the rows
+   * @return false if a value was found that this column can't hold, true if all values were copied
+   */
+  protected abstract boolean fill( Object[][] rows, int index );
+
+  /**
+   * Create a column with the values of the given rows of this column.
+   *
+   * @param rowNrs
+   *          the indexes of the rows to keep, in ascending order
+   * @return a new column holding rowNrs.length values
+   */
+  public abstract ColumnVector filter( int[] rowNrs );
+
+  /**
+   * Flag the values of a filtered column as null where the values of the rows they were taken from are null.
+   */
+  protected void filterNulls( ColumnVector target, int[] rowNrs ) {
+    if ( nulls != null ) {
+      for ( int i = 0; i < rowNrs.length; i++ ) {
+        if ( isNull( rowNrs[i] ) ) {
+          target.setNull( i, true );
+        }
+      }
+    }
+  }
+
+  /**
+   * Create an empty column that can hold values of the given type. Primitive columns are only used for values with
+   * normal storage, all other values are kept as objects.
+   *
+   * @param valueMeta
+   *          the metadata of the values
+   * @param size
+   *          the number of values in the column
+   * @return a new column
+   */
+  public static ColumnVector create( ValueMetaInterface valueMeta, int size ) {
+    if ( valueMeta != null && valueMeta.getStorageType() == ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+          return new LongColumnVector( size );
+        case ValueMetaInterface.TYPE_NUMBER:
+          return new DoubleColumnVector( size );
+        case ValueMetaInterface.TYPE_STRING:
+          return new StringColumnVector( size );
+        default:
+          break;
+      }
+    }
+    return new ObjectColumnVector( size );
+  }
+
+  /**
+   * Create a column from the values of one field in a set of rows. If a value doesn't match the data type of the field
+   * the column falls back to keeping the values as objects.
+   *
+   * @param valueMeta
+   *          the metadata of the field
+   * @param rows
+   *          the rows to copy the values from
+   * @param index
+   *          the index of the field in the rows
+   * @return a new column holding the values
+   */
+  public static ColumnVector fromRows( ValueMetaInterface valueMeta, Object[][] rows, int index ) {
+    ColumnVector vector = create( valueMeta, rows.length );
+    if ( !vector.fill( rows, index ) ) {
+      vector = new ObjectColumnVector( rows.length );
+      vector.fill( rows, index );
+    }
+    return vector;
+  }
+
+  /**
+   * @return the value of the field with the given index in a row, null if the row is too short to hold it
+   */
+  protected static Object getValue( Object[] row, int index ) {
+    return index < row.length ? row[index] : null;
+  }
+}
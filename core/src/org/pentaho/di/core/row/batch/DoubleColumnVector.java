@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+/**
+ * A column of Number values kept in a primitive double array.
+ */
+public class DoubleColumnVector extends ColumnVector {
+
+  private final double[] values;
+
+  public DoubleColumnVector( int size ) {
+    super( size );
+    values = new double[size];
+  }
+
+  /**
+   * @return the values of this column. Check {@link #isNull(int)} before using a value.
+   */
+  public double[] getValues() {
+    return values;
+  }
+
+  public double getDouble( int row ) {
+    return values[row];
+  }
+
+  public void setDouble( int row, double value ) {
+    values[row] = value;
+  }
+
+  @Override
+  public Object getObject( int row ) {
+    return isNull( row ) ? null : Double.valueOf( values[row] );
+  }
+
+  @Override
+  public void setObject( int row, Object value ) {
+    if ( value == null ) {
+      setNull( row, true );
+    } else {
+      values[row] = ( (Double) value ).doubleValue();
+      setNull( row, false );
+    }
+  }
+
+  @Override
+  public ColumnVector filter( int[] rowNrs ) {
+    DoubleColumnVector target = new DoubleColumnVector( rowNrs.length );
+    for ( int i = 0; i < rowNrs.length; i++ ) {
+      target.values[i] = values[rowNrs[i]];
+    }
+    filterNulls( target, rowNrs );
+    return target;
+  }
+
+  @Override
+  protected boolean fill( Object[][] rows, int index ) {
+    for ( int i = 0; i < size; i++ ) {
+      Object value = getValue( rows[i], index );
+      if ( value == null ) {
+        setNull( i, true );
+      } else if ( value instanceof Double ) {
+        values[i] = ( (Double) value ).doubleValue();
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+}
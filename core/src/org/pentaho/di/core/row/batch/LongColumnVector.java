@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+/**
+ * A column of Integer values kept in a primitive long array.
+ */
+public class LongColumnVector extends ColumnVector {
+
+  private final long[] values;
+
+  public LongColumnVector( int size ) {
+    super( size );
+    values = new long[size];
+  }
+
+  /**
+   * @return the values of this column. Check {@link #isNull(int)} before using a value.
+   */
+  public long[] getValues() {
+    return values;
+  }
+
+  public long getLong( int row ) {
+    return values[row];
+  }
+
+  public void setLong( int row, long value ) {
+    values[row] = value;
+  }
+
+  @Override
+  public Object getObject( int row ) {
+    return isNull( row ) ? null : Long.valueOf( values[row] );
+  }
+
+  @Override
+  public void setObject( int row, Object value ) {
+    if ( value == null ) {
+      setNull( row, true );
+    } else {
+      values[row] = ( (Long) value ).longValue();
+      setNull( row, false );
+    }
+  }
+
+  @Override
+  public ColumnVector filter( int[] rowNrs ) {
+    LongColumnVector target = new LongColumnVector( rowNrs.length );
+    for ( int i = 0; i < rowNrs.length; i++ ) {
+      target.values[i] = values[rowNrs[i]];
+    }
+    filterNulls( target, rowNrs );
+    return target;
+  }
+
+  @Override
+  protected boolean fill( Object[][] rows, int index ) {
+    for ( int i = 0; i < size; i++ ) {
+      Object value = getValue( rows[i], index );
+      if ( value == null ) {
+        setNull( i, true );
+      } else if ( value instanceof Long ) {
+        values[i] = ( (Long) value ).longValue();
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+}
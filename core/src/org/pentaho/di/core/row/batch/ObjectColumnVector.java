@@ -0,0 +1,81 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+/**
+ * A column of values kept as plain objects. Used for the data types and storage types that have no compact
+ * representation (yet): dates, big numbers, binary strings, lazy conversion, ...
+ */
+public class ObjectColumnVector extends ColumnVector {
+
+  private final Object[] values;
+
+  public ObjectColumnVector( int size ) {
+    super( size );
+    values = new Object[size];
+  }
+
+  @Override
+  public boolean isNull( int row ) {
+    return values[row] == null;
+  }
+
+  @Override
+  public void setNull( int row, boolean isNull ) {
+    if ( isNull ) {
+      values[row] = null;
+    }
+  }
+
+  @Override
+  public boolean hasNulls() {
+    return true;
+  }
+
+  @Override
+  public Object getObject( int row ) {
+    return values[row];
+  }
+
+  @Override
+  public void setObject( int row, Object value ) {
+    values[row] = value;
+  }
+
+  @Override
+  public ColumnVector filter( int[] rowNrs ) {
+    ObjectColumnVector target = new ObjectColumnVector( rowNrs.length );
+    for ( int i = 0; i < rowNrs.length; i++ ) {
+      target.values[i] = values[rowNrs[i]];
+    }
+    return target;
+  }
+
+  @Override
+  protected boolean fill( Object[][] rows, int index ) {
+    for ( int i = 0; i < size; i++ ) {
+      values[i] = getValue( rows[i], index );
+    }
+    return true;
+  }
+}
@@ -0,0 +1,329 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A batch of rows seen column by column.<br>
+ * <br>
+ * A batch is created on top of a set of regular Object[] rows. The columns are only converted into a
+ * {@link ColumnVector} when a step asks for them with {@link #getColumn(int)}, so fields that are merely passed along
+ * are never unboxed. Columns can be replaced or added with {@link #setColumn(int, ColumnVector)} and re-arranged with
+ * {@link #select(RowMetaInterface, int[])} without touching the rows. {@link #toRows()} finally turns the batch back
+ * into rows for the steps that work row by row.<br>
+ * <br>
+ * Between two steps in columnar batch mode a batch is handed over through the row set as a whole, see
+ * {@link #toRowSetEntry()}. It is only converted into rows where a batch meets a step that works row by row.
+ */
+public class RowBatch {
+
+  /**
+   * Marks a row set entry that holds a batch instead of a row. No row ever holds this object.
+   */
+  private static final Object ROW_SET_ENTRY = new Object();
+
+  private final RowMetaInterface rowMeta;
+
+  private final Object[][] rows;
+
+  /**
+   * For every column the index of the field in the source rows, or -1 if the values are only found in the column
+   * vector.
+   */
+  private final int[] rowIndexes;
+
+  private final ColumnVector[] columns;
+
+  /**
+   * The number of fields in the layout of the source rows.
+   */
+  private final int sourceWidth;
+
+  /**
+   * Create a batch on top of the given rows.
+   *
+   * @param rowMeta
+   *          the layout of the rows
+   * @param rows
+   *          the rows in the batch, all entries need to be non-null
+   */
+  public RowBatch( RowMetaInterface rowMeta, Object[][] rows ) {
+    this.rowMeta = rowMeta;
+    this.rows = rows;
+    this.rowIndexes = new int[rowMeta.size()];
+    this.columns = new ColumnVector[rowMeta.size()];
+    this.sourceWidth = rowMeta.size();
+    for ( int i = 0; i < rowIndexes.length; i++ ) {
+      rowIndexes[i] = i;
+    }
+  }
+
+  private RowBatch( RowMetaInterface rowMeta, Object[][] rows, int[] rowIndexes, ColumnVector[] columns,
+    int sourceWidth ) {
+    this.rowMeta = rowMeta;
+    this.rows = rows;
+    this.rowIndexes = rowIndexes;
+    this.columns = columns;
+    this.sourceWidth = sourceWidth;
+  }
+
+  /**
+   * @return the layout of the batch
+   */
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  /**
+   * @return the number of rows in the batch
+   */
+  public int size() {
+    return rows.length;
+  }
+
+  /**
+   * @return the rows this batch was created on. These don't reflect changes made to the columns of the batch.
+   */
+  public Object[][] getSourceRows() {
+    return rows;
+  }
+
+  /**
+   * Get a single row of the batch, in the layout of the batch.
+   *
+   * @param row
+   *          the index of the row
+   * @return the source row if the batch still has the layout of the source rows, a new row otherwise
+   */
+  public Object[] getRow( int row ) {
+    if ( isSourceLayout() ) {
+      return rows[row];
+    }
+    Object[] result = RowDataUtil.allocateRowData( rowMeta.size() );
+    for ( int i = 0; i < rowIndexes.length; i++ ) {
+      result[i] = getValue( row, i );
+    }
+    return result;
+  }
+
+  /**
+   * Get the values of a column. The column is converted from the source rows the first time it is asked for.
+   *
+   * @param index
+   *          the index of the column
+   * @return the values of the column
+   */
+  public ColumnVector getColumn( int index ) {
+    ColumnVector column = columns[index];
+    if ( column == null ) {
+      if ( rowIndexes[index] < 0 ) {
+        column = new ObjectColumnVector( rows.length );
+      } else {
+        column = ColumnVector.fromRows( rowMeta.getValueMeta( index ), rows, rowIndexes[index] );
+      }
+      columns[index] = column;
+    }
+    return column;
+  }
+
+  /**
+   * Replace the values of a column.
+   *
+   * @param index
+   *          the index of the column
+   * @param column
+   *          the new values, needs to have the same size as the batch
+   */
+  public void setColumn( int index, ColumnVector column ) {
+    if ( column.size() != rows.length ) {
+      throw new IllegalArgumentException( "The column holds " + column.size() + " values, expected " + rows.length );
+    }
+    columns[index] = column;
+    rowIndexes[index] = -1;
+  }
+
+  /**
+   * Get a single value of the batch.
+   *
+   * @param row
+   *          the index of the row
+   * @param index
+   *          the index of the column
+   * @return the value in the regular Kettle data type
+   */
+  public Object getValue( int row, int index ) {
+    int rowIndex = rowIndexes[index];
+    if ( rowIndex < 0 ) {
+      return getColumn( index ).getObject( row );
+    }
+    Object[] r = rows[row];
+    return rowIndex < r.length ? r[rowIndex] : null;
+  }
+
+  /**
+   * Create a batch with a wider layout. The first columns are shared with this batch, the additional columns are empty
+   * (null) until they are set.
+   *
+   * @param rowMeta
+   *          the new layout, starting with the fields of this batch
+   * @return the new batch
+   */
+  public RowBatch extend( RowMetaInterface rowMeta ) {
+    int nrColumns = rowMeta.size();
+    int[] indexes = new int[nrColumns];
+    ColumnVector[] vectors = new ColumnVector[nrColumns];
+    for ( int i = 0; i < nrColumns; i++ ) {
+      if ( i < rowIndexes.length ) {
+        indexes[i] = rowIndexes[i];
+        vectors[i] = columns[i];
+      } else {
+        indexes[i] = -1;
+      }
+    }
+    return new RowBatch( rowMeta, rows, indexes, vectors, sourceWidth );
+  }
+
+  /**
+   * Create a batch with a subset of the columns of this batch in a different order. No data is copied.
+   *
+   * @param rowMeta
+   *          the layout of the new batch
+   * @param indexes
+   *          for every column of the new batch the index of the column in this batch
+   * @return the new batch
+   */
+  public RowBatch select( RowMetaInterface rowMeta, int[] indexes ) {
+    int[] newIndexes = new int[indexes.length];
+    ColumnVector[] vectors = new ColumnVector[indexes.length];
+    for ( int i = 0; i < indexes.length; i++ ) {
+      newIndexes[i] = rowIndexes[indexes[i]];
+      vectors[i] = columns[indexes[i]];
+    }
+    return new RowBatch( rowMeta, rows, newIndexes, vectors, sourceWidth );
+  }
+
+  /**
+   * Create a batch with only some of the rows of this batch. The columns that were converted already are filtered as
+   * well, the others are still taken from the source rows when needed.
+   *
+   * @param keep
+   *          for every row of this batch true to keep the row
+   * @return the new batch, or this batch if all rows are kept
+   */
+  public RowBatch filter( boolean[] keep ) {
+    int count = 0;
+    for ( int r = 0; r < rows.length; r++ ) {
+      if ( keep[r] ) {
+        count++;
+      }
+    }
+    if ( count == rows.length ) {
+      return this;
+    }
+
+    int[] rowNrs = new int[count];
+    Object[][] keptRows = new Object[count][];
+    for ( int r = 0, i = 0; r < rows.length; r++ ) {
+      if ( keep[r] ) {
+        rowNrs[i] = r;
+        keptRows[i++] = rows[r];
+      }
+    }
+    ColumnVector[] vectors = new ColumnVector[columns.length];
+    for ( int i = 0; i < columns.length; i++ ) {
+      if ( columns[i] != null ) {
+        vectors[i] = columns[i].filter( rowNrs );
+      }
+    }
+    return new RowBatch( rowMeta, keptRows, rowIndexes.clone(), vectors, sourceWidth );
+  }
+
+  /**
+   * Wrap this batch so it can be put in a row set like a row, to hand it over to the next step as a whole. The batch
+   * must not be changed anymore after that.
+   *
+   * @return the row set entry holding this batch
+   */
+  public Object[] toRowSetEntry() {
+    return new Object[] { ROW_SET_ENTRY, this };
+  }
+
+  /**
+   * @param entry
+   *          an entry read from a row set
+   * @return the batch held by the entry or null if the entry is a regular row
+   */
+  public static RowBatch fromRowSetEntry( Object[] entry ) {
+    if ( entry != null && entry.length == 2 && entry[0] == ROW_SET_ENTRY ) {
+      return (RowBatch) entry[1];
+    }
+    return null;
+  }
+
+  /**
+   * Convert the batch back to rows. If the batch still has the layout of the source rows those are returned as is,
+   * otherwise new rows are allocated.
+   *
+   * @return the rows of the batch
+   */
+  public Object[][] toRows() {
+    if ( isSourceLayout() ) {
+      return rows;
+    }
+
+    Object[][] result = new Object[rows.length][];
+    int nrColumns = rowIndexes.length;
+    for ( int r = 0; r < rows.length; r++ ) {
+      result[r] = RowDataUtil.allocateRowData( rowMeta.size() );
+    }
+    for ( int i = 0; i < nrColumns; i++ ) {
+      int rowIndex = rowIndexes[i];
+      if ( rowIndex < 0 ) {
+        ColumnVector column = getColumn( i );
+        for ( int r = 0; r < rows.length; r++ ) {
+          result[r][i] = column.getObject( r );
+        }
+      } else {
+        for ( int r = 0; r < rows.length; r++ ) {
+          Object[] row = rows[r];
+          result[r][i] = rowIndex < row.length ? row[rowIndex] : null;
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean isSourceLayout() {
+    if ( rowIndexes.length != sourceWidth ) {
+      return false;
+    }
+    for ( int i = 0; i < rowIndexes.length; i++ ) {
+      if ( rowIndexes[i] != i ) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
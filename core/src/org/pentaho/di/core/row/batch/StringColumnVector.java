@@ -0,0 +1,136 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A dictionary encoded column of String values. Every distinct value is stored once in the dictionary and the rows
+ * refer to it by code. Work that only depends on the value (formatting, hashing, comparing to a constant, ...) can
+ * then be done once per distinct value instead of once per row.
+ */
+public class StringColumnVector extends ColumnVector {
+
+  private final int[] codes;
+  private String[] dictionary;
+  private int dictionarySize;
+  private Map<String, Integer> lookup;
+
+  public StringColumnVector( int size ) {
+    super( size );
+    codes = new int[size];
+    dictionary = new String[Math.min( Math.max( size, 1 ), 16 )];
+    lookup = new HashMap<String, Integer>();
+  }
+
+  /**
+   * @return the dictionary codes of the rows. Check {@link #isNull(int)} before using a code.
+   */
+  public int[] getCodes() {
+    return codes;
+  }
+
+  public int getCode( int row ) {
+    return codes[row];
+  }
+
+  /**
+   * @return the dictionary, only the first {@link #getDictionarySize()} entries are used
+   */
+  public String[] getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * @return the number of distinct values in this column
+   */
+  public int getDictionarySize() {
+    return dictionarySize;
+  }
+
+  public String getString( int row ) {
+    return isNull( row ) ? null : dictionary[codes[row]];
+  }
+
+  @Override
+  public Object getObject( int row ) {
+    return getString( row );
+  }
+
+  @Override
+  public void setObject( int row, Object value ) {
+    if ( value == null ) {
+      setNull( row, true );
+    } else {
+      codes[row] = encode( (String) value );
+      setNull( row, false );
+    }
+  }
+
+  /**
+   * The filtered column gets a copy of the dictionary, so the values don't have to be encoded again.
+   */
+  @Override
+  public ColumnVector filter( int[] rowNrs ) {
+    StringColumnVector target = new StringColumnVector( rowNrs.length );
+    target.dictionary = dictionary.clone();
+    target.dictionarySize = dictionarySize;
+    target.lookup = new HashMap<String, Integer>( lookup );
+    for ( int i = 0; i < rowNrs.length; i++ ) {
+      target.codes[i] = codes[rowNrs[i]];
+    }
+    filterNulls( target, rowNrs );
+    return target;
+  }
+
+  @Override
+  protected boolean fill( Object[][] rows, int index ) {
+    for ( int i = 0; i < size; i++ ) {
+      Object value = getValue( rows[i], index );
+      if ( value == null ) {
+        setNull( i, true );
+      } else if ( value instanceof String ) {
+        codes[i] = encode( (String) value );
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int encode( String value ) {
+    Integer code = lookup.get( value );
+    if ( code == null ) {
+      if ( dictionarySize == dictionary.length ) {
+        String[] grown = new String[dictionarySize * 2];
+        System.arraycopy( dictionary, 0, grown, 0, dictionarySize );
+        dictionary = grown;
+      }
+      code = dictionarySize;
+      dictionary[dictionarySize++] = value;
+      lookup.put( value, code );
+    }
+    return code;
+  }
+}
@@ -0,0 +1,370 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import java.util.HashMap;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Cache with a maximum number of entries and/or a maximum total weight, for instance an estimate of the memory used by
+ * the entries. All operations, eviction included, take constant time. It is not thread safe.<br>
+ * <br>
+ * Two eviction policies are supported:
+ * <ul>
+ * <li>LRU: the least recently used entry is evicted.</li>
+ * <li>W-TinyLFU: new entries go to a small LRU window. An entry that falls out of the window only makes it to the main
+ * space if it was used more often than the entry it would replace there, according to a compact frequency sketch of
+ * the recent lookups. The main space is a segmented LRU: entries that are used again move from its probation to its
+ * protected segment. This keeps the popular keys of a skewed distribution in the cache, where plain LRU lets a scan of
+ * one-off keys flush them out.</li>
+ * </ul>
+ */
+public class BoundedCache<K, V> {
+
+  /**
+   * Calculates the weight of an entry, only called when there is a maximum weight.
+   */
+  public interface Weigher<K, V> {
+    long weigh( K key, V value );
+  }
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  /** The share of the window in the cache */
+  private static final double WINDOW_FRACTION = 0.01;
+  /** The share of the protected segment in the cache */
+  private static final double PROTECTED_FRACTION = 0.8 * ( 1.0 - WINDOW_FRACTION );
+
+  private static final class Node<K, V> {
+    K key;
+    V value;
+    long weight;
+    int segment;
+    Node<K, V> prev;
+    Node<K, V> next;
+  }
+
+  private final long maxEntries;
+  private final long maxWeight;
+  private final Weigher<K, V> weigher;
+  private final FrequencySketch sketch;
+
+  private final HashMap<K, Node<K, V>> map;
+  /** For every segment a sentinel: the next node is the most recently used one, the previous the least */
+  private final Node<K, V>[] heads;
+  private final long[] segmentEntries = new long[3];
+  private final long[] segmentWeights = new long[3];
+  private long totalWeight;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxEntries
+   *          the maximum number of entries, 0 or less for no limit
+   * @param maxWeight
+   *          the maximum total weight of the entries, 0 or less for no limit
+   * @param weigher
+   *          calculates the weight of an entry, only needed with a maximum weight
+   * @param frequencyAdmission
+   *          true for W-TinyLFU, false for LRU
+   */
+  @SuppressWarnings( "unchecked" )
+  public BoundedCache( long maxEntries, long maxWeight, Weigher<K, V> weigher, boolean frequencyAdmission ) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = weigher == null ? 0 : maxWeight;
+    this.weigher = weigher;
+    this.sketch = frequencyAdmission ? new FrequencySketch( maxEntries > 0 ? maxEntries : 1 << 16 ) : null;
+    this.map = new HashMap<K, Node<K, V>>( maxEntries > 0 ? (int) Math.min( maxEntries * 4 / 3 + 1, 1 << 20 ) : 16 );
+    this.heads = new Node[3];
+    for ( int s = 0; s < heads.length; s++ ) {
+      heads[s] = new Node<K, V>();
+      heads[s].prev = heads[s];
+      heads[s].next = heads[s];
+    }
+  }
+
+  public BoundedCache( long maxEntries, boolean frequencyAdmission ) {
+    this( maxEntries, 0, null, frequencyAdmission );
+  }
+
+  /**
+   * @return the value or null if the key is not in the cache
+   */
+  public V get( K key ) {
+    if ( sketch != null ) {
+      sketch.increment( key.hashCode() );
+    }
+    Node<K, V> node = map.get( key );
+    if ( node == null ) {
+      misses++;
+      return null;
+    }
+    hits++;
+    onAccess( node );
+    return node.value;
+  }
+
+  /**
+   * Add or replace an entry, evict entries when the cache is full. Only {@link #get(Object)} counts as a use of the
+   * key for the eviction policy: look up a key before adding it.
+   */
+  public void put( K key, V value ) {
+    // The lookup before the put already counted this access in the sketch
+    long weight = maxWeight > 0 ? weigher.weigh( key, value ) : 0;
+
+    Node<K, V> node = map.get( key );
+    if ( node != null ) {
+      node.value = value;
+      segmentWeights[node.segment] += weight - node.weight;
+      totalWeight += weight - node.weight;
+      node.weight = weight;
+      onAccess( node );
+    } else {
+      node = new Node<K, V>();
+      node.key = key;
+      node.value = value;
+      node.weight = weight;
+      map.put( key, node );
+      link( node, WINDOW );
+      totalWeight += weight;
+    }
+    evict();
+  }
+
+  public V remove( K key ) {
+    Node<K, V> node = map.remove( key );
+    if ( node == null ) {
+      return null;
+    }
+    unlink( node );
+    totalWeight -= node.weight;
+    return node.value;
+  }
+
+  public void clear() {
+    map.clear();
+    for ( int s = 0; s < heads.length; s++ ) {
+      heads[s].prev = heads[s];
+      heads[s].next = heads[s];
+      segmentEntries[s] = 0;
+      segmentWeights[s] = 0;
+    }
+    totalWeight = 0;
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  /**
+   * @return the total weight of the entries, 0 without a maximum weight
+   */
+  public long getWeight() {
+    return totalWeight;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the estimated number of recent lookups of the key, 0 without frequency admission
+   */
+  @VisibleForTesting
+  int getFrequency( K key ) {
+    return sketch == null ? 0 : sketch.frequency( key.hashCode() );
+  }
+
+  private void onAccess( Node<K, V> node ) {
+    switch ( node.segment ) {
+      case PROBATION:
+        // Used again: promote it, which can push the least recently used protected entry back to probation
+        unlink( node );
+        link( node, PROTECTED );
+        while ( segmentEntries[PROTECTED] > 1 && exceeds( segmentEntries[PROTECTED], segmentWeights[PROTECTED],
+          PROTECTED_FRACTION ) ) {
+          Node<K, V> demoted = heads[PROTECTED].prev;
+          unlink( demoted );
+          link( demoted, PROBATION );
+        }
+        break;
+      default:
+        unlink( node );
+        link( node, node.segment );
+        break;
+    }
+  }
+
+  private void evict() {
+    if ( maxEntries <= 0 && maxWeight <= 0 ) {
+      return;
+    }
+    if ( sketch == null ) {
+      while ( !map.isEmpty() && exceeds( map.size(), totalWeight, 1.0 ) ) {
+        evict( heads[WINDOW].prev );
+      }
+      return;
+    }
+
+    // The entries that fall out of the window are candidates for the main space
+    while ( segmentEntries[WINDOW] > 1 && exceeds( segmentEntries[WINDOW], segmentWeights[WINDOW], WINDOW_FRACTION ) ) {
+      Node<K, V> candidate = heads[WINDOW].prev;
+      unlink( candidate );
+      link( candidate, PROBATION );
+    }
+
+    while ( !map.isEmpty() && exceeds( map.size(), totalWeight, 1.0 ) ) {
+      Node<K, V> victim = heads[PROBATION].prev;
+      Node<K, V> candidate = heads[PROBATION].next;
+      if ( victim == heads[PROBATION] ) {
+        // Nothing on probation, take the least recently used protected or window entry
+        evict( segmentEntries[PROTECTED] > 0 ? heads[PROTECTED].prev : heads[WINDOW].prev );
+      } else if ( candidate == victim
+        || sketch.frequency( candidate.key.hashCode() ) > sketch.frequency( victim.key.hashCode() ) ) {
+        evict( victim );
+      } else {
+        evict( candidate );
+      }
+    }
+  }
+
+  private void evict( Node<K, V> node ) {
+    map.remove( node.key );
+    unlink( node );
+    totalWeight -= node.weight;
+    evictions++;
+  }
+
+  /**
+   * @return true if the given number of entries or weight is more than the given fraction of the limits
+   */
+  private boolean exceeds( long entries, long weight, double fraction ) {
+    return ( maxEntries > 0 && entries > Math.max( 1L, (long) ( maxEntries * fraction ) ) )
+      || ( maxWeight > 0 && weight > (long) ( maxWeight * fraction ) );
+  }
+
+  private void link( Node<K, V> node, int segment ) {
+    Node<K, V> head = heads[segment];
+    node.segment = segment;
+    node.prev = head;
+    node.next = head.next;
+    head.next.prev = node;
+    head.next = node;
+    segmentEntries[segment]++;
+    segmentWeights[segment] += node.weight;
+  }
+
+  private void unlink( Node<K, V> node ) {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+    segmentEntries[node.segment]--;
+    segmentWeights[node.segment] -= node.weight;
+  }
+
+  /**
+   * Count-min sketch of 4 bit counters, 16 in a long. The counters are halved periodically so that old popularity
+   * fades away.
+   */
+  static final class FrequencySketch {
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch( long expectedEntries ) {
+      int length = Integer.highestOneBit( (int) Math.max( 16, Math.min( expectedEntries, 1 << 24 ) ) - 1 ) << 1;
+      table = new long[length];
+      tableMask = length - 1;
+      sampleSize = 10 * length;
+    }
+
+    void increment( int hashCode ) {
+      int hash = spread( hashCode );
+      int start = ( hash & 3 ) << 2;
+      boolean added = false;
+      for ( int i = 0; i < 4; i++ ) {
+        int index = indexOf( hash, i );
+        int offset = ( start + i ) << 2;
+        if ( ( ( table[index] >>> offset ) & 0xFL ) != 0xFL ) {
+          table[index] += 1L << offset;
+          added = true;
+        }
+      }
+      if ( added && ++additions == sampleSize ) {
+        reset();
+      }
+    }
+
+    int frequency( int hashCode ) {
+      int hash = spread( hashCode );
+      int start = ( hash & 3 ) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for ( int i = 0; i < 4; i++ ) {
+        int index = indexOf( hash, i );
+        int offset = ( start + i ) << 2;
+        frequency = Math.min( frequency, (int) ( ( table[index] >>> offset ) & 0xFL ) );
+      }
+      return frequency;
+    }
+
+    private void reset() {
+      for ( int i = 0; i < table.length; i++ ) {
+        table[i] = ( table[i] >>> 1 ) & RESET_MASK;
+      }
+      additions /= 2;
+    }
+
+    private int indexOf( int hash, int i ) {
+      long h = ( hash + SEEDS[i] ) * SEEDS[i];
+      h += h >>> 32;
+      return (int) h & tableMask;
+    }
+
+    private static int spread( int hash ) {
+      hash = ( ( hash >>> 16 ) ^ hash ) * 0x45d9f3b;
+      hash = ( ( hash >>> 16 ) ^ hash ) * 0x45d9f3b;
+      return ( hash >>> 16 ) ^ hash;
+    }
+  }
+}
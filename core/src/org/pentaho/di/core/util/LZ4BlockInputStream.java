@@ -0,0 +1,179 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that reads back the blocks written by {@link LZ4BlockOutputStream}.
+ */
+public class LZ4BlockInputStream extends InputStream {
+
+  private final InputStream in;
+  private final byte[] header = new byte[8];
+  private byte[] buffer = new byte[0];
+  private byte[] compressed = new byte[0];
+  private int length;
+  private int position;
+
+  public LZ4BlockInputStream( InputStream in ) {
+    this.in = in;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( position == length && !readBlock() ) {
+      return -1;
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( position == length && !readBlock() ) {
+      return -1;
+    }
+    int n = Math.min( len, length - position );
+    System.arraycopy( buffer, position, b, off, n );
+    position += n;
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return length - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * @return false at the end of the stream
+   */
+  private boolean readBlock() throws IOException {
+    int n = in.read( header, 0, 1 );
+    if ( n < 0 ) {
+      return false;
+    }
+    readFully( header, 1, 7 );
+    int rawLength = readInt( header, 0 );
+    int compressedLength = readInt( header, 4 );
+    if ( rawLength <= 0 || compressedLength <= 0 || compressedLength > rawLength ) {
+      throw new IOException( "Corrupt LZ4 block header" );
+    }
+    if ( buffer.length < rawLength ) {
+      buffer = new byte[rawLength];
+    }
+    if ( compressedLength == rawLength ) {
+      readFully( buffer, 0, rawLength );
+    } else {
+      if ( compressed.length < compressedLength ) {
+        compressed = new byte[compressedLength];
+      }
+      readFully( compressed, 0, compressedLength );
+      decompress( compressed, compressedLength, buffer, rawLength );
+    }
+    length = rawLength;
+    position = 0;
+    return true;
+  }
+
+  private void readFully( byte[] b, int off, int len ) throws IOException {
+    while ( len > 0 ) {
+      int n = in.read( b, off, len );
+      if ( n < 0 ) {
+        throw new EOFException( "Unexpected end of LZ4 stream" );
+      }
+      off += n;
+      len -= n;
+    }
+  }
+
+  private static int readInt( byte[] b, int off ) {
+    return ( ( b[off] & 0xFF ) << 24 ) | ( ( b[off + 1] & 0xFF ) << 16 ) | ( ( b[off + 2] & 0xFF ) << 8 )
+      | ( b[off + 3] & 0xFF );
+  }
+
+  static void decompress( byte[] src, int srcLength, byte[] dst, int dstLength ) throws IOException {
+    int ip = 0;
+    int op = 0;
+    try {
+      while ( true ) {
+        int token = src[ip++] & 0xFF;
+
+        int literals = token >>> 4;
+        if ( literals == 15 ) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            literals += b;
+          } while ( b == 255 );
+        }
+        System.arraycopy( src, ip, dst, op, literals );
+        ip += literals;
+        op += literals;
+        if ( ip >= srcLength ) {
+          break;
+        }
+
+        int offset = ( src[ip] & 0xFF ) | ( ( src[ip + 1] & 0xFF ) << 8 );
+        ip += 2;
+        int matchLength = token & 0x0F;
+        if ( matchLength == 15 ) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            matchLength += b;
+          } while ( b == 255 );
+        }
+        matchLength += LZ4BlockOutputStream.MIN_MATCH;
+
+        int ref = op - offset;
+        if ( offset == 0 || ref < 0 ) {
+          throw new IOException( "Corrupt LZ4 block" );
+        }
+        if ( offset >= matchLength ) {
+          System.arraycopy( dst, ref, dst, op, matchLength );
+          op += matchLength;
+        } else {
+          // Overlapping match: repeats the last offset bytes
+          for ( int i = 0; i < matchLength; i++ ) {
+            dst[op++] = dst[ref++];
+          }
+        }
+      }
+    } catch ( IndexOutOfBoundsException e ) {
+      throw new IOException( "Corrupt LZ4 block", e );
+    }
+    if ( op != dstLength ) {
+      throw new IOException( "Corrupt LZ4 block" );
+    }
+  }
+}
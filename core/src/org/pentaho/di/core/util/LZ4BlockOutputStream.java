@@ -0,0 +1,214 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output stream that compresses the data in blocks with the LZ4 block format. It trades compression ratio for speed: it
+ * is meant for temporary files that are written and read back once, where GZIP spends more CPU time than the disk
+ * saves.<br>
+ * <br>
+ * Every block is written as the length of the uncompressed data, the length of the compressed data and the compressed
+ * data. A block that does not compress is stored as is, with both lengths equal. Use {@link LZ4BlockInputStream} to
+ * read the data back.
+ */
+public class LZ4BlockOutputStream extends OutputStream {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+  static final int MIN_MATCH = 4;
+  static final int MAX_OFFSET = 65535;
+
+  /** The last match must start at least 12 bytes before the end of the block */
+  private static final int MF_LIMIT = 12;
+  /** The last 5 bytes of the block are always literals */
+  private static final int LAST_LITERALS = 5;
+
+  private static final int HASH_LOG = 12;
+
+  private final OutputStream out;
+  private final byte[] buffer;
+  private final byte[] compressed;
+  private final int[] hashTable;
+  private int length;
+  private boolean closed;
+
+  public LZ4BlockOutputStream( OutputStream out ) {
+    this( out, DEFAULT_BLOCK_SIZE );
+  }
+
+  public LZ4BlockOutputStream( OutputStream out, int blockSize ) {
+    this.out = out;
+    this.buffer = new byte[blockSize];
+    this.compressed = new byte[8 + maxCompressedLength( blockSize )];
+    this.hashTable = new int[1 << HASH_LOG];
+  }
+
+  static int maxCompressedLength( int length ) {
+    return length + length / 255 + 16;
+  }
+
+  @Override
+  public void write( int b ) throws IOException {
+    if ( length == buffer.length ) {
+      writeBlock();
+    }
+    buffer[length++] = (byte) b;
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    while ( len > 0 ) {
+      if ( length == buffer.length ) {
+        writeBlock();
+      }
+      int n = Math.min( len, buffer.length - length );
+      System.arraycopy( b, off, buffer, length, n );
+      length += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writeBlock();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( closed ) {
+      return;
+    }
+    closed = true;
+    try {
+      writeBlock();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if ( length == 0 ) {
+      return;
+    }
+    int compressedLength = compress( buffer, length, compressed, 8, hashTable );
+    if ( compressedLength >= length ) {
+      // Not worth it, store the block as is
+      System.arraycopy( buffer, 0, compressed, 8, length );
+      compressedLength = length;
+    }
+    writeInt( compressed, 0, length );
+    writeInt( compressed, 4, compressedLength );
+    out.write( compressed, 0, 8 + compressedLength );
+    length = 0;
+  }
+
+  private static void writeInt( byte[] b, int off, int value ) {
+    b[off] = (byte) ( value >>> 24 );
+    b[off + 1] = (byte) ( value >>> 16 );
+    b[off + 2] = (byte) ( value >>> 8 );
+    b[off + 3] = (byte) value;
+  }
+
+  /**
+   * Compress a block: a greedy search for matches of at least 4 bytes through a hash table of the last position of
+   * every 4 byte sequence.
+   *
+   * @return the length of the compressed data
+   */
+  static int compress( byte[] src, int srcLength, byte[] dst, int dstOff, int[] hashTable ) {
+    Arrays.fill( hashTable, -1 );
+    int op = dstOff;
+    int anchor = 0;
+    int ip = 0;
+    int limit = srcLength - MF_LIMIT;
+    int matchLimit = srcLength - LAST_LITERALS;
+
+    while ( ip < limit ) {
+      int sequence = readIntLE( src, ip );
+      int hash = ( sequence * -1640531535 ) >>> ( 32 - HASH_LOG );
+      int ref = hashTable[hash];
+      hashTable[hash] = ip;
+      if ( ref < 0 || ip - ref > MAX_OFFSET || readIntLE( src, ref ) != sequence ) {
+        // Skip faster through data that doesn't compress
+        ip += 1 + ( ( ip - anchor ) >>> 6 );
+        continue;
+      }
+
+      while ( ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1] ) {
+        ip--;
+        ref--;
+      }
+      int matchLength = MIN_MATCH;
+      while ( ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength] ) {
+        matchLength++;
+      }
+
+      // Token, literals, offset and match length
+      int literals = ip - anchor;
+      int tokenPos = op++;
+      op = writeLength( dst, op, literals );
+      System.arraycopy( src, anchor, dst, op, literals );
+      op += literals;
+      int offset = ip - ref;
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) ( offset >>> 8 );
+      op = writeLength( dst, op, matchLength - MIN_MATCH );
+      dst[tokenPos] = (byte) ( ( Math.min( literals, 15 ) << 4 ) | Math.min( matchLength - MIN_MATCH, 15 ) );
+
+      ip += matchLength;
+      anchor = ip;
+    }
+
+    int literals = srcLength - anchor;
+    dst[op++] = (byte) ( Math.min( literals, 15 ) << 4 );
+    op = writeLength( dst, op, literals );
+    System.arraycopy( src, anchor, dst, op, literals );
+    op += literals;
+    return op - dstOff;
+  }
+
+  /**
+   * Lengths of 15 and more continue after the token in bytes of 255 and a last byte below 255.
+   */
+  private static int writeLength( byte[] dst, int op, int length ) {
+    if ( length >= 15 ) {
+      length -= 15;
+      while ( length >= 255 ) {
+        dst[op++] = (byte) 255;
+        length -= 255;
+      }
+      dst[op++] = (byte) length;
+    }
+    return op;
+  }
+
+  private static int readIntLE( byte[] b, int off ) {
+    return ( b[off] & 0xFF ) | ( ( b[off + 1] & 0xFF ) << 8 ) | ( ( b[off + 2] & 0xFF ) << 16 ) | ( b[off + 3] << 24 );
+  }
+}
@@ -114,4 +114,38 @@ public class BlockingBatchingRowSetTest extends TestCase {
     assertNotNull( r );
     assertEquals( rows.get( 2 ), r );
   }
+
+  /**
+   * Batch functionality test.
+   */
+  public void testPutRowsAndDrainTo() {
+    BlockingBatchingRowSet set = new BlockingBatchingRowSet( 10 );
+
+    RowMetaInterface rm = createRowMetaInterface();
+
+    Object[][] rows = new Object[7][];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] = new Object[] { new Long( i ), };
+    }
+
+    // 2 buffers of 5 rows: only the first buffer is exposed
+    //
+    assertEquals( 7, set.putRows( rm, rows, 0, rows.length ) );
+    assertEquals( 5, set.size() );
+
+    Object[][] drained = new Object[10][];
+    assertEquals( 3, set.drainTo( drained, 0, 3 ) );
+    assertSame( rows[0], drained[0] );
+    assertSame( rows[2], drained[2] );
+
+    // Signal done, the partial buffer is exposed as well
+    //
+    set.setDone();
+    assertEquals( 4, set.drainTo( drained, 3, 7 ) );
+    for ( int i = 0; i < rows.length; i++ ) {
+      assertSame( rows[i], drained[i] );
+    }
+    assertEquals( 0, set.drainTo( drained, 0, 10 ) );
+    assertNull( set.getRow() );
+  }
 }
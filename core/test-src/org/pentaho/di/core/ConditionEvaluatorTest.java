@@ -0,0 +1,186 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaAndData;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class ConditionEvaluatorTest {
+
+  private static final String[] FIELDS = { "id", "amount", "name", "created", "code" };
+
+  private RowMetaInterface rowMeta;
+  private Random random;
+
+  @Before
+  public void setUp() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "created" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "code" ) );
+    random = new Random( 42 );
+  }
+
+  @Test
+  public void testSameResultsAsCondition() {
+    for ( int c = 0; c < 300; c++ ) {
+      Condition condition = randomCondition( 3 );
+      ConditionEvaluator evaluator = condition.compile( rowMeta );
+      for ( int r = 0; r < 200; r++ ) {
+        Object[] row = randomRow();
+        String expected;
+        try {
+          expected = String.valueOf( condition.evaluate( rowMeta, row ) );
+        } catch ( RuntimeException e ) {
+          expected = "error";
+        }
+        String actual;
+        try {
+          actual = String.valueOf( evaluator.evaluate( row ) );
+        } catch ( RuntimeException e ) {
+          actual = "error";
+        }
+        assertEquals( condition.toString() + " for " + Arrays.toString( row ), expected, actual );
+      }
+    }
+  }
+
+  @Test
+  public void testFieldComparison() {
+    Condition condition = new Condition( "name", Condition.FUNC_EQUAL, "code", null );
+    ConditionEvaluator evaluator = condition.compile( rowMeta );
+    assertTrue( evaluator.evaluate( new Object[] { 1L, 1.0, "a", null, "a" } ) );
+    assertEquals( false, evaluator.evaluate( new Object[] { 1L, 1.0, "a", null, "b" } ) );
+  }
+
+  @Test
+  public void testErrorsAreReported() {
+    // A constant that can't be converted to the type of the field
+    Condition condition =
+      new Condition( "id", Condition.FUNC_EQUAL, null, new ValueMetaAndData( new ValueMetaString( "c" ), "x" ) );
+    ConditionEvaluator evaluator = condition.compile( rowMeta );
+    try {
+      evaluator.evaluate( new Object[] { 1L, 1.0, "a", null, "a" } );
+      throw new AssertionError( "Expected a conversion error" );
+    } catch ( RuntimeException e ) {
+      assertTrue( e.getMessage().startsWith( "Unexpected error evaluation condition" ) );
+    }
+  }
+
+  @Test
+  public void testMostDecisiveOperandMovesToTheFront() {
+    Condition condition = new Condition();
+    Condition always = new Condition( "id", Condition.FUNC_NOT_NULL, null, null );
+    Condition never = new Condition( "id", Condition.FUNC_NULL, null, null );
+    never.setOperator( Condition.OPERATOR_AND );
+    condition.addCondition( always );
+    condition.addCondition( never );
+
+    ConditionEvaluator.ShortCircuitEvaluator evaluator =
+      (ConditionEvaluator.ShortCircuitEvaluator) condition.compile( rowMeta );
+    ConditionEvaluator first = evaluator.getOperand( 0 );
+    ConditionEvaluator second = evaluator.getOperand( 1 );
+    for ( int i = 0; i <= ConditionEvaluator.REORDER_INTERVAL; i++ ) {
+      assertEquals( false, evaluator.evaluate( new Object[] { 1L, 1.0, "a", null, "a" } ) );
+    }
+    assertSame( second, evaluator.getOperand( 0 ) );
+    assertSame( first, evaluator.getOperand( 1 ) );
+  }
+
+  private Condition randomCondition( int depth ) {
+    Condition condition;
+    if ( depth == 0 || random.nextInt( 3 ) == 0 ) {
+      String field = FIELDS[random.nextInt( FIELDS.length )];
+      int function = random.nextInt( Condition.functions.length );
+      String rightField = random.nextInt( 5 ) == 0 ? FIELDS[random.nextInt( FIELDS.length )] : null;
+      ValueMetaAndData exact = rightField == null ? randomConstant( function ) : null;
+      condition = new Condition( field, function, rightField, exact );
+    } else {
+      condition = new Condition();
+      int nrConditions = 2 + random.nextInt( 3 );
+      // Mostly lists with only AND or only OR
+      int listOperator = 1 + random.nextInt( Condition.operators.length - 1 );
+      for ( int i = 0; i < nrConditions; i++ ) {
+        Condition sub = randomCondition( depth - 1 );
+        sub.setOperator( random.nextInt( 4 ) == 0 ? random.nextInt( Condition.operators.length ) : listOperator );
+        condition.addCondition( sub );
+      }
+    }
+    condition.setNegated( random.nextInt( 4 ) == 0 );
+    return condition;
+  }
+
+  private ValueMetaAndData randomConstant( int function ) {
+    switch ( function ) {
+      case Condition.FUNC_REGEXP:
+        return new ValueMetaAndData( new ValueMetaString( "c" ), "[a-c].*" );
+      case Condition.FUNC_LIKE:
+        return new ValueMetaAndData( new ValueMetaString( "c" ), "%b?" );
+      case Condition.FUNC_IN_LIST:
+        return new ValueMetaAndData( new ValueMetaString( "c" ), "a;ab;1;3;b\\;c" );
+      case Condition.FUNC_CONTAINS:
+      case Condition.FUNC_STARTS_WITH:
+      case Condition.FUNC_ENDS_WITH:
+        return new ValueMetaAndData( new ValueMetaString( "c" ), "b" );
+      default:
+        switch ( random.nextInt( 4 ) ) {
+          case 0:
+            return new ValueMetaAndData( new ValueMetaInteger( "c" ), (long) random.nextInt( 5 ) );
+          case 1:
+            return new ValueMetaAndData( new ValueMetaNumber( "c" ), random.nextInt( 5 ) + 0.5 );
+          case 2:
+            return new ValueMetaAndData( new ValueMetaString( "c" ), String.valueOf( random.nextInt( 5 ) ) );
+          default:
+            return new ValueMetaAndData( new ValueMetaDate( "c" ), new Date( random.nextInt( 5 ) * 1000L ) );
+        }
+    }
+  }
+
+  private Object[] randomRow() {
+    String[] strings = { null, "", "a", "ab", "b", "abc", "cb", "1", "3" };
+    return new Object[] {
+      random.nextInt( 6 ) == 0 ? null : (long) random.nextInt( 5 ),
+      random.nextInt( 6 ) == 0 ? null : random.nextInt( 5 ) + 0.5,
+      strings[random.nextInt( strings.length )],
+      random.nextInt( 6 ) == 0 ? null : new Date( random.nextInt( 5 ) * 1000L ),
+      strings[random.nextInt( strings.length )], };
+  }
+}
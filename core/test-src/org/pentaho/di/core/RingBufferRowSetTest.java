@@ -0,0 +1,183 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.pentaho.di.core.RingBufferRowSet.WaitStrategy;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+public class RingBufferRowSetTest {
+
+  @Test
+  public void testFifoAndCapacity() {
+    RowSet rowSet = new RingBufferRowSet( 3 );
+    RowMetaInterface rowMeta = new RowMeta();
+    Object[] r1 = new Object[] { 1L };
+    Object[] r2 = new Object[] { 2L };
+    Object[] r3 = new Object[] { 3L };
+
+    assertEquals( 0, rowSet.size() );
+    assertTrue( rowSet.putRow( rowMeta, r1 ) );
+    assertTrue( rowSet.putRow( rowMeta, r2 ) );
+    assertTrue( rowSet.putRow( rowMeta, r3 ) );
+    assertEquals( 3, rowSet.size() );
+
+    // The ring is 4 slots wide but the capacity is 3
+    assertFalse( rowSet.putRowWait( rowMeta, new Object[] { 4L }, 1, TimeUnit.MILLISECONDS ) );
+    assertSame( rowMeta, rowSet.getRowMeta() );
+
+    assertSame( r1, rowSet.getRow() );
+    assertSame( r2, rowSet.getRowImmediate() );
+    assertSame( r3, rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertEquals( 0, rowSet.size() );
+    assertNull( rowSet.getRowImmediate() );
+    assertNull( rowSet.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test
+  public void testClear() {
+    RowSet rowSet = new RingBufferRowSet( 10 );
+    rowSet.putRow( new RowMeta(), new Object[] {} );
+    rowSet.setDone();
+    rowSet.clear();
+    assertEquals( 0, rowSet.size() );
+    assertFalse( rowSet.isDone() );
+    assertNull( rowSet.getRowImmediate() );
+  }
+
+  @Test
+  public void testWaitStrategyLookup() {
+    assertEquals( WaitStrategy.SPIN, WaitStrategy.getWaitStrategy( "spin", WaitStrategy.PARK ) );
+    assertEquals( WaitStrategy.YIELD, WaitStrategy.getWaitStrategy( " Yield ", WaitStrategy.PARK ) );
+    assertEquals( WaitStrategy.PARK, WaitStrategy.getWaitStrategy( null, WaitStrategy.PARK ) );
+    assertEquals( WaitStrategy.PARK, WaitStrategy.getWaitStrategy( "unknown", WaitStrategy.PARK ) );
+  }
+
+  @Test
+  public void testProducerConsumerSpin() throws Exception {
+    // Busy spinning is very slow when both threads have to share a single core, keep the row count low
+    handOver( WaitStrategy.SPIN, 1000 );
+  }
+
+  @Test
+  public void testProducerConsumerYield() throws Exception {
+    handOver( WaitStrategy.YIELD, 100000 );
+  }
+
+  @Test
+  public void testProducerConsumerPark() throws Exception {
+    handOver( WaitStrategy.PARK, 100000 );
+  }
+
+  private void handOver( WaitStrategy waitStrategy, final int nrRows ) throws Exception {
+    final RowSet rowSet = new RingBufferRowSet( 16, waitStrategy );
+    final RowMetaInterface rowMeta = new RowMeta();
+    final AtomicReference<String> error = new AtomicReference<String>();
+    final long[] received = new long[nrRows];
+    final AtomicInteger nrReceived = new AtomicInteger();
+
+    Thread producer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        for ( long i = 0; i < nrRows; i++ ) {
+          Object[] row = new Object[] { i };
+          while ( !rowSet.putRow( rowMeta, row ) ) {
+            // Keep trying, the consumer is slow
+          }
+        }
+        rowSet.setDone();
+      }
+    } );
+    Thread consumer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        int nr = 0;
+        Object[] row = rowSet.getRow();
+        while ( row != null || !rowSet.isDone() || rowSet.size() > 0 ) {
+          if ( row != null ) {
+            if ( nr >= nrRows ) {
+              error.set( "Got more than " + nrRows + " rows" );
+              return;
+            }
+            received[nr++] = ( (Long) row[0] ).longValue();
+          }
+          row = rowSet.getRow();
+        }
+        nrReceived.set( nr );
+      }
+    } );
+    consumer.start();
+    producer.start();
+    producer.join( 30000 );
+    consumer.join( 30000 );
+
+    assertFalse( producer.isAlive() );
+    assertFalse( consumer.isAlive() );
+    assertNull( error.get() );
+    assertEquals( nrRows, nrReceived.get() );
+    for ( int i = 0; i < nrRows; i++ ) {
+      assertEquals( i, received[i] );
+    }
+    assertEquals( 0, rowSet.size() );
+  }
+
+  @Test
+  public void testPutRowsAndDrainTo() {
+    RowSet rowSet = new RingBufferRowSet( 3, WaitStrategy.PARK );
+    RowMetaInterface rowMeta = new RowMeta();
+    Object[][] rows = new Object[5][];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] = new Object[] { (long) i };
+    }
+
+    assertEquals( 3, rowSet.putRows( rowMeta, rows, 0, rows.length ) );
+    assertEquals( 3, rowSet.size() );
+
+    Object[][] drained = new Object[3][];
+    assertEquals( 2, rowSet.drainTo( drained, 1, 2 ) );
+    assertNull( drained[0] );
+    assertSame( rows[0], drained[1] );
+    assertSame( rows[1], drained[2] );
+
+    // The batch wraps around the end of the ring
+    assertEquals( 2, rowSet.putRows( rowMeta, rows, 3, 2 ) );
+    Object[][] batch = rowSet.getRows( 10 );
+    assertEquals( 3, batch.length );
+    assertSame( rows[2], batch[0] );
+    assertSame( rows[3], batch[1] );
+    assertSame( rows[4], batch[2] );
+    assertEquals( 0, rowSet.drainTo( drained, 0, 3 ) );
+    assertNull( rowSet.getRows( 10 ) );
+  }
+}
@@ -0,0 +1,82 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+
+public class RowSetSignalTest {
+
+  @Test
+  public void testSignalBeforeAwaitIsRemembered() {
+    RowSetSignal signal = new RowSetSignal();
+    signal.signal();
+    signal.signal();
+    assertTrue( signal.await( 0, TimeUnit.MILLISECONDS ) );
+
+    // Both signals are consumed by a single wait
+    assertFalse( signal.await( 1, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test
+  public void testRowSetsSignalTheReader() {
+    RowSetSignal signal = new RowSetSignal();
+    RowSet[] rowSets =
+      new RowSet[] { new BlockingRowSet( 10 ), new BlockingBatchingRowSet( 10 ), new RingBufferRowSet( 10 ) };
+
+    for ( RowSet rowSet : rowSets ) {
+      rowSet.setReaderSignal( signal );
+      assertFalse( signal.await( 0, TimeUnit.MILLISECONDS ) );
+      rowSet.putRow( new RowMeta(), new Object[] {} );
+      rowSet.setDone();
+      assertTrue( rowSet.getClass().getName(), signal.await( 0, TimeUnit.MILLISECONDS ) );
+    }
+  }
+
+  @Test
+  public void testSignalWakesUpWaitingThread() throws Exception {
+    final RowSetSignal signal = new RowSetSignal();
+    Thread signaller = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 50 );
+        } catch ( InterruptedException e ) {
+          // Ignore
+        }
+        signal.signal();
+      }
+    } );
+    signaller.start();
+
+    long start = System.nanoTime();
+    assertTrue( signal.await( 10, TimeUnit.SECONDS ) );
+    assertTrue( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( 5 ) );
+    signaller.join();
+  }
+}
@@ -176,4 +176,39 @@ public class RowSetTest extends TestCase {
     assertEquals( set.toString(), set.getName() );
     assertEquals( "from.2 - to.3", set.getName() );
   }
+
+  /**
+   * Batch functionality test.
+   */
+  public void testPutRowsAndDrainTo() {
+    RowSet set = new BlockingRowSet( 3 );
+
+    RowMetaInterface rm = createRowMetaInterface();
+
+    Object[][] rows = new Object[5][];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] = new Object[] { new Long( i ) };
+    }
+
+    // Only 3 rows fit in the row set
+    //
+    assertEquals( 3, set.putRows( rm, rows, 0, rows.length ) );
+    assertEquals( 3, set.size() );
+
+    Object[][] drained = new Object[4][];
+    assertEquals( 2, set.drainTo( drained, 1, 2 ) );
+    assertNull( drained[0] );
+    assertSame( rows[0], drained[1] );
+    assertSame( rows[1], drained[2] );
+    assertEquals( 1, set.size() );
+
+    assertEquals( 2, set.putRows( rm, rows, 3, 2 ) );
+
+    Object[][] batch = set.getRows( 10 );
+    assertEquals( 3, batch.length );
+    assertSame( rows[2], batch[0] );
+    assertSame( rows[3], batch[1] );
+    assertSame( rows[4], batch[2] );
+    assertEquals( 0, set.drainTo( drained, 0, 4 ) );
+  }
 }
@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class PostgreSQLCopyChannelTest {
+
+  private static class BufferTarget extends PostgreSQLCopyChannel.CopyTarget {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    boolean ended;
+    boolean cancelled;
+
+    @Override
+    void write( byte[] buffer, int length ) {
+      bytes.write( buffer, 0, length );
+    }
+
+    @Override
+    long end() {
+      ended = true;
+      return 0;
+    }
+
+    @Override
+    void cancel() {
+      cancelled = true;
+    }
+  }
+
+  @Test
+  public void testTextFormat() throws Exception {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "s" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "i" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "n" ) );
+    rowMeta.addValueMeta( new ValueMetaBigNumber( "b" ) );
+    rowMeta.addValueMeta( new ValueMetaBoolean( "f" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "d" ) );
+    rowMeta.addValueMeta( new ValueMetaBinary( "x" ) );
+
+    Date date = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss.SSS" ).parse( "2016-03-04 05:06:07.089" );
+    String offset = new SimpleDateFormat( "XXX" ).format( date );
+
+    BufferTarget target = new BufferTarget();
+    PostgreSQLCopyChannel channel = new PostgreSQLCopyChannel( rowMeta, target );
+    channel.writeRow( new Object[] { "a\tb\\c\nd\u00e9\u20ac", 42L, 1.5, new BigDecimal( "12.340" ), true, date,
+      new byte[] { 0x01, (byte) 0xAB } } );
+    channel.writeRow( new Object[] { null, null, null, null, false, null, null } );
+    assertEquals( 0, target.bytes.size() );
+    channel.endLoad();
+    assertTrue( target.ended );
+
+    String expected =
+      "a\\tb\\\\c\\nd\u00e9\u20ac\t42\t1.5\t12.340\tt\t2016-03-04 05:06:07.089" + offset + "\t\\\\x01ab\n"
+        + "\\N\t\\N\t\\N\t\\N\tf\t\\N\t\\N\n";
+    assertEquals( expected, new String( target.bytes.toByteArray(), "UTF-8" ) );
+  }
+
+  @Test
+  public void testCancel() throws KettleDatabaseException {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "s" ) );
+    BufferTarget target = new BufferTarget();
+    PostgreSQLCopyChannel channel = new PostgreSQLCopyChannel( rowMeta, target );
+    channel.writeRow( new Object[] { "value" } );
+    channel.cancel();
+    assertTrue( target.cancelled );
+    assertEquals( 0, target.bytes.size() );
+  }
+}
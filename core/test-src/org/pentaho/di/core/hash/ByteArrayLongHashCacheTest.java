@@ -0,0 +1,123 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ByteArrayLongHashCacheTest {
+
+  @Test
+  public void testUnlimited() {
+    ByteArrayLongHashCache cache = new ByteArrayLongHashCache( 0 );
+    assertTrue( cache.isEmpty() );
+
+    // Enough entries to grow the entries and the table
+    for ( int i = 0; i < 10000; i++ ) {
+      cache.put( key( i ), i * 10L );
+    }
+    assertEquals( 10000, cache.getSize() );
+    for ( int i = 0; i < 10000; i++ ) {
+      assertEquals( i * 10L, cache.get( key( i ), -1L ) );
+    }
+    assertEquals( -1L, cache.get( key( 10000 ), -1L ) );
+    assertEquals( -1L, cache.get( new byte[0], -1L ) );
+    assertEquals( 10000, cache.getHits() );
+    assertEquals( 2, cache.getMisses() );
+    assertEquals( 0, cache.getEvictions() );
+
+    // Overwrite
+    cache.put( key( 42 ), 7L );
+    assertEquals( 7L, cache.get( key( 42 ), -1L ) );
+    assertEquals( 10000, cache.getSize() );
+
+    cache.clear();
+    assertTrue( cache.isEmpty() );
+    assertFalse( cache.containsKey( key( 42 ) ) );
+  }
+
+  @Test
+  public void testEviction() {
+    ByteArrayLongHashCache cache = new ByteArrayLongHashCache( 100 );
+
+    for ( int i = 0; i < 1000; i++ ) {
+      cache.put( key( i ), i );
+      // A hot key is used all the time and must survive
+      assertEquals( 0L, cache.get( key( 0 ), -1L ) );
+    }
+    assertEquals( 100, cache.getSize() );
+    assertEquals( 900, cache.getEvictions() );
+    assertTrue( cache.containsKey( key( 0 ) ) );
+    assertTrue( cache.containsKey( key( 999 ) ) );
+
+    int found = 0;
+    for ( int i = 0; i < 1000; i++ ) {
+      long value = cache.get( key( i ), -1L );
+      if ( value >= 0 ) {
+        assertEquals( i, value );
+        found++;
+      }
+    }
+    assertEquals( 100, found );
+  }
+
+  @Test
+  public void testRandomOperations() {
+    // Evictions shift entries around in the table: every remaining key must still be found with its own value
+    Random random = new Random( 11 );
+    ByteArrayLongHashCache cache = new ByteArrayLongHashCache( 500 );
+    Map<Integer, Long> expected = new HashMap<Integer, Long>();
+    for ( int i = 0; i < 50000; i++ ) {
+      int k = random.nextInt( 2000 );
+      if ( random.nextBoolean() ) {
+        long value = random.nextLong();
+        cache.put( key( k ), value );
+        expected.put( k, value );
+      } else {
+        long value = cache.get( key( k ), Long.MIN_VALUE );
+        if ( value != Long.MIN_VALUE ) {
+          assertEquals( expected.get( k ).longValue(), value );
+        }
+      }
+    }
+    assertEquals( 500, cache.getSize() );
+    int found = 0;
+    for ( int k = 0; k < 2000; k++ ) {
+      if ( cache.containsKey( key( k ) ) ) {
+        found++;
+      }
+    }
+    assertEquals( 500, found );
+  }
+
+  private static byte[] key( int i ) {
+    return ( "key " + i ).getBytes();
+  }
+}
@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ByteArraySlabHashIndexTest {
+
+  @Test
+  public void testHeapSlabs() {
+    testPutAndGet( new ByteArraySlabHashIndex( false, 4096 ) );
+  }
+
+  @Test
+  public void testOffHeapSlabs() {
+    testPutAndGet( new ByteArraySlabHashIndex( true, 4096 ) );
+  }
+
+  private void testPutAndGet( ByteArraySlabHashIndex index ) {
+    assertTrue( index.isEmpty() );
+
+    // Enough entries to fill several slabs and to grow the table
+    for ( int i = 0; i < 10000; i++ ) {
+      index.put( key( i ), ( "value " + i ).getBytes() );
+    }
+    assertEquals( 10000, index.getSize() );
+    for ( int i = 0; i < 10000; i++ ) {
+      assertArrayEquals( ( "value " + i ).getBytes(), index.get( key( i ) ) );
+    }
+    assertNull( index.get( key( 10000 ) ) );
+    assertNull( index.get( new byte[0] ) );
+
+    // Overwrite
+    index.put( key( 42 ), new byte[0] );
+    assertArrayEquals( new byte[0], index.get( key( 42 ) ) );
+    assertEquals( 10000, index.getSize() );
+
+    // An entry larger than a slab
+    byte[] large = new byte[10000];
+    large[9999] = 1;
+    index.put( large, large );
+    assertArrayEquals( large, index.get( large ) );
+
+    assertTrue( index.getMemoryUsage() > 10000 * 16 );
+  }
+
+  private static byte[] key( int i ) {
+    return new byte[] { (byte) ( i >>> 24 ), (byte) ( i >>> 16 ), (byte) ( i >>> 8 ), (byte) i };
+  }
+}
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class RowBatchTest {
+
+  private static RowMetaInterface createRowMeta() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "country" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "date" ) );
+    return rowMeta;
+  }
+
+  private static Object[][] createRows() {
+    Date date = new Date();
+    return new Object[][] {
+      { 1L, 1.5, "BE", date },
+      { 2L, null, "NL", null },
+      { null, 3.5, "BE", date } };
+  }
+
+  @Test
+  public void testPrimitiveColumns() {
+    RowBatch batch = new RowBatch( createRowMeta(), createRows() );
+
+    LongColumnVector ids = (LongColumnVector) batch.getColumn( 0 );
+    assertEquals( 2L, ids.getLong( 1 ) );
+    assertTrue( ids.isNull( 2 ) );
+    assertFalse( ids.isNull( 0 ) );
+    assertNull( ids.getObject( 2 ) );
+
+    DoubleColumnVector amounts = (DoubleColumnVector) batch.getColumn( 1 );
+    assertEquals( 3.5, amounts.getDouble( 2 ), 0.0 );
+    assertTrue( amounts.isNull( 1 ) );
+
+    assertTrue( batch.getColumn( 3 ) instanceof ObjectColumnVector );
+    assertSame( ids, batch.getColumn( 0 ) );
+  }
+
+  @Test
+  public void testStringDictionary() {
+    RowBatch batch = new RowBatch( createRowMeta(), createRows() );
+
+    StringColumnVector countries = (StringColumnVector) batch.getColumn( 2 );
+    assertEquals( 2, countries.getDictionarySize() );
+    assertEquals( countries.getCode( 0 ), countries.getCode( 2 ) );
+    assertEquals( "NL", countries.getString( 1 ) );
+  }
+
+  @Test
+  public void testUnexpectedValueFallsBackToObjects() {
+    Object[][] rows = createRows();
+    rows[1][0] = "not a number";
+    RowBatch batch = new RowBatch( createRowMeta(), rows );
+
+    ColumnVector ids = batch.getColumn( 0 );
+    assertTrue( ids instanceof ObjectColumnVector );
+    assertEquals( "not a number", ids.getObject( 1 ) );
+  }
+
+  @Test
+  public void testToRowsReturnsSourceRowsWhenUnchanged() {
+    Object[][] rows = createRows();
+    RowBatch batch = new RowBatch( createRowMeta(), rows );
+    batch.getColumn( 0 );
+
+    assertSame( rows, batch.toRows() );
+  }
+
+  @Test
+  public void testExtendAndSelect() {
+    RowMetaInterface rowMeta = createRowMeta();
+    RowBatch batch = new RowBatch( rowMeta, createRows() );
+
+    RowMetaInterface extendedMeta = rowMeta.clone();
+    extendedMeta.addValueMeta( new ValueMetaInteger( "double_id" ) );
+    RowBatch extended = batch.extend( extendedMeta );
+    LongColumnVector ids = (LongColumnVector) extended.getColumn( 0 );
+    LongColumnVector doubled = new LongColumnVector( extended.size() );
+    for ( int r = 0; r < extended.size(); r++ ) {
+      doubled.setLong( r, ids.getLong( r ) * 2 );
+      doubled.setNull( r, ids.isNull( r ) );
+    }
+    extended.setColumn( 4, doubled );
+
+    RowMetaInterface selectedMeta = new RowMeta();
+    selectedMeta.addValueMeta( extendedMeta.getValueMeta( 4 ) );
+    selectedMeta.addValueMeta( extendedMeta.getValueMeta( 2 ) );
+    Object[][] result = extended.select( selectedMeta, new int[] { 4, 2 } ).toRows();
+
+    assertEquals( 3, result.length );
+    assertArrayEquals( new Object[] { 2L, "BE" }, Arrays.copyOf( result[0], 2 ) );
+    assertArrayEquals( new Object[] { 4L, "NL" }, Arrays.copyOf( result[1], 2 ) );
+    assertArrayEquals( new Object[] { null, "BE" }, Arrays.copyOf( result[2], 2 ) );
+  }
+
+  @Test
+  public void testFilter() {
+    RowMetaInterface rowMeta = createRowMeta();
+    Object[][] rows = createRows();
+    RowBatch batch = new RowBatch( rowMeta, rows );
+    batch.getColumn( 0 );
+    batch.getColumn( 2 );
+
+    RowBatch filtered = batch.filter( new boolean[] { false, true, true } );
+    assertEquals( 2, filtered.size() );
+    assertEquals( 2L, ( (LongColumnVector) filtered.getColumn( 0 ) ).getLong( 0 ) );
+    assertTrue( filtered.getColumn( 0 ).isNull( 1 ) );
+    assertEquals( "NL", filtered.getValue( 0, 2 ) );
+    assertEquals( "BE", ( (StringColumnVector) filtered.getColumn( 2 ) ).getString( 1 ) );
+    assertTrue( filtered.getColumn( 1 ).isNull( 0 ) );
+    assertSame( rows[2], filtered.toRows()[1] );
+
+    assertSame( batch, batch.filter( new boolean[] { true, true, true } ) );
+  }
+
+  @Test
+  public void testGetRowInBatchLayout() {
+    RowMetaInterface rowMeta = createRowMeta();
+    Object[][] rows = createRows();
+    RowBatch batch = new RowBatch( rowMeta, rows );
+    assertSame( rows[1], batch.getRow( 1 ) );
+
+    RowMetaInterface selectedMeta = new RowMeta();
+    selectedMeta.addValueMeta( rowMeta.getValueMeta( 2 ) );
+    selectedMeta.addValueMeta( rowMeta.getValueMeta( 0 ) );
+    assertArrayEquals( new Object[] { "NL", 2L }, Arrays.copyOf( batch.select( selectedMeta, new int[] { 2, 0 } )
+      .getRow( 1 ), 2 ) );
+  }
+
+  @Test
+  public void testRowSetEntry() {
+    RowBatch batch = new RowBatch( createRowMeta(), createRows() );
+    assertSame( batch, RowBatch.fromRowSetEntry( batch.toRowSetEntry() ) );
+    assertNull( RowBatch.fromRowSetEntry( new Object[] { "a", batch } ) );
+    assertNull( RowBatch.fromRowSetEntry( createRows()[0] ) );
+    assertNull( RowBatch.fromRowSetEntry( null ) );
+  }
+
+  @Test
+  public void testSelectDroppingTrailingFieldsCopiesRows() {
+    RowMetaInterface rowMeta = createRowMeta();
+    Object[][] rows = createRows();
+    RowBatch batch = new RowBatch( rowMeta, rows );
+
+    RowMetaInterface selectedMeta = new RowMeta();
+    selectedMeta.addValueMeta( rowMeta.getValueMeta( 0 ) );
+    Object[][] result = batch.select( selectedMeta, new int[] { 0 } ).toRows();
+
+    assertEquals( 1L, result[0][0] );
+    assertTrue( result != rows );
+  }
+}
@@ -0,0 +1,131 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+  @Test
+  public void testLru() {
+    BoundedCache<Integer, String> cache = new BoundedCache<Integer, String>( 3, false );
+    cache.put( 1, "one" );
+    cache.put( 2, "two" );
+    cache.put( 3, "three" );
+    assertEquals( "one", cache.get( 1 ) );
+
+    // 2 is the least recently used one now
+    cache.put( 4, "four" );
+    assertEquals( 3, cache.size() );
+    assertNull( cache.get( 2 ) );
+    assertEquals( "one", cache.get( 1 ) );
+    assertEquals( "three", cache.get( 3 ) );
+    assertEquals( "four", cache.get( 4 ) );
+
+    assertEquals( 4, cache.getHits() );
+    assertEquals( 1, cache.getMisses() );
+    assertEquals( 1, cache.getEvictions() );
+
+    cache.put( 1, "uno" );
+    assertEquals( 3, cache.size() );
+    assertEquals( "uno", cache.remove( 1 ) );
+    assertEquals( 2, cache.size() );
+    cache.clear();
+    assertEquals( 0, cache.size() );
+    assertNull( cache.get( 3 ) );
+  }
+
+  @Test
+  public void testUnbounded() {
+    BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>( 0, true );
+    for ( int i = 0; i < 10000; i++ ) {
+      cache.put( i, i );
+    }
+    assertEquals( 10000, cache.size() );
+    assertEquals( 0, cache.getEvictions() );
+  }
+
+  @Test
+  public void testMaxWeight() {
+    BoundedCache<Integer, String> cache =
+      new BoundedCache<Integer, String>( 0, 100, new BoundedCache.Weigher<Integer, String>() {
+        @Override
+        public long weigh( Integer key, String value ) {
+          return value.length();
+        }
+      }, false );
+    for ( int i = 0; i < 50; i++ ) {
+      cache.put( i, "0123456789" );
+      assertTrue( cache.getWeight() <= 100 );
+    }
+    assertEquals( 10, cache.size() );
+    assertEquals( 100, cache.getWeight() );
+
+    // Replacing a value changes the weight
+    cache.put( 49, "01234567890123456789" );
+    assertEquals( 9, cache.size() );
+    assertEquals( 100, cache.getWeight() );
+  }
+
+  /**
+   * A few hot keys looked up all the time in between a stream of keys that are used once or twice: W-TinyLFU keeps the
+   * hot keys, LRU lets the stream flush them out.
+   */
+  @Test
+  public void testFrequencyAdmission() {
+    long lruHits = simulate( new BoundedCache<Integer, Integer>( 100, false ) );
+    long tinyLfuHits = simulate( new BoundedCache<Integer, Integer>( 100, true ) );
+    assertTrue( "W-TinyLFU " + tinyLfuHits + " hits, LRU " + lruHits, tinyLfuHits > lruHits * 2 );
+  }
+
+  @Test
+  public void testMissIsCountedOnce() {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>( 100, true );
+    assertNull( cache.get( "a" ) );
+    cache.put( "a", "A" );
+    assertEquals( 1, cache.getFrequency( "a" ) );
+    assertEquals( "A", cache.get( "a" ) );
+    assertEquals( 2, cache.getFrequency( "a" ) );
+    cache.put( "a", "B" );
+    assertEquals( 2, cache.getFrequency( "a" ) );
+  }
+
+  private long simulate( BoundedCache<Integer, Integer> cache ) {
+    Random random = new Random( 11 );
+    int next = 1000;
+    for ( int i = 0; i < 100000; i++ ) {
+      Integer key = random.nextInt( 3 ) == 0 ? Integer.valueOf( random.nextInt( 80 ) ) : Integer.valueOf( next++ );
+      if ( cache.get( key ) == null ) {
+        cache.put( key, key );
+      }
+      assertTrue( cache.size() <= 100 );
+    }
+    return cache.getHits();
+  }
+}
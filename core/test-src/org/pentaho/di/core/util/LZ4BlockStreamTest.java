@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LZ4BlockStreamTest {
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Random random = new Random( 7 );
+
+    // Repetitive data with long matches, overlapping matches and literal runs
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for ( int i = 0; i < 20000; i++ ) {
+      int kind = random.nextInt( 4 );
+      if ( kind == 0 ) {
+        expected.write( ( "row " + ( i % 50 ) + ";" ).getBytes( "UTF-8" ) );
+      } else if ( kind == 1 ) {
+        for ( int j = random.nextInt( 300 ); j > 0; j-- ) {
+          expected.write( 'a' );
+        }
+      } else {
+        for ( int j = random.nextInt( 40 ); j > 0; j-- ) {
+          expected.write( random.nextInt( 256 ) );
+        }
+      }
+    }
+    byte[] data = expected.toByteArray();
+
+    byte[] compressed = compress( data, 1000 );
+    assertTrue( compressed.length < data.length );
+    assertArrayEquals( data, decompress( compressed ) );
+
+    // Blocks that don't compress are stored as is
+    byte[] noise = new byte[100000];
+    random.nextBytes( noise );
+    assertArrayEquals( noise, decompress( compress( noise, LZ4BlockOutputStream.DEFAULT_BLOCK_SIZE ) ) );
+
+    assertEquals( 0, compress( new byte[0], 1000 ).length );
+    assertArrayEquals( new byte[0], decompress( new byte[0] ) );
+  }
+
+  @Test
+  public void testDataStreams() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream( new LZ4BlockOutputStream( bytes, 100 ) );
+    for ( int i = 0; i < 1000; i++ ) {
+      out.writeLong( i );
+      out.writeUTF( "value " + i );
+    }
+    out.close();
+
+    DataInputStream in = new DataInputStream( new LZ4BlockInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+    for ( int i = 0; i < 1000; i++ ) {
+      assertEquals( i, in.readLong() );
+      assertEquals( "value " + i, in.readUTF() );
+    }
+    try {
+      in.readByte();
+      throw new AssertionError( "Expected the end of the stream" );
+    } catch ( EOFException e ) {
+      // expected
+    }
+    in.close();
+  }
+
+  private static byte[] compress( byte[] data, int blockSize ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    LZ4BlockOutputStream out = new LZ4BlockOutputStream( bytes, blockSize );
+    // Uneven writes to cross the block boundaries
+    int offset = 0;
+    while ( offset < data.length ) {
+      int length = Math.min( data.length - offset, 777 );
+      out.write( data, offset, length );
+      offset += length;
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] decompress( byte[] compressed ) throws IOException {
+    LZ4BlockInputStream in = new LZ4BlockInputStream( new ByteArrayInputStream( compressed ) );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[333];
+    int n;
+    while ( ( n = in.read( buffer, 0, buffer.length ) ) >= 0 ) {
+      bytes.write( buffer, 0, n );
+    }
+    in.close();
+    return bytes.toByteArray();
+  }
+}
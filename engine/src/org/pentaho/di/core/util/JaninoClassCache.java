@@ -0,0 +1,175 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.util;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+
+import org.pentaho.di.core.Const;
+
+/**
+ * Cache of the classes compiled with Janino by the User Defined Java Class, Janino and Calculator steps, for the whole
+ * JVM. Transformations that are initialized over and over again, like the ones run by the Transformation and Job
+ * Executor steps, only compile the same source once.<br>
+ * <br>
+ * A compiled class is found back by the class loader it was compiled against, which determines the classpath, and by a
+ * hash of everything that went into compiling it (the source, the class name, the imports, the parameters, ...). The
+ * class loaders are only referenced weakly. A compiled class references the class loader it was compiled against
+ * through its own class loader, so the compiled classes are only referenced softly: otherwise they would keep their
+ * class loader alive. The least recently used classes of a class loader are evicted when there are more than
+ * {@link #DEFAULT_CACHE_SIZE}.<br>
+ * <br>
+ * A class with static fields, other than constants, is never cached: every run gets a class of its own, so that its
+ * static fields aren't shared by all the transformations that use it. Set the {@link Const#KETTLE_JANINO_CLASS_CACHE}
+ * variable to N to compile all the classes for every run.
+ */
+public class JaninoClassCache {
+
+  public static final int DEFAULT_CACHE_SIZE = 1000;
+
+  private static final Map<ClassLoader, Map<String, SoftReference<Object>>> cache =
+    new WeakHashMap<ClassLoader, Map<String, SoftReference<Object>>>();
+
+  private JaninoClassCache() {
+  }
+
+  /**
+   * Get a compiled class, or the evaluator that holds it, from the cache. Compile it if it isn't cached yet.
+   *
+   * @param classLoader
+   *          the class loader the source is compiled against
+   * @param description
+   *          everything that determines the outcome of the compilation, including the source
+   * @param compiler
+   *          compiles the source if it's not in the cache
+   * @return the compiled class or evaluator
+   * @throws Exception
+   *           in case the compilation fails, failures are not cached
+   */
+  @SuppressWarnings( "unchecked" )
+  public static <T> T get( ClassLoader classLoader, String description, Callable<T> compiler ) throws Exception {
+    if ( !isEnabled() ) {
+      return compiler.call();
+    }
+
+    String hash = hash( description );
+    synchronized ( cache ) {
+      SoftReference<Object> reference = getClasses( classLoader ).get( hash );
+      Object compiled = reference == null ? null : reference.get();
+      if ( compiled != null ) {
+        return (T) compiled;
+      }
+    }
+
+    // Compile outside of the lock, at worst two steps compile the same source at the same time
+    T compiled = compiler.call();
+    if ( compiled instanceof Class && hasStaticState( (Class<?>) compiled ) ) {
+      return compiled;
+    }
+    synchronized ( cache ) {
+      getClasses( classLoader ).put( hash, new SoftReference<Object>( compiled ) );
+    }
+    return compiled;
+  }
+
+  public static boolean isEnabled() {
+    return !"N".equalsIgnoreCase( EnvUtil.getSystemProperty( Const.KETTLE_JANINO_CLASS_CACHE, "Y" ) );
+  }
+
+  /**
+   * @return the number of cached classes that weren't garbage collected yet
+   */
+  public static int size() {
+    synchronized ( cache ) {
+      int size = 0;
+      for ( Map<String, SoftReference<Object>> classes : cache.values() ) {
+        for ( SoftReference<Object> reference : classes.values() ) {
+          if ( reference.get() != null ) {
+            size++;
+          }
+        }
+      }
+      return size;
+    }
+  }
+
+  public static void clear() {
+    synchronized ( cache ) {
+      cache.clear();
+    }
+  }
+
+  private static Map<String, SoftReference<Object>> getClasses( ClassLoader classLoader ) {
+    Map<String, SoftReference<Object>> classes = cache.get( classLoader );
+    if ( classes == null ) {
+      classes = new LinkedHashMap<String, SoftReference<Object>>( 16, 0.75f, true ) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, SoftReference<Object>> eldest ) {
+          return size() > DEFAULT_CACHE_SIZE || eldest.getValue().get() == null;
+        }
+      };
+      cache.put( classLoader, classes );
+    }
+    return classes;
+  }
+
+  /**
+   * @return true if the class or one of its nested classes has a static field that isn't a constant
+   */
+  static boolean hasStaticState( Class<?> clazz ) {
+    for ( Field field : clazz.getDeclaredFields() ) {
+      // Janino keeps the classes of class literals in static fields named class$...
+      int modifiers = field.getModifiers();
+      if ( !Modifier.isStatic( modifiers ) || field.isSynthetic() || field.getName().startsWith( "class$" ) ) {
+        continue;
+      }
+      Class<?> type = field.getType();
+      if ( !Modifier.isFinal( modifiers ) || !( type.isPrimitive() || type == String.class ) ) {
+        return true;
+      }
+    }
+    for ( Class<?> nested : clazz.getDeclaredClasses() ) {
+      if ( hasStaticState( nested ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String hash( String description ) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+    byte[] hash = digest.digest( description.getBytes( "UTF-8" ) );
+    StringBuilder hex = new StringBuilder( hash.length * 2 );
+    for ( byte b : hash ) {
+      hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+    }
+    return hex.toString();
+  }
+}
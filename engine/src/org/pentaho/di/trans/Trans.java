@@ -67,6 +67,7 @@ import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.Result;
 import org.pentaho.di.core.ResultFile;
+import org.pentaho.di.core.RingBufferRowSet;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.SingleRowRowSet;
@@ -129,6 +130,7 @@ import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
 import org.pentaho.di.trans.step.RunThread;
 import org.pentaho.di.trans.step.StepAdapter;
+import org.pentaho.di.trans.step.StepCounters;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInitThread;
 import org.pentaho.di.trans.step.StepInterface;
@@ -793,6 +795,10 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
                     ValueMeta.convertStringToBoolean( System.getProperty( Const.KETTLE_BATCHING_ROWSET ) );
                 if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
                   rowSet = new BlockingBatchingRowSet( transMeta.getSizeRowset() );
+                } else if ( dispatchType == TYPE_DISP_1_1 && isUsingRingBufferRowSet() ) {
+                  // Exactly one producer and one consumer thread: no need to lock for every row.
+                  //
+                  rowSet = new RingBufferRowSet( transMeta.getSizeRowset() );
                 } else {
                   rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
                 }
@@ -902,6 +908,7 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           //
           step.initializeVariablesFrom( this );
           step.setUsingThreadPriorityManagment( transMeta.isUsingThreadPriorityManagment() );
+          step.setUsingRowSetSignalling( transMeta.isUsingRowSetSignalling() );
 
           // Pass the connected repository & metaStore to the steps runtime
           //
@@ -1515,10 +1522,11 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
         StepMeta stepMeta = steps.get( i ).stepMeta;
         StepInterface step = steps.get( i ).step;
 
+        StepCounters counters = step.getStatusCounters();
         StepPerformanceSnapShot snapShot =
             new StepPerformanceSnapShot( seqNr, getBatchId(), new Date(), getName(), stepMeta.getName(), step.getCopy(),
-                step.getLinesRead(), step.getLinesWritten(), step.getLinesInput(), step.getLinesOutput(), step
-                    .getLinesUpdated(), step.getLinesRejected(), step.getErrors() );
+                counters.getLinesRead(), counters.getLinesWritten(), counters.getLinesInput(), counters
+                    .getLinesOutput(), counters.getLinesUpdated(), counters.getLinesRejected(), counters.getErrors() );
         List<StepPerformanceSnapShot> snapShotList = stepPerformanceSnapShots.get( step.toString() );
         StepPerformanceSnapShot previous;
         if ( snapShotList == null ) {
@@ -1780,6 +1788,18 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     return sid.step.getProcessed();
   }
 
+  /**
+   * Checks whether hops between a single source step copy and a single target step copy should use the lock-free
+   * {@link RingBufferRowSet}. This can be switched off by setting KETTLE_RING_BUFFER_ROWSET to N.
+   *
+   * @return true if the ring buffer row set should be used, false otherwise
+   */
+  private boolean isUsingRingBufferRowSet() {
+    Boolean ringBufferRowSet =
+        ValueMeta.convertStringToBoolean( System.getProperty( Const.KETTLE_RING_BUFFER_ROWSET ) );
+    return ringBufferRowSet == null || ringBufferRowSet.booleanValue();
+  }
+
   /**
    * Finds the RowSet with the specified name.
    *
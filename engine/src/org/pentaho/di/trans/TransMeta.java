@@ -261,6 +261,11 @@ public class TransMeta extends AbstractMeta
    */
   protected boolean usingThreadPriorityManagment;
 
+  /**
+   * Flag to indicate that steps waiting for rows are woken up by a signal instead of polling their input row sets.
+   */
+  protected boolean usingRowSetSignalling;
+
   /** The slave-step-copy/partition distribution. Only used for slave transformations in a clustering environment. */
   protected SlaveStepCopyPartitionDistribution slaveStepCopyPartitionDistribution;
 
@@ -727,6 +732,7 @@ public class TransMeta extends AbstractMeta
     // - re-enabling in version 3.0.1 to prevent excessive locking (PDI-491)
     //
     usingThreadPriorityManagment = true;
+    usingRowSetSignalling = false;
 
     // The performance monitoring options
     //
@@ -2423,6 +2429,7 @@ public class TransMeta extends AbstractMeta
     retval.append( "    " ).append( XMLHandler.addTagValue( "feedback_shown", feedbackShown ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "feedback_size", feedbackSize ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "using_thread_priorities", usingThreadPriorityManagment ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "using_rowset_signalling", usingRowSetSignalling ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "shared_objects_file", sharedObjectsFile ) );
 
     // Performance monitoring
@@ -3308,6 +3315,7 @@ public class TransMeta extends AbstractMeta
         feedbackSize = Const.toInt( XMLHandler.getTagValue( infonode, "feedback_size" ), Const.ROWS_UPDATE );
         usingThreadPriorityManagment =
             !"N".equalsIgnoreCase( XMLHandler.getTagValue( infonode, "using_thread_priorities" ) );
+        usingRowSetSignalling = "Y".equalsIgnoreCase( XMLHandler.getTagValue( infonode, "using_rowset_signalling" ) );
 
         // Performance monitoring for steps...
         //
@@ -5504,6 +5512,25 @@ public class TransMeta extends AbstractMeta
     this.usingThreadPriorityManagment = usingThreadPriorityManagment;
   }
 
+  /**
+   * Checks whether steps waiting for rows, room or a resume are woken up by a signal instead of polling.
+   *
+   * @return true if the transformation is using row set signalling, false otherwise
+   */
+  public boolean isUsingRowSetSignalling() {
+    return usingRowSetSignalling;
+  }
+
+  /**
+   * Sets whether steps waiting for rows, room or a resume are woken up by a signal instead of polling.
+   *
+   * @param usingRowSetSignalling
+   *          true if the transformation should use row set signalling, false otherwise
+   */
+  public void setUsingRowSetSignalling( boolean usingRowSetSignalling ) {
+    this.usingRowSetSignalling = usingRowSetSignalling;
+  }
+
   /**
    * Check a step to see if there are no multiple steps to read from. If so, check to see if the receiving rows are all
    * the same in layout. We only want to ONLY use the DBCache for this to prevent GUI stalls.
@@ -346,6 +346,7 @@ public class TransSplitter {
 
     // Priority management
     transMeta.setUsingThreadPriorityManagment( originalTransformation.isUsingThreadPriorityManagment() );
+    transMeta.setUsingRowSetSignalling( originalTransformation.isUsingRowSetSignalling() );
 
     // Unique connections
     transMeta.setUsingUniqueConnections( originalTransformation.isUsingUniqueConnections() );
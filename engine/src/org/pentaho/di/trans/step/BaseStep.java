@@ -39,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.pentaho.di.core.BlockingRowSet;
@@ -47,6 +48,7 @@ import org.pentaho.di.core.ExtensionDataInterface;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.RowSetSignal;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleRowException;
 import org.pentaho.di.core.exception.KettleStepException;
@@ -61,6 +63,7 @@ import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.RowBatch;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.i18n.BaseMessages;
@@ -73,6 +76,7 @@ import org.pentaho.di.trans.BasePartitioner;
 import org.pentaho.di.trans.SlaveStepCopyPartitionDistribution;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.cluster.TransSplitter;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
 import org.pentaho.di.trans.steps.mapping.Mapping;
@@ -157,63 +161,17 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private Trans trans;
 
-  private Object statusCountersLock = new Object();
-
-  /**
-   * nr of lines read from previous step(s)
-   *
-   * @deprecated use {@link #getLinesRead()}, {@link #incrementLinesRead()}, or {@link #decrementLinesRead()}
-   */
-  @Deprecated
-  public long linesRead;
-
-  /**
-   * nr of lines written to next step(s)
-   *
-   * @deprecated use {@link #getLinesWritten()}, {@link #incrementLinesWritten()}, or {@link #decrementLinesWritten()}
-   */
-  @Deprecated
-  public long linesWritten;
-
-  /**
-   * nr of lines read from file or database
-   *
-   * @deprecated use {@link #getLinesInput()} or {@link #incrementLinesInput()}
-   */
-  @Deprecated
-  public long linesInput;
-
-  /**
-   * nr of lines written to file or database
-   *
-   * @deprecated use {@link #getLinesOutput()} or {@link #incrementLinesOutput()}
-   */
-  @Deprecated
-  public long linesOutput;
-
-  /**
-   * nr of updates in a database table or file
-   *
-   * @deprecated use {@link #getLinesUpdated()} or {@link #incrementLinesUpdated()}
-   */
-  @Deprecated
-  public long linesUpdated;
-
   /**
-   * nr of lines skipped
-   *
-   * @deprecated use {@link #getLinesSkipped()} or {@link #incrementLinesSkipped()}
+   * The row counters of the step. Every counter is striped over a number of cells so that the step thread can bump
+   * them without contention while other threads (status reporting, the performance monitor, ...) read them.
    */
-  @Deprecated
-  public long linesSkipped;
-
-  /**
-   * total sleep time in ns caused by an empty input buffer (previous step is slow)
-   *
-   * @deprecated use {@link #getLinesRejected()} or {@link #incrementLinesRejected()}
-   */
-  @Deprecated
-  public long linesRejected;
+  private final LongAdder linesRead = new LongAdder();
+  private final LongAdder linesWritten = new LongAdder();
+  private final LongAdder linesInput = new LongAdder();
+  private final LongAdder linesOutput = new LongAdder();
+  private final LongAdder linesUpdated = new LongAdder();
+  private final LongAdder linesSkipped = new LongAdder();
+  private final LongAdder linesRejected = new LongAdder();
 
   private boolean distributed;
 
@@ -221,7 +179,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private RowDistributionInterface rowDistribution;
 
-  private long errors;
+  private final LongAdder errors = new LongAdder();
 
   private StepMeta[] nextSteps;
 
@@ -339,6 +297,17 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private static int NR_OF_ROWS_IN_BLOCK = 500;
 
+  /**
+   * The maximum time to wait for a row set signal. This is only a safety net for row sets that are added after the
+   * signal was registered.
+   */
+  private static final long ROWSET_SIGNAL_TIMEOUT_MILLIS = 100;
+
+  /**
+   * The number of rows steps working in batches ask for in {@link #getRows(int)}.
+   */
+  protected static final int ROW_BATCH_SIZE = 500;
+
   private int blockPointer;
 
   /**
@@ -353,6 +322,54 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private boolean usingThreadPriorityManagment;
 
+  /**
+   * Flag to indicate that this step waits for rows or a resume by parking until it is signalled instead of polling.
+   */
+  private boolean usingRowSetSignalling;
+
+  /**
+   * Flag to indicate that the steps supporting it process their input in column batches, see
+   * {@link #getRowBatch(int)}.
+   */
+  private boolean columnarBatchMode;
+
+  /**
+   * Flag to indicate that this step reads its input only with getRow(), getRows() and getRowBatch(), so that a previous
+   * step in columnar batch mode can hand over its batches as a whole.
+   */
+  private boolean acceptingRowBatches;
+
+  /**
+   * The rows of a batch handed over by the previous step that were not returned yet, null if there are none.
+   */
+  private Object[][] pendingRows;
+
+  private int pendingRowNr;
+
+  /**
+   * Set while {@link #getRowBatch(int)} reads, to take a batch handed over by the previous step as it is.
+   */
+  private boolean keepRowBatch;
+
+  private RowBatch keptRowBatch;
+
+  /**
+   * The output row set that was last checked for handing over batches, and the outcome of that check.
+   */
+  private RowSet rowBatchRowSet;
+
+  private boolean rowBatchRowSetAccepting;
+
+  /**
+   * The signal this step waits on when using row set signalling. Given by the input row sets and on resume or stop.
+   */
+  private final RowSetSignal rowSetSignal = new RowSetSignal();
+
+  /**
+   * Flag to indicate that the input row sets know about the row set signal of this step.
+   */
+  private boolean rowSetSignalRegistered;
+
   private List<StepListener> stepListeners;
 
   /** The socket repository to use when opening server side sockets in clustering mode */
@@ -436,16 +453,6 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
     init = false;
 
-    synchronized ( statusCountersLock ) {
-      linesRead = 0L; // new AtomicLong(0L); // Keep some statistics!
-      linesWritten = 0L; // new AtomicLong(0L);
-      linesUpdated = 0L; // new AtomicLong(0L);
-      linesSkipped = 0L; // new AtomicLong(0L);
-      linesRejected = 0L; // new AtomicLong(0L);
-      linesInput = 0L; // new AtomicLong(0L);
-      linesOutput = 0L; // new AtomicLong(0L);
-    }
-
     inputRowSets = null;
     outputRowSets = null;
     nextSteps = null;
@@ -624,6 +631,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     setVariable( Const.INTERNAL_VARIABLE_STEP_UNIQUE_COUNT, Integer.toString( uniqueStepCountAcrossSlaves ) );
     setVariable( Const.INTERNAL_VARIABLE_STEP_COPYNR, Integer.toString( stepcopy ) );
 
+    columnarBatchMode = "Y".equalsIgnoreCase( getVariable( Const.KETTLE_COLUMNAR_BATCH_MODE ) );
+
     // Now that these things have been done, we also need to start a number of server sockets.
     // One for each of the remote output steps that we're going to write to.
     //
@@ -840,7 +849,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getErrors() {
-    return errors;
+    return errors.sum();
   }
 
   /*
@@ -850,7 +859,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public void setErrors( long e ) {
-    errors = e;
+    errors.reset();
+    errors.add( e );
   }
 
   /**
@@ -858,9 +868,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return linesRead;
-    }
+    return linesRead.sum();
   }
 
   /**
@@ -869,9 +877,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long incrementLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return ++linesRead;
-    }
+    linesRead.increment();
+    return linesRead.sum();
+  }
+
+  /**
+   * Increments the number of lines read from previous steps by the given number
+   *
+   * @param nrLines
+   *          the number of lines to add
+   * @return Returns the new value
+   */
+  public long incrementLinesRead( long nrLines ) {
+    linesRead.add( nrLines );
+    return linesRead.sum();
   }
 
   /**
@@ -880,9 +899,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long decrementLinesRead() {
-    synchronized ( statusCountersLock ) {
-      return --linesRead;
-    }
+    linesRead.decrement();
+    return linesRead.sum();
   }
 
   /**
@@ -890,9 +908,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    *          the new number of lines read from previous steps
    */
   public void setLinesRead( long newLinesReadValue ) {
-    synchronized ( statusCountersLock ) {
-      linesRead = newLinesReadValue;
-    }
+    linesRead.reset();
+    linesRead.add( newLinesReadValue );
   }
 
   /**
@@ -900,9 +917,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesInput() {
-    synchronized ( statusCountersLock ) {
-      return linesInput;
-    }
+    return linesInput.sum();
   }
 
   /**
@@ -911,9 +926,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesInput() {
-    synchronized ( statusCountersLock ) {
-      return ++linesInput;
-    }
+    linesInput.increment();
+    return linesInput.sum();
   }
 
   /**
@@ -921,9 +935,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    *          the new number of lines read from an input source: database, file, socket, etc.
    */
   public void setLinesInput( long newLinesInputValue ) {
-    synchronized ( statusCountersLock ) {
-      linesInput = newLinesInputValue;
-    }
+    linesInput.reset();
+    linesInput.add( newLinesInputValue );
   }
 
   /**
@@ -931,9 +944,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesOutput() {
-    synchronized ( statusCountersLock ) {
-      return linesOutput;
-    }
+    return linesOutput.sum();
   }
 
   /**
@@ -942,9 +953,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesOutput() {
-    synchronized ( statusCountersLock ) {
-      return ++linesOutput;
-    }
+    linesOutput.increment();
+    return linesOutput.sum();
   }
 
   /**
@@ -952,9 +962,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    *          the new number of lines written to an output target: database, file, socket, etc.
    */
   public void setLinesOutput( long newLinesOutputValue ) {
-    synchronized ( statusCountersLock ) {
-      linesOutput = newLinesOutputValue;
-    }
+    linesOutput.reset();
+    linesOutput.add( newLinesOutputValue );
   }
 
   /**
@@ -962,9 +971,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return linesWritten;
-    }
+    return linesWritten.sum();
   }
 
   /**
@@ -973,9 +980,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long incrementLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return ++linesWritten;
-    }
+    linesWritten.increment();
+    return linesWritten.sum();
+  }
+
+  /**
+   * Increments the number of lines written to next steps by the given number
+   *
+   * @param nrLines
+   *          the number of lines to add
+   * @return Returns the new value
+   */
+  public long incrementLinesWritten( long nrLines ) {
+    linesWritten.add( nrLines );
+    return linesWritten.sum();
   }
 
   /**
@@ -984,9 +1002,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return Returns the new value
    */
   public long decrementLinesWritten() {
-    synchronized ( statusCountersLock ) {
-      return --linesWritten;
-    }
+    linesWritten.decrement();
+    return linesWritten.sum();
   }
 
   /**
@@ -994,9 +1011,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    *          the new number of lines written to next steps
    */
   public void setLinesWritten( long newLinesWrittenValue ) {
-    synchronized ( statusCountersLock ) {
-      linesWritten = newLinesWrittenValue;
-    }
+    linesWritten.reset();
+    linesWritten.add( newLinesWrittenValue );
   }
 
   /**
@@ -1004,9 +1020,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesUpdated() {
-    synchronized ( statusCountersLock ) {
-      return linesUpdated;
-    }
+    return linesUpdated.sum();
   }
 
   /**
@@ -1015,9 +1029,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesUpdated() {
-    synchronized ( statusCountersLock ) {
-      return ++linesUpdated;
-    }
+    linesUpdated.increment();
+    return linesUpdated.sum();
   }
 
   /**
@@ -1025,9 +1038,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    *          the new number of lines updated in an output target: database, file, socket, etc.
    */
   public void setLinesUpdated( long newLinesUpdatedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesUpdated = newLinesUpdatedValue;
-    }
+    linesUpdated.reset();
+    linesUpdated.add( newLinesUpdatedValue );
   }
 
   /**
@@ -1035,9 +1047,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public long getLinesRejected() {
-    synchronized ( statusCountersLock ) {
-      return linesRejected;
-    }
+    return linesRejected.sum();
   }
 
   /**
@@ -1046,9 +1056,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesRejected() {
-    synchronized ( statusCountersLock ) {
-      return ++linesRejected;
-    }
+    linesRejected.increment();
+    return linesRejected.sum();
   }
 
   /**
@@ -1057,18 +1066,15 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   @Override
   public void setLinesRejected( long newLinesRejectedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesRejected = newLinesRejectedValue;
-    }
+    linesRejected.reset();
+    linesRejected.add( newLinesRejectedValue );
   }
 
   /**
    * @return the number of lines skipped
    */
   public long getLinesSkipped() {
-    synchronized ( statusCountersLock ) {
-      return linesSkipped;
-    }
+    return linesSkipped.sum();
   }
 
   /**
@@ -1077,9 +1083,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * @return the new incremented value
    */
   public long incrementLinesSkipped() {
-    synchronized ( statusCountersLock ) {
-      return ++linesSkipped;
-    }
+    linesSkipped.increment();
+    return linesSkipped.sum();
   }
 
   /**
@@ -1087,9 +1092,27 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    *          lines number of lines skipped
    */
   public void setLinesSkipped( long newLinesSkippedValue ) {
-    synchronized ( statusCountersLock ) {
-      linesSkipped = newLinesSkippedValue;
-    }
+    linesSkipped.reset();
+    linesSkipped.add( newLinesSkippedValue );
+  }
+
+  /**
+   * Take a snapshot of all the row counters of this step. The counters that are bumped later in the life of a row are
+   * read first so that a snapshot never shows more rows written than read, even while the step is running.
+   *
+   * @return a snapshot of the row counters
+   */
+  @Override
+  public StepCounters getStatusCounters() {
+    long errs = errors.sum();
+    long rejected = linesRejected.sum();
+    long written = linesWritten.sum();
+    long output = linesOutput.sum();
+    long updated = linesUpdated.sum();
+    long skipped = linesSkipped.sum();
+    long read = linesRead.sum();
+    long input = linesInput.sum();
+    return new StepCounters( read, written, input, output, updated, skipped, rejected, errs );
   }
 
   /*
@@ -1212,13 +1235,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public void putRow( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
     // Are we pausing the step? If so, stall forever...
     //
-    while ( paused.get() && !stopped.get() ) {
-      try {
-        Thread.sleep( 1 );
-      } catch ( InterruptedException e ) {
-        throw new KettleStepException( e );
-      }
-    }
+    waitWhilePaused( 1 );
 
     // Right after the pause loop we have to check if this thread is stopped or
     // not.
@@ -1269,7 +1286,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       // No more output rowsets!
       // Still update the nr of lines written.
       //
-      incrementLinesWritten();
+      linesWritten.increment();
 
       return; // we're done here!
     }
@@ -1294,6 +1311,198 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * putRows is used to copy a batch of rows to the output rowset(s). In the common case of a single, non partitioned
+   * output hop the whole batch is handed over to the rowset in one go and the row listeners and counters are only
+   * updated once per batch. In all other cases the rows are passed to {@link #putRow(RowMetaInterface, Object[])} one
+   * by one.
+   *
+   * @param rowMeta
+   *          The metadata of the rows
+   * @param rows
+   *          The rows to put to the destination rowset(s).
+   * @throws KettleStepException
+   */
+  @Override
+  public void putRows( RowMetaInterface rowMeta, Object[][] rows ) throws KettleStepException {
+    if ( rows == null || rows.length == 0 ) {
+      return;
+    }
+
+    if ( repartitioning != StepPartitioningMeta.PARTITIONING_METHOD_NONE || outputRowSets.size() > 1
+      || ( distributed && rowDistribution != null ) ) {
+      for ( int i = 0; i < rows.length; i++ ) {
+        putRow( rowMeta, rows[i] );
+      }
+      return;
+    }
+
+    // Are we pausing the step? If so, stall forever...
+    //
+    waitWhilePaused( 1 );
+
+    if ( stopped.get() ) {
+      if ( log.isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopPuttingARow" ) );
+      }
+      stopAll();
+      return;
+    }
+
+    waitUntilTransformationIsStarted();
+
+    // call all row listeners, taking the lock only once for the batch...
+    //
+    synchronized ( rowListeners ) {
+      for ( int i = 0; i < rowListeners.size(); i++ ) {
+        RowListener rowListener = rowListeners.get( i );
+        for ( int r = 0; r < rows.length; r++ ) {
+          rowListener.rowWrittenEvent( rowMeta, rows[r] );
+        }
+      }
+    }
+
+    // Keep adding to terminator_rows buffer...
+    //
+    if ( terminator && terminator_rows != null ) {
+      try {
+        for ( int r = 0; r < rows.length; r++ ) {
+          terminator_rows.add( rowMeta.cloneRow( rows[r] ) );
+        }
+      } catch ( KettleValueException e ) {
+        throw new KettleStepException( "Unable to clone row while adding rows to the terminator rows.", e );
+      }
+    }
+
+    if ( !outputRowSets.isEmpty() ) {
+      RowSet rs = outputRowSets.get( 0 );
+
+      RowMetaInterface toBeSent = rs.getRowMeta();
+      if ( toBeSent == null ) {
+        // RowSet is not initialised so far
+        toBeSent = rowMeta.clone();
+      }
+
+      // Loop until the complete batch found room in the target rowset
+      //
+      int offset = 0;
+      while ( offset < rows.length ) {
+        offset += rs.putRows( toBeSent, rows, offset, rows.length - offset );
+        if ( offset < rows.length && isStopped() ) {
+          break;
+        }
+      }
+      linesWritten.add( offset );
+    } else {
+      // No more output rowsets!
+      // Still update the nr of lines written.
+      //
+      linesWritten.add( rows.length );
+    }
+  }
+
+  /**
+   * Put the first nrRows rows of a (partially filled) batch on the output rowset(s). Steps that collect a batch of
+   * rows need to put the rows collected so far before they call
+   * {@link #putError(RowMetaInterface, Object[], long, String, String, String)}, just like putRow() would have done.
+   *
+   * @param rowMeta
+   *          The metadata of the rows
+   * @param rows
+   *          The batch of rows
+   * @param nrRows
+   *          The number of rows in the batch to put
+   * @throws KettleStepException
+   */
+  protected void putRows( RowMetaInterface rowMeta, Object[][] rows, int nrRows ) throws KettleStepException {
+    if ( nrRows > 0 ) {
+      putRows( rowMeta, nrRows == rows.length ? rows : Arrays.copyOf( rows, nrRows ) );
+    }
+  }
+
+  /**
+   * Put a batch of rows, described column by column, to the next steps. If the only next step processes column batches
+   * as well, the batch is handed over through the row set as a whole. Otherwise it is converted back into rows here,
+   * where the batch meets a step that works row by row.
+   *
+   * @param rowMeta
+   *          The metadata of the rows
+   * @param batch
+   *          The batch of rows, it must not be changed anymore afterwards
+   * @throws KettleStepException
+   */
+  public void putRowBatch( RowMetaInterface rowMeta, RowBatch batch ) throws KettleStepException {
+    RowSet rowSet = getRowBatchOutputRowSet( batch );
+    if ( rowSet == null ) {
+      putRows( rowMeta, batch.toRows() );
+      return;
+    }
+
+    // Are we pausing the step? If so, stall forever...
+    //
+    waitWhilePaused( 1 );
+
+    if ( stopped.get() ) {
+      if ( log.isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopPuttingARow" ) );
+      }
+      stopAll();
+      return;
+    }
+
+    RowMetaInterface toBeSent = rowSet.getRowMeta();
+    if ( toBeSent == null ) {
+      // RowSet is not initialised so far
+      toBeSent = rowMeta.clone();
+    }
+
+    Object[] entry = batch.toRowSetEntry();
+    while ( !rowSet.putRow( toBeSent, entry ) ) {
+      if ( isStopped() ) {
+        return;
+      }
+    }
+    linesWritten.add( batch.size() );
+  }
+
+  /**
+   * A batch takes a single place in a row set. It is therefore only handed over while the row set is nearly empty, so
+   * that the rows waiting in the row set stay within the row set size.
+   *
+   * @return the output row set to hand over the batch through as a whole, or null if it needs to be converted into
+   *         rows
+   */
+  private RowSet getRowBatchOutputRowSet( RowBatch batch ) {
+    if ( batch.size() == 0 || outputRowSets.size() != 1
+      || repartitioning != StepPartitioningMeta.PARTITIONING_METHOD_NONE || ( terminator && terminator_rows != null )
+      || !rowListeners.isEmpty() ) {
+      return null;
+    }
+
+    RowSet rowSet = outputRowSets.get( 0 );
+    if ( rowSet != rowBatchRowSet ) {
+      rowBatchRowSet = rowSet;
+      rowBatchRowSetAccepting = isAcceptingRowBatches( rowSet );
+    }
+    if ( !rowBatchRowSetAccepting || ( rowSet.size() + 1 ) * ROW_BATCH_SIZE > transMeta.getSizeRowset() ) {
+      return null;
+    }
+    return rowSet;
+  }
+
+  /**
+   * @return true if the step reading from the row set runs in this transformation and takes column batches
+   */
+  private boolean isAcceptingRowBatches( RowSet rowSet ) {
+    if ( rowSet.getRemoteSlaveServerName() != null
+      || transMeta.getTransformationType() != TransformationType.Normal ) {
+      return false;
+    }
+    StepInterface step = trans.findStepInterface( rowSet.getDestinationStepName(), rowSet.getDestinationStepCopy() );
+    return step instanceof BaseStep && ( (BaseStep) step ).isColumnarBatchMode()
+      && ( (BaseStep) step ).isAcceptingRowBatches();
+  }
+
   /**
    * Copy always to all target steps/copies
    *
@@ -1405,7 +1614,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       } else {
         // Wait
         putRowToRowSet( selectedRowSet, rowMeta, row );
-        incrementLinesWritten();
+        linesWritten.increment();
 
         if ( log.isRowLevel() ) {
           try {
@@ -1433,7 +1642,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
           // Wait
           putRowToRowSet( selectedRowSet, rowMeta, row );
-          incrementLinesWritten();
+          linesWritten.increment();
 
           if ( log.isRowLevel() ) {
             try {
@@ -1454,7 +1663,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // Plugin defined row distribution!
         //
         rowDistribution.distributeRow( rowMeta, row, this );
-        incrementLinesWritten();
+        linesWritten.increment();
       } else {
         // ROUND ROBIN DISTRIBUTION:
         // --------------------------
@@ -1466,7 +1675,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // To reduce stress on the locking system we are NOT going to allow
         // the buffer to grow to its full capacity.
         //
-        if ( isUsingThreadPriorityManagment() && !rs.isDone() && rs.size() >= upperBufferBoundary && !isStopped() ) {
+        if ( isUsingThreadPriorityManagment() && !usingRowSetSignalling
+          && !rs.isDone() && rs.size() >= upperBufferBoundary && !isStopped() ) {
           try {
             Thread.sleep( 0, 1 );
           } catch ( InterruptedException e ) {
@@ -1477,7 +1687,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // Loop until we find room in the target rowset
         //
         putRowToRowSet( rs, rowMeta, row );
-        incrementLinesWritten();
+        linesWritten.increment();
 
         // Now determine the next output rowset!
         // Only if we have more then one output...
@@ -1502,7 +1712,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         // To reduce stress on the locking system we are NOT going to allow
         // the buffer to grow to its full capacity.
         //
-        if ( isUsingThreadPriorityManagment() && !rs.isDone() && rs.size() >= upperBufferBoundary && !isStopped() ) {
+        if ( isUsingThreadPriorityManagment() && !usingRowSetSignalling
+          && !rs.isDone() && rs.size() >= upperBufferBoundary && !isStopped() ) {
           try {
             Thread.sleep( 0, 1 );
           } catch ( InterruptedException e ) {
@@ -1514,7 +1725,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
           // Loop until we find room in the target rowset
           //
           putRowToRowSet( rs, rowMeta, rowMeta.cloneRow( row ) );
-          incrementLinesWritten();
+          linesWritten.increment();
         } catch ( KettleValueException e ) {
           throw new KettleStepException( "Unable to clone row while copying rows to multiple target steps", e );
         }
@@ -1524,7 +1735,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       //
       RowSet rs = outputRowSets.get( 0 );
       putRowToRowSet( rs, rowMeta, row );
-      incrementLinesWritten();
+      linesWritten.increment();
     }
   }
 
@@ -1562,13 +1773,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
     // Are we pausing the step? If so, stall forever...
     //
-    while ( paused.get() && !stopped.get() ) {
-      try {
-        Thread.sleep( 1 );
-      } catch ( InterruptedException e ) {
-        throw new KettleStepException( e );
-      }
-    }
+    waitWhilePaused( 1 );
 
     // call all row listeners...
     //
@@ -1603,7 +1808,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         break;
       }
     }
-    incrementLinesWritten();
+    linesWritten.increment();
   }
 
   /**
@@ -1666,7 +1871,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
           break;
         }
       }
-      incrementLinesRejected();
+      linesRejected.increment();
     }
 
     verifyRejectionRates();
@@ -1739,6 +1944,46 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  /**
+   * Wait as long as this step is paused and not stopped.
+   *
+   * @param sleepMillis
+   *          the time to sleep between checks when not using row set signalling
+   * @throws KettleStepException
+   *           when the thread is interrupted while waiting
+   */
+  private void waitWhilePaused( long sleepMillis ) throws KettleStepException {
+    while ( paused.get() && !stopped.get() ) {
+      if ( usingRowSetSignalling ) {
+        // Woken up by resumeRunning() or stopAll()
+        //
+        if ( !rowSetSignal.await( ROWSET_SIGNAL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS ) && Thread.interrupted() ) {
+          throw new KettleStepException( new InterruptedException() );
+        }
+      } else {
+        try {
+          Thread.sleep( sleepMillis );
+        } catch ( InterruptedException e ) {
+          throw new KettleStepException( e );
+        }
+      }
+    }
+  }
+
+  /**
+   * Make sure all the input row sets wake up this step when rows arrive or when they are done.
+   */
+  private void registerRowSetSignal() {
+    if ( !rowSetSignalRegistered ) {
+      synchronized ( inputRowSets ) {
+        for ( RowSet rowSet : inputRowSets ) {
+          rowSet.setReaderSignal( rowSetSignal );
+        }
+      }
+      rowSetSignalRegistered = true;
+    }
+  }
+
   /**
    * Wait until the transformation is completely running and all threads have been started.
    */
@@ -1768,13 +2013,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
     // Are we pausing the step? If so, stall forever...
     //
-    while ( paused.get() && !stopped.get() ) {
-      try {
-        Thread.sleep( 100 );
-      } catch ( InterruptedException e ) {
-        throw new KettleStepException( e );
-      }
-    }
+    waitWhilePaused( 100 );
 
     if ( stopped.get() ) {
       if ( log.isDebug() ) {
@@ -1792,6 +2031,12 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     //
     openRemoteInputStepSocketsOnce();
 
+    // The rest of a batch handed over by the previous step comes first
+    //
+    if ( pendingRows != null ) {
+      return getPendingRow();
+    }
+
     // If everything is finished, we can stop immediately!
     //
     if ( inputRowSets.isEmpty() ) {
@@ -1814,7 +2059,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         row = inputRowSet.getRowImmediate();
       }
       if ( row != null ) {
-        incrementLinesRead();
+        linesRead.increment();
       }
     } else {
       // What's the current input stream?
@@ -1825,7 +2070,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     // The buffer to grow beyond "a few" entries.
     // We'll only do that if the previous step has not ended...
     //
-    if ( isUsingThreadPriorityManagment()
+    if ( isUsingThreadPriorityManagment() && !usingRowSetSignalling
       && !inputRowSet.isDone() && inputRowSet.size() <= lowerBufferBoundary && !isStopped() ) {
       try {
         Thread.sleep( 0, 1 );
@@ -1846,14 +2091,27 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     // rowset, then switch to another etc.
     // We can use timeouts to switch from one to another...
     //
+    // When using row set signalling with several input row sets, we look at each of them without waiting and only
+    // park after all of them turned out to be empty. Any put on one of them wakes us up again.
+    //
+    boolean signalled = usingRowSetSignalling && inputRowSets.size() > 1;
+    if ( signalled ) {
+      registerRowSetSignal();
+    }
+    int emptyRowSets = 0;
+
     while ( row == null && !isStopped() ) {
       // Get a row from the input in row set ...
       // Timeout immediately if nothing is there to read.
       // We will then switch to the next row set to read from...
       //
-      row = inputRowSet.getRowWait( 1, TimeUnit.MILLISECONDS );
+      if ( signalled ) {
+        row = inputRowSet.getRowImmediate();
+      } else {
+        row = inputRowSet.getRowWait( 1, TimeUnit.MILLISECONDS );
+      }
       if ( row != null ) {
-        incrementLinesRead();
+        linesRead.increment();
         blockPointer++;
       } else {
         // Try once more...
@@ -1869,11 +2127,16 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
               return null; // We're completely done.
             }
           } else {
-            incrementLinesRead();
+            linesRead.increment();
           }
         }
         nextInputStream();
         inputRowSet = currentInputStream();
+
+        if ( signalled && row == null && ++emptyRowSets >= inputRowSets.size() ) {
+          rowSetSignal.await( ROWSET_SIGNAL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+          emptyRowSets = 0;
+        }
       }
     }
 
@@ -1900,6 +2163,20 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       inputRowMeta = inputRowSet.getRowMeta();
     }
 
+    // A step in columnar batch mode handed over a whole batch of rows
+    //
+    RowBatch rowBatch = RowBatch.fromRowSetEntry( row );
+    if ( rowBatch != null ) {
+      linesRead.add( rowBatch.size() - 1 );
+      if ( keepRowBatch && rowListeners.isEmpty() && !trans.isSafeModeEnabled() ) {
+        // getRowBatch() takes it as it is
+        keptRowBatch = rowBatch;
+        verifyRejectionRates();
+        return row;
+      }
+      row = unpackRowBatch( rowBatch );
+    }
+
     if ( row != null ) {
       // OK, before we return the row, let's see if we need to check on mixing
       // row compositions...
@@ -1927,6 +2204,189 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     return row;
   }
 
+  /**
+   * Get a batch of rows from the input rowset(s). The first row is read with {@link #getRow()}, blocking if needed.
+   * After that all rows that are immediately available in the same input rowset are drained in one go, up to max rows
+   * in total. The row counters and row listeners are updated once for the drained rows.
+   *
+   * @param max
+   *          the maximum number of rows to return
+   * @return the rows read (at least one) or null if there are no more rows
+   * @throws KettleException
+   */
+  @Override
+  public Object[][] getRows( int max ) throws KettleException {
+    Object[] first = getRow();
+    if ( first == null ) {
+      return null;
+    }
+    if ( keptRowBatch != null ) {
+      // getRowBatch() takes the batch handed over by the previous step as it is
+      return new Object[][] { first };
+    }
+
+    Object[][] rows = new Object[Math.max( 1, max )][];
+    rows[0] = first;
+    int nr = 1;
+    int added = 0;
+
+    if ( pendingRows != null ) {
+      // The rest of a batch handed over by the previous step comes before the rows in the row set
+      added = Math.min( rows.length - nr, pendingRows.length - pendingRowNr );
+      System.arraycopy( pendingRows, pendingRowNr, rows, nr, added );
+      pendingRowNr += added;
+      if ( pendingRowNr >= pendingRows.length ) {
+        pendingRows = null;
+      }
+    } else if ( nr < rows.length && !inputRowSets.isEmpty() && !isStopped() ) {
+      RowSet inputRowSet;
+      synchronized ( inputRowSets ) {
+        if ( currentInputRowSetNr >= inputRowSets.size() ) {
+          return new Object[][] { first };
+        }
+        inputRowSet = currentInputStream();
+      }
+
+      int drained = inputRowSet.drainTo( rows, nr, rows.length - nr );
+      linesRead.add( drained );
+      blockPointer += drained;
+      added = unpackRowBatches( rows, nr, drained );
+    }
+
+    if ( added > 0 ) {
+      if ( trans.isSafeModeEnabled() ) {
+        for ( int i = nr; i < nr + added; i++ ) {
+          if ( rows[i].length < inputRowMeta.size() ) {
+            throw new KettleException( "Safe mode check noticed that the length of the row data is smaller ("
+              + rows[i].length + ") than the row metadata size (" + inputRowMeta.size() + ")" );
+          }
+        }
+      }
+
+      synchronized ( rowListeners ) {
+        for ( int i = 0; i < rowListeners.size(); i++ ) {
+          RowListener rowListener = rowListeners.get( i );
+          for ( int r = nr; r < nr + added; r++ ) {
+            rowListener.rowReadEvent( inputRowMeta, rows[r] );
+          }
+        }
+      }
+
+      nr += added;
+
+      // Check the rejection rates etc. as well.
+      verifyRejectionRates();
+    }
+
+    return nr == rows.length ? rows : Arrays.copyOf( rows, nr );
+  }
+
+  /**
+   * Read a batch of rows like {@link #getRows(int)} and present it column by column. The columns are only converted
+   * when asked for. A batch handed over as a whole by the previous step is returned as it is, whatever its size.
+   *
+   * @param max
+   *          The maximum number of rows to read
+   * @return The batch of rows or null if there are no more rows to read
+   * @throws KettleException
+   */
+  public RowBatch getRowBatch( int max ) throws KettleException {
+    Object[][] rows;
+    keepRowBatch = true;
+    try {
+      rows = getRows( max );
+    } finally {
+      keepRowBatch = false;
+    }
+    if ( keptRowBatch != null ) {
+      RowBatch rowBatch = keptRowBatch;
+      keptRowBatch = null;
+      return rowBatch;
+    }
+    if ( rows == null ) {
+      return null;
+    }
+    return new RowBatch( getInputRowMeta(), rows );
+  }
+
+  /**
+   * Return the first row of a batch handed over by the previous step and keep the other rows for the next calls to
+   * getRow() or getRows().
+   */
+  private Object[] unpackRowBatch( RowBatch rowBatch ) {
+    Object[][] rows = rowBatch.toRows();
+    if ( rows.length > 1 ) {
+      pendingRows = rows;
+      pendingRowNr = 1;
+    }
+    return rows[0];
+  }
+
+  /**
+   * Replace the batches handed over by the previous step among the entries drained from a row set by their rows. The
+   * rows that don't fit in the array anymore are kept for the next calls to getRow() or getRows().
+   *
+   * @return the number of rows in the array starting at offset
+   */
+  private int unpackRowBatches( Object[][] rows, int offset, int count ) {
+    int end = offset + count;
+    int first = offset;
+    while ( first < end && RowBatch.fromRowSetEntry( rows[first] ) == null ) {
+      first++;
+    }
+    if ( first == end ) {
+      return count;
+    }
+
+    List<Object[]> unpacked = new ArrayList<Object[]>();
+    for ( int i = first; i < end; i++ ) {
+      RowBatch rowBatch = RowBatch.fromRowSetEntry( rows[i] );
+      if ( rowBatch == null ) {
+        unpacked.add( rows[i] );
+      } else {
+        Collections.addAll( unpacked, rowBatch.toRows() );
+      }
+    }
+    linesRead.add( unpacked.size() - ( end - first ) );
+
+    int nr = Math.min( rows.length - first, unpacked.size() );
+    for ( int i = 0; i < nr; i++ ) {
+      rows[first + i] = unpacked.get( i );
+    }
+    if ( nr < unpacked.size() ) {
+      pendingRows = unpacked.subList( nr, unpacked.size() ).toArray( new Object[unpacked.size() - nr][] );
+      pendingRowNr = 0;
+    }
+    return first - offset + nr;
+  }
+
+  /**
+   * @return the next row of a batch handed over by the previous step. These rows were counted as read already.
+   */
+  private Object[] getPendingRow() throws KettleException {
+    Object[] row = pendingRows[pendingRowNr++];
+    if ( pendingRowNr >= pendingRows.length ) {
+      pendingRows = null;
+    }
+
+    if ( trans.isSafeModeEnabled() && row.length < inputRowMeta.size() ) {
+      throw new KettleException( "Safe mode check noticed that the length of the row data is smaller ("
+        + row.length + ") than the row metadata size (" + inputRowMeta.size() + ")" );
+    }
+
+    synchronized ( rowListeners ) {
+      for ( int i = 0; i < rowListeners.size(); i++ ) {
+        RowListener rowListener = rowListeners.get( i );
+        rowListener.rowReadEvent( inputRowMeta, row );
+      }
+    }
+
+    // Check the rejection rates etc. as well.
+    verifyRejectionRates();
+
+    return row;
+  }
+
   /**
    * Opens socket connections to the remote input steps of this step. <br>
    * This method should be used by steps that don't call getRow() first in which it is executed automatically. <br>
@@ -2114,13 +2574,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   public Object[] getRowFrom( RowSet rowSet ) throws KettleStepException {
     // Are we pausing the step? If so, stall forever...
     //
-    while ( paused.get() && !stopped.get() ) {
-      try {
-        Thread.sleep( 10 );
-      } catch ( InterruptedException e ) {
-        throw new KettleStepException( e );
-      }
-    }
+    waitWhilePaused( 10 );
 
     // Have all threads started?
     // Are we running yet? If not, wait a bit until all threads have been
@@ -2141,7 +2595,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     // The buffer to grow beyond "a few" entries.
     // We'll only do that if the previous step has not ended...
     //
-    if ( isUsingThreadPriorityManagment()
+    if ( isUsingThreadPriorityManagment() && !usingRowSetSignalling
       && !rowSet.isDone() && rowSet.size() <= lowerBufferBoundary && !isStopped() ) {
       try {
         Thread.sleep( 0, 1 );
@@ -2190,7 +2644,15 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
         return null;
       }
     }
-    incrementLinesRead();
+    linesRead.increment();
+
+    // A step in columnar batch mode handed over a whole batch of rows
+    //
+    RowBatch rowBatch = RowBatch.fromRowSetEntry( rowData );
+    if ( rowBatch != null ) {
+      linesRead.add( rowBatch.size() - 1 );
+      rowData = unpackRowBatch( rowBatch );
+    }
 
     // call all rowlisteners...
     //
@@ -2891,6 +3353,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   @Override
   public void stopAll() {
     stopped.set( true );
+    rowSetSignal.signal();
     trans.stopAll();
   }
 
@@ -2932,6 +3395,9 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
   @Override
   public void setStopped( boolean stopped ) {
     this.stopped.set( stopped );
+    if ( stopped ) {
+      rowSetSignal.signal();
+    }
   }
 
   /*
@@ -2972,6 +3438,9 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   public void setPaused( boolean paused ) {
     this.paused.set( paused );
+    if ( !paused ) {
+      rowSetSignal.signal();
+    }
   }
 
   /**
@@ -3263,22 +3732,22 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    * Log summary.
    */
   public void logSummary() {
-    synchronized ( statusCountersLock ) {
-      long li = getLinesInput();
-      long lo = getLinesOutput();
-      long lr = getLinesRead();
-      long lw = getLinesWritten();
-      long lu = getLinesUpdated();
-      long lj = getLinesRejected();
-      if ( li > 0 || lo > 0 || lr > 0 || lw > 0 || lu > 0 || lj > 0 || errors > 0 ) {
-        logBasic( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
-          .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
-          .valueOf( errors + lj ) ) );
-      } else {
-        logDetailed( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
-          .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
-          .valueOf( errors + lj ) ) );
-      }
+    StepCounters counters = getStatusCounters();
+    long li = counters.getLinesInput();
+    long lo = counters.getLinesOutput();
+    long lr = counters.getLinesRead();
+    long lw = counters.getLinesWritten();
+    long lu = counters.getLinesUpdated();
+    long lj = counters.getLinesRejected();
+    long le = counters.getErrors();
+    if ( li > 0 || lo > 0 || lr > 0 || lw > 0 || lu > 0 || lj > 0 || le > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
+        .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
+        .valueOf( le + lj ) ) );
+    } else {
+      logDetailed( BaseMessages.getString( PKG, "BaseStep.Log.SummaryInfo", String.valueOf( li ), String
+        .valueOf( lo ), String.valueOf( lr ), String.valueOf( lw ), String.valueOf( lw ), String
+        .valueOf( le + lj ) ) );
     }
   }
 
@@ -3309,6 +3778,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
    */
   public void setInputRowSets( List<RowSet> inputRowSets ) {
     this.inputRowSets = inputRowSets;
+    rowSetSignalRegistered = false;
   }
 
   /**
@@ -3809,6 +4279,59 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     return usingThreadPriorityManagment;
   }
 
+  /**
+   * Set to true to have this step park while waiting for rows or a resume, woken up by a signal instead of polling.
+   *
+   * @param usingRowSetSignalling
+   *          set to true to use row set signalling
+   */
+  @Override
+  public void setUsingRowSetSignalling( boolean usingRowSetSignalling ) {
+    this.usingRowSetSignalling = usingRowSetSignalling;
+  }
+
+  /**
+   * Returns true if this step parks while waiting for rows or a resume, woken up by a signal instead of polling.
+   *
+   * @return true if this step uses row set signalling
+   */
+  @Override
+  public boolean isUsingRowSetSignalling() {
+    return usingRowSetSignalling;
+  }
+
+  /**
+   * @return true if the step should process its input in column batches when it supports that. Set from the
+   *         KETTLE_COLUMNAR_BATCH_MODE variable during initialization.
+   */
+  public boolean isColumnarBatchMode() {
+    return columnarBatchMode;
+  }
+
+  /**
+   * @param columnarBatchMode
+   *          set to true to have the step process its input in column batches when it supports that
+   */
+  public void setColumnarBatchMode( boolean columnarBatchMode ) {
+    this.columnarBatchMode = columnarBatchMode;
+  }
+
+  /**
+   * @return true if a previous step in columnar batch mode can hand over its batches to this step as a whole
+   */
+  public boolean isAcceptingRowBatches() {
+    return acceptingRowBatches;
+  }
+
+  /**
+   * @param acceptingRowBatches
+   *          set to true if the step reads its input only with getRow(), getRows() and getRowBatch(). Batches handed
+   *          over by the previous step are then converted into rows when the step doesn't ask for a batch.
+   */
+  protected void setAcceptingRowBatches( boolean acceptingRowBatches ) {
+    this.acceptingRowBatches = acceptingRowBatches;
+  }
+
   /**
    * This method is executed by Trans right before the threads start and right after initialization.
    *
@@ -232,6 +232,11 @@ public interface StepInterface extends VariableSpace, HasLogChannelInterface {
    */
   public long getLinesRejected();
 
+  /**
+   * @return a consistent snapshot of all the row counters and the number of errors of this step
+   */
+  public StepCounters getStatusCounters();
+
   /**
    * Put a row on the destination rowsets.
    *
@@ -240,11 +245,39 @@ public interface StepInterface extends VariableSpace, HasLogChannelInterface {
    */
   public void putRow( RowMetaInterface row, Object[] data ) throws KettleException;
 
+  /**
+   * Put a batch of rows on the destination rowsets. By default the rows are put one by one, {@link BaseStep} updates
+   * the row counters and row listeners once for the whole batch.
+   *
+   * @param rowMeta
+   *          The metadata of the rows
+   * @param rows
+   *          The rows to send to the destination steps, all entries need to be non-null
+   */
+  public default void putRows( RowMetaInterface rowMeta, Object[][] rows ) throws KettleException {
+    for ( int i = 0; i < rows.length; i++ ) {
+      putRow( rowMeta, rows[i] );
+    }
+  }
+
   /**
    * @return a row from the source step(s).
    */
   public Object[] getRow() throws KettleException;
 
+  /**
+   * Get a batch of rows from the source step(s). This blocks until at least one row is available and then drains
+   * whatever else is immediately available, up to max rows. By default only one row is read at a time.
+   *
+   * @param max
+   *          The maximum number of rows to return
+   * @return the rows read, at least one, or null if there are no more rows
+   */
+  public default Object[][] getRows( int max ) throws KettleException {
+    Object[] row = getRow();
+    return row == null ? null : new Object[][] { row };
+  }
+
   /**
    * Signal output done to destination steps
    */
@@ -347,6 +380,20 @@ public interface StepInterface extends VariableSpace, HasLogChannelInterface {
    */
   public boolean isUsingThreadPriorityManagment();
 
+  /**
+   * @param usingRowSetSignalling
+   *          set to true to park while waiting for rows or a resume and be woken up by a signal instead of polling
+   */
+  public default void setUsingRowSetSignalling( boolean usingRowSetSignalling ) {
+  }
+
+  /**
+   * @return true if we park while waiting for rows or a resume and are woken up by a signal instead of polling
+   */
+  public default boolean isUsingRowSetSignalling() {
+    return false;
+  }
+
   /**
    * @return The total amount of rows in the input buffers
    */
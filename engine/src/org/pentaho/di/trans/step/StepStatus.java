@@ -69,11 +69,13 @@ public class StepStatus {
   }
 
   public StepStatus( StepInterface baseStep ) {
+    StepCounters counters = baseStep.getStatusCounters();
+
     // Proc: nr of lines processed: input + output!
-    long in_proc = Math.max( baseStep.getLinesInput(), baseStep.getLinesRead() );
+    long in_proc = Math.max( counters.getLinesInput(), counters.getLinesRead() );
     long out_proc =
-      Math.max( baseStep.getLinesOutput() + baseStep.getLinesUpdated(), baseStep.getLinesWritten()
-        + baseStep.getLinesRejected() );
+      Math.max( counters.getLinesOutput() + counters.getLinesUpdated(), counters.getLinesWritten()
+        + counters.getLinesRejected() );
 
     float lapsed = ( (float) baseStep.getRuntime() ) / 1000;
     double in_speed = 0;
@@ -89,13 +91,13 @@ public class StepStatus {
 
     this.stepname = baseStep.getStepname();
     this.copy = baseStep.getCopy();
-    this.linesRead = baseStep.getLinesRead();
-    this.linesWritten = baseStep.getLinesWritten();
-    this.linesInput = baseStep.getLinesInput();
-    this.linesOutput = baseStep.getLinesOutput();
-    this.linesUpdated = baseStep.getLinesUpdated();
-    this.linesRejected = baseStep.getLinesRejected();
-    this.errors = baseStep.getErrors();
+    this.linesRead = counters.getLinesRead();
+    this.linesWritten = counters.getLinesWritten();
+    this.linesInput = counters.getLinesInput();
+    this.linesOutput = counters.getLinesOutput();
+    this.linesUpdated = counters.getLinesUpdated();
+    this.linesRejected = counters.getLinesRejected();
+    this.errors = counters.getErrors();
     this.statusDescription = baseStep.getStatus().getDescription();
     this.seconds = Math.floor( ( lapsed * 10 ) + 0.5 ) / 10;
     this.speed = lapsed == 0 ? "-" : " " + speedDf.format( speedNumber );
@@ -0,0 +1,335 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.calculator;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.codehaus.janino.Scanner;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.JaninoClassCache;
+
+/**
+ * Generates and compiles (with Janino) a {@link CalculatorProgram} that does all the calculations of a Calculator step
+ * on rows of one layout.<br>
+ * <br>
+ * The arithmetic on Integer and Number fields (copy, A + B, A - B, A * B, A / B, A * A and ABS( A ), without
+ * conversion to another data type) is written out on primitive long and double values. These stay in local variables
+ * from one calculation to the next and are only boxed when they make it to the output row or when another calculation
+ * needs them as an object. Temporary results that only feed this arithmetic are never allocated. Constants are
+ * converted once. All other calculations are delegated to the step, one by one, in the original order.
+ */
+public class CalculatorCompiler {
+
+  private final Calculator calculator;
+  private final CalculatorMetaFunction[] functions;
+  private final CalculatorData data;
+  private final int inputSize;
+
+  /** For every field of the calculation row: "long" or "double" when its value is in local variables */
+  private String[] primitives;
+
+  /** For every field of the calculation row: true if its value is in the row */
+  private boolean[] boxed;
+
+  private List<Object> constants;
+  private StringBuilder source;
+
+  /**
+   * @param calculator
+   *          the step, it does the calculations that are not generated
+   * @param functions
+   *          the calculations
+   * @param data
+   *          the step data with the calculation row metadata and the field indexes
+   * @param inputSize
+   *          the number of fields in the input rows
+   */
+  public CalculatorCompiler( Calculator calculator, CalculatorMetaFunction[] functions, CalculatorData data,
+    int inputSize ) {
+    this.calculator = calculator;
+    this.functions = functions;
+    this.data = data;
+    this.inputSize = inputSize;
+  }
+
+  /**
+   * @return a new instance of the generated program
+   * @throws KettleException
+   *           in case the generated code doesn't compile
+   */
+  public CalculatorProgram compile() throws KettleException {
+    final String body = generate();
+    try {
+      // Other copies and runs with the same calculations on the same layout reuse the class
+      final ClassLoader classLoader = CalculatorProgram.class.getClassLoader();
+      Class<?> programClass = JaninoClassCache.get( classLoader, "calculator|" + body, new Callable<Class<?>>() {
+        @Override
+        public Class<?> call() throws Exception {
+          ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+          cbe.setParentClassLoader( classLoader );
+          cbe.setExtendedType( CalculatorProgram.class );
+          cbe.cook( new Scanner( null, new StringReader( body ) ) );
+          return cbe.getClazz();
+        }
+      } );
+
+      CalculatorProgram program = (CalculatorProgram) programClass.newInstance();
+      program.init( calculator, constants.toArray(), data.getTempIndexes() );
+      return program;
+    } catch ( Exception e ) {
+      throw new KettleException( "Unable to compile the calculations:" + Const.CR + body, e );
+    }
+  }
+
+  /**
+   * @return the body of the generated class
+   */
+  public String generate() {
+    RowMetaInterface calcRowMeta = data.getCalcRowMeta();
+    primitives = new String[calcRowMeta.size()];
+    boxed = new boolean[calcRowMeta.size()];
+    for ( int i = 0; i < inputSize; i++ ) {
+      boxed[i] = true;
+    }
+    constants = new ArrayList<Object>();
+    source = new StringBuilder();
+
+    source.append( "public Object[] calc( Object[] r ) throws org.pentaho.di.core.exception.KettleValueException {" )
+      .append( Const.CR );
+    source.append( "  Object[] c = org.pentaho.di.core.row.RowDataUtil.resizeArray( r, " ).append(
+      calcRowMeta.size() ).append( " );" ).append( Const.CR );
+
+    for ( int i = 0; i < functions.length; i++ ) {
+      int index = inputSize + i;
+      source.append( "  // " ).append( i + 1 ).append( " : " ).append( functions[i].getCalcTypeDesc() ).append(
+        Const.CR );
+      if ( !generateConstant( i, index ) && !generatePrimitive( i, index ) ) {
+        generateDelegate( i, index );
+      }
+    }
+
+    // Only the fields that make it to the output are boxed at the end
+    int[] tempIndexes = data.getTempIndexes();
+    for ( int index = inputSize; index < calcRowMeta.size(); index++ ) {
+      if ( !isTemporary( index ) ) {
+        box( index );
+      }
+    }
+    if ( tempIndexes.length == 0 ) {
+      source.append( "  return c;" ).append( Const.CR );
+    } else {
+      source.append( "  return org.pentaho.di.core.row.RowDataUtil.removeItems( c, tempIndexes );" ).append(
+        Const.CR );
+    }
+    source.append( "}" ).append( Const.CR );
+
+    return source.toString();
+  }
+
+  /**
+   * A constant is converted to the target data type once, by the step. Only immutable values are shared by all rows.
+   */
+  private boolean generateConstant( int i, int index ) {
+    if ( functions[i].getCalcType() != CalculatorMetaFunction.CALC_CONSTANT ) {
+      return false;
+    }
+    Object value;
+    try {
+      Object[] calcData = new Object[data.getCalcRowMeta().size()];
+      calculator.calcFunction( i, index, calcData );
+      value = calcData[index];
+    } catch ( KettleValueException e ) {
+      // Fails row by row, like it always did
+      return false;
+    }
+    if ( value != null && !( value instanceof String ) && !( value instanceof Long ) && !( value instanceof Double )
+      && !( value instanceof Boolean ) && !( value instanceof BigDecimal ) ) {
+      return false;
+    }
+    source.append( "  c[" ).append( index ).append( "] = constants[" ).append( constants.size() ).append( "];" )
+      .append( Const.CR );
+    constants.add( value );
+    boxed[index] = true;
+    return true;
+  }
+
+  private boolean generatePrimitive( int i, int index ) {
+    Calculator.FieldIndexes indexes = data.getFieldIndexes()[i];
+    int calcType = functions[i].getCalcType();
+    boolean binary;
+    switch ( calcType ) {
+      case CalculatorMetaFunction.CALC_COPY_OF_FIELD:
+      case CalculatorMetaFunction.CALC_SQUARE:
+      case CalculatorMetaFunction.CALC_ABS:
+        binary = false;
+        break;
+      case CalculatorMetaFunction.CALC_ADD:
+      case CalculatorMetaFunction.CALC_SUBTRACT:
+      case CalculatorMetaFunction.CALC_MULTIPLY:
+      case CalculatorMetaFunction.CALC_DIVIDE:
+        binary = true;
+        break;
+      default:
+        return false;
+    }
+
+    // The arguments have to be available and of the same type as the result, the step does the rest
+    String type = getPrimitiveType( indexes.indexA, index );
+    if ( type == null || data.getCalcRowMeta().getValueMeta( index ).getType() != data.getCalcRowMeta()
+      .getValueMeta( indexes.indexA ).getType() ) {
+      return false;
+    }
+    if ( binary && !type.equals( getPrimitiveType( indexes.indexB, index ) ) ) {
+      return false;
+    }
+
+    if ( calcType == CalculatorMetaFunction.CALC_COPY_OF_FIELD && primitives[indexes.indexA] == null ) {
+      // No need to unbox the value just to copy it
+      source.append( "  c[" ).append( index ).append( "] = c[" ).append( indexes.indexA ).append( "];" ).append(
+        Const.CR );
+      boxed[index] = true;
+      return true;
+    }
+
+    String a = load( indexes.indexA, type );
+    String b = binary ? load( indexes.indexB, type ) : null;
+    String expression;
+    switch ( calcType ) {
+      case CalculatorMetaFunction.CALC_COPY_OF_FIELD:
+        expression = a;
+        break;
+      case CalculatorMetaFunction.CALC_SQUARE:
+        expression = a + " * " + a;
+        break;
+      case CalculatorMetaFunction.CALC_ABS:
+        // The step takes the absolute value of an Integer as a Number, with the same loss of precision
+        expression = "long".equals( type ) ? "Math.abs( (long) (double) " + a + " )" : "Math.abs( " + a + " )";
+        break;
+      case CalculatorMetaFunction.CALC_ADD:
+        expression = a + " + " + b;
+        break;
+      case CalculatorMetaFunction.CALC_SUBTRACT:
+        expression = a + " - " + b;
+        break;
+      case CalculatorMetaFunction.CALC_MULTIPLY:
+        expression = a + " * " + b;
+        break;
+      default:
+        // An Integer division by zero throws an ArithmeticException, just like it does in the step
+        expression = a + " / " + b;
+        break;
+    }
+
+    String isNull = "n" + indexes.indexA + ( binary ? " || n" + indexes.indexB : "" );
+    source.append( "  boolean n" ).append( index ).append( " = " ).append( isNull ).append( ";" ).append( Const.CR );
+    source.append( "  " ).append( type ).append( " v" ).append( index ).append( " = n" ).append( index ).append(
+      " ? " ).append( "long".equals( type ) ? "0L" : "0.0" ).append( " : " ).append( expression ).append( ";" )
+      .append( Const.CR );
+    primitives[index] = type;
+    return true;
+  }
+
+  private void generateDelegate( int i, int index ) {
+    Calculator.FieldIndexes indexes = data.getFieldIndexes()[i];
+    for ( int argument : new int[] { indexes.indexA, indexes.indexB, indexes.indexC } ) {
+      if ( argument >= 0 && argument < index ) {
+        box( argument );
+      }
+    }
+    source.append( "  calcFunction( " ).append( i ).append( ", " ).append( index ).append( ", c );" ).append(
+      Const.CR );
+    boxed[index] = true;
+  }
+
+  /**
+   * @return "long" for an Integer field and "double" for a Number field that can be read as such before the
+   *         calculation at the given index, null otherwise
+   */
+  private String getPrimitiveType( int argument, int index ) {
+    if ( argument < 0 || argument >= index ) {
+      // The value of a field that isn't calculated yet is whatever is in the row
+      return null;
+    }
+    ValueMetaInterface valueMeta = data.getCalcRowMeta().getValueMeta( argument );
+    if ( valueMeta.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+      return null;
+    }
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        return "long";
+      case ValueMetaInterface.TYPE_NUMBER:
+        return "double";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Unbox the value of a field in local variables if that wasn't done yet.
+   *
+   * @return the name of the variable with the value
+   */
+  private String load( int argument, String type ) {
+    if ( primitives[argument] == null ) {
+      String wrapper = "long".equals( type ) ? "Long" : "Double";
+      source.append( "  " ).append( wrapper ).append( " o" ).append( argument ).append( " = (" ).append( wrapper )
+        .append( ") c[" ).append( argument ).append( "];" ).append( Const.CR );
+      source.append( "  boolean n" ).append( argument ).append( " = o" ).append( argument ).append( " == null;" )
+        .append( Const.CR );
+      source.append( "  " ).append( type ).append( " v" ).append( argument ).append( " = n" ).append( argument )
+        .append( " ? " ).append( "long".equals( type ) ? "0L" : "0.0" ).append( " : o" ).append( argument ).append(
+          "." ).append( type ).append( "Value();" ).append( Const.CR );
+      primitives[argument] = type;
+    }
+    return "v" + argument;
+  }
+
+  /**
+   * Store the value of a field in the row if it's only in local variables.
+   */
+  private void box( int index ) {
+    if ( !boxed[index] ) {
+      String wrapper = "long".equals( primitives[index] ) ? "Long" : "Double";
+      source.append( "  c[" ).append( index ).append( "] = n" ).append( index ).append( " ? null : " ).append(
+        wrapper ).append( ".valueOf( v" ).append( index ).append( " );" ).append( Const.CR );
+      boxed[index] = true;
+    }
+  }
+
+  private boolean isTemporary( int index ) {
+    for ( int tempIndex : data.getTempIndexes() ) {
+      if ( tempIndex == index ) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -44,6 +44,10 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
 
   private int[] tempIndexes;
 
+  private int[] outputIndexes;
+
+  private CalculatorProgram program;
+
   private final Map<Integer, ValueMetaInterface> resultMetaMapping;
 
   public CalculatorData() {
@@ -83,6 +87,28 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
     this.tempIndexes = tempIndexes;
   }
 
+  /**
+   * @return the indexes of the calculation fields that are not temporary, in the order of the output row
+   */
+  public int[] getOutputIndexes() {
+    return outputIndexes;
+  }
+
+  public void setOutputIndexes( int[] outputIndexes ) {
+    this.outputIndexes = outputIndexes;
+  }
+
+  /**
+   * @return the generated code that does all the calculations on a row or null if they are done one by one
+   */
+  public CalculatorProgram getProgram() {
+    return program;
+  }
+
+  public void setProgram( CalculatorProgram program ) {
+    this.program = program;
+  }
+
   public ValueMetaInterface getValueMetaFor( int resultType, String name ) throws KettlePluginException {
     // don't need any synchronization as data instance belongs only to one step instance
     ValueMetaInterface meta = resultMetaMapping.get( resultType );
@@ -0,0 +1,61 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.calculator;
+
+import org.pentaho.di.core.exception.KettleValueException;
+
+/**
+ * Base class of the classes generated by {@link CalculatorCompiler}. A program does all the calculations of a
+ * Calculator step copy on one row.
+ */
+public abstract class CalculatorProgram {
+
+  private Calculator calculator;
+
+  /** The values of the constants, in the order they are used in the generated code */
+  protected Object[] constants;
+
+  /** The indexes of the temporary fields in the calculation row */
+  protected int[] tempIndexes;
+
+  void init( Calculator calculator, Object[] constants, int[] tempIndexes ) {
+    this.calculator = calculator;
+    this.constants = constants;
+    this.tempIndexes = tempIndexes;
+  }
+
+  /**
+   * @param r
+   *          the input row (data)
+   * @return A row including the calculations, excluding the temporary values
+   * @throws KettleValueException
+   *           in case there is a calculation error.
+   */
+  public abstract Object[] calc( Object[] r ) throws KettleValueException;
+
+  /**
+   * Do a calculation that isn't generated the way the step does it without a program.
+   */
+  protected final void calcFunction( int i, int index, Object[] calcData ) throws KettleValueException {
+    calculator.calcFunction( i, index, calcData );
+  }
+}
@@ -25,14 +25,9 @@ package org.pentaho.di.trans.steps.combinationlookup;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
 
 import org.pentaho.di.core.Const;
-import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleConfigException;
@@ -40,6 +35,8 @@ import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.hash.ByteArrayLongHashCache;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -78,6 +75,9 @@ public class CombinationLookup extends BaseStep implements StepInterface {
   private static final int CREATION_METHOD_SEQUENCE = 2;
   private static final int CREATION_METHOD_TABLEMAX = 3;
 
+  /** The technical key returned by the cache for a key it doesn't hold */
+  private static final long NOT_CACHED = Long.MIN_VALUE;
+
   private int techKeyCreation;
 
   private CombinationLookupMeta meta;
@@ -112,7 +112,7 @@ public class CombinationLookup extends BaseStep implements StepInterface {
     }
   }
 
-  private Long lookupInCache( RowMetaInterface rowMeta, Object[] row ) {
+  private Long lookupInCache( RowMetaInterface rowMeta, Object[] row ) throws KettleValueException {
     // Short circuit if cache is disabled.
     if ( meta.getCacheSize() == -1 ) {
       return null;
@@ -120,8 +120,8 @@ public class CombinationLookup extends BaseStep implements StepInterface {
 
     // try to find the row in the cache...
     //
-    Long tk = data.cache.get( new RowMetaAndData( rowMeta, row ) );
-    return tk;
+    long tk = data.cache.get( getCacheKey( rowMeta, row ), NOT_CACHED );
+    return tk == NOT_CACHED ? null : tk;
   }
 
   /**
@@ -137,79 +137,40 @@ public class CombinationLookup extends BaseStep implements StepInterface {
    */
   private void addToCache( RowMetaInterface rowMeta, Object[] row, Long tk ) throws KettleValueException {
     // Short circuit if cache is disabled.
-    if ( meta.getCacheSize() == -1 ) {
+    if ( meta.getCacheSize() == -1 || tk == null ) {
       return;
     }
 
     // store it in the cache if needed.
-    data.cache.put( new RowMetaAndData( rowMeta, row ), tk );
-
-    // check if the size is not too big...
-    // Allow for a buffer overrun of 20% and then remove those 20% in one go.
-    // Just to keep performance in track.
+    // Once the cache is full, every new entry evicts one that wasn't used recently.
     //
-    int tenPercent = meta.getCacheSize() / 10;
-    if ( meta.getCacheSize() > 0 && data.cache.size() > meta.getCacheSize() + tenPercent ) {
-      // Which cache entries do we delete here?
-      // We delete those with the lowest technical key...
-      // Those would arguably be the "oldest" dimension entries.
-      // Oh well... Nothing is going to be perfect here...
-      //
-      // Getting the lowest 20% requires some kind of sorting algorithm and I'm not sure we want to do that.
-      // Sorting is slow and even in the best case situation we need to do 2 passes over the cache entries...
-      //
-      // Perhaps we should get 20% random values and delete everything below the lowest but one TK.
-      //
-      List<RowMetaAndData> keys = new ArrayList<RowMetaAndData>( data.cache.keySet() );
-      int sizeBefore = keys.size();
-      List<Long> samples = new ArrayList<Long>();
-
-      // Take 10 sample technical keys....
-      int stepsize = keys.size() / 5;
-      if ( stepsize < 1 ) {
-        stepsize = 1; // make sure we have no endless loop
-      }
-      for ( int i = 0; i < keys.size(); i += stepsize ) {
-        RowMetaAndData key = keys.get( i );
-        Long value = data.cache.get( key );
-        if ( value != null ) {
-          samples.add( value );
-        }
-      }
-      // Sort these 5 elements...
-      Collections.sort( samples );
-
-      // What is the smallest?
-      // Take the second, not the fist in the list, otherwise we would be removing a single entry = not good.
-      if ( samples.size() > 1 ) {
-        data.smallestCacheKey = samples.get( 1 ).longValue();
-      } else { // except when there is only one sample
-        data.smallestCacheKey = samples.get( 0 ).longValue();
-      }
-
-      // Remove anything in the cache <= smallest.
-      // This makes it almost single pass...
-      // This algorithm is not 100% correct, but I guess it beats sorting the whole cache all the time.
-      //
-      for ( int i = 0; i < keys.size(); i++ ) {
-        RowMetaAndData key = keys.get( i );
-        Long value = data.cache.get( key );
-        if ( value != null ) {
-          if ( value.longValue() <= data.smallestCacheKey ) {
-            data.cache.remove( key ); // this one has to go.
-          }
-        }
-      }
-
-      int sizeAfter = data.cache.size();
-      logDetailed( "Reduced the lookup cache from " + sizeBefore + " to " + sizeAfter + " rows." );
-    }
+    data.cache.put( getCacheKey( rowMeta, row ), tk );
 
     if ( isRowLevel() ) {
       logRowlevel( "Cache store: key=" + rowMeta.getString( row ) + "    key=" + tk );
     }
   }
 
+  /**
+   * The cache key is the serialized form of the key fields in normal storage, so that rows read with lazy conversion
+   * and rows from the dimension table itself end up with the same key.
+   */
+  private byte[] getCacheKey( RowMetaInterface rowMeta, Object[] row ) throws KettleValueException {
+    Object[] keyRow = new Object[data.cacheKeyMeta.size()];
+    for ( int i = 0; i < keyRow.length; i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      ValueMetaInterface keyMeta = data.cacheKeyMeta.getValueMeta( i );
+      if ( valueMeta.getType() != keyMeta.getType() ) {
+        keyRow[i] = keyMeta.convertData( valueMeta, row[i] );
+      } else if ( valueMeta.isStorageNormal() ) {
+        keyRow[i] = row[i];
+      } else {
+        keyRow[i] = valueMeta.convertToNormalStorageType( row[i] );
+      }
+    }
+    return RowMeta.extractData( data.cacheKeyMeta, keyRow );
+  }
+
   protected boolean isAutoIncrement() {
     return techKeyCreation == CREATION_METHOD_AUTOINC;
   }
@@ -378,6 +339,11 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       for ( int i = 0; i < meta.getKeyField().length; i++ ) {
         data.hashRowMeta.addValueMeta( getInputRowMeta().getValueMeta( data.keynrs[i] ) ); // KEYi = ?
       }
+      data.cacheKeyMeta = data.hashRowMeta.clone();
+      for ( ValueMetaInterface keyMeta : data.cacheKeyMeta.getValueMetaList() ) {
+        keyMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+        keyMeta.setStorageMetadata( null );
+      }
 
       setCombiLookup( getInputRowMeta() );
       preloadCache( data.hashRowMeta );
@@ -671,10 +637,8 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       data.realSchemaName = environmentSubstitute( meta.getSchemaName() );
       data.realTableName = environmentSubstitute( meta.getTableName() );
 
-      if ( meta.getCacheSize() > 0 ) {
-        data.cache = new HashMap<RowMetaAndData, Long>( (int) ( meta.getCacheSize() * 1.5 ) );
-      } else {
-        data.cache = new HashMap<RowMetaAndData, Long>();
+      if ( meta.getCacheSize() >= 0 ) {
+        data.cache = new ByteArrayLongHashCache( meta.getCacheSize() );
       }
       if ( meta.getDatabaseMeta() == null ) {
         logError( BaseMessages.getString( PKG, "CombinationLookup.Init.ConnectionMissing", getStepname() ) );
@@ -708,6 +672,16 @@ public class CombinationLookup extends BaseStep implements StepInterface {
     meta = (CombinationLookupMeta) smi;
     data = (CombinationLookupData) sdi;
 
+    if ( data.cache != null ) {
+      log.snap( Metrics.METRIC_STEP_CACHE_HITS, data.cache.getHits() );
+      log.snap( Metrics.METRIC_STEP_CACHE_MISSES, data.cache.getMisses() );
+      log.snap( Metrics.METRIC_STEP_CACHE_EVICTIONS, data.cache.getEvictions() );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "CombinationLookup.Log.CacheStatistics", data.cache.getHits(),
+          data.cache.getMisses(), data.cache.getEvictions(), data.cache.getSize() ) );
+      }
+    }
+
     if ( data.db != null ) {
       try {
         if ( !data.db.isAutoCommit() ) {
@@ -747,7 +721,6 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       }
       String lookupKeys = "";
       String sql = "";
-      List<Object[]> cacheValues;
 
       /* build SQl Statement to preload cache
        *
@@ -786,15 +759,28 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       if ( log.isDebug() ) {
         logDebug( "Using preload cache statement:" + Const.CR + sql );
       }
-      cacheValues = data.db.getRows( databaseMeta.stripCR( sql ), meta.getCacheSize() );
-      for ( Object[] cacheRow : cacheValues ) {
-        // Create a correctly structured array for the cache
-        Object[] hashRow = new Object[data.hashRowMeta.size()];
-        // Assumes the technical key is at position 0 !!
-        System.arraycopy( cacheRow, 1, hashRow, 0, hashRow.length );
-        // Potential Cache Overflow is ahndled inside
-        addToCache( hashRowMeta, hashRow, (Long) cacheRow[0] );
-        incrementLinesInput();
+
+      // Stream the rows into the cache: a large dimension doesn't fit in a list of rows next to the cache.
+      // A limited cache stops at its size rather than evicting the rows it just read.
+      //
+      ResultSet rs = data.db.openQuery( databaseMeta.stripCR( sql ) );
+      try {
+        RowMetaInterface cacheRowMeta = data.db.getReturnRowMeta();
+        Object[] cacheRow;
+        while ( ( meta.getCacheSize() == 0 || data.cache.getSize() < meta.getCacheSize() )
+          && ( cacheRow = data.db.getRow( rs ) ) != null ) {
+          // Create a correctly structured array for the cache
+          Object[] hashRow = new Object[data.cacheKeyMeta.size()];
+          // Assumes the technical key is at position 0 !!
+          for ( int i = 0; i < hashRow.length; i++ ) {
+            ValueMetaInterface keyMeta = data.cacheKeyMeta.getValueMeta( i );
+            hashRow[i] = keyMeta.convertData( cacheRowMeta.getValueMeta( i + 1 ), cacheRow[i + 1] );
+          }
+          addToCache( data.cacheKeyMeta, hashRow, cacheRowMeta.getInteger( cacheRow, 0 ) );
+          incrementLinesInput();
+        }
+      } finally {
+        data.db.closeQuery( rs );
       }
 
     }
@@ -23,10 +23,9 @@
 package org.pentaho.di.trans.steps.combinationlookup;
 
 import java.sql.PreparedStatement;
-import java.util.Map;
 
-import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.hash.ByteArrayLongHashCache;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -39,12 +38,14 @@ public class CombinationLookupData extends BaseStepData implements StepDataInter
   public Database db;
   public int[] keynrs; // nrs in row of the keys
 
-  public Map<RowMetaAndData, Long> cache;
+  public ByteArrayLongHashCache cache;
 
   public RowMetaInterface outputRowMeta;
   public RowMetaInterface lookupRowMeta;
   public RowMetaInterface insertRowMeta;
   public RowMetaInterface hashRowMeta;
+  /** The key fields in normal storage, the layout of the cache keys */
+  public RowMetaInterface cacheKeyMeta;
   public String realTableName;
   public String realSchemaName;
   public boolean[] removeField;
@@ -53,7 +54,6 @@ public class CombinationLookupData extends BaseStepData implements StepDataInter
 
   public PreparedStatement prepStatementLookup;
   public PreparedStatement prepStatementInsert;
-  public long smallestCacheKey;
 
   /**
    * Default Constructor
@@ -22,14 +22,19 @@
 
 package org.pentaho.di.trans.steps.databasejoin;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -38,6 +43,7 @@ import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.tableinput.TableInputPartitioner;
 
 /**
  * Use values from input streams to joins with values in a database. Freehand SQL can be used to do this.
@@ -48,6 +54,12 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 public class DatabaseJoin extends BaseStep implements StepInterface {
   private static Class<?> PKG = DatabaseJoinMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** The maximum number of parameters of a batch query, SQL Server for instance doesn't accept more than 2100 */
+  static final int MAX_BATCH_PARAMETERS = 2000;
+
+  /** The column with the number of the input row in a batch query */
+  private static final String BATCH_ROW_NR = "KETTLE_BATCH_ROW_NR";
+
   private DatabaseJoinMeta meta;
   private DatabaseJoinData data;
 
@@ -59,29 +71,7 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
   private synchronized void lookupValues( RowMetaInterface rowMeta, Object[] rowData ) throws KettleException {
     if ( first ) {
       first = false;
-
-      data.outputRowMeta = rowMeta.clone();
-      meta.getFields(
-        data.outputRowMeta, getStepname(), new RowMetaInterface[] { meta.getTableFields(), }, null, this,
-        repository, metaStore );
-
-      data.lookupRowMeta = new RowMeta();
-
-      if ( log.isDetailed() ) {
-        logDetailed( BaseMessages.getString( PKG, "DatabaseJoin.Log.CheckingRow" ) + rowMeta.getString( rowData ) );
-      }
-
-      data.keynrs = new int[meta.getParameterField().length];
-
-      for ( int i = 0; i < meta.getParameterField().length; i++ ) {
-        data.keynrs[i] = rowMeta.indexOfValue( meta.getParameterField()[i] );
-        if ( data.keynrs[i] < 0 ) {
-          throw new KettleStepException( BaseMessages.getString( PKG, "DatabaseJoin.Exception.FieldNotFound", meta
-            .getParameterField()[i] ) );
-        }
-
-        data.lookupRowMeta.addValueMeta( rowMeta.getValueMeta( data.keynrs[i] ).clone() );
-      }
+      prepareLookup( rowMeta, rowData );
     }
 
     // Construct the parameters row...
@@ -142,6 +132,139 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
     data.db.closeQuery( rs );
   }
 
+  /**
+   * Joins a batch of input rows with a single query: the statement is repeated for every row with UNION ALL, every
+   * part tagged with the number of its row. The rows are then put out in their original order.
+   */
+  private synchronized void lookupValues( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleException {
+    if ( first ) {
+      first = false;
+      prepareLookup( rowMeta, rows.get( 0 ) );
+    }
+
+    int nrRows = rows.size();
+    RowMetaInterface parametersMeta = new RowMeta();
+    Object[] parameters = new Object[data.lookupRowMeta.size() * nrRows];
+    int index = 0;
+    for ( Object[] rowData : rows ) {
+      for ( int i = 0; i < data.keynrs.length; i++ ) {
+        parametersMeta.addValueMeta( data.lookupRowMeta.getValueMeta( i ) );
+        parameters[index++] = rowData[data.keynrs[i]];
+      }
+    }
+
+    // The last batch is usually smaller, it gets a statement of its own
+    PreparedStatement ps;
+    if ( nrRows == data.batchSize ) {
+      if ( data.batchStatement == null ) {
+        data.batchStatement = data.db.prepareSQL( getBatchSQL( nrRows ) );
+      }
+      ps = data.batchStatement;
+    } else {
+      ps = data.db.prepareSQL( getBatchSQL( nrRows ) );
+    }
+
+    List<List<Object[]>> found = new ArrayList<List<Object[]>>( nrRows );
+    for ( int i = 0; i < nrRows; i++ ) {
+      found.add( new ArrayList<Object[]>() );
+    }
+    RowMetaInterface addMeta;
+    try {
+      ResultSet rs = data.db.openQuery( ps, parametersMeta, parameters );
+      addMeta = data.db.getReturnRowMeta();
+      ValueMetaInterface rowNrMeta = addMeta.getValueMeta( 0 );
+      // With a row limit, stop fetching as soon as every input row has all its rows
+      int nrRowsToFill = nrRows;
+      for ( Object[] add = data.db.getRow( rs ); add != null; add = data.db.getRow( rs ) ) {
+        incrementLinesInput();
+        List<Object[]> rowFound = found.get( rowNrMeta.getInteger( add[0] ).intValue() );
+        if ( meta.getRowLimit() == 0 || rowFound.size() < meta.getRowLimit() ) {
+          rowFound.add( add );
+          if ( rowFound.size() == meta.getRowLimit() && --nrRowsToFill == 0 ) {
+            break;
+          }
+        }
+      }
+      data.db.closeQuery( rs );
+    } finally {
+      if ( ps != data.batchStatement ) {
+        data.db.closePreparedStatement( ps );
+      }
+    }
+
+    int nrValues = addMeta.size() - 1;
+    for ( int r = 0; r < nrRows; r++ ) {
+      Object[] rowData = rows.get( r );
+      List<Object[]> rowFound = found.get( r );
+      if ( rowFound.isEmpty() && meta.isOuterJoin() ) {
+        // Just return null values for all values...
+        rowFound.add( new Object[nrValues + 1] );
+      }
+      for ( Object[] add : rowFound ) {
+        Object[] newRow = RowDataUtil.resizeArray( rowData, data.outputRowMeta.size() );
+        System.arraycopy( add, 1, newRow, rowMeta.size(), nrValues );
+        // we have to clone, otherwise we only get the last new value
+        putRow( data.outputRowMeta, data.outputRowMeta.cloneRow( newRow ) );
+
+        if ( log.isRowLevel() ) {
+          logRowlevel( BaseMessages.getString( PKG, "DatabaseJoin.Log.PutoutRow" )
+            + data.outputRowMeta.getString( newRow ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the statement of the step repeated for the given number of rows with UNION ALL, every part starting with
+   *         the number of its row. The statement may not have an ORDER BY of its own: it is lost in a derived table and
+   *         some databases, SQL Server for instance, don't even accept it there.
+   */
+  private String getBatchSQL( int nrRows ) {
+    String sql = getSQL();
+    StringBuilder batchSQL = new StringBuilder();
+    for ( int i = 0; i < nrRows; i++ ) {
+      if ( i > 0 ) {
+        batchSQL.append( Const.CR ).append( "UNION ALL" ).append( Const.CR );
+      }
+      batchSQL.append( "SELECT " ).append( i ).append( " AS " ).append( BATCH_ROW_NR ).append( ", q.* FROM ( " );
+      batchSQL.append( sql ).append( " ) q" );
+    }
+    return batchSQL.toString();
+  }
+
+  private String getSQL() {
+    String sql = meta.getSql();
+    if ( meta.isVariableReplace() ) {
+      sql = environmentSubstitute( sql );
+    }
+    return sql;
+  }
+
+  private void prepareLookup( RowMetaInterface rowMeta, Object[] rowData ) throws KettleException {
+    data.outputRowMeta = rowMeta.clone();
+    meta.getFields(
+      data.outputRowMeta, getStepname(), new RowMetaInterface[] { meta.getTableFields(), }, null, this,
+      repository, metaStore );
+
+    data.lookupRowMeta = new RowMeta();
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DatabaseJoin.Log.CheckingRow" ) + rowMeta.getString( rowData ) );
+    }
+
+    data.keynrs = new int[meta.getParameterField().length];
+
+    for ( int i = 0; i < meta.getParameterField().length; i++ ) {
+      data.keynrs[i] = rowMeta.indexOfValue( meta.getParameterField()[i] );
+      if ( data.keynrs[i] < 0 ) {
+        throw new KettleStepException( BaseMessages.getString( PKG, "DatabaseJoin.Exception.FieldNotFound", meta
+          .getParameterField()[i] ) );
+      }
+
+      data.lookupRowMeta.addValueMeta( rowMeta.getValueMeta( data.keynrs[i] ).clone() );
+    }
+  }
+
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
     meta = (DatabaseJoinMeta) smi;
     data = (DatabaseJoinData) sdi;
@@ -151,10 +274,22 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
 
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) { // no more input to be expected...
+      if ( data.batchRows != null && !data.batchRows.isEmpty() && !joinBatch() ) {
+        return false;
+      }
       setOutputDone();
       return false;
     }
 
+    if ( data.batchRows != null ) {
+      // The rows are joined once the batch is full
+      data.batchRows.add( r );
+      if ( data.batchRows.size() >= data.batchSize ) {
+        return joinBatch();
+      }
+      return true;
+    }
+
     try {
       lookupValues( getInputRowMeta(), r ); // add new values to the row in rowset[0].
 
@@ -185,6 +320,37 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * @return false if the step has to stop
+   */
+  private boolean joinBatch() throws KettleException {
+    List<Object[]> rows = data.batchRows;
+    data.batchRows = new ArrayList<Object[]>( data.batchSize );
+
+    try {
+      lookupValues( getInputRowMeta(), rows );
+
+      if ( checkFeedback( getLinesRead() ) ) {
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "DatabaseJoin.Log.LineNumber" ) + getLinesRead() );
+        }
+      }
+    } catch ( KettleException e ) {
+      if ( !getStepMeta().isDoingErrorHandling() ) {
+        logError( BaseMessages.getString( PKG, "DatabaseJoin.Log.ErrorInStepRunning" ) + e.getMessage(), e );
+        setErrors( 1 );
+        stopAll();
+        setOutputDone(); // signal end to receiver(s)
+        return false;
+      }
+      // The query failed for all the rows of the batch
+      for ( Object[] r : rows ) {
+        putError( getInputRowMeta(), r, 1, e.toString(), null, "DBJOIN001" );
+      }
+    }
+    return true;
+  }
+
   /** Stop the running query */
   public void stopRunning( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
     meta = (DatabaseJoinMeta) smi;
@@ -193,6 +359,7 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
     if ( data.db != null && !data.isCanceled ) {
       synchronized ( data.db ) {
         data.db.cancelStatement( data.pstmt );
+        data.db.cancelStatement( data.batchStatement );
       }
       setStopped( true );
       data.isCanceled = true;
@@ -224,16 +391,26 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
           logDetailed( BaseMessages.getString( PKG, "DatabaseJoin.Log.ConnectedToDB" ) );
         }
 
-        String sql = meta.getSql();
-        if ( meta.isVariableReplace() ) {
-          sql = environmentSubstitute( sql );
-        }
-        // Prepare the SQL statement
-        data.pstmt = data.db.prepareSQL( sql );
+        String sql = getSQL();
         if ( log.isDebug() ) {
           logDebug( BaseMessages.getString( PKG, "DatabaseJoin.Log.SQLStatement", sql ) );
         }
-        data.db.setQueryLimit( meta.getRowLimit() );
+        if ( meta.getBatchSize() > 1 && TableInputPartitioner.hasOrderBy( sql ) ) {
+          logBasic( BaseMessages.getString( PKG, "DatabaseJoin.Log.BatchNeedsNoOrderBy" ) );
+        } else if ( meta.getBatchSize() > 1 ) {
+          // The row limit applies to every input row, not to the whole batch
+          int nrParameters = Math.max( 1, meta.getParameterField().length );
+          data.batchSize = Math.max( 1, Math.min( meta.getBatchSize(), MAX_BATCH_PARAMETERS / nrParameters ) );
+          data.batchRows = new ArrayList<Object[]>( data.batchSize );
+          if ( log.isDetailed() ) {
+            logDetailed( BaseMessages.getString( PKG, "DatabaseJoin.Log.BatchSize", data.batchSize ) );
+          }
+        }
+        if ( data.batchRows == null ) {
+          // Prepare the SQL statement
+          data.pstmt = data.db.prepareSQL( sql );
+          data.db.setQueryLimit( meta.getRowLimit() );
+        }
 
         return true;
       } catch ( KettleException e ) {
@@ -252,6 +429,12 @@ public class DatabaseJoin extends BaseStep implements StepInterface {
     data = (DatabaseJoinData) sdi;
 
     if ( data.db != null ) {
+      try {
+        data.db.closePreparedStatement( data.batchStatement );
+      } catch ( KettleException e ) {
+        logError( e.getMessage() );
+      }
+      data.batchStatement = null;
       data.db.disconnect();
     }
 
@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.steps.databasejoin;
 
 import java.sql.PreparedStatement;
+import java.util.List;
 
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -44,6 +45,11 @@ public class DatabaseJoinData extends BaseStepData implements StepDataInterface
   public Object[] notfound; // Values in case nothing is found...
   public boolean isCanceled;
 
+  /** The rows waiting to be joined with a single query, null when joining row by row */
+  List<Object[]> batchRows;
+  int batchSize;
+  PreparedStatement batchStatement;
+
   public DatabaseJoinData() {
     super();
 
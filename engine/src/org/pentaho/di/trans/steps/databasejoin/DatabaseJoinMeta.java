@@ -65,6 +65,9 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
   /** Number of rows to return (0=ALL) */
   private int rowLimit;
 
+  /** Number of input rows to join with a single query (0 or 1 = row by row) */
+  private int batchSize;
+
   /**
    * false: don't return rows where nothing is found true: at least return one source row, the rest is NULL
    */
@@ -175,6 +178,22 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
     this.rowLimit = rowLimit;
   }
 
+  /**
+   * @return the number of input rows joined with a single query, 0 or 1 to join row by row. The rows are joined row
+   *         by row when the query has an ORDER BY, and a single query gets at most 2000 parameters.
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize
+   *          the number of input rows joined with a single query, 0 or 1 to join row by row
+   */
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = batchSize;
+  }
+
   /**
    * @return Returns the sql.
    */
@@ -224,6 +243,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
       outerJoin = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "outer_join" ) );
       replacevars = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "replace_vars" ) );
       rowLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "rowlimit" ), 0 );
+      batchSize = Const.toInt( XMLHandler.getTagValue( stepnode, "batch_size" ), 0 );
 
       Node param = XMLHandler.getSubNode( stepnode, "parameter" );
       int nrparam = XMLHandler.countNodes( param, "field" );
@@ -245,6 +265,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
   public void setDefault() {
     databaseMeta = null;
     rowLimit = 0;
+    batchSize = 0;
     sql = "";
     outerJoin = false;
     parameterField = null;
@@ -336,6 +357,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
       .append( "    " ).append(
         XMLHandler.addTagValue( "connection", databaseMeta == null ? "" : databaseMeta.getName() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "rowlimit", rowLimit ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "batch_size", batchSize ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "sql", sql ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "outer_join", outerJoin ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "replace_vars", replacevars ) );
@@ -356,6 +378,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
     try {
       databaseMeta = rep.loadDatabaseMetaFromStepAttribute( id_step, "id_connection", databases );
       rowLimit = (int) rep.getStepAttributeInteger( id_step, "rowlimit" );
+      batchSize = (int) rep.getStepAttributeInteger( id_step, "batch_size" );
       sql = rep.getStepAttributeString( id_step, "sql" );
       outerJoin = rep.getStepAttributeBoolean( id_step, "outer_join" );
       replacevars = rep.getStepAttributeBoolean( id_step, "replace_vars" );
@@ -379,6 +402,7 @@ public class DatabaseJoinMeta extends BaseStepMeta implements StepMetaInterface
     try {
       rep.saveDatabaseMetaStepAttribute( id_transformation, id_step, "id_connection", databaseMeta );
       rep.saveStepAttribute( id_transformation, id_step, "rowlimit", rowLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "batch_size", batchSize );
       rep.saveStepAttribute( id_transformation, id_step, "sql", sql );
       rep.saveStepAttribute( id_transformation, id_step, "outer_join", outerJoin );
       rep.saveStepAttribute( id_transformation, id_step, "replace_vars", replacevars );
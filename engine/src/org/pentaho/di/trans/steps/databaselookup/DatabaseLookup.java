@@ -22,16 +22,26 @@
 
 package org.pentaho.di.trans.steps.databaselookup;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -57,6 +67,15 @@ import org.pentaho.di.trans.steps.databaselookup.readallcache.ReadAllCache;
 public class DatabaseLookup extends BaseStep implements StepInterface {
   private static Class<?> PKG = DatabaseLookupMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** The maximum number of values in the IN list of a batch query, Oracle for instance doesn't accept more than 1000 */
+  static final int MAX_BATCH_IN_LIST = 1000;
+
+  /** The maximum number of parameters of a batch query, SQL Server for instance doesn't accept more than 2100 */
+  static final int MAX_BATCH_PARAMETERS = 2000;
+
+  /** Marks the keys that were found more than once in a batch query */
+  private static final Object[] MULTIPLE_RESULTS = new Object[ 0 ];
+
   private DatabaseLookupMeta meta;
   private DatabaseLookupData data;
 
@@ -74,8 +93,18 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
    */
   @VisibleForTesting
   synchronized Object[] lookupValues( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
-    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
+    Object[] lookupRow = getLookupRow( inputRowMeta, row );
+
+    // First, check if we looked up before
+    Object[] add = meta.isCached() ? data.cache.getRowFromCache( data.lookupMeta, lookupRow ) : null;
+
+    return lookupValues( inputRowMeta, row, lookupRow, add );
+  }
 
+  /**
+   * @return the values of the input row to look up, converted to the types of the table
+   */
+  private Object[] getLookupRow( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
     Object[] lookupRow = new Object[ data.lookupMeta.size() ];
     int lookupIndex = 0;
 
@@ -107,20 +136,20 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         lookupIndex++;
       }
     }
+    return lookupRow;
+  }
 
-    Object[] add;
+  /**
+   * Adds the values found in the cache to the row or looks them up in the database.
+   *
+   * @param lookupRow the values of the input row to look up
+   * @param add the values found in the cache, null if they were not found
+   */
+  private Object[] lookupValues( RowMetaInterface inputRowMeta, Object[] row, Object[] lookupRow, Object[] add )
+    throws KettleException {
+    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
     boolean cache_now = false;
-    boolean cacheHit = false;
-
-    // First, check if we looked up before
-    if ( meta.isCached() ) {
-      add = data.cache.getRowFromCache( data.lookupMeta, lookupRow );
-      if ( add != null ) {
-        cacheHit = true;
-      }
-    } else {
-      add = null;
-    }
+    boolean cacheHit = add != null;
 
     if ( add == null ) {
       if ( !( meta.isCached() && meta.isLoadingAllDataInCache() ) || data.hasDBCondition ) { // do not go to the
@@ -134,9 +163,13 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
             + data.lookupMeta.getString( lookupRow ) );
         }
 
-        data.db.setValuesLookup( data.lookupMeta, lookupRow );
-        // PDI-8373
-        add = data.db.getLookup( meta.isFailingOnMultipleResults(), meta.getDatabaseMeta().isMySQLVariant() );
+        if ( data.batchResults != null ) {
+          add = getBatchResult( lookupRow );
+        } else {
+          data.db.setValuesLookup( data.lookupMeta, lookupRow );
+          // PDI-8373
+          add = data.db.getLookup( meta.isFailingOnMultipleResults(), meta.getDatabaseMeta().isMySQLVariant() );
+        }
         cache_now = true;
       }
     }
@@ -311,15 +344,18 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (DatabaseLookupMeta) smi;
+    data = (DatabaseLookupData) sdi;
+
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) { // no more input to be expected...
+      if ( data.batchRows != null && !data.batchRows.isEmpty() && !lookupBatch() ) {
+        return false;
+      }
       setOutputDone();
       return false;
     }
 
-    meta = (DatabaseLookupMeta) smi;
-    data = (DatabaseLookupData) sdi;
-
     if ( first ) {
       first = false;
 
@@ -370,7 +406,7 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       }
 
       if ( meta.isCached() ) {
-        data.cache = DefaultCache.newCache( data, meta.getCacheSize() );
+        data.cache = createCache();
       }
 
       determineFieldsTypesQueryingDb();
@@ -385,6 +421,12 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       //
       if ( meta.isCached() && meta.isLoadingAllDataInCache() ) {
         loadAllTableDataIntoTheCache();
+      } else if ( meta.getLookupBatchSize() > 1 ) {
+        if ( data.allEquals ) {
+          prepareBatchLookup();
+        } else {
+          logBasic( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookupNeedsEquals" ) );
+        }
       }
 
     }
@@ -394,38 +436,309 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         + getInputRowMeta().getString( r ) );
     }
 
+    if ( data.batchRows != null ) {
+      // The keys are looked up once the batch is full
+      data.batchRows.add( r );
+      if ( data.batchRows.size() >= data.batchSize ) {
+        return lookupBatch();
+      }
+      return true;
+    }
+
     try {
       // add new lookup values to the row
-      Object[] outputRow = lookupValues( getInputRowMeta(), r );
+      putLookupRow( r, lookupValues( getInputRowMeta(), r ) );
+    } catch ( KettleException e ) {
+      return handleLookupError( r, e );
+    }
+
+    return true;
+  }
 
-      if ( outputRow != null ) {
-        // copy row to output rowset(s);
-        putRow( data.outputRowMeta, outputRow );
+  private void putLookupRow( Object[] r, Object[] outputRow ) throws KettleException {
+    if ( outputRow != null ) {
+      // copy row to output rowset(s);
+      putRow( data.outputRowMeta, outputRow );
 
-        if ( log.isRowLevel() ) {
-          logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.WroteRowToNextStep" )
-            + getInputRowMeta().getString( r ) );
+      if ( log.isRowLevel() ) {
+        logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.WroteRowToNextStep" )
+          + getInputRowMeta().getString( r ) );
+      }
+      if ( checkFeedback( getLinesRead() ) ) {
+        logBasic( "linenr " + getLinesRead() );
+      }
+    }
+  }
+
+  /**
+   * @return false if the step has to stop
+   */
+  private boolean handleLookupError( Object[] r, KettleException e ) throws KettleException {
+    if ( getStepMeta().isDoingErrorHandling() ) {
+      putError( getInputRowMeta(), r, 1, e.getMessage(), null, "DBLOOKUPD001" );
+      return true;
+    }
+    logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
+      + e.getMessage() );
+    setErrors( 1 );
+    stopAll();
+    setOutputDone(); // signal end to receiver(s)
+    return false;
+  }
+
+  /**
+   * Prepares a query that looks up the keys of a whole batch of rows: {@code key IN ( ?, ?, ... )} for a single key
+   * field, {@code ( key1 = ? AND key2 = ? ) OR ( ... )} for more. It returns the values followed by the keys, so the
+   * rows can be matched with the keys they belong to.
+   */
+  private void prepareBatchLookup() throws KettleException {
+    DatabaseMeta dbMeta = meta.getDatabaseMeta();
+    String[] keyFields = meta.getTableKeyField();
+    String[] returnFields = meta.getReturnValueField();
+
+    // Keep the batch statement within the limits of the databases
+    int maxBatchSize = keyFields.length == 1 ? MAX_BATCH_IN_LIST : MAX_BATCH_PARAMETERS / keyFields.length;
+    data.batchSize = Math.max( 1, Math.min( meta.getLookupBatchSize(), maxBatchSize ) );
+    data.batchRows = new ArrayList<Object[]>( data.batchSize );
+
+    StringBuilder sql = new StringBuilder( "SELECT " );
+    for ( int i = 0; i < returnFields.length; i++ ) {
+      sql.append( dbMeta.quoteField( returnFields[ i ] ) ).append( ", " );
+    }
+    for ( int i = 0; i < keyFields.length; i++ ) {
+      if ( i > 0 ) {
+        sql.append( ", " );
+      }
+      sql.append( dbMeta.quoteField( keyFields[ i ] ) );
+    }
+    sql.append( " FROM " ).append( dbMeta.getQuotedSchemaTableCombination(
+      environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta.getTablename() ) ) );
+    sql.append( " WHERE " );
+
+    data.batchParameterMeta = new RowMeta();
+    if ( keyFields.length == 1 ) {
+      sql.append( dbMeta.quoteField( keyFields[ 0 ] ) ).append( " IN ( " );
+      for ( int n = 0; n < data.batchSize; n++ ) {
+        sql.append( n == 0 ? "?" : ", ?" );
+      }
+      sql.append( " )" );
+    } else {
+      for ( int n = 0; n < data.batchSize; n++ ) {
+        sql.append( n == 0 ? "( " : " OR ( " );
+        for ( int i = 0; i < keyFields.length; i++ ) {
+          if ( i > 0 ) {
+            sql.append( " AND " );
+          }
+          sql.append( dbMeta.quoteField( keyFields[ i ] ) ).append( " = ?" );
+        }
+        sql.append( " )" );
+      }
+    }
+    // The same value metadata for every key, the storage type can change on the first rows
+    for ( int n = 0; n < data.batchSize; n++ ) {
+      for ( int i = 0; i < data.lookupMeta.size(); i++ ) {
+        data.batchParameterMeta.addValueMeta( data.lookupMeta.getValueMeta( i ) );
+      }
+    }
+
+    // The first row of a key is the first one in this order, as with the lookup of a single row
+    if ( !Const.isEmpty( meta.getOrderByClause() ) ) {
+      sql.append( " ORDER BY " ).append( meta.getOrderByClause() );
+    }
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookupSQL", data.batchSize, sql ) );
+    }
+    data.batchStatement = data.db.prepareSQL( sql.toString() );
+  }
+
+  /**
+   * Looks up the keys of the rows in the batch that are not in the cache with a single query, then handles the rows
+   * in their original order.
+   *
+   * @return false if the step has to stop
+   */
+  private boolean lookupBatch() throws KettleException {
+    List<Object[]> rows = data.batchRows;
+    data.batchRows = new ArrayList<Object[]>( data.batchSize );
+
+    int nrRows = rows.size();
+    Object[][] lookupRows = new Object[ nrRows ][];
+    Object[][] cached = new Object[ nrRows ][];
+    KettleException[] errors = new KettleException[ nrRows ];
+
+    Map<RowMetaAndData, Object[]> keys = new LinkedHashMap<RowMetaAndData, Object[]>();
+    for ( int i = 0; i < nrRows; i++ ) {
+      try {
+        lookupRows[ i ] = getLookupRow( getInputRowMeta(), rows.get( i ) );
+        if ( meta.isCached() ) {
+          cached[ i ] = data.cache.getRowFromCache( data.lookupMeta, lookupRows[ i ] );
         }
-        if ( checkFeedback( getLinesRead() ) ) {
-          logBasic( "linenr " + getLinesRead() );
+        if ( cached[ i ] == null && !hasNullKey( lookupRows[ i ] ) ) {
+          keys.put( new RowMetaAndData( data.lookupMeta, lookupRows[ i ] ), lookupRows[ i ] );
         }
+      } catch ( KettleException e ) {
+        errors[ i ] = e;
       }
+    }
+
+    KettleException batchError = null;
+    try {
+      data.batchResults = getBatchResults( keys );
     } catch ( KettleException e ) {
-      if ( getStepMeta().isDoingErrorHandling() ) {
-        putError( getInputRowMeta(), r, 1, e.getMessage(), null, "DBLOOKUPD001" );
-      } else {
-        logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
-          + e.getMessage() );
-        setErrors( 1 );
-        stopAll();
-        setOutputDone(); // signal end to receiver(s)
-        return false;
-      }
+      batchError = e;
     }
 
+    try {
+      for ( int i = 0; i < nrRows; i++ ) {
+        Object[] r = rows.get( i );
+        try {
+          if ( errors[ i ] != null ) {
+            throw errors[ i ];
+          }
+          if ( batchError != null && cached[ i ] == null ) {
+            throw batchError;
+          }
+          putLookupRow( r, lookupValues( getInputRowMeta(), r, lookupRows[ i ], cached[ i ] ) );
+        } catch ( KettleException e ) {
+          if ( !handleLookupError( r, e ) ) {
+            return false;
+          }
+        }
+      }
+    } finally {
+      data.batchResults = null;
+    }
     return true;
   }
 
+  /**
+   * @return the values of the keys that were found, null for the ones that were not found
+   */
+  private Map<RowMetaAndData, Object[]> getBatchResults( Map<RowMetaAndData, Object[]> keys )
+    throws KettleException {
+    Map<RowMetaAndData, Object[]> results = new HashMap<RowMetaAndData, Object[]>( keys.size() * 2 );
+    if ( keys.isEmpty() ) {
+      return results;
+    }
+
+    int nrValues = meta.getReturnValueField().length;
+    boolean allMatched = true;
+    for ( Object[] row : queryBatch( keys.values() ) ) {
+      RowMetaInterface rowMeta = data.db.getReturnRowMeta();
+      Object[] keyData = new Object[ data.lookupMeta.size() ];
+      for ( int i = 0; i < keyData.length; i++ ) {
+        ValueMetaInterface keyMeta = data.lookupMeta.getValueMeta( i );
+        ValueMetaInterface returned = rowMeta.getValueMeta( nrValues + i );
+        keyData[ i ] = row[ nrValues + i ];
+        if ( returned.getType() != keyMeta.getType()
+          || returned.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+          keyData[ i ] = keyMeta.convertData( returned, keyData[ i ] );
+        }
+      }
+      RowMetaAndData key = new RowMetaAndData( data.lookupMeta, keyData );
+      if ( !keys.containsKey( key ) ) {
+        // The database matched it to one of our keys in its own way, with a case insensitive collation for example
+        allMatched = false;
+        continue;
+      }
+      Object[] previous = results.get( key );
+      if ( previous == null ) {
+        results.put( key, row );
+      } else if ( meta.isFailingOnMultipleResults() ) {
+        results.put( key, MULTIPLE_RESULTS );
+      }
+    }
+
+    // Only when the database found every row under the key we asked for do we know the others don't exist
+    if ( allMatched ) {
+      for ( RowMetaAndData key : keys.keySet() ) {
+        if ( !results.containsKey( key ) ) {
+          results.put( key, null );
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return the values of a row from the last batch query, looked up on its own if it was not part of the batch
+   */
+  private Object[] getBatchResult( Object[] lookupRow ) throws KettleException {
+    if ( hasNullKey( lookupRow ) ) {
+      return null; // key = NULL is never true
+    }
+    RowMetaAndData key = new RowMetaAndData( data.lookupMeta, lookupRow );
+    Object[] row;
+    if ( data.batchResults.containsKey( key ) ) {
+      row = data.batchResults.get( key );
+    } else {
+      List<Object[]> rows = queryBatch( Collections.singletonList( lookupRow ) );
+      row = rows.isEmpty() ? null : rows.get( 0 );
+      if ( rows.size() > 1 && meta.isFailingOnMultipleResults() ) {
+        row = MULTIPLE_RESULTS;
+      }
+    }
+    if ( row == MULTIPLE_RESULTS ) {
+      throw new KettleDatabaseException( BaseMessages.getString( PKG, "DatabaseLookup.ERROR0005.MultipleResults" ) );
+    }
+    return row == null ? null : Arrays.copyOf( row, meta.getReturnValueField().length );
+  }
+
+  /**
+   * Runs the batch query, the keys are repeated to fill all the parameters.
+   *
+   * @return the rows found: the values followed by the keys
+   */
+  private List<Object[]> queryBatch( Collection<Object[]> keys ) throws KettleException {
+    int nrKeys = data.lookupMeta.size();
+    Object[] parameters = new Object[ data.batchParameterMeta.size() ];
+    int index = 0;
+    for ( Object[] key : keys ) {
+      System.arraycopy( key, 0, parameters, index, nrKeys );
+      index += nrKeys;
+    }
+    for ( ; index < parameters.length; index += nrKeys ) {
+      System.arraycopy( parameters, 0, parameters, index, nrKeys );
+    }
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    ResultSet rs = data.db.openQuery( data.batchStatement, data.batchParameterMeta, parameters );
+    try {
+      for ( Object[] row = data.db.getRow( rs ); row != null; row = data.db.getRow( rs ) ) {
+        rows.add( row );
+      }
+    } finally {
+      try {
+        rs.close();
+      } catch ( SQLException e ) {
+        throw new KettleDatabaseException( e );
+      }
+    }
+    return rows;
+  }
+
+  private static boolean hasNullKey( Object[] lookupRow ) {
+    for ( Object value : lookupRow ) {
+      if ( value == null ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The cache is limited by the number of rows of the step and the memory limit variable, unless all data is loaded.
+   */
+  private DatabaseLookupData.Cache createCache() {
+    if ( meta.isLoadingAllDataInCache() ) {
+      return DefaultCache.newCache( data, 0 );
+    }
+    long maxMemory = Const.toLong( getVariable( Const.KETTLE_DATABASE_LOOKUP_CACHE_MAX_MEMORY ), 0L );
+    boolean lru = DefaultCache.POLICY_LRU.equalsIgnoreCase( getVariable( Const.KETTLE_DATABASE_LOOKUP_CACHE_POLICY ) );
+    return DefaultCache.newCache( data, meta.getCacheSize(), maxMemory * 1024 * 1024, !lru );
+  }
+
   private void loadAllTableDataIntoTheCache() throws KettleException {
     DatabaseMeta dbMeta = meta.getDatabaseMeta();
 
@@ -605,9 +918,27 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
     data = (DatabaseLookupData) sdi;
 
     if ( data.db != null ) {
+      try {
+        data.db.closePreparedStatement( data.batchStatement );
+      } catch ( KettleDatabaseException e ) {
+        logError( e.getMessage() );
+      }
+      data.batchStatement = null;
       data.db.disconnect();
     }
 
+    if ( data.cache instanceof DefaultCache ) {
+      DefaultCache cache = (DefaultCache) data.cache;
+      log.snap( Metrics.METRIC_STEP_CACHE_HITS, cache.getHits() );
+      log.snap( Metrics.METRIC_STEP_CACHE_MISSES, cache.getMisses() );
+      log.snap( Metrics.METRIC_STEP_CACHE_EVICTIONS, cache.getEvictions() );
+      if ( log.isDetailed() ) {
+        long lookups = cache.getHits() + cache.getMisses();
+        logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.CacheStatistics", cache.getHits(), cache
+          .getMisses(), cache.getEvictions(), lookups == 0 ? 0 : cache.getHits() * 100 / lookups, cache.size() ) );
+      }
+    }
+
     // Recover memory immediately, allow in-memory data to be garbage collected
     //
     data.cache = null;
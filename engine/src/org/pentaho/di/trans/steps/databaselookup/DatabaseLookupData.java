@@ -22,6 +22,11 @@
 
 package org.pentaho.di.trans.steps.databaselookup;
 
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -49,6 +54,14 @@ public class DatabaseLookupData extends BaseStepData implements StepDataInterfac
   public int[] conditions;
   public boolean hasDBCondition;
 
+  /** The rows waiting for the lookup of their keys in a single query, null when looking up row by row */
+  public List<Object[]> batchRows;
+  public int batchSize;
+  public PreparedStatement batchStatement;
+  public RowMetaInterface batchParameterMeta;
+  /** The rows found by the last batch query, by key */
+  public Map<RowMetaAndData, Object[]> batchResults;
+
   public DatabaseLookupData() {
     super();
 
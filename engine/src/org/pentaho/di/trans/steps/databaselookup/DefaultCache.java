@@ -23,57 +23,140 @@
 package org.pentaho.di.trans.steps.databaselookup;
 
 import org.pentaho.di.core.RowMetaAndData;
-import org.pentaho.di.core.TimedRow;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.BoundedCache;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.math.BigDecimal;
 import java.util.Date;
 import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.Map;
 
 /**
  * Old code, copied from {@linkplain DatabaseLookup}
  *
+ * When the cache has a maximum number of rows or a maximum memory size, the rows are kept in a {@link BoundedCache}
+ * that evicts the least recently used row or, by default, uses the W-TinyLFU policy to keep the frequently used rows.
+ * Otherwise the rows are kept in insertion order, as searching with other conditions than equality expects.
+ *
  * @author Andrey Khayrutdinov
  */
 public class DefaultCache implements DatabaseLookupData.Cache {
 
+  public static final String POLICY_LRU = "LRU";
+  public static final String POLICY_TINY_LFU = "TINY_LFU";
+
+  /** Rough size of the cache entry, the key object and the hash table entry */
+  private static final long ENTRY_OVERHEAD = 112L;
+
   public static DefaultCache newCache( DatabaseLookupData data, int cacheSize ) {
-    if ( cacheSize > 0 ) {
-      cacheSize = (int) ( cacheSize * 1.5 );
-    } else {
-      cacheSize = 16;
-    }
-    return new DefaultCache( data, cacheSize );
+    return newCache( data, cacheSize, 0L, true );
+  }
+
+  /**
+   * @param cacheSize
+   *          the maximum number of rows, 0 for no limit
+   * @param maxMemory
+   *          the maximum estimated size of the rows in bytes, 0 for no limit
+   * @param frequencyAdmission
+   *          true to evict with W-TinyLFU, false for LRU
+   */
+  public static DefaultCache newCache( DatabaseLookupData data, int cacheSize, long maxMemory,
+                                       boolean frequencyAdmission ) {
+    return new DefaultCache( data, cacheSize, maxMemory, frequencyAdmission );
   }
 
 
   private final DatabaseLookupData data;
-  private final LinkedHashMap<RowMetaAndData, TimedRow> map;
+  /** The rows when there is no limit, in insertion order */
+  private final LinkedHashMap<RowMetaAndData, Object[]> map;
+  /** The rows when there is a limit */
+  private final BoundedCache<RowMetaAndData, Object[]> bounded;
 
-  DefaultCache( DatabaseLookupData data, int capacity ) {
+  private long hits;
+  private long misses;
+
+  DefaultCache( DatabaseLookupData data, int cacheSize, long maxMemory, boolean frequencyAdmission ) {
     this.data = data;
-    map = new LinkedHashMap<>( capacity );
+    if ( cacheSize > 0 || maxMemory > 0 ) {
+      map = null;
+      bounded =
+        new BoundedCache<RowMetaAndData, Object[]>( cacheSize, maxMemory,
+          new BoundedCache.Weigher<RowMetaAndData, Object[]>() {
+            @Override
+            public long weigh( RowMetaAndData key, Object[] value ) {
+              return ENTRY_OVERHEAD + estimateSize( key.getData() ) + estimateSize( value );
+            }
+          }, frequencyAdmission );
+    } else {
+      map = new LinkedHashMap<>( 16 );
+      bounded = null;
+    }
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getEvictions() {
+    return bounded == null ? 0L : bounded.getEvictions();
+  }
+
+  public int size() {
+    return bounded == null ? map.size() : bounded.size();
+  }
+
+  /**
+   * @return a rough estimate of the number of bytes taken by the values of a row
+   */
+  static long estimateSize( Object[] row ) {
+    if ( row == null ) {
+      return 0L;
+    }
+    long size = 16L + 8L * row.length;
+    for ( Object value : row ) {
+      if ( value == null ) {
+        continue;
+      } else if ( value instanceof String ) {
+        size += 40L + 2L * ( (String) value ).length();
+      } else if ( value instanceof byte[] ) {
+        size += 16L + ( (byte[]) value ).length;
+      } else if ( value instanceof BigDecimal ) {
+        size += 64L;
+      } else if ( value instanceof Date ) {
+        size += 32L;
+      } else {
+        size += 24L;
+      }
+    }
+    return size;
   }
 
   @Override
   public Object[] getRowFromCache( RowMetaInterface lookupMeta, Object[] lookupRow ) throws KettleException {
     if ( data.allEquals ) {
       // only do the map lookup when all equals otherwise conditions >, <, <> will give wrong results
-      TimedRow timedRow = map.get( new RowMetaAndData( data.lookupMeta, lookupRow ) );
-      if ( timedRow != null ) {
-        return timedRow.getRow();
+      RowMetaAndData key = new RowMetaAndData( data.lookupMeta, lookupRow );
+      Object[] row = bounded == null ? map.get( key ) : bounded.get( key );
+      if ( row != null ) {
+        hits++;
+        return row;
       }
+      misses++;
     } else { // special handling of conditions <,>, <> etc.
-      if ( !data.hasDBCondition ) { // e.g. LIKE not handled by this routine, yet
+      // Rows are only added to a bounded cache when all conditions are equalities, so map is all there is to search
+      if ( !data.hasDBCondition && map != null ) { // e.g. LIKE not handled by this routine, yet
         // TODO: find an alternative way to look up the data based on the condition.
         // Not all conditions are "=" so we are going to have to evaluate row by row
         // A sorted list or index might be a good solution here...
         //
-        for ( RowMetaAndData key : map.keySet() ) {
+        for ( Map.Entry<RowMetaAndData, Object[]> entry : map.entrySet() ) {
+          RowMetaAndData key = entry.getKey();
           // Now verify that the key is matching our conditions...
           //
           boolean match = true;
@@ -130,12 +213,11 @@ public class DefaultCache implements DatabaseLookupData.Cache {
             lookupIndex++;
           }
           if ( match ) {
-            TimedRow timedRow = map.get( key );
-            if ( timedRow != null ) {
-              return timedRow.getRow();
-            }
+            hits++;
+            return entry.getValue();
           }
         }
+        misses++;
       }
     }
     return null;
@@ -155,43 +237,11 @@ public class DefaultCache implements DatabaseLookupData.Cache {
     // if (!data.look.containsKey(rowMetaAndData)) {
     // data.look.put(rowMetaAndData, new TimedRow(add));
     // }
-    map.put( rowMetaAndData, new TimedRow( add ) );
-
-    // See if we have to limit the cache_size.
-    // Sample 10% of the rows in the cache.
-    // Remove everything below the second lowest date.
-    // That should on average remove more than 10% of the entries
-    // It's not exact science, but it will be faster than the old algorithm
-
-    // DEinspanjer 2009-02-01: If you had previously set a cache size and then turned on load all, this
-    // method would throw out entries if the previous cache size wasn't big enough.
-    if ( !meta.isLoadingAllDataInCache() && meta.getCacheSize() > 0 && map.size() > meta.getCacheSize() ) {
-      List<RowMetaAndData> keys = new ArrayList<RowMetaAndData>( map.keySet() );
-      List<Date> samples = new ArrayList<Date>();
-      int incr = keys.size() / 10;
-      if ( incr == 0 ) {
-        incr = 1;
-      }
-      for ( int k = 0; k < keys.size(); k += incr ) {
-        RowMetaAndData key = keys.get( k );
-        TimedRow timedRow = map.get( key );
-        samples.add( timedRow.getLogDate() );
-      }
-
-      Collections.sort( samples );
-
-      if ( samples.size() > 1 ) {
-        Date smallest = samples.get( 1 );
-
-        // Everything below the smallest date goes away...
-        for ( RowMetaAndData key : keys ) {
-          TimedRow timedRow = map.get( key );
-
-          if ( timedRow.getLogDate().compareTo( smallest ) < 0 ) {
-            map.remove( key );
-          }
-        }
-      }
+    if ( bounded == null ) {
+      map.put( rowMetaAndData, add );
+    } else {
+      // The bounded cache evicts rows as needed
+      bounded.put( rowMetaAndData, add );
     }
   }
 }
@@ -39,8 +39,10 @@ import org.pentaho.di.core.row.ValueMetaInterface;
  * possible, we'll use the same row as we get from the database.
  *
  * @author matt
- *
+ * @deprecated Dimension lookup/update keeps the pre-loaded dimension in a {@link DimensionVersionCache}, which needs no
+ *             sorting and can be updated in place.
  */
+@Deprecated
 public class DimensionCache implements Comparator<Object[]> {
   private RowMetaInterface rowMeta;
   private List<Object[]> rowCache;
@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.dimensionlookup;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -39,11 +40,14 @@ import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashMap;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
 import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -176,7 +180,9 @@ public class DimensionLookup extends BaseStep implements StepInterface {
 
       }
 
-      if ( !meta.isUpdate() && meta.isPreloadingCache() ) {
+      determineTechKeyCreation();
+
+      if ( isPreloadingCache() ) {
         preloadCache();
       } else {
         // Caching...
@@ -205,8 +211,6 @@ public class DimensionLookup extends BaseStep implements StepInterface {
       //
       data.valueDateNow = determineDimensionUpdatedDate( r );
 
-      determineTechKeyCreation();
-
       data.notFoundTk = new Long( meta.getDatabaseMeta().getNotFoundTK( isAutoIncrement() ) );
       // if (meta.getKeyRename()!=null && meta.getKeyRename().length()>0) data.notFoundTk.setName(meta.getKeyRename());
 
@@ -266,8 +270,27 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * The whole dimension is only cached when the step can keep it up to date: it needs the technical key of the rows
+   * it inserts.
+   */
+  private boolean isPreloadingCache() {
+    if ( !meta.isPreloadingCache() ) {
+      return false;
+    }
+    if ( meta.isUpdate() && isAutoIncrement() && !meta.getDatabaseMeta().supportsAutoGeneratedKeys() ) {
+      logBasic( BaseMessages.getString( PKG, "DimensionLookup.Log.PreloadCacheNeedsGeneratedKeys" ) );
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Pre-load the cache by reading the whole dimension table from disk...
+   * <p>
+   * All versions of all natural keys are kept in a {@link DimensionVersionCache}. Lookups never go to the database
+   * anymore: a key that isn't in the cache isn't in the dimension either. When updating the dimension, every insert
+   * and update is applied to the cache as well.
    *
    * @throws KettleException
    *           in case there is a database or cache problem.
@@ -276,61 +299,127 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     try {
       DatabaseMeta databaseMeta = meta.getDatabaseMeta();
 
-      // tk, version, from, to, natural keys, retrieval fields...
+      // tk, version, retrieval fields, from, to: the layout of a lookup. Then the natural keys.
       //
-      String sql = "SELECT " + databaseMeta.quoteField( meta.getKeyField() );
-      // sql+=", "+databaseMeta.quoteField(meta.getVersionField());
+      String sql = "SELECT " + getReturnFieldsSQL( true );
       for ( int i = 0; i < meta.getKeyLookup().length; i++ ) {
-        sql += ", " + meta.getKeyLookup()[i]; // the natural key field in the table
-      }
-      for ( int i = 0; i < meta.getFieldLookup().length; i++ ) {
-        sql += ", " + meta.getFieldLookup()[i]; // the extra fields to retrieve...
+        sql += ", " + databaseMeta.quoteField( meta.getKeyLookup()[i] ); // the natural key field in the table
       }
-      sql += ", " + databaseMeta.quoteField( meta.getDateFrom() ); // extra info in cache
-      sql += ", " + databaseMeta.quoteField( meta.getDateTo() ); // extra info in cache
-
       sql += " FROM " + data.schemaTable;
       logDetailed( "Pre-loading cache by reading from database with: " + Const.CR + sql + Const.CR );
 
-      List<Object[]> rows = data.db.getRows( sql, -1 );
-      RowMetaInterface rowMeta = data.db.getReturnRowMeta();
+      ResultSet rs = data.db.openQuery( sql );
+      try {
+        RowMetaInterface rowMeta = data.db.getReturnRowMeta();
+        int nrKeys = meta.getKeyLookup().length;
+        int nrFields = rowMeta.size() - nrKeys;
 
-      data.preloadKeyIndexes = new int[meta.getKeyLookup().length];
-      for ( int i = 0; i < data.preloadKeyIndexes.length; i++ ) {
-        data.preloadKeyIndexes[i] = rowMeta.indexOfValue( meta.getKeyLookup()[i] ); // the field in the table
-      }
-      data.preloadFromDateIndex = rowMeta.indexOfValue( meta.getDateFrom() );
-      data.preloadToDateIndex = rowMeta.indexOfValue( meta.getDateTo() );
+        // The technical key and the version are stored as integers, the date range as dates
+        //
+        RowMetaInterface cacheRowMeta = new RowMeta();
+        cacheRowMeta.addValueMeta( new ValueMetaInteger( rowMeta.getValueMeta( 0 ).getName() ) );
+        cacheRowMeta.addValueMeta( new ValueMetaInteger( rowMeta.getValueMeta( 1 ).getName() ) );
+        for ( int i = 2; i < nrFields - 2; i++ ) {
+          cacheRowMeta.addValueMeta( rowMeta.getValueMeta( i ) );
+        }
+        cacheRowMeta.addValueMeta( new ValueMetaDate( rowMeta.getValueMeta( nrFields - 2 ).getName() ) );
+        cacheRowMeta.addValueMeta( new ValueMetaDate( rowMeta.getValueMeta( nrFields - 1 ).getName() ) );
 
-      data.preloadCache =
-        new DimensionCache( rowMeta, data.preloadKeyIndexes, data.preloadFromDateIndex, data.preloadToDateIndex );
-      data.preloadCache.setRowCache( rows );
+        RowMetaInterface keyRowMeta = new RowMeta();
+        for ( int i = 0; i < nrKeys; i++ ) {
+          keyRowMeta.addValueMeta( rowMeta.getValueMeta( nrFields + i ) );
+        }
 
-      logDetailed( "Sorting the cache rows..." );
-      data.preloadCache.sortRows();
-      logDetailed( "Sorting of cached rows finished." );
+        data.preloadCache = new DimensionVersionCache( keyRowMeta, cacheRowMeta );
 
-      // Also see what indexes to take to populate the lookup row...
-      // We only ever compare indexes and the lookup date in the cache, the rest is not needed...
-      //
-      data.preloadIndexes = new ArrayList<Integer>();
-      for ( int i = 0; i < meta.getKeyStream().length; i++ ) {
-        int index = data.inputRowMeta.indexOfValue( meta.getKeyStream()[i] );
-        if ( index < 0 ) {
-          // Just to be safe...
-          //
-          throw new KettleStepException( BaseMessages.getString(
-            PKG, "DimensionLookup.Exception.KeyFieldNotFound", meta.getFieldStream()[i] ) );
+        Object[] row;
+        while ( ( row = data.db.getRow( rs ) ) != null ) {
+          Object[] keyRow = new Object[nrKeys];
+          System.arraycopy( row, nrFields, keyRow, 0, nrKeys );
+          Object[] fieldValues = new Object[nrFields - 4];
+          System.arraycopy( row, 2, fieldValues, 0, fieldValues.length );
+
+          Long versionNr = rowMeta.getInteger( row, 1 );
+          data.preloadCache.addVersion( data.preloadCache.getKey( keyRow ), rowMeta.getInteger( row, 0 ),
+            versionNr == null ? 0L : versionNr, rowMeta.getDate( row, nrFields - 2 ), rowMeta.getDate(
+              row, nrFields - 1 ), fieldValues );
         }
-        data.preloadIndexes.add( index );
+      } finally {
+        data.db.closeQuery( rs );
       }
+      data.returnRowMeta = data.preloadCache.getRowMeta();
 
-      // This is all for now...
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "DimensionLookup.Log.CachePreloaded", data.preloadCache
+          .getNrVersions(), data.preloadCache.getNrKeys(), data.preloadCache.getMemoryUsage() / 1024 ) );
+      }
     } catch ( Exception e ) {
       throw new KettleException( "Error encountered during cache pre-load", e );
     }
   }
 
+  /**
+   * @return the natural key of a row in the types of the pre-loaded cache
+   */
+  private Object[] getPreloadCacheKeyRow( RowMetaInterface rowMeta, Object[] row ) throws KettleValueException {
+    RowMetaInterface keyRowMeta = data.preloadCache.getKeyRowMeta();
+    Object[] keyRow = new Object[keyRowMeta.size()];
+    for ( int i = 0; i < keyRow.length; i++ ) {
+      keyRow[i] = convertToCacheType( keyRowMeta.getValueMeta( i ), rowMeta.getValueMeta( data.keynrs[i] ),
+        row[data.keynrs[i]] );
+    }
+    return keyRow;
+  }
+
+  /**
+   * @return the values of the retrieval fields of a row in the types of the pre-loaded cache
+   */
+  private Object[] getPreloadCacheValues( RowMetaInterface rowMeta, Object[] row ) throws KettleValueException {
+    RowMetaInterface cacheRowMeta = data.preloadCache.getRowMeta();
+    Object[] fieldValues = new Object[cacheRowMeta.size() - 4];
+    int index = 0;
+    for ( int i = 0; i < data.fieldnrs.length; i++ ) {
+      // The fields that are retrieved in a lookup, see getReturnFieldsSQL()
+      //
+      if ( data.fieldnrs[i] >= 0 && !Const.isEmpty( meta.getFieldLookup()[i] ) ) {
+        fieldValues[index] = convertToCacheType( cacheRowMeta.getValueMeta( index + 2 ), rowMeta
+          .getValueMeta( data.fieldnrs[i] ), row[data.fieldnrs[i]] );
+        index++;
+      }
+    }
+    return fieldValues;
+  }
+
+  private Object convertToCacheType( ValueMetaInterface cacheValueMeta, ValueMetaInterface valueMeta, Object value )
+    throws KettleValueException {
+    if ( cacheValueMeta.getType() == valueMeta.getType() ) {
+      return value;
+    }
+    return cacheValueMeta.convertData( valueMeta, value );
+  }
+
+  /**
+   * Apply a punch through update to all cached versions of the natural key of a row.
+   */
+  private void punchThroughPreloadCache( RowMetaInterface rowMeta, Object[] row ) throws KettleValueException {
+    Object[] newValues = getPreloadCacheValues( rowMeta, row );
+    byte[] key = data.preloadCache.getKey( getPreloadCacheKeyRow( rowMeta, row ) );
+    for ( int version = data.preloadCache.getFirstVersion( key ); version >= 0; version =
+      data.preloadCache.getNextVersion( version ) ) {
+      Object[] fieldValues = data.preloadCache.getValues( version );
+      int index = 0;
+      for ( int i = 0; i < data.fieldnrs.length; i++ ) {
+        if ( data.fieldnrs[i] >= 0 && !Const.isEmpty( meta.getFieldLookup()[i] ) ) {
+          if ( meta.getFieldUpdate()[i] == DimensionLookupMeta.TYPE_UPDATE_DIM_PUNCHTHROUGH ) {
+            fieldValues[index] = newValues[index];
+          }
+          index++;
+        }
+      }
+      data.preloadCache.setValues( version, fieldValues );
+    }
+  }
+
   private synchronized Object[] lookupValues( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
     Object[] outputRow = new Object[data.outputRowMeta.size()];
 
@@ -338,6 +427,7 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     Object[] lookupRow;
 
     Object[] returnRow = null;
+    int preloadVersion = -1;
 
     Long technicalKey;
     Long valueVersion;
@@ -351,55 +441,16 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     //
     valueDate = determineDimensionUpdatedDate( row );
 
-    if ( !meta.isUpdate() && meta.isPreloadingCache() ) {
+    if ( data.preloadCache != null ) {
       // Obtain a result row from the pre-load cache...
+      // It holds the whole dimension: what isn't found there doesn't exist.
       //
-      // Create a row to compare with
-      //
-      RowMetaInterface preloadRowMeta = data.preloadCache.getRowMeta();
-
-      // In this case it's all the same. (simple)
-      //
-      data.returnRowMeta = data.preloadCache.getRowMeta();
-      lookupRowMeta = preloadRowMeta;
-      lookupRow = new Object[preloadRowMeta.size()];
-
-      // Assemble the lookup row, convert data if needed...
-      //
-      for ( int i = 0; i < data.preloadIndexes.size(); i++ ) {
-        int from = data.preloadIndexes.get( i ); // Input row index
-        int to = data.preloadCache.getKeyIndexes()[i]; // Lookup row index
-
-        // From data type...
-        //
-        ValueMetaInterface fromValueMeta = rowMeta.getValueMeta( from );
-
-        // to date type...
-        //
-        ValueMetaInterface toValueMeta = data.preloadCache.getRowMeta().getValueMeta( to );
-
-        // From value:
-        //
-        Object fromData = row[from];
-
-        // To value:
-        //
-        Object toData = toValueMeta.convertData( fromValueMeta, fromData );
-
-        // Set the key in the row...
-        //
-        lookupRow[to] = toData;
-      }
-
-      // Also set the lookup date on the "end of date range" (toDate) position
-      //
-      lookupRow[data.preloadFromDateIndex] = valueDate;
+      lookupRowMeta = data.preloadCache.getKeyRowMeta();
+      lookupRow = getPreloadCacheKeyRow( rowMeta, row );
 
-      // Look up the row in the pre-load cache...
-      //
-      int index = data.preloadCache.lookupRow( lookupRow );
-      if ( index >= 0 ) {
-        returnRow = data.preloadCache.getRow( index );
+      preloadVersion = data.preloadCache.lookup( data.preloadCache.getKey( lookupRow ), valueDate );
+      if ( preloadVersion >= 0 ) {
+        returnRow = data.preloadCache.getRow( preloadVersion );
       } else {
         returnRow = null; // Nothing found!
       }
@@ -693,7 +744,9 @@ public class DimensionLookup extends BaseStep implements StepInterface {
             incrementLinesUpdated();
 
             // We need to capture this change in the cache as well...
-            if ( meta.getCacheSize() >= 0 ) {
+            if ( data.preloadCache != null ) {
+              data.preloadCache.setValues( preloadVersion, getPreloadCacheValues( rowMeta, row ) );
+            } else if ( meta.getCacheSize() >= 0 ) {
               Object[] values =
                 getCacheValues( rowMeta, row, technicalKey, valueVersion, valueDateFrom, valueDateTo );
               addToCache( lookupRow, values );
@@ -744,7 +797,8 @@ public class DimensionLookup extends BaseStep implements StepInterface {
           incrementLinesOutput();
 
           // We need to capture this change in the cache as well...
-          if ( meta.getCacheSize() >= 0 ) {
+          // The pre-loaded cache is kept up to date by dimInsert()
+          if ( data.preloadCache == null && meta.getCacheSize() >= 0 ) {
             Object[] values =
               getCacheValues( rowMeta, row, technicalKey, valueNewVersion, valueDateFrom, valueDateTo );
             addToCache( lookupRow, values );
@@ -760,6 +814,10 @@ public class DimensionLookup extends BaseStep implements StepInterface {
            */
           dimPunchThrough( rowMeta, row );
           incrementLinesUpdated();
+
+          if ( data.preloadCache != null ) {
+            punchThroughPreloadCache( rowMeta, row );
+          }
         }
 
         returnRow = new Object[data.returnRowMeta.size()];
@@ -825,29 +883,13 @@ public class DimensionLookup extends BaseStep implements StepInterface {
   }
 
   /**
-   * table: dimension table keys[]: which dim-fields do we use to look up key? retval: name of the key to return
-   * datefield: do we have a datefield? datefrom, dateto: date-range, if any.
+   * @return the fields returned by a lookup: technical key, version, retrieval fields and optionally the date range
    */
-  private void setDimLookup( RowMetaInterface rowMeta ) throws KettleDatabaseException {
+  private String getReturnFieldsSQL( boolean dateRange ) {
     DatabaseMeta databaseMeta = meta.getDatabaseMeta();
 
-    data.lookupRowMeta = new RowMeta();
-
-    /*
-     * DEFAULT, SYSDATE, START_TRANS, COLUMN_VALUE :
-     *
-     * SELECT <tk>, <version>, ... , FROM <table> WHERE key1=keys[1] AND key2=keys[2] ... AND <datefrom> <= <datefield>
-     * AND <dateto> > <datefield> ;
-     *
-     * NULL :
-     *
-     * SELECT <tk>, <version>, ... , FROM <table> WHERE key1=keys[1] AND key2=keys[2] ... AND ( <datefrom> is null OR
-     * <datefrom> <= <datefield> ) AND <dateto> >= <datefield>
-     */
     String sql =
-      "SELECT "
-        + databaseMeta.quoteField( meta.getKeyField() ) + ", "
-        + databaseMeta.quoteField( meta.getVersionField() );
+      databaseMeta.quoteField( meta.getKeyField() ) + ", " + databaseMeta.quoteField( meta.getVersionField() );
 
     if ( !Const.isEmpty( meta.getFieldLookup() ) ) {
       for ( int i = 0; i < meta.getFieldLookup().length; i++ ) {
@@ -863,11 +905,34 @@ public class DimensionLookup extends BaseStep implements StepInterface {
         }
       }
     }
-    if ( meta.getCacheSize() >= 0 ) {
+    if ( dateRange ) {
       sql +=
         ", " + databaseMeta.quoteField( meta.getDateFrom() ) + ", " + databaseMeta.quoteField( meta.getDateTo() );
     }
+    return sql;
+  }
 
+  /**
+   * table: dimension table keys[]: which dim-fields do we use to look up key? retval: name of the key to return
+   * datefield: do we have a datefield? datefrom, dateto: date-range, if any.
+   */
+  private void setDimLookup( RowMetaInterface rowMeta ) throws KettleDatabaseException {
+    DatabaseMeta databaseMeta = meta.getDatabaseMeta();
+
+    data.lookupRowMeta = new RowMeta();
+
+    /*
+     * DEFAULT, SYSDATE, START_TRANS, COLUMN_VALUE :
+     *
+     * SELECT <tk>, <version>, ... , FROM <table> WHERE key1=keys[1] AND key2=keys[2] ... AND <datefrom> <= <datefield>
+     * AND <dateto> > <datefield> ;
+     *
+     * NULL :
+     *
+     * SELECT <tk>, <version>, ... , FROM <table> WHERE key1=keys[1] AND key2=keys[2] ... AND ( <datefrom> is null OR
+     * <datefrom> <= <datefield> ) AND <dateto> >= <datefield>
+     */
+    String sql = "SELECT " + getReturnFieldsSQL( meta.getCacheSize() >= 0 );
     sql += " FROM " + data.schemaTable + " WHERE ";
 
     for ( int i = 0; i < meta.getKeyLookup().length; i++ ) {
@@ -1112,6 +1177,7 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     // on if newEntry == true
     insertRow[insertIndex++] = versionNr;
 
+    int dateFromIndex = insertIndex;
     switch ( data.startDateChoice ) {
       case DimensionLookupMeta.START_DATE_ALTERNATIVE_NONE:
         insertRow[insertIndex++] = dateFrom;
@@ -1260,6 +1326,22 @@ public class DimensionLookup extends BaseStep implements StepInterface {
       if ( isDebug() ) {
         logDebug( "Row updated!" );
       }
+
+      if ( data.preloadCache != null ) {
+        int previousVersion =
+          data.preloadCache.findVersion( data.preloadCache.getKey( getPreloadCacheKeyRow( inputRowMeta, row ) ),
+            versionNr - 1 );
+        if ( previousVersion >= 0 ) {
+          data.preloadCache.setDateTo( previousVersion, (Date) updateRow[0] );
+        }
+      }
+    }
+
+    // Keep the pre-loaded cache in line with the dimension
+    //
+    if ( data.preloadCache != null ) {
+      data.preloadCache.addVersion( data.preloadCache.getKey( getPreloadCacheKeyRow( inputRowMeta, row ) ),
+        technicalKey, versionNr, (Date) insertRow[dateFromIndex], dateTo, getPreloadCacheValues( inputRowMeta, row ) );
     }
 
     return technicalKey;
@@ -1735,6 +1817,16 @@ public class DimensionLookup extends BaseStep implements StepInterface {
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (DimensionLookupMeta) smi;
     data = (DimensionLookupData) sdi;
+    if ( data.preloadCache != null ) {
+      log.snap( Metrics.METRIC_STEP_CACHE_HITS, data.preloadCache.getHits() );
+      log.snap( Metrics.METRIC_STEP_CACHE_MISSES, data.preloadCache.getMisses() );
+      log.snap( Metrics.METRIC_STEP_CACHE_MEMORY, data.preloadCache.getMemoryUsage() );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "DimensionLookup.Log.CacheStatistics", data.preloadCache.getHits(),
+          data.preloadCache.getMisses(), data.preloadCache.getNrVersions(), data.preloadCache.getNrKeys(),
+          data.preloadCache.getMemoryUsage() / 1024 ) );
+      }
+    }
     if ( data.db != null ) {
       try {
         if ( !data.db.isAutoCommit() ) {
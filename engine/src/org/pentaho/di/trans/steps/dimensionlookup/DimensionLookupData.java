@@ -82,14 +82,10 @@ public class DimensionLookupData extends BaseStepData implements StepDataInterfa
 
   public int startDateFieldIndex;
 
-  public int[] preloadKeyIndexes;
-
-  public int preloadFromDateIndex;
-  public int preloadToDateIndex;
-
-  public DimensionCache preloadCache;
-
-  public List<Integer> preloadIndexes;
+  /**
+   * All versions of the dimension, null unless the cache is pre-loaded
+   */
+  public DimensionVersionCache preloadCache;
 
   public List<Integer> lazyList;
 
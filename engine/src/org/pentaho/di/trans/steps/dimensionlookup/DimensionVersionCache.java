@@ -0,0 +1,280 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.dimensionlookup;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.pentaho.di.core.hash.ByteArrayLongHashCache;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Cache of all the versions of a slowly changing dimension, indexed by natural key. The serialized natural key leads
+ * to the first version of the key, the versions of a key are chained in the order of the start of their date range.<br>
+ * <br>
+ * The technical key, version number and date range of a version are kept in primitive arrays. The other fields of the
+ * dimension are serialized, one byte array per version. A version is added or changed in place, nothing needs to be
+ * sorted. A null start of the date range means -infinity, a null end means +infinity.<br>
+ * <br>
+ * The rows of the cache have the layout of a dimension lookup: technical key, version, the other fields, start and end
+ * of the date range.
+ */
+public class DimensionVersionCache {
+
+  private static final int STANDARD_CAPACITY = 1024;
+  private static final long NO_VERSION = -1L;
+
+  private final RowMetaInterface keyRowMeta;
+  private final RowMetaInterface rowMeta;
+  private final RowMetaInterface valueRowMeta;
+
+  /** The first version of every natural key */
+  private final ByteArrayLongHashCache keyIndex;
+
+  private long[] technicalKeys;
+  private long[] versionNrs;
+  private long[] datesFrom;
+  private long[] datesTo;
+  /** The next version of the same natural key or -1 */
+  private int[] nextVersions;
+  private byte[][] values;
+  private int nrVersions;
+
+  private long keyBytes;
+  private long valueBytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Create a new cache.
+   *
+   * @param keyRowMeta
+   *          the natural key fields
+   * @param rowMeta
+   *          the technical key, the version, the other fields and the start and end of the date range
+   */
+  public DimensionVersionCache( RowMetaInterface keyRowMeta, RowMetaInterface rowMeta ) {
+    this.keyRowMeta = keyRowMeta;
+    this.rowMeta = rowMeta;
+    this.valueRowMeta = new RowMeta();
+    for ( int i = 2; i < rowMeta.size() - 2; i++ ) {
+      valueRowMeta.addValueMeta( rowMeta.getValueMeta( i ) );
+    }
+    keyIndex = new ByteArrayLongHashCache( 0 );
+    technicalKeys = new long[STANDARD_CAPACITY];
+    versionNrs = new long[STANDARD_CAPACITY];
+    datesFrom = new long[STANDARD_CAPACITY];
+    datesTo = new long[STANDARD_CAPACITY];
+    nextVersions = new int[STANDARD_CAPACITY];
+    values = new byte[STANDARD_CAPACITY][];
+  }
+
+  /**
+   * @return the serialized natural key, the values need to be of the types of the key row metadata
+   */
+  public byte[] getKey( Object[] keyRow ) {
+    return RowMeta.extractData( keyRowMeta, keyRow );
+  }
+
+  /**
+   * Look up the version of a natural key that is valid on a date.
+   *
+   * @return the version or -1 if the key has no version on that date
+   */
+  public int lookup( byte[] key, Date date ) {
+    long time = date.getTime();
+    for ( int version = getFirstVersion( key ); version >= 0; version = nextVersions[version] ) {
+      if ( datesFrom[version] > time ) {
+        break;
+      }
+      if ( time < datesTo[version] ) {
+        hits++;
+        return version;
+      }
+    }
+    misses++;
+    return -1;
+  }
+
+  /**
+   * @return the version of a natural key with a version number or -1 if there is no such version
+   */
+  public int findVersion( byte[] key, long versionNr ) {
+    for ( int version = getFirstVersion( key ); version >= 0; version = nextVersions[version] ) {
+      if ( versionNrs[version] == versionNr ) {
+        return version;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the version of the natural key with the earliest start date or -1 if the key is not in the cache
+   */
+  public int getFirstVersion( byte[] key ) {
+    return (int) keyIndex.get( key, NO_VERSION );
+  }
+
+  /**
+   * @return the next version of the same natural key or -1
+   */
+  public int getNextVersion( int version ) {
+    return nextVersions[version];
+  }
+
+  /**
+   * Add a version of a natural key.
+   *
+   * @param fieldValues
+   *          the values of the other fields, of the types in the row metadata
+   * @return the new version
+   */
+  public int addVersion( byte[] key, long technicalKey, long versionNr, Date dateFrom, Date dateTo,
+    Object[] fieldValues ) {
+    if ( nrVersions == technicalKeys.length ) {
+      grow();
+    }
+    int version = nrVersions++;
+    technicalKeys[version] = technicalKey;
+    versionNrs[version] = versionNr;
+    datesFrom[version] = dateFrom == null ? Long.MIN_VALUE : dateFrom.getTime();
+    datesTo[version] = dateTo == null ? Long.MAX_VALUE : dateTo.getTime();
+    setValues( version, fieldValues );
+
+    // Keep the chain in the order of the start dates
+    //
+    int first = getFirstVersion( key );
+    if ( first < 0 ) {
+      keyBytes += key.length;
+    }
+    if ( first < 0 || datesFrom[first] > datesFrom[version] ) {
+      nextVersions[version] = first;
+      keyIndex.put( key, version );
+    } else {
+      int previous = first;
+      while ( nextVersions[previous] >= 0 && datesFrom[nextVersions[previous]] <= datesFrom[version] ) {
+        previous = nextVersions[previous];
+      }
+      nextVersions[version] = nextVersions[previous];
+      nextVersions[previous] = version;
+    }
+    return version;
+  }
+
+  public long getTechnicalKey( int version ) {
+    return technicalKeys[version];
+  }
+
+  public long getVersionNr( int version ) {
+    return versionNrs[version];
+  }
+
+  /**
+   * Change the end of the date range of a version, for instance when a new version of the key starts.
+   */
+  public void setDateTo( int version, Date dateTo ) {
+    datesTo[version] = dateTo == null ? Long.MAX_VALUE : dateTo.getTime();
+  }
+
+  /**
+   * @return the values of the other fields of a version
+   */
+  public Object[] getValues( int version ) {
+    if ( values[version] == null ) {
+      return new Object[valueRowMeta.size()];
+    }
+    return RowMeta.getRow( valueRowMeta, values[version] );
+  }
+
+  public void setValues( int version, Object[] fieldValues ) {
+    if ( values[version] != null ) {
+      valueBytes -= values[version].length;
+    }
+    if ( valueRowMeta.isEmpty() ) {
+      values[version] = null;
+    } else {
+      values[version] = RowMeta.extractData( valueRowMeta, fieldValues );
+      valueBytes += values[version].length;
+    }
+  }
+
+  /**
+   * @return the version as a row of the row metadata
+   */
+  public Object[] getRow( int version ) {
+    Object[] row = new Object[rowMeta.size()];
+    row[0] = technicalKeys[version];
+    row[1] = versionNrs[version];
+    Object[] fieldValues = getValues( version );
+    System.arraycopy( fieldValues, 0, row, 2, fieldValues.length );
+    row[row.length - 2] = datesFrom[version] == Long.MIN_VALUE ? null : new Date( datesFrom[version] );
+    row[row.length - 1] = datesTo[version] == Long.MAX_VALUE ? null : new Date( datesTo[version] );
+    return row;
+  }
+
+  private void grow() {
+    int capacity = technicalKeys.length * 2;
+    technicalKeys = Arrays.copyOf( technicalKeys, capacity );
+    versionNrs = Arrays.copyOf( versionNrs, capacity );
+    datesFrom = Arrays.copyOf( datesFrom, capacity );
+    datesTo = Arrays.copyOf( datesTo, capacity );
+    nextVersions = Arrays.copyOf( nextVersions, capacity );
+    values = Arrays.copyOf( values, capacity );
+  }
+
+  public RowMetaInterface getKeyRowMeta() {
+    return keyRowMeta;
+  }
+
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  public int getNrKeys() {
+    return keyIndex.getSize();
+  }
+
+  public int getNrVersions() {
+    return nrVersions;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return an estimate of the memory used by the cache in bytes: the arrays, the keys and the serialized values
+   */
+  public long getMemoryUsage() {
+    // 4 longs, an int and a reference for every version, 16 bytes of object header for every byte array
+    long versions = technicalKeys.length * 44L + ( valueRowMeta.isEmpty() ? 0 : nrVersions * 16L );
+    // The key index: about 30 bytes per key
+    long keys = keyIndex.getSize() * 46L;
+    return versions + keys + keyBytes + valueBytes;
+  }
+}
@@ -22,11 +22,19 @@
 
 package org.pentaho.di.trans.steps.filterrows;
 
+import java.util.Arrays;
 import java.util.List;
 
+import org.pentaho.di.core.Condition;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.ColumnVector;
+import org.pentaho.di.core.row.batch.DoubleColumnVector;
+import org.pentaho.di.core.row.batch.LongColumnVector;
+import org.pentaho.di.core.row.batch.RowBatch;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -52,11 +60,12 @@ public class FilterRows extends BaseStep implements StepInterface {
   public FilterRows( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
     Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+    setAcceptingRowBatches( true );
   }
 
   private synchronized boolean keepRow( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
     try {
-      return meta.getCondition().evaluate( rowMeta, row );
+      return data.condition.evaluate( row );
     } catch ( Exception e ) {
       String message =
         BaseMessages.getString( PKG, "FilterRows.Exception.UnexpectedErrorFoundInEvaluationFuction" );
@@ -73,8 +82,15 @@ public class FilterRows extends BaseStep implements StepInterface {
 
     boolean keep;
 
-    Object[] r = getRow(); // Get next usable row from input rowset(s)!
-    if ( r == null ) { // no more input to be expected...
+    RowBatch batch = null;
+    Object[][] rows;
+    if ( isColumnarBatchMode() && !log.isRowLevel() ) {
+      batch = getRowBatch( ROW_BATCH_SIZE );
+      rows = batch == null ? null : batch.getSourceRows();
+    } else {
+      rows = getRows( ROW_BATCH_SIZE ); // Get the next usable rows from input rowset(s)!
+    }
+    if ( rows == null ) { // no more input to be expected...
 
       setOutputDone();
       return false;
@@ -89,6 +105,9 @@ public class FilterRows extends BaseStep implements StepInterface {
       // if filter refers to non-existing fields, throw exception
       checkNonExistingFields();
 
+      // Work out the field positions, conversions and constants of the condition once
+      data.condition = meta.getCondition().compile( getInputRowMeta() );
+
       // Cache the position of the RowSet for the output.
       //
       if ( data.chosesTargetSteps ) {
@@ -115,38 +134,220 @@ public class FilterRows extends BaseStep implements StepInterface {
       }
     }
 
-    keep = keepRow( getInputRowMeta(), r ); // Keep this row?
-    if ( !data.chosesTargetSteps ) {
-      if ( keep ) {
-        putRow( data.outputRowMeta, r ); // copy row to output rowset(s);
+    // Rows that are kept without target steps are sent on in one batch
+    //
+    Object[][] keptRows = data.chosesTargetSteps ? null : new Object[rows.length][];
+    int nrKeptRows = 0;
+    long linesRead = getLinesRead() - rows.length;
+
+    // Evaluate the condition column by column if possible, row by row otherwise
+    //
+    boolean[] keepRows = batch == null ? null : evaluate( meta.getCondition(), batch );
+    if ( keepRows != null && !data.chosesTargetSteps ) {
+      for ( int i = 0; i < keepRows.length; i++ ) {
+        if ( checkFeedback( ++linesRead ) && log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "FilterRows.Log.LineNumber" ) + linesRead );
+        }
       }
-    } else {
-      if ( keep ) {
-        if ( data.trueRowSet != null ) {
-          if ( log.isRowLevel() ) {
-            logRowlevel( "Sending row to true  :" + data.trueStepname + " : " + getInputRowMeta().getString( r ) );
-          }
-          putRowTo( data.outputRowMeta, r, data.trueRowSet );
+      putRowBatch( data.outputRowMeta, batch.filter( keepRows ) );
+      return true;
+    }
+    if ( batch != null ) {
+      rows = batch.toRows();
+    }
+
+    for ( int i = 0; i < rows.length; i++ ) {
+      Object[] r = rows[i];
+      linesRead++;
+
+      keep = keepRows != null ? keepRows[i] : keepRow( getInputRowMeta(), r ); // Keep this row?
+      if ( !data.chosesTargetSteps ) {
+        if ( keep ) {
+          keptRows[nrKeptRows++] = r;
         }
       } else {
-        if ( data.falseRowSet != null ) {
-          if ( log.isRowLevel() ) {
-            logRowlevel( "Sending row to false :" + data.falseStepname + " : " + getInputRowMeta().getString( r ) );
+        if ( keep ) {
+          if ( data.trueRowSet != null ) {
+            if ( log.isRowLevel() ) {
+              logRowlevel( "Sending row to true  :" + data.trueStepname + " : " + getInputRowMeta().getString( r ) );
+            }
+            putRowTo( data.outputRowMeta, r, data.trueRowSet );
+          }
+        } else {
+          if ( data.falseRowSet != null ) {
+            if ( log.isRowLevel() ) {
+              logRowlevel( "Sending row to false :" + data.falseStepname + " : " + getInputRowMeta().getString( r ) );
+            }
+            putRowTo( data.outputRowMeta, r, data.falseRowSet );
           }
-          putRowTo( data.outputRowMeta, r, data.falseRowSet );
         }
       }
-    }
 
-    if ( checkFeedback( getLinesRead() ) ) {
-      if ( log.isBasic() ) {
-        logBasic( BaseMessages.getString( PKG, "FilterRows.Log.LineNumber" ) + getLinesRead() );
+      if ( checkFeedback( linesRead ) ) {
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "FilterRows.Log.LineNumber" ) + linesRead );
+        }
       }
     }
 
+    if ( !data.chosesTargetSteps ) {
+      putRows( data.outputRowMeta, keptRows, nrKeptRows ); // copy rows to output rowset(s);
+    }
+
     return true;
   }
 
+  /**
+   * Evaluate a condition for all the rows of a batch at once. Only comparisons of Integer and Number fields with a
+   * constant, null checks and combinations of those are supported.
+   *
+   * @param condition
+   *          the condition to evaluate
+   * @param batch
+   *          the rows to evaluate the condition for
+   * @return the result for every row or null if the condition has to be evaluated row by row
+   */
+  static boolean[] evaluate( Condition condition, RowBatch batch ) {
+    boolean[] result;
+    if ( condition.isAtomic() ) {
+      result = evaluateAtomic( condition, batch );
+    } else {
+      result = evaluate( condition.getCondition( 0 ), batch );
+      for ( int c = 1; c < condition.nrConditions() && result != null; c++ ) {
+        Condition sub = condition.getCondition( c );
+        boolean[] subResult = evaluate( sub, batch );
+        if ( subResult == null ) {
+          return null;
+        }
+        for ( int r = 0; r < result.length; r++ ) {
+          switch ( sub.getOperator() ) {
+            case Condition.OPERATOR_OR:
+              result[r] = result[r] || subResult[r];
+              break;
+            case Condition.OPERATOR_AND:
+              result[r] = result[r] && subResult[r];
+              break;
+            case Condition.OPERATOR_OR_NOT:
+              result[r] = result[r] || !subResult[r];
+              break;
+            case Condition.OPERATOR_AND_NOT:
+              result[r] = result[r] && !subResult[r];
+              break;
+            case Condition.OPERATOR_XOR:
+              result[r] = result[r] ^ subResult[r];
+              break;
+            default:
+              break;
+          }
+        }
+      }
+    }
+    if ( result != null && condition.isNegated() ) {
+      for ( int r = 0; r < result.length; r++ ) {
+        result[r] = !result[r];
+      }
+    }
+    return result;
+  }
+
+  private static boolean[] evaluateAtomic( Condition condition, RowBatch batch ) {
+    boolean[] result = new boolean[batch.size()];
+    if ( condition.getFunction() == Condition.FUNC_TRUE ) {
+      // Negated by the caller
+      Arrays.fill( result, true );
+      return result;
+    }
+
+    int index = Const.isEmpty( condition.getLeftValuename() ) ? -1
+      : batch.getRowMeta().indexOfValue( condition.getLeftValuename() );
+    if ( index < 0 ) {
+      // No field to evaluate: the row evaluation returns false, even when negated
+      if ( condition.isNegated() ) {
+        Arrays.fill( result, true );
+      }
+      return result;
+    }
+
+    ValueMetaInterface fieldMeta = batch.getRowMeta().getValueMeta( index );
+    if ( fieldMeta.getType() != ValueMetaInterface.TYPE_INTEGER
+      && fieldMeta.getType() != ValueMetaInterface.TYPE_NUMBER ) {
+      return null;
+    }
+    ColumnVector column = batch.getColumn( index );
+    if ( !( column instanceof LongColumnVector ) && !( column instanceof DoubleColumnVector ) ) {
+      return null;
+    }
+
+    int function = condition.getFunction();
+    if ( function == Condition.FUNC_NULL || function == Condition.FUNC_NOT_NULL ) {
+      for ( int r = 0; r < result.length; r++ ) {
+        result[r] = column.isNull( r ) == ( function == Condition.FUNC_NULL );
+      }
+      return result;
+    }
+    if ( function > Condition.FUNC_LARGER_EQUAL ) {
+      return null;
+    }
+
+    // Only compare with a constant in the type of the field
+    //
+    if ( condition.getRightExact() == null || condition.getRightExact().getValueData() == null ) {
+      return null;
+    }
+    ValueMetaInterface exactMeta = condition.getRightExact().getValueMeta();
+    if ( exactMeta.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+      return null;
+    }
+    Object exact;
+    try {
+      exact = fieldMeta.getType() == exactMeta.getType() ? condition.getRightExact().getValueData()
+        : fieldMeta.convertData( exactMeta, condition.getRightExact().getValueData() );
+    } catch ( KettleValueException e ) {
+      return null;
+    }
+    if ( exact == null ) {
+      return null;
+    }
+
+    boolean descending = fieldMeta.isSortedDescending();
+    for ( int r = 0; r < result.length; r++ ) {
+      int cmp;
+      if ( column.isNull( r ) ) {
+        cmp = -1; // null is always smaller
+      } else {
+        if ( column instanceof LongColumnVector ) {
+          cmp = Long.compare( ( (LongColumnVector) column ).getLong( r ), ( (Long) exact ).longValue() );
+        } else {
+          cmp = Double.compare( ( (DoubleColumnVector) column ).getDouble( r ), ( (Double) exact ).doubleValue() );
+        }
+        if ( descending ) {
+          cmp = -cmp;
+        }
+      }
+      switch ( function ) {
+        case Condition.FUNC_EQUAL:
+          result[r] = cmp == 0;
+          break;
+        case Condition.FUNC_NOT_EQUAL:
+          result[r] = cmp != 0;
+          break;
+        case Condition.FUNC_SMALLER:
+          result[r] = cmp < 0;
+          break;
+        case Condition.FUNC_SMALLER_EQUAL:
+          result[r] = cmp <= 0;
+          break;
+        case Condition.FUNC_LARGER:
+          result[r] = cmp > 0;
+          break;
+        default:
+          result[r] = cmp >= 0;
+          break;
+      }
+    }
+    return result;
+  }
+
   /**
    * @see StepInterface#init(org.pentaho.di.trans.step.StepMetaInterface , org.pentaho.di.trans.step.StepDataInterface)
    */
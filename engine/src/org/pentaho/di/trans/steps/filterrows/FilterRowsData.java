@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.filterrows;
 
+import org.pentaho.di.core.ConditionEvaluator;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -40,6 +41,7 @@ public class FilterRowsData extends BaseStepData implements StepDataInterface {
   public boolean chosesTargetSteps;
   public String trueStepname;
   public String falseStepname;
+  public ConditionEvaluator condition;
 
   public FilterRowsData() {
     super();
@@ -0,0 +1,513 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.hashjoin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.step.errorhandling.StreamInterface;
+import org.pentaho.di.trans.steps.hashjoin.HashJoinData.JoinKey;
+import org.pentaho.di.trans.steps.hashjoin.HashJoinData.SpillFiles;
+import org.pentaho.di.trans.steps.hashjoin.HashJoinData.SpillPartition;
+
+/**
+ * Join the rows of the first stream with the rows of the second stream that have the same key. The second stream is
+ * read into a hash table first, after that the rows of the first stream are looked up in it one at a time, so neither
+ * stream has to be sorted.<br>
+ * <br>
+ * When the second stream grows past the configured number of rows or the free memory drops below the configured
+ * percentage, the rows in memory, the rest of the second stream and after that the first stream are spread over
+ * temporary files by the hash code of the key (a grace hash join). The matching files of both streams are joined one
+ * partition at a time at the end. A partition that still doesn't fit is split up again on the next bits of the hash
+ * code.<br>
+ * <br>
+ * Keys with a null value never match.
+ */
+public class HashJoin extends BaseStep implements StepInterface {
+  private static Class<?> PKG = HashJoinMeta.class; // for i18n purposes, needed by Translator2!!
+
+  /**
+   * The rows that don't fit in memory are spread over 2^SPILL_PARTITION_BITS temporary files per stream. Every level of
+   * spilling uses the next bits of the hash code, until they run out.
+   */
+  static final int SPILL_PARTITION_BITS = 4;
+  static final int SPILL_PARTITIONS = 1 << SPILL_PARTITION_BITS;
+  static final int MAX_SPILL_LEVEL = 32 / SPILL_PARTITION_BITS - 1;
+
+  private HashJoinMeta meta;
+  private HashJoinData data;
+
+  public HashJoin( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+    Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    meta = (HashJoinMeta) smi;
+    data = (HashJoinData) sdi;
+
+    if ( first ) {
+      first = false;
+
+      // Find the RowSets to read from
+      //
+      List<StreamInterface> infoStreams = meta.getStepIOMeta().getInfoStreams();
+
+      data.probeRowSet = findInputRowSet( infoStreams.get( 0 ).getStepname() );
+      if ( data.probeRowSet == null ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "HashJoin.Exception.UnableToFindSpecifiedStep", infoStreams.get( 0 ).getStepname() ) );
+      }
+
+      data.buildRowSet = findInputRowSet( infoStreams.get( 1 ).getStepname() );
+      if ( data.buildRowSet == null ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "HashJoin.Exception.UnableToFindSpecifiedStep", infoStreams.get( 1 ).getStepname() ) );
+      }
+
+      Object[] probeRow = getRowFrom( data.probeRowSet );
+      if ( probeRow != null ) {
+        data.probeMeta = data.probeRowSet.getRowMeta();
+      } else {
+        data.probeMeta = getTransMeta().getStepFields( infoStreams.get( 0 ).getStepname() );
+      }
+
+      Object[] buildRow = getRowFrom( data.buildRowSet );
+      if ( buildRow != null ) {
+        data.buildMeta = data.buildRowSet.getRowMeta();
+      } else {
+        data.buildMeta = getTransMeta().getStepFields( infoStreams.get( 1 ).getStepname() );
+      }
+
+      data.outputRowMeta = new RowMeta();
+      data.outputRowMeta.mergeRowMeta( data.probeMeta.clone() );
+      if ( data.joinType != HashJoinMeta.JOIN_TYPE_ANTI ) {
+        data.outputRowMeta.mergeRowMeta( data.buildMeta.clone() );
+      }
+      data.buildDummy = new Object[data.buildMeta.size()];
+
+      initKeys();
+
+      // Read the complete second stream into the hash table, or the temporary files if it doesn't fit
+      //
+      while ( buildRow != null && !isStopped() ) {
+        addBuildRow( buildRow );
+        buildRow = getRowFrom( data.buildRowSet );
+      }
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "HashJoin.Log.SecondStreamRead", getLinesRead() ) );
+      }
+
+      if ( probeRow != null ) {
+        probeRow( probeRow );
+      }
+      return true;
+    }
+
+    Object[] probeRow = getRowFrom( data.probeRowSet );
+    if ( probeRow == null ) {
+      joinPendingPartitions();
+      data.table = new HashMap<JoinKey, List<Object[]>>();
+      setOutputDone();
+      return false;
+    }
+    probeRow( probeRow );
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      logBasic( BaseMessages.getString( PKG, "HashJoin.LineNumber" ) + getLinesRead() );
+    }
+    return true;
+  }
+
+  /**
+   * Find the key fields in both streams. The keys of the first stream are converted to the data types of the second.
+   */
+  private void initKeys() throws KettleException {
+    String[] keyFields1 = meta.getKeyFields1();
+    String[] keyFields2 = meta.getKeyFields2();
+    if ( keyFields1.length == 0 || keyFields1.length != keyFields2.length ) {
+      throw new KettleStepException( BaseMessages.getString( PKG, "HashJoin.Exception.KeysDontMatch" ) );
+    }
+
+    data.probeKeyNrs = findKeys( data.probeMeta, keyFields1 );
+    data.buildKeyNrs = findKeys( data.buildMeta, keyFields2 );
+
+    data.keyMeta = new RowMeta();
+    data.probeKeyMeta = new RowMeta();
+    data.convertProbeKey = new boolean[keyFields1.length];
+    for ( int i = 0; i < keyFields1.length; i++ ) {
+      ValueMetaInterface buildKeyMeta = data.buildMeta.getValueMeta( data.buildKeyNrs[i] ).clone();
+      buildKeyMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+      data.keyMeta.addValueMeta( buildKeyMeta );
+
+      ValueMetaInterface probeKeyMeta = data.probeMeta.getValueMeta( data.probeKeyNrs[i] ).clone();
+      probeKeyMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+      data.probeKeyMeta.addValueMeta( probeKeyMeta );
+
+      data.convertProbeKey[i] = probeKeyMeta.getType() != buildKeyMeta.getType();
+    }
+  }
+
+  private int[] findKeys( RowMetaInterface rowMeta, String[] keyFields ) throws KettleStepException {
+    int[] keyNrs = new int[keyFields.length];
+    for ( int i = 0; i < keyNrs.length; i++ ) {
+      keyNrs[i] = rowMeta.indexOfValue( keyFields[i] );
+      if ( keyNrs[i] < 0 ) {
+        String message =
+          BaseMessages.getString( PKG, "HashJoin.Exception.UnableToFindFieldInReferenceStream", keyFields[i] );
+        logError( message );
+        throw new KettleStepException( message );
+      }
+    }
+    return keyNrs;
+  }
+
+  /**
+   * @return the key of a row of the first or second stream, null if one of the key values is null
+   */
+  private JoinKey getJoinKey( Object[] row, boolean probe ) throws KettleValueException {
+    RowMetaInterface rowMeta = probe ? data.probeMeta : data.buildMeta;
+    int[] keyNrs = probe ? data.probeKeyNrs : data.buildKeyNrs;
+
+    Object[] keyData = new Object[keyNrs.length];
+    for ( int i = 0; i < keyNrs.length; i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( keyNrs[i] );
+      Object value = row[keyNrs[i]];
+      if ( valueMeta.isNull( value ) ) {
+        return null;
+      }
+      value = valueMeta.convertToNormalStorageType( value );
+      if ( probe && data.convertProbeKey[i] ) {
+        value = data.keyMeta.getValueMeta( i ).convertData( data.probeKeyMeta.getValueMeta( i ), value );
+      }
+      keyData[i] = value;
+    }
+    return data.getJoinKey( keyData );
+  }
+
+  /**
+   * Add a row of the second stream to the hash table, or to its temporary file once we're spilling.
+   */
+  private void addBuildRow( Object[] row ) throws KettleException {
+    JoinKey key = getJoinKey( row, false );
+    if ( key == null ) {
+      return;
+    }
+    if ( data.buildSpill != null ) {
+      writeSpillRow( data.buildSpill, data.buildMeta, key, row );
+      return;
+    }
+
+    List<Object[]> rows = data.table.get( key );
+    if ( rows == null ) {
+      rows = new ArrayList<Object[]>( 1 );
+      data.table.put( key, rows );
+    } else if ( data.joinType == HashJoinMeta.JOIN_TYPE_ANTI ) {
+      // Only the presence of the key matters
+      return;
+    }
+    rows.add( row );
+    data.tableRows++;
+
+    checkSpilling();
+  }
+
+  /**
+   * Join a row of the first stream, or write it to its temporary file when the second stream didn't fit in memory.
+   */
+  private void probeRow( Object[] row ) throws KettleException {
+    JoinKey key = getJoinKey( row, true );
+    if ( key != null && data.probeSpill != null ) {
+      writeSpillRow( data.probeSpill, data.probeMeta, key, row );
+      return;
+    }
+
+    List<Object[]> matches = key == null ? null : data.table.get( key );
+    if ( matches == null ) {
+      if ( data.joinType == HashJoinMeta.JOIN_TYPE_LEFT_OUTER ) {
+        putRow( data.outputRowMeta, RowDataUtil.addRowData( row, data.probeMeta.size(), data.buildDummy ) );
+      } else if ( data.joinType == HashJoinMeta.JOIN_TYPE_ANTI ) {
+        putRow( data.outputRowMeta, row );
+      }
+      return;
+    }
+    if ( data.joinType == HashJoinMeta.JOIN_TYPE_ANTI ) {
+      return;
+    }
+    for ( int i = 0; i < matches.size(); i++ ) {
+      // The last match can re-use the row itself
+      Object[] one =
+        i < matches.size() - 1 ? RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() ) : row;
+      putRow( data.outputRowMeta, RowDataUtil.addRowData( one, data.probeMeta.size(), matches.get( i ) ) );
+    }
+  }
+
+  /**
+   * Move the hash table to the temporary files once it passes the number of rows or the free memory limit. From then
+   * on, the rest of the second stream and the complete first stream go to the temporary files as well.
+   */
+  private void checkSpilling() throws KettleException {
+    if ( data.spillLevel >= MAX_SPILL_LEVEL ) {
+      return;
+    }
+    boolean spill = data.maxRows > 0 && data.tableRows > data.maxRows;
+    if ( !spill && data.freeMemoryPctLimit > 0 && ++data.freeCounter >= 1000 ) {
+      data.freeCounter = 0;
+      spill = Const.getPercentageFreeMemory() < data.freeMemoryPctLimit;
+    }
+    if ( !spill ) {
+      return;
+    }
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "HashJoin.Log.SpillingRows", data.tableRows, data.spillLevel ) );
+    }
+    data.buildSpill = new SpillFiles( SPILL_PARTITIONS );
+    data.probeSpill = new SpillFiles( SPILL_PARTITIONS );
+    for ( Map.Entry<JoinKey, List<Object[]>> entry : data.table.entrySet() ) {
+      for ( Object[] row : entry.getValue() ) {
+        writeSpillRow( data.buildSpill, data.buildMeta, entry.getKey(), row );
+      }
+    }
+    data.table = new HashMap<JoinKey, List<Object[]>>();
+    data.tableRows = 0;
+  }
+
+  /**
+   * Write a row to the temporary file of the hash partition of its key.
+   */
+  private void writeSpillRow( SpillFiles spill, RowMetaInterface rowMeta, JoinKey key, Object[] row ) throws KettleException {
+    int partition = ( mix( key.hashCode() ) >>> ( data.spillLevel * SPILL_PARTITION_BITS ) ) & ( SPILL_PARTITIONS - 1 );
+
+    if ( spill.streams[partition] == null ) {
+      try {
+        FileObject file =
+          KettleVFS.createTempFile( environmentSubstitute( meta.getPrefix() ), ".tmp", environmentSubstitute( meta
+            .getDirectory() ), getTransMeta() );
+        spill.files[partition] = file;
+        spill.streams[partition] =
+          new DataOutputStream( new BufferedOutputStream( KettleVFS.getOutputStream( file, false ), 50000 ) );
+      } catch ( Exception e ) {
+        throw new KettleException( BaseMessages.getString( PKG, "HashJoin.Exception.UnableToCreateTemporaryFile" ),
+          e );
+      }
+    }
+    rowMeta.writeData( spill.streams[partition], row );
+    spill.rows[partition]++;
+  }
+
+  /**
+   * Spread the bits of the hash code, the partitions are taken from all of them.
+   */
+  private static int mix( long hash ) {
+    hash *= 0x9E3779B97F4A7C15L;
+    return (int) ( hash ^ ( hash >>> 32 ) );
+  }
+
+  /**
+   * Close the temporary files being written.
+   *
+   * @return the partitions to join at the next level
+   */
+  private List<SpillPartition> closeSpillFiles() throws KettleException {
+    List<SpillPartition> partitions = new ArrayList<SpillPartition>();
+    if ( data.buildSpill == null ) {
+      return partitions;
+    }
+    try {
+      for ( int p = 0; p < SPILL_PARTITIONS; p++ ) {
+        if ( data.buildSpill.streams[p] != null ) {
+          data.buildSpill.streams[p].close();
+          data.buildSpill.streams[p] = null;
+        }
+        if ( data.probeSpill.streams[p] != null ) {
+          data.probeSpill.streams[p].close();
+          data.probeSpill.streams[p] = null;
+        }
+        if ( data.buildSpill.files[p] != null || data.probeSpill.files[p] != null ) {
+          SpillPartition partition = new SpillPartition( data.spillLevel + 1 );
+          partition.buildFile = data.buildSpill.files[p];
+          partition.buildRows = data.buildSpill.rows[p];
+          partition.probeFile = data.probeSpill.files[p];
+          partition.probeRows = data.probeSpill.rows[p];
+          partitions.add( partition );
+        }
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "HashJoin.Exception.UnableToCreateTemporaryFile" ), e );
+    }
+    data.buildSpill = null;
+    data.probeSpill = null;
+    return partitions;
+  }
+
+  /**
+   * Join the partitions in the temporary files, depth first so that the number of files stays low.
+   */
+  private void joinPendingPartitions() throws KettleException {
+    data.pendingPartitions.addAll( 0, closeSpillFiles() );
+    while ( !data.pendingPartitions.isEmpty() && !isStopped() ) {
+      SpillPartition partition = data.pendingPartitions.remove( 0 );
+      joinPartition( partition );
+      data.pendingPartitions.addAll( 0, closeSpillFiles() );
+    }
+    data.spillLevel = 0;
+  }
+
+  private void joinPartition( SpillPartition partition ) throws KettleException {
+    data.spillLevel = partition.level;
+    data.table = new HashMap<JoinKey, List<Object[]>>();
+    data.tableRows = 0;
+    try {
+      if ( partition.probeRows == 0 ) {
+        return;
+      }
+      if ( partition.buildRows == 0 && data.joinType == HashJoinMeta.JOIN_TYPE_INNER ) {
+        return;
+      }
+      if ( partition.buildRows > 0 ) {
+        readSpillFile( partition.buildFile, partition.buildRows, false );
+        deleteFile( partition.buildFile );
+        partition.buildFile = null;
+      }
+      readSpillFile( partition.probeFile, partition.probeRows, true );
+    } finally {
+      deleteFile( partition.buildFile );
+      deleteFile( partition.probeFile );
+    }
+  }
+
+  /**
+   * Read back the rows of a temporary file of the first or second stream.
+   */
+  private void readSpillFile( FileObject file, long rows, boolean probe ) throws KettleException {
+    RowMetaInterface rowMeta = probe ? data.probeMeta : data.buildMeta;
+    DataInputStream dis = null;
+    try {
+      dis = new DataInputStream( new BufferedInputStream( KettleVFS.getInputStream( file ), 50000 ) );
+      for ( long row = 0; row < rows && !isStopped(); row++ ) {
+        Object[] r = rowMeta.readData( dis );
+        if ( probe ) {
+          probeRow( r );
+        } else {
+          addBuildRow( r );
+        }
+      }
+    } catch ( KettleException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString(
+        PKG, "HashJoin.Exception.UnableToReadBackRowFromTemporaryFile" ), e );
+    } finally {
+      BaseStep.closeQuietly( dis );
+    }
+  }
+
+  private void deleteFile( FileObject file ) {
+    if ( file == null ) {
+      return;
+    }
+    try {
+      if ( file.exists() ) {
+        file.delete();
+      }
+    } catch ( FileSystemException e ) {
+      logError( e.getLocalizedMessage(), e );
+    }
+  }
+
+  /**
+   * @see StepInterface#init(org.pentaho.di.trans.step.StepMetaInterface , org.pentaho.di.trans.step.StepDataInterface)
+   */
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (HashJoinMeta) smi;
+    data = (HashJoinData) sdi;
+
+    if ( super.init( smi, sdi ) ) {
+      List<StreamInterface> infoStreams = meta.getStepIOMeta().getInfoStreams();
+      if ( infoStreams.get( 0 ).getStepMeta() == null || infoStreams.get( 1 ).getStepMeta() == null ) {
+        logError( BaseMessages.getString( PKG, "HashJoin.Log.BothStreamsNeeded" ) );
+        return false;
+      }
+      data.joinType = meta.getJoinTypeNr();
+      if ( data.joinType < 0 ) {
+        logError( BaseMessages.getString( PKG, "HashJoin.Log.InvalidJoinType", meta.getJoinType() ) );
+        return false;
+      }
+      data.maxRows = Const.toInt( environmentSubstitute( meta.getMaxRows() ), 0 );
+      data.freeMemoryPctLimit = Const.toInt( environmentSubstitute( meta.getFreeMemoryLimit() ), 0 );
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    HashJoinData hashJoinData = (HashJoinData) sdi;
+    SpillFiles[] spills = new SpillFiles[] { hashJoinData.buildSpill, hashJoinData.probeSpill };
+    for ( SpillFiles spill : spills ) {
+      if ( spill != null ) {
+        for ( int p = 0; p < SPILL_PARTITIONS; p++ ) {
+          BaseStep.closeQuietly( spill.streams[p] );
+          deleteFile( spill.files[p] );
+        }
+      }
+    }
+    hashJoinData.buildSpill = null;
+    hashJoinData.probeSpill = null;
+    for ( SpillPartition partition : hashJoinData.pendingPartitions ) {
+      deleteFile( partition.buildFile );
+      deleteFile( partition.probeFile );
+    }
+    hashJoinData.pendingPartitions.clear();
+    hashJoinData.table = new HashMap<JoinKey, List<Object[]>>();
+
+    super.dispose( smi, sdi );
+  }
+}
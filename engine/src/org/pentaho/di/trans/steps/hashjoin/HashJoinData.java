@@ -0,0 +1,138 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.hashjoin;
+
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+public class HashJoinData extends BaseStepData implements StepDataInterface {
+
+  /**
+   * The key of a row, converted to the data types of the keys of the second stream.
+   */
+  public class JoinKey {
+    private Object[] keyData;
+    private int hashCode;
+
+    public JoinKey( Object[] keyData ) throws KettleValueException {
+      this.keyData = keyData;
+      this.hashCode = keyMeta.hashCode( keyData );
+    }
+
+    public boolean equals( Object obj ) {
+      JoinKey key = (JoinKey) obj;
+
+      try {
+        return hashCode == key.hashCode && keyMeta.compare( keyData, key.keyData ) == 0;
+      } catch ( KettleValueException e ) {
+        throw new RuntimeException( e );
+      }
+    }
+
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The rows of both streams of a hash partition that didn't fit in memory.
+   */
+  public static class SpillPartition {
+    public FileObject buildFile;
+    public long buildRows;
+    public FileObject probeFile;
+    public long probeRows;
+    public int level;
+
+    public SpillPartition( int level ) {
+      this.level = level;
+    }
+  }
+
+  /**
+   * The temporary files of one of the streams, one per hash partition.
+   */
+  public static class SpillFiles {
+    public FileObject[] files;
+    public DataOutputStream[] streams;
+    public long[] rows;
+
+    public SpillFiles( int partitions ) {
+      files = new FileObject[partitions];
+      streams = new DataOutputStream[partitions];
+      rows = new long[partitions];
+    }
+  }
+
+  public RowSet probeRowSet;
+  public RowSet buildRowSet;
+  public RowMetaInterface probeMeta;
+  public RowMetaInterface buildMeta;
+  public RowMetaInterface outputRowMeta;
+
+  public int joinType;
+  public int[] probeKeyNrs;
+  public int[] buildKeyNrs;
+  /** The key fields of the second stream in normal storage */
+  public RowMetaInterface keyMeta;
+  /** The key fields of the first stream in normal storage, used when their data type differs from the keyMeta */
+  public RowMetaInterface probeKeyMeta;
+  public boolean[] convertProbeKey;
+  /** The row of the second stream of an unmatched row in a left outer join */
+  public Object[] buildDummy;
+
+  /** The rows of the second stream in memory by key */
+  public Map<JoinKey, List<Object[]>> table;
+  public long tableRows;
+
+  public int maxRows;
+  public int freeMemoryPctLimit;
+  public int freeCounter;
+
+  /** The hash partitioning level of the rows in memory */
+  public int spillLevel;
+  public SpillFiles buildSpill;
+  public SpillFiles probeSpill;
+  /** The hash partitions that still need to be joined */
+  public List<SpillPartition> pendingPartitions;
+
+  public HashJoinData() {
+    super();
+    table = new HashMap<JoinKey, List<Object[]>>();
+    pendingPartitions = new ArrayList<SpillPartition>();
+  }
+
+  public JoinKey getJoinKey( Object[] keyData ) throws KettleValueException {
+    return new JoinKey( keyData );
+  }
+}
@@ -24,6 +24,7 @@ package org.pentaho.di.trans.steps.janino;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.codehaus.janino.ExpressionEvaluator;
 import org.pentaho.di.core.Const;
@@ -33,6 +34,7 @@ import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaFactory;
+import org.pentaho.di.core.util.JaninoClassCache;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -159,14 +161,29 @@ public class Janino extends BaseStep implements StepInterface {
           if ( !Const.isEmpty( fn.getFieldName() ) ) {
 
             // Create the expression evaluator: is relatively slow so we do it only for the first row...
+            // An evaluator can be shared, the same expression with the same parameters is only compiled once.
             //
-            data.expressionEvaluators[m] = new ExpressionEvaluator();
-            data.expressionEvaluators[m].setParameters(
-              parameterNames.toArray( new String[parameterNames.size()] ), parameterTypes
-                .toArray( new Class<?>[parameterTypes.size()] ) );
-            data.expressionEvaluators[m].setReturnType( Object.class );
-            data.expressionEvaluators[m].setThrownExceptions( new Class<?>[] { Exception.class } );
-            data.expressionEvaluators[m].cook( fn.getFormula() );
+            final String formula = fn.getFormula();
+            final String[] names = parameterNames.toArray( new String[parameterNames.size()] );
+            final Class<?>[] types = parameterTypes.toArray( new Class<?>[parameterTypes.size()] );
+            StringBuilder description = new StringBuilder( "expression|" ).append( formula );
+            for ( int p = 0; p < names.length; p++ ) {
+              description.append( '|' ).append( names[p] ).append( ':' ).append( types[p].getName() );
+            }
+
+            data.expressionEvaluators[m] =
+              JaninoClassCache.get( Thread.currentThread().getContextClassLoader(), description.toString(),
+                new Callable<ExpressionEvaluator>() {
+                  @Override
+                  public ExpressionEvaluator call() throws Exception {
+                    ExpressionEvaluator evaluator = new ExpressionEvaluator();
+                    evaluator.setParameters( names, types );
+                    evaluator.setReturnType( Object.class );
+                    evaluator.setThrownExceptions( new Class<?>[] { Exception.class } );
+                    evaluator.cook( formula );
+                    return evaluator;
+                  }
+                } );
           } else {
             throw new KettleException( "Unable to find field name for formula ["
               + Const.NVL( fn.getFormula(), "" ) + "]" );
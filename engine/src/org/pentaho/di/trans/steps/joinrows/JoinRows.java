@@ -305,6 +305,9 @@ public class JoinRows extends BaseStep implements StepInterface {
     if ( data.filenr >= data.file.length - 1 ) {
       if ( data.outputRowMeta == null ) {
         data.outputRowMeta = createOutputRowMeta( data.fileRowMeta );
+        if ( meta.getCondition() != null && !meta.getCondition().isEmpty() ) {
+          data.condition = meta.getCondition().compile( data.outputRowMeta );
+        }
       }
 
       // Stich the output row together
@@ -317,9 +320,9 @@ public class JoinRows extends BaseStep implements StepInterface {
         }
       }
 
-      if ( meta.getCondition() != null && !meta.getCondition().isEmpty() ) {
+      if ( data.condition != null ) {
         // Test the specified condition...
-        if ( meta.getCondition().evaluate( data.outputRowMeta, sum ) ) {
+        if ( data.condition.evaluate( sum ) ) {
           putRow( data.outputRowMeta, sum );
         }
       } else {
@@ -29,6 +29,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.List;
 
+import org.pentaho.di.core.ConditionEvaluator;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -65,6 +66,9 @@ public class JoinRowsData extends BaseStepData implements StepDataInterface {
 
   public RowMetaInterface outputRowMeta;
 
+  /** The join condition compiled for the output rows, null if there is no condition */
+  public ConditionEvaluator condition;
+
   public JoinRowsData() {
     super();
   }
@@ -0,0 +1,303 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.util.Arrays;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * The state of one aggregate for all the groups of a {@link GroupKeyTable}, kept in primitive arrays indexed by group
+ * number. Only the simple aggregates are available this way, see {@link #create(int, ValueMetaInterface, boolean)}.
+ */
+public abstract class Accumulator {
+
+  /**
+   * Create an accumulator for an aggregate.
+   *
+   * @param aggregateType
+   *          the aggregate type, one of the MemoryGroupByMeta.TYPE_GROUP_* constants
+   * @param subjMeta
+   *          the metadata of the subject field
+   * @param minNullIsValued
+   *          true if a null value is the minimum of a group
+   * @return the accumulator or null if the aggregate needs to be calculated with an {@link Aggregate} per group
+   */
+  public static Accumulator create( int aggregateType, ValueMetaInterface subjMeta, boolean minNullIsValued ) {
+    boolean numeric = subjMeta.isInteger() || subjMeta.isNumber();
+    switch ( aggregateType ) {
+      case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+        return new Count( true );
+      case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        return new Count( false );
+      case MemoryGroupByMeta.TYPE_GROUP_SUM:
+        return numeric ? new Sum( false ) : null;
+      case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+        return numeric ? new Sum( true ) : null;
+      case MemoryGroupByMeta.TYPE_GROUP_MIN:
+      case MemoryGroupByMeta.TYPE_GROUP_MAX:
+        // The values are handed back as is, so they need to be in normal storage
+        if ( !numeric || subjMeta.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL
+          || subjMeta.isSortedDescending() ) {
+          return null;
+        }
+        boolean min = aggregateType == MemoryGroupByMeta.TYPE_GROUP_MIN;
+        if ( subjMeta.isInteger() ) {
+          return new LongMinMax( min, min && minNullIsValued );
+        }
+        return new DoubleMinMax( min, min && minNullIsValued );
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Make room for the given number of groups.
+   */
+  public abstract void ensureCapacity( int groups );
+
+  public abstract void addNull( int group );
+
+  public abstract void addLong( int group, long value );
+
+  public abstract void addDouble( int group, double value );
+
+  /**
+   * Add a value of the subject field to a group.
+   */
+  public void add( int group, ValueMetaInterface subjMeta, Object subj ) throws KettleValueException {
+    if ( subjMeta.isNull( subj ) ) {
+      addNull( group );
+    } else if ( subjMeta.isInteger() ) {
+      addLong( group, subjMeta.getInteger( subj ).longValue() );
+    } else {
+      addDouble( group, subjMeta.getNumber( subj ).doubleValue() );
+    }
+  }
+
+  /**
+   * @return the aggregate of a group in normal storage, possibly null
+   */
+  public abstract Object getResult( int group );
+
+  static int newCapacity( int length, int groups ) {
+    return Math.max( groups, length + ( length >> 1 ) );
+  }
+
+  static class Count extends Accumulator {
+    private final boolean countNulls;
+    private long[] counts = new long[0];
+
+    Count( boolean countNulls ) {
+      this.countNulls = countNulls;
+    }
+
+    @Override
+    public void ensureCapacity( int groups ) {
+      if ( groups > counts.length ) {
+        counts = Arrays.copyOf( counts, newCapacity( counts.length, groups ) );
+      }
+    }
+
+    @Override
+    public void add( int group, ValueMetaInterface subjMeta, Object subj ) throws KettleValueException {
+      if ( countNulls || !subjMeta.isNull( subj ) ) {
+        counts[group]++;
+      }
+    }
+
+    @Override
+    public void addNull( int group ) {
+      if ( countNulls ) {
+        counts[group]++;
+      }
+    }
+
+    @Override
+    public void addLong( int group, long value ) {
+      counts[group]++;
+    }
+
+    @Override
+    public void addDouble( int group, double value ) {
+      counts[group]++;
+    }
+
+    @Override
+    public Object getResult( int group ) {
+      return Long.valueOf( counts[group] );
+    }
+  }
+
+  static class Sum extends Accumulator {
+    private final boolean average;
+    private double[] sums = new double[0];
+    private long[] counts = new long[0];
+
+    Sum( boolean average ) {
+      this.average = average;
+    }
+
+    @Override
+    public void ensureCapacity( int groups ) {
+      if ( groups > sums.length ) {
+        int capacity = newCapacity( sums.length, groups );
+        sums = Arrays.copyOf( sums, capacity );
+        counts = Arrays.copyOf( counts, capacity );
+      }
+    }
+
+    @Override
+    public void addNull( int group ) {
+    }
+
+    @Override
+    public void addLong( int group, long value ) {
+      sums[group] += value;
+      counts[group]++;
+    }
+
+    @Override
+    public void addDouble( int group, double value ) {
+      sums[group] += value;
+      counts[group]++;
+    }
+
+    @Override
+    public Object getResult( int group ) {
+      if ( counts[group] == 0 ) {
+        return null;
+      }
+      return Double.valueOf( average ? sums[group] / counts[group] : sums[group] );
+    }
+  }
+
+  /**
+   * Common part of the minimum and maximum: nulls are smaller than any value. Unless nulls are valued only the non-null
+   * values are taken into account.
+   */
+  abstract static class MinMax extends Accumulator {
+    protected final boolean min;
+    private final boolean nullIsValued;
+    protected long[] counts = new long[0];
+    private long[] nulls = new long[0];
+
+    MinMax( boolean min, boolean nullIsValued ) {
+      this.min = min;
+      this.nullIsValued = nullIsValued;
+    }
+
+    @Override
+    public void ensureCapacity( int groups ) {
+      if ( groups > counts.length ) {
+        int capacity = newCapacity( counts.length, groups );
+        counts = Arrays.copyOf( counts, capacity );
+        nulls = Arrays.copyOf( nulls, ( capacity + 63 ) >> 6 );
+        grow( capacity );
+      }
+    }
+
+    protected abstract void grow( int capacity );
+
+    @Override
+    public void addNull( int group ) {
+      nulls[group >> 6] |= 1L << group;
+    }
+
+    @Override
+    public Object getResult( int group ) {
+      if ( counts[group] == 0 || ( nullIsValued && ( nulls[group >> 6] & ( 1L << group ) ) != 0 ) ) {
+        return null;
+      }
+      return getValue( group );
+    }
+
+    protected abstract Object getValue( int group );
+  }
+
+  static class LongMinMax extends MinMax {
+    private long[] values = new long[0];
+
+    LongMinMax( boolean min, boolean nullIsValued ) {
+      super( min, nullIsValued );
+    }
+
+    @Override
+    protected void grow( int capacity ) {
+      values = Arrays.copyOf( values, capacity );
+    }
+
+    @Override
+    public void addLong( int group, long value ) {
+      if ( counts[group]++ == 0 || ( min ? value < values[group] : value > values[group] ) ) {
+        values[group] = value;
+      }
+    }
+
+    @Override
+    public void addDouble( int group, double value ) {
+      addLong( group, (long) value );
+    }
+
+    @Override
+    protected Object getValue( int group ) {
+      return Long.valueOf( values[group] );
+    }
+  }
+
+  static class DoubleMinMax extends MinMax {
+    private double[] values = new double[0];
+
+    DoubleMinMax( boolean min, boolean nullIsValued ) {
+      super( min, nullIsValued );
+    }
+
+    @Override
+    protected void grow( int capacity ) {
+      values = Arrays.copyOf( values, capacity );
+    }
+
+    @Override
+    public void addLong( int group, long value ) {
+      addDouble( group, value );
+    }
+
+    @Override
+    public void addDouble( int group, double value ) {
+      if ( counts[group]++ == 0 ) {
+        values[group] = value;
+      } else {
+        int cmp = Double.compare( value, values[group] );
+        if ( min ? cmp < 0 : cmp > 0 ) {
+          values[group] = value;
+        }
+      }
+    }
+
+    @Override
+    protected Object getValue( int group ) {
+      return Double.valueOf( values[group] );
+    }
+  }
+}
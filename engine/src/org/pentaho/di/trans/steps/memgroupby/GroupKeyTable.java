@@ -0,0 +1,203 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.util.Arrays;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * An open addressing hash table that maps the group fields of a row to a group number. Group numbers are handed out
+ * in the order the groups are first seen: 0, 1, 2, ... so that the aggregate state can be kept in arrays indexed by
+ * group number instead of in an object per group.<br>
+ * <br>
+ * Sub-classes decide how the keys are stored: {@link LongGroupKeyTable} for a single Integer or Number field and
+ * {@link SerializedGroupKeyTable} for the other supported combinations.
+ */
+public abstract class GroupKeyTable {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** For every slot the group number + 1, 0 for an empty slot */
+  private int[] slots;
+
+  /** The hash code of every group, used to avoid comparing keys and to grow the table */
+  private int[] hashes;
+
+  private int size;
+
+  private int mask;
+
+  private int threshold;
+
+  protected GroupKeyTable() {
+    clear();
+  }
+
+  /**
+   * Create a table for the given group fields.
+   *
+   * @param groupMeta
+   *          the metadata of the group fields
+   * @param groupnrs
+   *          the indexes of the group fields in the input rows
+   * @return the new table or null if the data types of the group fields can't be stored in a table
+   */
+  public static GroupKeyTable create( RowMetaInterface groupMeta, int[] groupnrs ) {
+    if ( groupMeta.size() == 1 ) {
+      ValueMetaInterface valueMeta = groupMeta.getValueMeta( 0 );
+      if ( valueMeta.isInteger() || valueMeta.isNumber() ) {
+        return new LongGroupKeyTable( valueMeta, groupnrs[0] );
+      }
+    }
+    for ( int i = 0; i < groupMeta.size(); i++ ) {
+      if ( !SerializedGroupKeyTable.isSupported( groupMeta.getValueMeta( i ) ) ) {
+        return null;
+      }
+    }
+    return new SerializedGroupKeyTable( groupMeta, groupnrs );
+  }
+
+  /**
+   * @return the number of groups in the table
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Remove all groups from the table.
+   */
+  public void clear() {
+    slots = new int[INITIAL_CAPACITY];
+    hashes = new int[INITIAL_CAPACITY];
+    size = 0;
+    mask = INITIAL_CAPACITY - 1;
+    threshold = INITIAL_CAPACITY * 3 / 4;
+    clearKeys();
+  }
+
+  /**
+   * Look up the group of a row, add it as a new group if it isn't in the table yet.
+   *
+   * @param row
+   *          the input row
+   * @return the group number, equal to the previous {@link #size()} in case a new group was added
+   * @throws KettleValueException
+   *           in case a group field can't be converted
+   */
+  public int findOrAdd( Object[] row ) throws KettleValueException {
+    int hash = prepareKey( row );
+    int slot = hash & mask;
+    for ( int entry = slots[slot]; entry != 0; entry = slots[slot] ) {
+      int group = entry - 1;
+      if ( hashes[group] == hash && keyEquals( group ) ) {
+        return group;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+
+    int group = size++;
+    if ( group == hashes.length ) {
+      hashes = Arrays.copyOf( hashes, group + ( group >> 1 ) );
+    }
+    hashes[group] = hash;
+    storeKey( group );
+    slots[slot] = group + 1;
+
+    if ( size > threshold ) {
+      rehash();
+    }
+    return group;
+  }
+
+  /**
+   * Look up the group of a row without adding it.
+   *
+   * @param row
+   *          the input row
+   * @return the group number or -1 if the row doesn't belong to a group in the table
+   * @throws KettleValueException
+   *           in case a group field can't be converted
+   */
+  public int find( Object[] row ) throws KettleValueException {
+    int hash = prepareKey( row );
+    int slot = hash & mask;
+    for ( int entry = slots[slot]; entry != 0; entry = slots[slot] ) {
+      int group = entry - 1;
+      if ( hashes[group] == hash && keyEquals( group ) ) {
+        return group;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+    return -1;
+  }
+
+  private void rehash() {
+    int capacity = slots.length * 2;
+    slots = new int[capacity];
+    mask = capacity - 1;
+    threshold = capacity / 4 * 3;
+    for ( int group = 0; group < size; group++ ) {
+      int slot = hashes[group] & mask;
+      while ( slots[slot] != 0 ) {
+        slot = ( slot + 1 ) & mask;
+      }
+      slots[slot] = group + 1;
+    }
+  }
+
+  /**
+   * Spread the bits of a hash code so that linear probing on the lower bits works well.
+   */
+  protected static int mix( long hash ) {
+    hash *= 0x9E3779B97F4A7C15L;
+    return (int) ( hash ^ ( hash >>> 32 ) );
+  }
+
+  /**
+   * Remember the key of the given row as the key to look up.
+   *
+   * @return the hash code of the key
+   */
+  protected abstract int prepareKey( Object[] row ) throws KettleValueException;
+
+  /**
+   * @return true if the key of the given group equals the key given to {@link #prepareKey(Object[])}
+   */
+  protected abstract boolean keyEquals( int group );
+
+  /**
+   * Store the key given to {@link #prepareKey(Object[])} as the key of a new group.
+   */
+  protected abstract void storeKey( int group );
+
+  protected abstract void clearKeys();
+
+  /**
+   * @return the values of the group fields of the given group in normal storage
+   */
+  public abstract Object[] getGroupData( int group );
+}
@@ -0,0 +1,103 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Group key table for a single Integer or Number group field. The keys are kept in a primitive long array, Number
+ * values by their bits so that the groups match the comparison of the values.
+ */
+public class LongGroupKeyTable extends GroupKeyTable {
+
+  private static final int NULL_HASH = 0x5bd1e995;
+
+  private final ValueMetaInterface valueMeta;
+  private final int fieldnr;
+
+  private long[] keys;
+  private BitSet nulls;
+
+  private long key;
+  private boolean keyNull;
+
+  public LongGroupKeyTable( ValueMetaInterface valueMeta, int fieldnr ) {
+    this.valueMeta = valueMeta;
+    this.fieldnr = fieldnr;
+  }
+
+  @Override
+  protected int prepareKey( Object[] row ) throws KettleValueException {
+    Object value = row[fieldnr];
+    keyNull = valueMeta.isNull( value );
+    if ( keyNull ) {
+      key = 0L;
+      return NULL_HASH;
+    }
+    if ( valueMeta.isInteger() ) {
+      key = valueMeta.getInteger( value ).longValue();
+    } else {
+      key = Double.doubleToLongBits( valueMeta.getNumber( value ).doubleValue() );
+    }
+    return mix( key );
+  }
+
+  @Override
+  protected boolean keyEquals( int group ) {
+    return keys[group] == key && nulls.get( group ) == keyNull;
+  }
+
+  @Override
+  protected void storeKey( int group ) {
+    if ( group == keys.length ) {
+      keys = Arrays.copyOf( keys, group + ( group >> 1 ) );
+    }
+    keys[group] = key;
+    if ( keyNull ) {
+      nulls.set( group );
+    }
+  }
+
+  @Override
+  protected void clearKeys() {
+    keys = new long[1024];
+    nulls = new BitSet();
+  }
+
+  @Override
+  public Object[] getGroupData( int group ) {
+    Object value;
+    if ( nulls.get( group ) ) {
+      value = null;
+    } else if ( valueMeta.isInteger() ) {
+      value = Long.valueOf( keys[group] );
+    } else {
+      value = Double.valueOf( Double.longBitsToDouble( keys[group] ) );
+    }
+    return new Object[] { value };
+  }
+}
@@ -23,6 +23,8 @@
 package org.pentaho.di.trans.steps.memgroupby;
 
 import org.apache.commons.math.stat.descriptive.rank.Percentile;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleValueException;
@@ -31,10 +33,15 @@ import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueDataUtil;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.ColumnVector;
+import org.pentaho.di.core.row.batch.DoubleColumnVector;
+import org.pentaho.di.core.row.batch.LongColumnVector;
+import org.pentaho.di.core.row.batch.RowBatch;
 import org.pentaho.di.core.row.value.ValueMetaBase;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -44,7 +51,13 @@ import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.HashEntry;
+import org.pentaho.di.trans.steps.memgroupby.MemoryGroupByData.SpillFile;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -60,6 +73,14 @@ import java.util.TreeSet;
 public class MemoryGroupBy extends BaseStep implements StepInterface {
   private static Class<?> PKG = MemoryGroupByMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * The groups that don't fit in memory are spread over 2^SPILL_PARTITION_BITS spill files by hash code. Every level of
+   * spilling uses the next bits of the hash code, until they run out.
+   */
+  private static final int SPILL_PARTITION_BITS = 4;
+  private static final int SPILL_PARTITIONS = 1 << SPILL_PARTITION_BITS;
+  private static final int MAX_SPILL_LEVEL = 32 / SPILL_PARTITION_BITS - 1;
+
   private MemoryGroupByMeta meta;
 
   private MemoryGroupByData data;
@@ -70,6 +91,7 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
   public MemoryGroupBy( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
                         Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+    setAcceptingRowBatches( true );
 
     meta = (MemoryGroupByMeta) getStepMeta().getStepMetaInterface();
     data = (MemoryGroupByData) stepDataInterface;
@@ -79,7 +101,14 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     meta = (MemoryGroupByMeta) smi;
     data = (MemoryGroupByData) sdi;
 
-    Object[] r = getRow(); // get row!
+    RowBatch batch = null;
+    Object[] r;
+    if ( isColumnarBatchMode() && !log.isRowLevel() ) {
+      batch = getRowBatch( ROW_BATCH_SIZE );
+      r = batch == null ? null : batch.getRow( 0 );
+    } else {
+      r = getRow(); // get row!
+    }
     if ( first ) {
       if ( r == null ) {
         setOutputDone();
@@ -89,6 +118,8 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       allNullsAreZero = ValueMetaBase.convertStringToBoolean( val );
       val = getVariable( Const.KETTLE_AGGREGATION_MIN_NULL_IS_VALUED, "N" );
       minNullIsValued = ValueMetaBase.convertStringToBoolean( val );
+      data.maxGroups = Const.toInt( getVariable( Const.KETTLE_MEMORY_GROUP_BY_MAX_GROUPS ), 0 );
+      data.freeMemoryPctLimit = Const.toInt( getVariable( Const.KETTLE_MEMORY_GROUP_BY_FREE_MEMORY_LIMIT ), 0 );
 
       // What is the output looking like?
       //
@@ -159,12 +190,14 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       data.groupAggMeta = new RowMeta();
       data.groupAggMeta.addRowMeta( data.groupMeta );
       data.groupAggMeta.addRowMeta( data.aggMeta );
+
+      newGroupKeyTable();
     }
 
     // Here is where we start to do the real work...
     //
     if ( r == null ) { // no more input to be expected... (or none received in the first place)
-      handleLastOfGroup();
+      handleAllGroups();
 
       setOutputDone();
       return false;
@@ -175,6 +208,18 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       data.newBatch = false;
     }
 
+    if ( batch != null ) {
+      addToAggregate( batch );
+
+      long linesRead = getLinesRead() - batch.size();
+      for ( int i = 0; i < batch.size(); i++ ) {
+        if ( checkFeedback( ++linesRead ) && log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "MemoryGroupBy.LineNumber" ) + linesRead );
+        }
+      }
+      return true;
+    }
+
     addToAggregate( r );
 
     if ( checkFeedback( getLinesRead() ) ) {
@@ -186,7 +231,41 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Write out all the groups: first the ones in memory, then the ones in the spill files one partition at a time.
+   */
+  private void handleAllGroups() throws KettleException {
+    data.pendingSpillFiles.addAll( 0, closeSpillFiles() );
+    handleLastOfGroup();
+
+    while ( !data.pendingSpillFiles.isEmpty() ) {
+      SpillFile spillFile = data.pendingSpillFiles.remove( 0 );
+      clearGroups();
+      data.spillLevel = spillFile.level;
+      readSpillFile( spillFile );
+
+      data.pendingSpillFiles.addAll( 0, closeSpillFiles() );
+      handleLastOfGroup();
+    }
+
+    clearGroups();
+    data.spillLevel = 0;
+  }
+
+  private void clearGroups() {
+    data.map.clear();
+    if ( data.table != null ) {
+      newGroupKeyTable();
+    }
+    data.spilling = false;
+    data.freeCounter = 0;
+  }
+
   private void handleLastOfGroup() throws KettleException {
+    if ( data.table != null ) {
+      handleLastOfGroupKeyTable();
+    }
+
     // Dump the content of the map...
     //
     for ( HashEntry entry : data.map.keySet() ) {
@@ -207,7 +286,8 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     // What if we always need to give back one row?
     // This means we give back 0 for count all, count distinct, null for everything else
     //
-    if ( data.map.isEmpty() && meta.isAlwaysGivingBackOneRow() ) {
+    boolean empty = data.table != null ? data.table.size() == 0 : data.map.isEmpty();
+    if ( empty && meta.isAlwaysGivingBackOneRow() ) {
       Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
       int index = 0;
       for ( int i = 0; i < data.groupMeta.size(); i++ ) {
@@ -226,19 +306,180 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Write out the groups of the group key table in the order they were first seen.
+   */
+  private void handleLastOfGroupKeyTable() throws KettleException {
+    for ( int group = 0; group < data.table.size(); group++ ) {
+      Object[] aggregateResult = null;
+      if ( data.aggregates != null ) {
+        aggregateResult = getAggregateResult( data.aggregates.get( group ) );
+      }
+
+      Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+      Object[] groupData = data.table.getGroupData( group );
+      int index = 0;
+      for ( int i = 0; i < groupData.length; i++ ) {
+        outputRowData[index++] = groupData[i];
+      }
+      for ( int i = 0; i < data.aggMeta.size(); i++ ) {
+        Accumulator accumulator = data.accumulators[i];
+        if ( accumulator == null ) {
+          outputRowData[index++] = data.aggMeta.getValueMeta( i ).convertToNormalStorageType( aggregateResult[i] );
+        } else {
+          Object ag = accumulator.getResult( group );
+          if ( ag == null && allNullsAreZero ) {
+            ag = ValueDataUtil.getZeroForValueMetaType( data.aggMeta.getValueMeta( i ) );
+          }
+          outputRowData[index++] = ag;
+        }
+      }
+      putRow( data.outputRowMeta, outputRowData );
+    }
+  }
+
+  /**
+   * Set up a group key table with accumulators if the data types of the group fields allow it. Otherwise the groups
+   * are kept in the map.
+   */
+  private void newGroupKeyTable() {
+    data.table = GroupKeyTable.create( data.groupMeta, data.groupnrs );
+    data.accumulators = null;
+    data.aggregates = null;
+    if ( data.table == null ) {
+      return;
+    }
+
+    data.accumulators = new Accumulator[data.subjectnrs.length];
+    for ( int i = 0; i < data.subjectnrs.length; i++ ) {
+      ValueMetaInterface subjMeta = data.inputRowMeta.getValueMeta( data.subjectnrs[i] );
+      data.accumulators[i] = Accumulator.create( meta.getAggregateType()[i], subjMeta, minNullIsValued );
+      if ( data.accumulators[i] == null && data.aggregates == null ) {
+        data.aggregates = new ArrayList<Aggregate>();
+      }
+    }
+  }
+
   /**
    * Used for junits in MemoryGroupByAggregationNullsTest
    *
    * @param r
    * @throws KettleException
    */
-  @SuppressWarnings( "unchecked" ) void addToAggregate( Object[] r ) throws KettleException {
+  void addToAggregate( Object[] r ) throws KettleException {
+    if ( data.table != null ) {
+      int group = data.spilling ? data.table.find( r ) : getGroup( r );
+      if ( group < 0 ) {
+        spillRow( r );
+        return;
+      }
+      for ( int i = 0; i < data.subjectnrs.length; i++ ) {
+        Accumulator accumulator = data.accumulators[i];
+        if ( accumulator == null ) {
+          addToAggregate( data.aggregates.get( group ), i, r );
+        } else {
+          int subjectnr = data.subjectnrs[i];
+          accumulator.add( group, data.inputRowMeta.getValueMeta( subjectnr ), r[subjectnr] );
+        }
+      }
+      return;
+    }
+
+    Aggregate aggregate = data.spilling ? data.map.get( getHashEntry( r ) ) : getAggregate( r );
+    if ( aggregate == null ) {
+      spillRow( r );
+      return;
+    }
+    for ( int i = 0; i < data.subjectnrs.length; i++ ) {
+      addToAggregate( aggregate, i, r );
+    }
+  }
 
+  /**
+   * Add a batch of rows to the aggregates. Integer and Number subjects are added to the accumulators from the
+   * primitive column values, the other aggregates are calculated row by row.
+   *
+   * @param batch
+   *          the rows to add
+   * @throws KettleException
+   */
+  void addToAggregate( RowBatch batch ) throws KettleException {
+    Object[][] rows = batch.toRows();
+    if ( data.table == null ) {
+      for ( int r = 0; r < rows.length; r++ ) {
+        addToAggregate( rows[r] );
+      }
+      return;
+    }
+
+    ColumnVector[] subjects = new ColumnVector[data.subjectnrs.length];
+    ValueMetaInterface[] subjMetas = new ValueMetaInterface[data.subjectnrs.length];
+    for ( int i = 0; i < subjects.length; i++ ) {
+      subjMetas[i] = data.inputRowMeta.getValueMeta( data.subjectnrs[i] );
+      if ( data.accumulators[i] != null && meta.getAggregateType()[i] != MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY ) {
+        ColumnVector column = batch.getColumn( data.subjectnrs[i] );
+        if ( column instanceof LongColumnVector || column instanceof DoubleColumnVector ) {
+          subjects[i] = column;
+        }
+      }
+    }
+
+    for ( int r = 0; r < rows.length; r++ ) {
+      int group = data.spilling ? data.table.find( rows[r] ) : getGroup( rows[r] );
+      if ( group < 0 ) {
+        spillRow( rows[r] );
+        continue;
+      }
+      for ( int i = 0; i < subjects.length; i++ ) {
+        Accumulator accumulator = data.accumulators[i];
+        ColumnVector subject = subjects[i];
+        if ( accumulator == null ) {
+          addToAggregate( data.aggregates.get( group ), i, rows[r] );
+        } else if ( subject == null ) {
+          accumulator.add( group, subjMetas[i], rows[r][data.subjectnrs[i]] );
+        } else if ( subject.isNull( r ) ) {
+          accumulator.addNull( group );
+        } else if ( subject instanceof LongColumnVector ) {
+          accumulator.addLong( group, ( (LongColumnVector) subject ).getLong( r ) );
+        } else {
+          accumulator.addDouble( group, ( (DoubleColumnVector) subject ).getDouble( r ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * Look up the group of a row in the group key table, make room for it in the accumulators if it's a new group.
+   */
+  private int getGroup( Object[] r ) throws KettleException {
+    int size = data.table.size();
+    int group = data.table.findOrAdd( r );
+    if ( group == size ) {
+      for ( int i = 0; i < data.accumulators.length; i++ ) {
+        if ( data.accumulators[i] != null ) {
+          data.accumulators[i].ensureCapacity( size + 1 );
+        }
+      }
+      if ( data.aggregates != null ) {
+        Aggregate aggregate = new Aggregate();
+        newAggregate( r, aggregate );
+        data.aggregates.add( aggregate );
+      }
+      checkSpilling( size + 1 );
+    }
+    return group;
+  }
+
+  private HashEntry getHashEntry( Object[] r ) {
     Object[] groupData = new Object[data.groupMeta.size()];
     for ( int i = 0; i < data.groupnrs.length; i++ ) {
       groupData[i] = r[data.groupnrs[i]];
     }
-    HashEntry entry = data.getHashEntry( groupData );
+    return data.getHashEntry( groupData );
+  }
+
+  private Aggregate getAggregate( Object[] r ) throws KettleException {
+    HashEntry entry = getHashEntry( r );
 
     Aggregate aggregate = data.map.get( entry );
     if ( aggregate == null ) {
@@ -250,129 +491,245 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       // Store it in the map!
       //
       data.map.put( entry, aggregate );
+      checkSpilling( data.map.size() );
     }
+    return aggregate;
+  }
 
-    for ( int i = 0; i < data.subjectnrs.length; i++ ) {
-      Object subj = r[data.subjectnrs[i]];
-      ValueMetaInterface subjMeta = data.inputRowMeta.getValueMeta( data.subjectnrs[i] );
-      Object value = aggregate.agg[i];
-      ValueMetaInterface valueMeta = data.aggMeta.getValueMeta( i );
+  /**
+   * Start writing the rows of new groups to the spill files once the number of groups or the free memory passes the
+   * configured limit. The groups in memory keep on being aggregated.
+   *
+   * @param groups
+   *          the number of groups in memory
+   */
+  private void checkSpilling( int groups ) {
+    if ( data.spillLevel >= MAX_SPILL_LEVEL ) {
+      return;
+    }
+    boolean spill = data.maxGroups > 0 && groups >= data.maxGroups;
+    if ( !spill && data.freeMemoryPctLimit > 0 && ++data.freeCounter >= 1000 ) {
+      data.freeCounter = 0;
+      spill = Const.getPercentageFreeMemory() < data.freeMemoryPctLimit;
+    }
+    if ( spill ) {
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "MemoryGroupBy.Log.SpillingGroups", groups, data.spillLevel ) );
+      }
+      data.spilling = true;
+      data.spillFiles = new FileObject[SPILL_PARTITIONS];
+      data.spillStreams = new DataOutputStream[SPILL_PARTITIONS];
+      data.spillRows = new long[SPILL_PARTITIONS];
+    }
+  }
 
-      switch ( meta.getAggregateType()[i] ) {
-        case MemoryGroupByMeta.TYPE_GROUP_SUM:
+  /**
+   * Write a row of a group that isn't in memory to the spill file of its hash partition.
+   */
+  private void spillRow( Object[] r ) throws KettleException {
+    int hash = 0;
+    for ( int i = 0; i < data.groupnrs.length; i++ ) {
+      hash = hash * 31 + data.groupMeta.getValueMeta( i ).hashCode( r[data.groupnrs[i]] );
+    }
+    int partition = ( GroupKeyTable.mix( hash ) >>> ( data.spillLevel * SPILL_PARTITION_BITS ) ) & ( SPILL_PARTITIONS - 1 );
+
+    if ( data.spillStreams[partition] == null ) {
+      try {
+        FileObject file =
+          KettleVFS.createTempFile( "memgroupby", ".tmp", environmentSubstitute( "%%java.io.tmpdir%%" ),
+            getTransMeta() );
+        data.spillFiles[partition] = file;
+        data.spillStreams[partition] =
+          new DataOutputStream( new BufferedOutputStream( KettleVFS.getOutputStream( file, false ), 50000 ) );
+      } catch ( Exception e ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "MemoryGroupBy.Exception.UnableToCreateTemporaryFile" ), e );
+      }
+    }
+    data.inputRowMeta.writeData( data.spillStreams[partition], r );
+    data.spillRows[partition]++;
+  }
+
+  /**
+   * Close the spill files being written.
+   *
+   * @return the spill files to aggregate at the next level
+   */
+  private List<SpillFile> closeSpillFiles() throws KettleException {
+    List<SpillFile> spillFiles = new ArrayList<SpillFile>();
+    if ( data.spillStreams == null ) {
+      return spillFiles;
+    }
+    try {
+      for ( int p = 0; p < SPILL_PARTITIONS; p++ ) {
+        if ( data.spillStreams[p] != null ) {
+          data.spillStreams[p].close();
+          data.spillStreams[p] = null;
+          spillFiles.add( new SpillFile( data.spillFiles[p], data.spillRows[p], data.spillLevel + 1 ) );
+        }
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "MemoryGroupBy.Exception.UnableToCreateTemporaryFile" ),
+        e );
+    }
+    data.spillStreams = null;
+    data.spillFiles = null;
+    data.spillRows = null;
+    return spillFiles;
+  }
+
+  /**
+   * Aggregate the rows of a spill file and remove the file.
+   */
+  private void readSpillFile( SpillFile spillFile ) throws KettleException {
+    DataInputStream dis = null;
+    try {
+      dis = new DataInputStream( new BufferedInputStream( KettleVFS.getInputStream( spillFile.file ), 50000 ) );
+      for ( long row = 0; row < spillFile.rows; row++ ) {
+        addToAggregate( data.inputRowMeta.readData( dis ) );
+      }
+    } catch ( KettleException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString(
+        PKG, "MemoryGroupBy.Exception.UnableToReadBackRowFromTemporaryFile" ), e );
+    } finally {
+      BaseStep.closeQuietly( dis );
+      deleteFile( spillFile.file );
+    }
+  }
+
+  private void deleteFile( FileObject file ) {
+    try {
+      if ( file.exists() ) {
+        file.delete();
+      }
+    } catch ( FileSystemException e ) {
+      logError( e.getLocalizedMessage(), e );
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private void addToAggregate( Aggregate aggregate, int i, Object[] r ) throws KettleException {
+    Object subj = r[data.subjectnrs[i]];
+    ValueMetaInterface subjMeta = data.inputRowMeta.getValueMeta( data.subjectnrs[i] );
+    Object value = aggregate.agg[i];
+    ValueMetaInterface valueMeta = data.aggMeta.getValueMeta( i );
+
+    switch ( meta.getAggregateType()[i] ) {
+      case MemoryGroupByMeta.TYPE_GROUP_SUM:
+        aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+        if ( !subjMeta.isNull( subj ) ) {
           aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
-          if ( !subjMeta.isNull( subj ) ) {
-            aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, subjMeta, subj );
-            aggregate.counts[i]++;
-          }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_MEDIAN:
-        case MemoryGroupByMeta.TYPE_GROUP_PERCENTILE:
-          if ( !subjMeta.isNull( subj ) ) {
-            ( (List<Double>) aggregate.agg[i] ).add( subjMeta.getNumber( subj ) );
-          }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION:
-          if ( aggregate.mean == null ) {
-            aggregate.mean = new double[meta.getSubjectField().length];
-          }
           aggregate.counts[i]++;
-          double n = aggregate.counts[i];
-          double x = subjMeta.getNumber( subj );
-          // for standard deviation null is exact 0
-          double sum = value == null ? new Double( 0 ) : (Double) value;
-          double mean = aggregate.mean[i];
-
-          double delta = x - mean;
-          mean = mean + ( delta / n );
-          sum = sum + delta * ( x - mean );
-
-          aggregate.mean[i] = mean;
-          aggregate.agg[i] = sum;
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT:
-          if ( aggregate.distinctObjs == null ) {
-            aggregate.distinctObjs = new Set[meta.getSubjectField().length];
-          }
-          if ( aggregate.distinctObjs[i] == null ) {
-            aggregate.distinctObjs[i] = new TreeSet<>();
-          }
-          if ( !subjMeta.isNull( subj ) ) {
-            Object obj = subjMeta.convertToNormalStorageType( subj );
-            if ( !aggregate.distinctObjs[i].contains( obj ) ) {
-              aggregate.distinctObjs[i].add( obj );
-            }
-          }
-          aggregate.counts[i] = (long) aggregate.distinctObjs[i].size();
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
-          if ( !subjMeta.isNull( subj ) ) {
-            aggregate.counts[i]++;
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_MEDIAN:
+      case MemoryGroupByMeta.TYPE_GROUP_PERCENTILE:
+        if ( !subjMeta.isNull( subj ) ) {
+          ( (List<Double>) aggregate.agg[i] ).add( subjMeta.getNumber( subj ) );
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION:
+        if ( aggregate.mean == null ) {
+          aggregate.mean = new double[meta.getSubjectField().length];
+        }
+        aggregate.counts[i]++;
+        double n = aggregate.counts[i];
+        double x = subjMeta.getNumber( subj );
+        // for standard deviation null is exact 0
+        double sum = value == null ? new Double( 0 ) : (Double) value;
+        double mean = aggregate.mean[i];
+
+        double delta = x - mean;
+        mean = mean + ( delta / n );
+        sum = sum + delta * ( x - mean );
+
+        aggregate.mean[i] = mean;
+        aggregate.agg[i] = sum;
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT:
+        if ( aggregate.distinctObjs == null ) {
+          aggregate.distinctObjs = new Set[meta.getSubjectField().length];
+        }
+        if ( aggregate.distinctObjs[i] == null ) {
+          aggregate.distinctObjs[i] = new TreeSet<>();
+        }
+        if ( !subjMeta.isNull( subj ) ) {
+          Object obj = subjMeta.convertToNormalStorageType( subj );
+          if ( !aggregate.distinctObjs[i].contains( obj ) ) {
+            aggregate.distinctObjs[i].add( obj );
           }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+        }
+        aggregate.counts[i] = (long) aggregate.distinctObjs[i].size();
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        if ( !subjMeta.isNull( subj ) ) {
           aggregate.counts[i]++;
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_MIN:
-          if ( minNullIsValued || ( subj != null && value != null ) ) {
-            // PDI-11530 do not compare null
-            aggregate.agg[i] = subjMeta.compare( subj, valueMeta, value ) < 0 ? subj : value;
-          } else if ( value == null && subj != null ) {
-            // By default set aggregate to first not null value
-            aggregate.agg[i] = subj;
-          }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_MAX:
-          if ( subjMeta.compare( subj, valueMeta, value ) > 0 ) {
-            aggregate.agg[i] = subj;
-          }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_FIRST:
-          if ( !subjMeta.isNull( subj ) && value == null ) {
-            aggregate.agg[i] = subj;
-          }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_LAST:
-          if ( !subjMeta.isNull( subj ) ) {
-            aggregate.agg[i] = subj;
-          }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_FIRST_INCL_NULL:
-          if ( aggregate.counts[i] == 0 ) {
-            aggregate.agg[i] = subj;
-            aggregate.counts[i]++;
-          }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_LAST_INCL_NULL:
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+        aggregate.counts[i]++;
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_MIN:
+        if ( minNullIsValued || ( subj != null && value != null ) ) {
+          // PDI-11530 do not compare null
+          aggregate.agg[i] = subjMeta.compare( subj, valueMeta, value ) < 0 ? subj : value;
+        } else if ( value == null && subj != null ) {
+          // By default set aggregate to first not null value
           aggregate.agg[i] = subj;
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA:
-          if ( !( subj == null ) ) {
-            StringBuilder sb = (StringBuilder) value;
-            if ( sb.length() > 0 ) {
-              sb.append( ", " );
-            }
-            sb.append( subjMeta.getString( subj ) );
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_MAX:
+        if ( subjMeta.compare( subj, valueMeta, value ) > 0 ) {
+          aggregate.agg[i] = subj;
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_FIRST:
+        if ( !subjMeta.isNull( subj ) && value == null ) {
+          aggregate.agg[i] = subj;
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_LAST:
+        if ( !subjMeta.isNull( subj ) ) {
+          aggregate.agg[i] = subj;
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_FIRST_INCL_NULL:
+        if ( aggregate.counts[i] == 0 ) {
+          aggregate.agg[i] = subj;
+          aggregate.counts[i]++;
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_LAST_INCL_NULL:
+        aggregate.agg[i] = subj;
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA:
+        if ( !( subj == null ) ) {
+          StringBuilder sb = (StringBuilder) value;
+          if ( sb.length() > 0 ) {
+            sb.append( ", " );
           }
-          break;
-        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING:
-          if ( !( subj == null ) ) {
-            String separator = "";
-            if ( !Const.isEmpty( meta.getValueField()[i] ) ) {
-              separator = environmentSubstitute( meta.getValueField()[i] );
-            }
-            StringBuilder sb = (StringBuilder) value;
-            if ( sb.length() > 0 ) {
-              sb.append( separator );
-            }
-            sb.append( subjMeta.getString( subj ) );
+          sb.append( subjMeta.getString( subj ) );
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING:
+        if ( !( subj == null ) ) {
+          String separator = "";
+          if ( !Const.isEmpty( meta.getValueField()[i] ) ) {
+            separator = environmentSubstitute( meta.getValueField()[i] );
           }
-          break;
-        default:
-          break;
-      }
+          StringBuilder sb = (StringBuilder) value;
+          if ( sb.length() > 0 ) {
+            sb.append( separator );
+          }
+          sb.append( subjMeta.getString( subj ) );
+        }
+        break;
+      default:
+        break;
     }
   }
 
@@ -552,17 +909,28 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     super.dispose( smi, sdi );
-    ( (MemoryGroupByData) sdi ).clear();
+    MemoryGroupByData memoryGroupByData = (MemoryGroupByData) sdi;
+    if ( memoryGroupByData.spillStreams != null ) {
+      for ( int p = 0; p < SPILL_PARTITIONS; p++ ) {
+        if ( memoryGroupByData.spillStreams[p] != null ) {
+          BaseStep.closeQuietly( memoryGroupByData.spillStreams[p] );
+          deleteFile( memoryGroupByData.spillFiles[p] );
+        }
+      }
+      memoryGroupByData.spillStreams = null;
+      memoryGroupByData.spillFiles = null;
+    }
+    for ( SpillFile spillFile : memoryGroupByData.pendingSpillFiles ) {
+      deleteFile( spillFile.file );
+    }
+    memoryGroupByData.pendingSpillFiles.clear();
+    memoryGroupByData.clear();
   }
 
   public void batchComplete() throws KettleException {
-    // Empty the hash table
-    //
-    handleLastOfGroup();
-
-    // Clear the complete cache...
+    // Empty the hash table and the spill files, this also clears the complete cache...
     //
-    data.map.clear();
+    handleAllGroups();
 
     data.newBatch = true;
   }
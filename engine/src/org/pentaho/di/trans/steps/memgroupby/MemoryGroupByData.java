@@ -22,8 +22,12 @@
 
 package org.pentaho.di.trans.steps.memgroupby;
 
+import java.io.DataOutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
+import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -75,8 +79,30 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
     }
   }
 
+  /**
+   * The rows of a hash partition of the groups that didn't fit in memory.
+   */
+  public static class SpillFile {
+    public FileObject file;
+    public long rows;
+    public int level;
+
+    public SpillFile( FileObject file, long rows, int level ) {
+      this.file = file;
+      this.rows = rows;
+      this.level = level;
+    }
+  }
+
   public HashMap<HashEntry, Aggregate> map;
 
+  /** The groups when the data types of the group fields allow it, null if the map is used instead */
+  public GroupKeyTable table;
+  /** For every aggregate the state of all groups in the table, null for aggregates kept in {@link #aggregates} */
+  public Accumulator[] accumulators;
+  /** For every group in the table the aggregates without accumulator, null if there are no such aggregates */
+  public List<Aggregate> aggregates;
+
   public RowMetaInterface aggMeta;
   public RowMetaInterface groupMeta;
   public RowMetaInterface entryMeta;
@@ -99,6 +125,22 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
 
   public boolean newBatch;
 
+  /** Spill the groups to disk once this many groups are kept in memory, 0 for no limit */
+  public int maxGroups;
+  /** Spill the groups to disk once the free memory drops below this percentage, 0 for no limit */
+  public int freeMemoryPctLimit;
+  public int freeCounter;
+
+  /** True if the rows of groups that aren't in memory yet are written to the spill files */
+  public boolean spilling;
+  /** 0 for the input rows, n for the rows read back from a spill file written at level n-1 */
+  public int spillLevel;
+  public FileObject[] spillFiles;
+  public DataOutputStream[] spillStreams;
+  public long[] spillRows;
+  /** The spill files that still need to be aggregated */
+  public List<SpillFile> pendingSpillFiles = new ArrayList<SpillFile>();
+
   public MemoryGroupByData() {
     super();
 
@@ -113,5 +155,8 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
    */
   public void clear() {
     map = new HashMap<MemoryGroupByData.HashEntry, Aggregate>();
+    table = null;
+    accumulators = null;
+    aggregates = null;
   }
 }
@@ -0,0 +1,259 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.util.Arrays;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Group key table that serializes the group fields of a row into a compact byte sequence. Two keys are in the same
+ * group when their bytes are equal, so only data types for which that matches the comparison of the values are
+ * supported: Integer, Number, Boolean and case sensitive String values.<br>
+ * <br>
+ * The keys are stored back to back in large byte pages so that a group costs a few bytes plus the size of its key.
+ */
+public class SerializedGroupKeyTable extends GroupKeyTable {
+
+  private static final int PAGE_SIZE = 1 << 20;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte NOT_NULL_VALUE = 1;
+
+  private final RowMetaInterface groupMeta;
+  private final int[] groupnrs;
+
+  /** The key being looked up */
+  private byte[] key;
+  private int keyLength;
+
+  private byte[][] pages;
+  private int nrPages;
+  private int pageOffset;
+
+  /** For every group the page (high 32 bits) and the offset in the page (low 32 bits) of the key */
+  private long[] addresses;
+  private int[] lengths;
+
+  public SerializedGroupKeyTable( RowMetaInterface groupMeta, int[] groupnrs ) {
+    this.groupMeta = groupMeta;
+    this.groupnrs = groupnrs;
+    this.key = new byte[64];
+  }
+
+  static boolean isSupported( ValueMetaInterface valueMeta ) {
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+      case ValueMetaInterface.TYPE_NUMBER:
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return true;
+      case ValueMetaInterface.TYPE_STRING:
+        return !valueMeta.isCaseInsensitive();
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  protected int prepareKey( Object[] row ) throws KettleValueException {
+    keyLength = 0;
+    for ( int i = 0; i < groupnrs.length; i++ ) {
+      ValueMetaInterface valueMeta = groupMeta.getValueMeta( i );
+      Object value = row[groupnrs[i]];
+      if ( valueMeta.isNull( value ) ) {
+        writeByte( NULL_VALUE );
+        continue;
+      }
+      writeByte( NOT_NULL_VALUE );
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+          writeLong( valueMeta.getInteger( value ).longValue() );
+          break;
+        case ValueMetaInterface.TYPE_NUMBER:
+          writeLong( Double.doubleToLongBits( valueMeta.getNumber( value ).doubleValue() ) );
+          break;
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          writeByte( valueMeta.getBoolean( value ).booleanValue() ? (byte) 1 : (byte) 0 );
+          break;
+        default:
+          writeString( valueMeta.getString( value ) );
+          break;
+      }
+    }
+
+    int hash = 1;
+    for ( int i = 0; i < keyLength; i++ ) {
+      hash = 31 * hash + key[i];
+    }
+    return mix( hash );
+  }
+
+  @Override
+  protected boolean keyEquals( int group ) {
+    if ( lengths[group] != keyLength ) {
+      return false;
+    }
+    byte[] page = pages[(int) ( addresses[group] >>> 32 )];
+    int offset = (int) addresses[group];
+    for ( int i = 0; i < keyLength; i++ ) {
+      if ( page[offset + i] != key[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected void storeKey( int group ) {
+    if ( group == addresses.length ) {
+      addresses = Arrays.copyOf( addresses, group + ( group >> 1 ) );
+      lengths = Arrays.copyOf( lengths, addresses.length );
+    }
+
+    if ( nrPages == 0 || pageOffset + keyLength > pages[nrPages - 1].length ) {
+      if ( nrPages == pages.length ) {
+        pages = Arrays.copyOf( pages, nrPages * 2 );
+      }
+      pages[nrPages++] = new byte[Math.max( PAGE_SIZE, keyLength )];
+      pageOffset = 0;
+    }
+    System.arraycopy( key, 0, pages[nrPages - 1], pageOffset, keyLength );
+    addresses[group] = ( (long) ( nrPages - 1 ) << 32 ) | pageOffset;
+    lengths[group] = keyLength;
+    pageOffset += keyLength;
+  }
+
+  @Override
+  protected void clearKeys() {
+    pages = new byte[16][];
+    nrPages = 0;
+    pageOffset = 0;
+    addresses = new long[1024];
+    lengths = new int[1024];
+  }
+
+  @Override
+  public Object[] getGroupData( int group ) {
+    byte[] page = pages[(int) ( addresses[group] >>> 32 )];
+    int offset = (int) addresses[group];
+
+    Object[] groupData = new Object[groupnrs.length];
+    for ( int i = 0; i < groupnrs.length; i++ ) {
+      if ( page[offset++] == NULL_VALUE ) {
+        continue;
+      }
+      ValueMetaInterface valueMeta = groupMeta.getValueMeta( i );
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+          groupData[i] = Long.valueOf( readLong( page, offset ) );
+          offset += 8;
+          break;
+        case ValueMetaInterface.TYPE_NUMBER:
+          groupData[i] = Double.valueOf( Double.longBitsToDouble( readLong( page, offset ) ) );
+          offset += 8;
+          break;
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          groupData[i] = Boolean.valueOf( page[offset++] != 0 );
+          break;
+        default:
+          int nrChars = readInt( page, offset );
+          offset += 4;
+          char[] chars = new char[nrChars];
+          for ( int c = 0; c < nrChars; c++ ) {
+            int b = page[offset++] & 0xFF;
+            if ( b < 0x80 ) {
+              chars[c] = (char) b;
+            } else {
+              chars[c] = (char) ( ( ( b & 0x03 ) << 14 ) | ( ( page[offset] & 0x7F ) << 7 ) | ( page[offset + 1] & 0x7F ) );
+              offset += 2;
+            }
+          }
+          groupData[i] = new String( chars );
+          break;
+      }
+    }
+    return groupData;
+  }
+
+  private void ensureKeyCapacity( int extra ) {
+    if ( keyLength + extra > key.length ) {
+      key = Arrays.copyOf( key, Math.max( key.length * 2, keyLength + extra ) );
+    }
+  }
+
+  private void writeByte( byte b ) {
+    ensureKeyCapacity( 1 );
+    key[keyLength++] = b;
+  }
+
+  private void writeInt( int value ) {
+    ensureKeyCapacity( 4 );
+    for ( int shift = 24; shift >= 0; shift -= 8 ) {
+      key[keyLength++] = (byte) ( value >>> shift );
+    }
+  }
+
+  private void writeLong( long value ) {
+    ensureKeyCapacity( 8 );
+    for ( int shift = 56; shift >= 0; shift -= 8 ) {
+      key[keyLength++] = (byte) ( value >>> shift );
+    }
+  }
+
+  /**
+   * Write the number of characters followed by the characters: one byte for ASCII, three bytes for the others.
+   */
+  private void writeString( String string ) {
+    int nrChars = string.length();
+    writeInt( nrChars );
+    ensureKeyCapacity( nrChars * 3 );
+    for ( int c = 0; c < nrChars; c++ ) {
+      char ch = string.charAt( c );
+      if ( ch < 0x80 ) {
+        key[keyLength++] = (byte) ch;
+      } else {
+        key[keyLength++] = (byte) ( 0x80 | ( ch >>> 14 ) );
+        key[keyLength++] = (byte) ( ( ch >>> 7 ) & 0x7F );
+        key[keyLength++] = (byte) ( ch & 0x7F );
+      }
+    }
+  }
+
+  private static int readInt( byte[] page, int offset ) {
+    int value = 0;
+    for ( int i = 0; i < 4; i++ ) {
+      value = ( value << 8 ) | ( page[offset + i] & 0xFF );
+    }
+    return value;
+  }
+
+  private static long readLong( byte[] page, int offset ) {
+    long value = 0L;
+    for ( int i = 0; i < 8; i++ ) {
+      value = ( value << 8 ) | ( page[offset + i] & 0xFF );
+    }
+    return value;
+  }
+}
@@ -53,6 +53,18 @@ public class RowsFromResult extends BaseStep implements StepInterface {
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    if ( !getInputRowSets().isEmpty() ) {
+      // The rows are injected, for example by a transformation executor that keeps this transformation for all groups
+      //
+      Object[] row = getRow();
+      if ( row == null ) {
+        setOutputDone();
+        return false;
+      }
+      putRow( getInputRowMeta(), row );
+      return true;
+    }
+
     Result previousResult = getTrans().getPreviousResult();
     if ( previousResult == null || getLinesRead() >= previousResult.getRows().size() ) {
       setOutputDone();
@@ -89,4 +89,12 @@ public class RowsToResult extends BaseStep implements StepInterface {
     return false;
   }
 
+  /**
+   * The single threaded engine signals the end of a batch of rows: pass the rows of the batch on right away.
+   */
+  @Override
+  public void batchComplete() throws KettleException {
+    getTrans().getResultRows().addAll( data.rows );
+    data.rows.clear();
+  }
 }
@@ -37,6 +37,7 @@ import org.pentaho.di.repository.Repository;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
 import org.pentaho.di.trans.step.RowListener;
+import org.pentaho.di.trans.step.StepCounters;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepListener;
@@ -98,6 +99,10 @@ public class ScriptDummy implements StepInterface {
     return 0;
   }
 
+  public StepCounters getStatusCounters() {
+    return new StepCounters( 0, 0, 0, 0, 0, 0, 0, 0 );
+  }
+
   public List<RowSet> getOutputRowSets() {
     return null;
   }
@@ -27,6 +27,7 @@ import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.pentaho.di.compatibility.Value;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -42,6 +43,10 @@ public class ScriptValuesModData extends BaseStepData implements StepDataInterfa
 
   public int[] fields_used;
   public Value[] values_used;
+  public ValueMetaInterface[] metas_used;
+  public boolean[] normal_used;
+
+  public Scriptable jsRowMeta;
 
   public RowMetaInterface outputRowMeta;
   public int[] replaceIndex;
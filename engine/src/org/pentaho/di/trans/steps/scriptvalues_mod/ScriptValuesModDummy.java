@@ -38,6 +38,7 @@ import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
 import org.pentaho.di.trans.step.RowListener;
+import org.pentaho.di.trans.step.StepCounters;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepListener;
@@ -99,6 +100,10 @@ public class ScriptValuesModDummy implements StepInterface {
     return 0;
   }
 
+  public StepCounters getStatusCounters() {
+    return new StepCounters( 0, 0, 0, 0, 0, 0, 0, 0 );
+  }
+
   public List<RowSet> getOutputRowSets() {
     return null;
   }
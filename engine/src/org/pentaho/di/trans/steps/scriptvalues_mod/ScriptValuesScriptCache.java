@@ -0,0 +1,112 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.scriptvalues_mod;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.pentaho.di.trans.TransMeta;
+
+/**
+ * Cache of compiled scripts for all copies of the Modified Java Script Value steps of a transformation, across runs of
+ * that transformation. A compiled script doesn't hold on to a context or a scope: the same instance can be executed in
+ * any scope, by several threads at the same time. At the higher optimization levels compiling a script means
+ * generating and loading Java classes, which is a lot more expensive than running it.<br>
+ * <br>
+ * The transformation is only referenced weakly: its scripts, and the classes generated for them, are released together
+ * with the transformation. Scripts are cached by optimization level, language version, name and source. The least
+ * recently used scripts of a transformation are evicted when there are more than {@link #DEFAULT_CACHE_SIZE}.
+ */
+public class ScriptValuesScriptCache {
+
+  public static final int DEFAULT_CACHE_SIZE = 500;
+
+  private static final Map<TransMeta, Map<String, Script>> scripts = new WeakHashMap<TransMeta, Map<String, Script>>();
+
+  private ScriptValuesScriptCache() {
+  }
+
+  /**
+   * Get the compiled version of a script, compile it with the settings of the given context if it's not cached yet.
+   *
+   * @param transMeta
+   *          the transformation the script belongs to
+   * @param cx
+   *          the current context
+   * @param source
+   *          the source of the script
+   * @param sourceName
+   *          the name of the script, used in error messages
+   * @return the compiled script
+   */
+  public static Script getScript( TransMeta transMeta, Context cx, String source, String sourceName ) {
+    String key = cx.getOptimizationLevel() + ":" + cx.getLanguageVersion() + ":" + sourceName + ":" + source;
+    synchronized ( scripts ) {
+      Script script = getScripts( transMeta ).get( key );
+      if ( script != null ) {
+        return script;
+      }
+    }
+
+    // Compile outside of the lock, at worst two steps compile the same script at the same time
+    Script script = cx.compileString( source, sourceName, 1, null );
+    synchronized ( scripts ) {
+      getScripts( transMeta ).put( key, script );
+    }
+    return script;
+  }
+
+  private static Map<String, Script> getScripts( TransMeta transMeta ) {
+    Map<String, Script> transScripts = scripts.get( transMeta );
+    if ( transScripts == null ) {
+      transScripts = new LinkedHashMap<String, Script>( 16, 0.75f, true ) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, Script> eldest ) {
+          return size() > DEFAULT_CACHE_SIZE;
+        }
+      };
+      scripts.put( transMeta, transScripts );
+    }
+    return transScripts;
+  }
+
+  /**
+   * @return the number of cached scripts of the transformation
+   */
+  public static int size( TransMeta transMeta ) {
+    synchronized ( scripts ) {
+      Map<String, Script> transScripts = scripts.get( transMeta );
+      return transScripts == null ? 0 : transScripts.size();
+    }
+  }
+
+  public static void clear() {
+    synchronized ( scripts ) {
+      scripts.clear();
+    }
+  }
+}
@@ -35,6 +35,7 @@ import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.RowBatch;
 import org.pentaho.di.core.util.EnvUtil;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -60,6 +61,7 @@ public class SelectValues extends BaseStep implements StepInterface {
   public SelectValues( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
                        Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+    setAcceptingRowBatches( true );
   }
 
   /**
@@ -339,23 +341,20 @@ public class SelectValues extends BaseStep implements StepInterface {
     meta = (SelectValuesMeta) smi;
     data = (SelectValuesData) sdi;
 
-    Object[] rowData = getRow(); // get row from rowset, wait for our turn, indicate busy!
-    if ( rowData == null ) { // no more input to be expected...
+    RowBatch batch = null;
+    Object[][] rows;
+    if ( isColumnarBatchMode() && !log.isRowLevel() ) {
+      batch = getRowBatch( ROW_BATCH_SIZE );
+      rows = batch == null ? null : batch.getSourceRows();
+    } else {
+      rows = getRows( ROW_BATCH_SIZE ); // get a batch of rows from rowset, wait for our turn, indicate busy!
+    }
+    if ( rows == null ) { // no more input to be expected...
 
       setOutputDone();
       return false;
     }
 
-    Object[] rowCopy = null;
-    if ( getStepMeta().isDoingErrorHandling() ) {
-      rowCopy = getInputRowMeta().cloneRow( rowData );
-    }
-
-    if ( log.isRowLevel() ) {
-      logRowlevel( BaseMessages.getString( PKG, "SelectValues.Log.GotRowFromPreviousStep" )
-        + getInputRowMeta().getString( rowData ) );
-    }
-
     if ( first ) {
       first = false;
 
@@ -367,54 +366,160 @@ public class SelectValues extends BaseStep implements StepInterface {
       meta.getMetadataFields( data.metadataRowMeta, getStepname() );
     }
 
-    try {
-      Object[] outputData = rowData;
+    if ( batch != null && data.batchFieldnrs != null ) {
+      processRowBatch( batch );
+      return true;
+    }
+    if ( batch != null ) {
+      rows = batch.toRows();
+    }
 
-      if ( data.select ) {
-        outputData = selectValues( getInputRowMeta(), outputData );
-      }
-      if ( data.deselect ) {
-        outputData = removeValues( data.selectRowMeta, outputData );
-      }
-      if ( data.metadata ) {
-        outputData = metadataValues( data.deselectRowMeta, outputData );
-      }
+    Object[][] outputRows = new Object[rows.length][];
+    int nrOutputRows = 0;
+    long linesRead = getLinesRead() - rows.length;
+
+    for ( Object[] rowData : rows ) {
+      linesRead++;
 
-      if ( outputData == null ) {
-        setOutputDone(); // signal end to receiver(s)
-        return false;
+      Object[] rowCopy = null;
+      if ( getStepMeta().isDoingErrorHandling() ) {
+        rowCopy = getInputRowMeta().cloneRow( rowData );
       }
 
-      // Send the row on its way
-      //
-      putRow( data.metadataRowMeta, outputData );
       if ( log.isRowLevel() ) {
-        logRowlevel( BaseMessages.getString( PKG, "SelectValues.Log.WroteRowToNextStep" )
-          + data.metadataRowMeta.getString( outputData ) );
+        logRowlevel( BaseMessages.getString( PKG, "SelectValues.Log.GotRowFromPreviousStep" )
+          + getInputRowMeta().getString( rowData ) );
       }
 
-    } catch ( KettleException e ) {
-      if ( getStepMeta().isDoingErrorHandling() ) {
-        String field;
-        if ( e instanceof KettleConversionException ) {
-          List<ValueMetaInterface> fields = ( (KettleConversionException) e ).getFields();
-          field = fields.isEmpty() ? null : fields.get( 0 ).getName();
+      try {
+        Object[] outputData = rowData;
+
+        if ( data.select ) {
+          outputData = selectValues( getInputRowMeta(), outputData );
+        }
+        if ( data.deselect ) {
+          outputData = removeValues( data.selectRowMeta, outputData );
+        }
+        if ( data.metadata ) {
+          outputData = metadataValues( data.deselectRowMeta, outputData );
+        }
+
+        if ( outputData == null ) {
+          putRows( data.metadataRowMeta, outputRows, nrOutputRows );
+          setOutputDone(); // signal end to receiver(s)
+          return false;
+        }
+
+        // Send the row on its way with the rest of the batch
+        //
+        outputRows[nrOutputRows++] = outputData;
+        if ( log.isRowLevel() ) {
+          logRowlevel( BaseMessages.getString( PKG, "SelectValues.Log.WroteRowToNextStep" )
+            + data.metadataRowMeta.getString( outputData ) );
+        }
+
+      } catch ( KettleException e ) {
+        if ( getStepMeta().isDoingErrorHandling() ) {
+          String field;
+          if ( e instanceof KettleConversionException ) {
+            List<ValueMetaInterface> fields = ( (KettleConversionException) e ).getFields();
+            field = fields.isEmpty() ? null : fields.get( 0 ).getName();
+          } else {
+            field = null;
+          }
+          // Send the rows before this one first, so the rows keep their order
+          putRows( data.metadataRowMeta, outputRows, nrOutputRows );
+          nrOutputRows = 0;
+          putError( getInputRowMeta(), rowCopy, 1, e.getMessage(), field, "SELECT001" );
         } else {
-          field = null;
+          throw e;
         }
-        putError( getInputRowMeta(), rowCopy, 1, e.getMessage(), field, "SELECT001" );
-      } else {
-        throw e;
+      }
+
+      if ( checkFeedback( linesRead ) ) {
+        logBasic( BaseMessages.getString( PKG, "SelectValues.Log.LineNumber" ) + linesRead );
       }
     }
 
-    if ( checkFeedback( getLinesRead() ) ) {
-      logBasic( BaseMessages.getString( PKG, "SelectValues.Log.LineNumber" ) + getLinesRead() );
+    putRows( data.metadataRowMeta, outputRows, nrOutputRows );
+
+    // The first rows determined the field positions, see if the next batches can be projected as columns
+    //
+    if ( batch != null && data.firstbatch ) {
+      data.firstbatch = false;
+      data.batchFieldnrs = getBatchFieldnrs();
     }
 
     return true;
   }
 
+  /**
+   * Select and remove the fields of a batch of rows by re-arranging the columns, without cloning the values. The
+   * metadata changes are still done row by row.
+   */
+  private void processRowBatch( RowBatch batch ) throws KettleException {
+    long linesRead = getLinesRead() - batch.size();
+    for ( int i = 0; i < batch.size(); i++ ) {
+      if ( checkFeedback( ++linesRead ) ) {
+        logBasic( BaseMessages.getString( PKG, "SelectValues.Log.LineNumber" ) + linesRead );
+      }
+    }
+
+    RowBatch selected = batch.select( data.deselectRowMeta, data.batchFieldnrs );
+    if ( !data.metadata ) {
+      putRowBatch( data.metadataRowMeta, selected );
+      return;
+    }
+
+    Object[][] outputRows = selected.toRows();
+    for ( int i = 0; i < outputRows.length; i++ ) {
+      outputRows[i] = metadataValues( data.deselectRowMeta, outputRows[i] );
+    }
+    putRows( data.metadataRowMeta, outputRows );
+  }
+
+  /**
+   * @return the input fields in the order of the output after selecting and removing fields, or null if the rows
+   *         can't be processed as column batches. That is the case when the same field is selected more than once (the
+   *         values would have to be cloned), when the selected fields are not in the input or when metadata changes
+   *         can send rows to error handling.
+   */
+  private int[] getBatchFieldnrs() {
+    if ( ( data.select && data.firstselect ) || ( data.deselect && data.firstdeselect )
+      || ( data.metadata && getStepMeta().isDoingErrorHandling() ) ) {
+      return null;
+    }
+
+    List<Integer> fieldnrs = new ArrayList<Integer>();
+    if ( data.select ) {
+      for ( int idx : data.fieldnrs ) {
+        if ( idx >= getInputRowMeta().size() || fieldnrs.contains( idx ) ) {
+          return null;
+        }
+        fieldnrs.add( idx );
+      }
+      for ( int idx : data.extraFieldnrs ) {
+        fieldnrs.add( idx );
+      }
+    } else {
+      for ( int i = 0; i < getInputRowMeta().size(); i++ ) {
+        fieldnrs.add( i );
+      }
+    }
+    if ( data.deselect ) {
+      // removenrs is sorted, remove from the back to keep the positions valid
+      for ( int i = data.removenrs.length - 1; i >= 0; i-- ) {
+        fieldnrs.remove( data.removenrs[i] );
+      }
+    }
+
+    int[] result = new int[fieldnrs.size()];
+    for ( int i = 0; i < result.length; i++ ) {
+      result[i] = fieldnrs.get( i );
+    }
+    return result;
+  }
+
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (SelectValuesMeta) smi;
     data = (SelectValuesData) sdi;
@@ -423,6 +528,7 @@ public class SelectValues extends BaseStep implements StepInterface {
       data.firstselect = true;
       data.firstdeselect = true;
       data.firstmetadata = true;
+      data.firstbatch = true;
 
       data.select = false;
       data.deselect = false;
@@ -39,6 +39,10 @@ public class SelectValuesData extends BaseStepData implements StepDataInterface
   public boolean firstselect;
   public boolean firstdeselect;
   public boolean firstmetadata;
+  public boolean firstbatch;
+
+  /** The input fields in the order of the output after selecting and removing, used to project a column batch. */
+  public int[] batchFieldnrs;
 
   public RowMetaInterface selectRowMeta;
   public RowMetaInterface deselectRowMeta;
@@ -0,0 +1,122 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import java.util.Comparator;
+
+/**
+ * Tournament tree of losers for a k-way merge. Every leaf holds the current head of one input, every inner node the
+ * input that lost the match played there. Replacing the winner only replays the matches on its path to the root, so
+ * picking the next value costs log2(k) comparisons.<br>
+ * <br>
+ * A null head means the input is exhausted: it loses against any value. Equal values are won by the input with the
+ * lowest number, which keeps the merge stable.
+ */
+public class LoserTree<T> {
+
+  private final Comparator<? super T> comparator;
+  private final T[] heads;
+
+  /** The loser of every inner node (1..k-1), the overall winner in position 0 */
+  private final int[] tree;
+
+  /**
+   * Build the tree.
+   *
+   * @param comparator
+   *          the order of the values
+   * @param heads
+   *          the first value of every input, null if the input is empty. The array is used by the tree.
+   */
+  public LoserTree( Comparator<? super T> comparator, T[] heads ) {
+    if ( heads.length == 0 ) {
+      throw new IllegalArgumentException( "A merge needs at least one input" );
+    }
+    this.comparator = comparator;
+    this.heads = heads;
+    this.tree = new int[heads.length];
+
+    // The first input to arrive at an inner node waits there for the winner of the other subtree
+    for ( int i = 0; i < tree.length; i++ ) {
+      tree[i] = -1;
+    }
+    for ( int i = 0; i < heads.length; i++ ) {
+      replay( i );
+    }
+  }
+
+  /**
+   * @return the smallest current value, null once all inputs are exhausted
+   */
+  public T winner() {
+    return heads[tree[0]];
+  }
+
+  /**
+   * @return the number of the input the winner is coming from
+   */
+  public int winnerInput() {
+    return tree[0];
+  }
+
+  /**
+   * Replace the winner with the next value of its input.
+   *
+   * @param next
+   *          the next value, null if the input is exhausted
+   */
+  public void replaceWinner( T next ) {
+    int input = tree[0];
+    heads[input] = next;
+    replay( input );
+  }
+
+  private void replay( int input ) {
+    int winner = input;
+    for ( int node = ( input + heads.length ) >> 1; node > 0; node >>= 1 ) {
+      int opponent = tree[node];
+      if ( opponent < 0 ) {
+        tree[node] = winner;
+        return;
+      }
+      if ( beats( opponent, winner ) ) {
+        tree[node] = winner;
+        winner = opponent;
+      }
+    }
+    tree[0] = winner;
+  }
+
+  private boolean beats( int input1, int input2 ) {
+    T head1 = heads[input1];
+    T head2 = heads[input2];
+    if ( head2 == null ) {
+      return head1 != null || input1 < input2;
+    }
+    if ( head1 == null ) {
+      return false;
+    }
+    int cmp = comparator.compare( head1, head2 );
+    return cmp < 0 || ( cmp == 0 && input1 < input2 );
+  }
+}
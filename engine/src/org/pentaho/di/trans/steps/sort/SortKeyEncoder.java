@@ -0,0 +1,187 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import java.util.Arrays;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Encodes the sort fields of a row into a normalized byte key. Comparing two keys byte by byte (unsigned) gives the
+ * same result as {@link RowMetaInterface#compare(Object[], Object[], int[])} on the rows: nulls first, descending
+ * fields inverted, case insensitive strings folded the way {@link String#compareToIgnoreCase(String)} does.<br>
+ * <br>
+ * Every field starts with a null marker. Integers and dates are written as 8 bytes with the sign bit flipped, numbers
+ * as their bits made sortable, booleans as a single byte. Strings are written character by character in a variable
+ * length code that keeps the order of the UTF-16 characters, followed by a 0 byte.
+ */
+public class SortKeyEncoder {
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte NOT_NULL_VALUE = 1;
+
+  private final ValueMetaInterface[] valueMetas;
+  private final int[] fieldnrs;
+
+  public SortKeyEncoder( RowMetaInterface rowMeta, int[] fieldnrs ) {
+    this.fieldnrs = fieldnrs;
+    this.valueMetas = new ValueMetaInterface[fieldnrs.length];
+    for ( int i = 0; i < fieldnrs.length; i++ ) {
+      valueMetas[i] = rowMeta.getValueMeta( fieldnrs[i] );
+    }
+  }
+
+  /**
+   * @return true if all the sort fields have a data type that can be encoded
+   */
+  public static boolean isSupported( RowMetaInterface rowMeta, int[] fieldnrs ) {
+    for ( int fieldnr : fieldnrs ) {
+      switch ( rowMeta.getValueMeta( fieldnr ).getType() ) {
+        case ValueMetaInterface.TYPE_STRING:
+        case ValueMetaInterface.TYPE_INTEGER:
+        case ValueMetaInterface.TYPE_NUMBER:
+        case ValueMetaInterface.TYPE_DATE:
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          break;
+        default:
+          return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Encode the sort fields of a row. This method can be called from several threads at once.
+   *
+   * @param row
+   *          the row
+   * @return the key of the row
+   * @throws KettleValueException
+   *           in case a value can't be converted
+   */
+  public byte[] encode( Object[] row ) throws KettleValueException {
+    Key key = new Key();
+    for ( int i = 0; i < fieldnrs.length; i++ ) {
+      ValueMetaInterface valueMeta = valueMetas[i];
+      Object value = row[fieldnrs[i]];
+      if ( valueMeta.isNull( value ) ) {
+        // Nulls come first, also in descending order
+        key.write( NULL_VALUE );
+        continue;
+      }
+      key.write( NOT_NULL_VALUE );
+
+      int start = key.length;
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_STRING:
+          key.writeString( valueMeta.getString( value ), valueMeta.isCaseInsensitive() );
+          break;
+        case ValueMetaInterface.TYPE_INTEGER:
+          key.writeLong( valueMeta.getInteger( value ).longValue() ^ Long.MIN_VALUE );
+          break;
+        case ValueMetaInterface.TYPE_NUMBER:
+          long bits = Double.doubleToLongBits( valueMeta.getNumber( value ).doubleValue() );
+          key.writeLong( bits ^ ( ( bits >> 63 ) | Long.MIN_VALUE ) );
+          break;
+        case ValueMetaInterface.TYPE_DATE:
+          key.writeLong( valueMeta.getDate( value ).getTime() ^ Long.MIN_VALUE );
+          break;
+        default:
+          key.write( valueMeta.getBoolean( value ).booleanValue() ? (byte) 1 : (byte) 0 );
+          break;
+      }
+      if ( valueMeta.isSortedDescending() ) {
+        for ( int b = start; b < key.length; b++ ) {
+          key.bytes[b] = (byte) ~key.bytes[b];
+        }
+      }
+    }
+    return Arrays.copyOf( key.bytes, key.length );
+  }
+
+  /**
+   * Compare two keys byte by byte, unsigned.
+   */
+  public static int compare( byte[] key1, byte[] key2 ) {
+    int length = Math.min( key1.length, key2.length );
+    for ( int i = 0; i < length; i++ ) {
+      int cmp = ( key1[i] & 0xFF ) - ( key2[i] & 0xFF );
+      if ( cmp != 0 ) {
+        return cmp;
+      }
+    }
+    return key1.length - key2.length;
+  }
+
+  private static class Key {
+    private byte[] bytes = new byte[32];
+    private int length;
+
+    private void ensureCapacity( int extra ) {
+      if ( length + extra > bytes.length ) {
+        bytes = Arrays.copyOf( bytes, Math.max( bytes.length * 2, length + extra ) );
+      }
+    }
+
+    private void write( byte b ) {
+      ensureCapacity( 1 );
+      bytes[length++] = b;
+    }
+
+    private void writeLong( long value ) {
+      ensureCapacity( 8 );
+      for ( int shift = 56; shift >= 0; shift -= 8 ) {
+        bytes[length++] = (byte) ( value >>> shift );
+      }
+    }
+
+    /**
+     * Characters 0x0000-0x007E take 1 byte (0x01-0x7F), 0x007F-0x407E take 2 bytes (0x80-0xBF first) and the others 3
+     * bytes (0xC0 first). The string ends with a 0 byte so that a string sorts before any longer string it starts.
+     */
+    private void writeString( String string, boolean caseInsensitive ) {
+      int nrChars = string.length();
+      ensureCapacity( nrChars * 3 + 1 );
+      for ( int i = 0; i < nrChars; i++ ) {
+        char c = string.charAt( i );
+        if ( caseInsensitive ) {
+          c = Character.toLowerCase( Character.toUpperCase( c ) );
+        }
+        if ( c < 0x7F ) {
+          bytes[length++] = (byte) ( c + 1 );
+        } else if ( c < 0x407F ) {
+          int v = c - 0x7F;
+          bytes[length++] = (byte) ( 0x80 | ( v >>> 8 ) );
+          bytes[length++] = (byte) v;
+        } else {
+          bytes[length++] = (byte) 0xC0;
+          bytes[length++] = (byte) ( c >>> 8 );
+          bytes[length++] = (byte) c;
+        }
+      }
+      bytes[length++] = 0;
+    }
+  }
+}
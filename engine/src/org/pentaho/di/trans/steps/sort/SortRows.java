@@ -31,9 +31,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -41,10 +44,12 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
-import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.ExecutorUtil;
+import org.pentaho.di.core.util.LZ4BlockInputStream;
+import org.pentaho.di.core.util.LZ4BlockOutputStream;
 import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -94,6 +99,13 @@ public class SortRows extends BaseStep implements StepInterface {
       data.freeMemoryPct = Const.getPercentageFreeMemory();
       data.freeCounter = 0;
 
+      // The buffer being written in the background is still in memory: below the limit, finish it before growing
+      // this buffer any further, just like the rows would have been written right away without double buffering.
+      if ( data.runWriter != null && data.freeMemoryPctLimit > 0 && data.freeMemoryPct < data.freeMemoryPctLimit ) {
+        waitForRun();
+        data.freeMemoryPct = Const.getPercentageFreeMemory();
+      }
+
       if ( log.isDetailed() ) {
         data.memoryReporting++;
         if ( data.memoryReporting >= 10 ) {
@@ -106,7 +118,8 @@ public class SortRows extends BaseStep implements StepInterface {
     }
 
     // Buffer is full: sort & dump to disk
-    boolean doSort = data.buffer.size() == data.sortSize;
+    // The rows still being written in the background count against the sort size as well
+    boolean doSort = data.sortSize > 0 && data.buffer.size() + getPendingRunSize() >= data.sortSize;
     doSort |=
         data.freeMemoryPctLimit > 0 && data.freeMemoryPct < data.freeMemoryPctLimit
             && data.buffer.size() >= data.minSortSize;
@@ -128,36 +141,84 @@ public class SortRows extends BaseStep implements StepInterface {
       return;
     }
 
+    // Only one buffer is sorted and written at a time
+    waitForRun();
+
+    final List<Object[]> rows = data.buffer;
+    final FileObject fileObject = createTempFile();
+    data.files.add( fileObject ); // Remember the files!
+    final int fileNumber = data.bufferSizes.size();
+    data.bufferSizes.add( 0 ); // set once the rows are written
+
+    if ( data.sortSize < 0 ) {
+      if ( rows.size() > data.minSortSize ) {
+        data.minSortSize = rows.size(); // if we did it once, we can do
+                                        // it again.
+
+        // Memory usage goes up over time, even with garbage collection
+        // We need pointers, file handles, etc.
+        // As such, we're going to lower the min sort size a bit
+        //
+        data.minSortSize = (int) Math.round( data.minSortSize * 0.90 );
+      }
+    }
+
+    if ( data.parallelSort ) {
+      // Sort and write the full buffer in the background while the next one is filled (double buffering)
+      data.buffer = new ArrayList<Object[]>( rows.size() );
+      data.runSize = rows.size();
+      data.runWriter = ExecutorUtil.getExecutor().submit( new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          writeRun( rows, fileObject, fileNumber );
+          return null;
+        }
+      } );
+    } else {
+      writeRun( rows, fileObject, fileNumber );
+      reportBinaryStringConversions();
+    }
+
+    // How much memory do we have left?
+    //
+    data.freeMemoryPct = Const.getPercentageFreeMemory();
+    data.freeCounter = 0;
+    if ( data.sortSize <= 0 ) {
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.AvailableMemory", data.freeMemoryPct ) );
+      }
+    }
+
+    data.getBufferIndex = 0;
+  }
+
+  /**
+   * Sort a buffer of rows and write it to a temp-file.
+   *
+   * @param rows
+   *          the rows to write, the list is cleared afterwards
+   * @param fileObject
+   *          the temp-file
+   * @param fileNumber
+   *          the index of the temp-file in data.files
+   */
+  private void writeRun( List<Object[]> rows, FileObject fileObject, int fileNumber ) throws KettleException {
     // First sort the rows in buffer[]
-    quickSort( data.buffer );
+    quickSort( rows );
 
     // Then write them to disk...
-    DataOutputStream dos;
-    GZIPOutputStream gzos;
     int p;
 
     try {
-      FileObject fileObject =
-          KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
-              getTransMeta() );
-
-      data.files.add( fileObject ); // Remember the files!
-      OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
-      if ( data.compressFiles ) {
-        gzos = new GZIPOutputStream( new BufferedOutputStream( outputStream ) );
-        dos = new DataOutputStream( gzos );
-      } else {
-        dos = new DataOutputStream( new BufferedOutputStream( outputStream, 500000 ) );
-        gzos = null;
-      }
+      DataOutputStream dos = getDataOutputStream( fileObject );
 
       // Just write the data, nothing else
       List<Integer> duplicates = new ArrayList<Integer>();
       Object[] previousRow = null;
       if ( meta.isOnlyPassingUniqueRows() ) {
         int index = 0;
-        while ( index < data.buffer.size() ) {
-          Object[] row = data.buffer.get( index );
+        while ( index < rows.size() ) {
+          Object[] row = rows.get( index );
           if ( previousRow != null ) {
             int result = data.outputRowMeta.compare( row, previousRow, data.fieldnrs );
             if ( result == 0 ) {
@@ -174,10 +235,10 @@ public class SortRows extends BaseStep implements StepInterface {
       }
 
       // How many records do we have left?
-      data.bufferSizes.add( data.buffer.size() - duplicates.size() );
+      data.bufferSizes.set( fileNumber, rows.size() - duplicates.size() );
 
       int duplicatesIndex = 0;
-      for ( p = 0; p < data.buffer.size(); p++ ) {
+      for ( p = 0; p < rows.size(); p++ ) {
         boolean skip = false;
         if ( duplicatesIndex < duplicates.size() ) {
           if ( p == duplicates.get( duplicatesIndex ) ) {
@@ -186,105 +247,203 @@ public class SortRows extends BaseStep implements StepInterface {
           }
         }
         if ( !skip ) {
-          data.outputRowMeta.writeData( dos, data.buffer.get( p ) );
-        }
-      }
-
-      if ( data.sortSize < 0 ) {
-        if ( data.buffer.size() > data.minSortSize ) {
-          data.minSortSize = data.buffer.size(); // if we did it once, we can do
-                                                 // it again.
-
-          // Memory usage goes up over time, even with garbage collection
-          // We need pointers, file handles, etc.
-          // As such, we're going to lower the min sort size a bit
-          //
-          data.minSortSize = (int) Math.round( data.minSortSize * 0.90 );
+          data.outputRowMeta.writeData( dos, rows.get( p ) );
         }
       }
 
       // Clear the list
-      data.buffer.clear();
+      rows.clear();
 
       // Close temp-file
-      dos.close(); // close data stream
-      if ( gzos != null ) {
-        gzos.close(); // close gzip stream
-      }
-      outputStream.close(); // close file stream
+      dos.close(); // also closes the compression and file streams
+    } catch ( Exception e ) {
+      throw new KettleException( "Error processing temp-file!", e );
+    }
+  }
 
-      // How much memory do we have left?
-      //
-      data.freeMemoryPct = Const.getPercentageFreeMemory();
-      data.freeCounter = 0;
-      if ( data.sortSize <= 0 ) {
-        if ( log.isDetailed() ) {
-          logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.AvailableMemory", data.freeMemoryPct ) );
-        }
-      }
+  /**
+   * Wait until the buffer being sorted and written in the background is on disk.
+   */
+  private void waitForRun() throws KettleException {
+    if ( data.runWriter == null ) {
+      return;
+    }
+    try {
+      data.runWriter.get();
+      reportBinaryStringConversions();
+    } catch ( ExecutionException e ) {
+      throw new KettleException( "Error processing temp-file!", e.getCause() );
+    } catch ( InterruptedException e ) {
+      throw new KettleException( "Error processing temp-file!", e );
+    } finally {
+      data.runWriter = null;
+      data.runSize = 0;
+    }
+  }
+
+  /**
+   * @return the number of rows being sorted and written in the background, 0 if that is done
+   */
+  private int getPendingRunSize() {
+    if ( data.runWriter == null || data.runWriter.isDone() ) {
+      return 0;
+    }
+    return data.runSize;
+  }
 
+  private FileObject createTempFile() throws KettleException {
+    try {
+      return KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
+          getTransMeta() );
     } catch ( Exception e ) {
       throw new KettleException( "Error processing temp-file!", e );
     }
+  }
 
-    data.getBufferIndex = 0;
+  private DataOutputStream getDataOutputStream( FileObject fileObject ) throws KettleException {
+    try {
+      OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
+      if ( !data.compressFiles ) {
+        return new DataOutputStream( new BufferedOutputStream( outputStream, 500000 ) );
+      }
+      if ( data.lz4Compression ) {
+        return new DataOutputStream( new LZ4BlockOutputStream( outputStream ) );
+      }
+      return new DataOutputStream( new GZIPOutputStream( new BufferedOutputStream( outputStream ) ) );
+    } catch ( IOException e ) {
+      throw new KettleException( "Error processing temp-file!", e );
+    }
   }
 
-  private DataInputStream getDataInputStream( GZIPInputStream gzipInputStream ) {
-    DataInputStream result = new DataInputStream( gzipInputStream );
-    data.gzis.add( gzipInputStream );
-    return result;
+  private DataInputStream getDataInputStream( FileObject fileObject ) throws KettleException {
+    try {
+      InputStream inputStream = new BufferedInputStream( KettleVFS.getInputStream( fileObject ), data.readBufferSize );
+      if ( !data.compressFiles ) {
+        return new DataInputStream( inputStream );
+      }
+      if ( data.lz4Compression ) {
+        return new DataInputStream( new LZ4BlockInputStream( inputStream ) );
+      }
+      return new DataInputStream( new GZIPInputStream( inputStream ) );
+    } catch ( IOException e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SortRows.Error.ErrorReadingBackTempFiles" ), e );
+    }
   }
 
-  // get sorted rows from available files in iterative manner.
-  // that means call to this method will continue to return rows
-  // till all temp files will not be read to the end.
-  Object[] getBuffer() throws KettleValueException {
-    Object[] retval;
+  /**
+   * Open the first temp-files and read the first row of each of them.
+   *
+   * @param nrFiles
+   *          the number of temp-files to open
+   * @param inputs
+   *          receives the streams of the temp-files
+   * @return the tree that merges the rows of the temp-files
+   */
+  private LoserTree<RowTempFile> openTempFiles( int nrFiles, List<DataInputStream> inputs ) throws KettleException {
+    RowTempFile[] heads = new RowTempFile[nrFiles];
+    for ( int f = 0; f < nrFiles; f++ ) {
+      FileObject fileObject = data.files.get( f );
+      String filename = KettleVFS.getFilename( fileObject );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
+      }
+      inputs.add( getDataInputStream( fileObject ) );
 
-    // Open all files at once and read one row from each file...
-    if ( data.files.size() > 0 && ( data.dis.size() == 0 || data.fis.size() == 0 ) ) {
-      if ( log.isBasic() ) {
-        logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.FromFileExpectingRows",
+            filename, data.bufferSizes.get( f ) ) );
       }
+      heads[f] = readTempFile( inputs, f );
+    }
+    return new LoserTree<RowTempFile>( data.comparator, heads );
+  }
 
+  /**
+   * Read the next row of a temp-file. The number of rows left in the file is kept in data.bufferSizes, the file is
+   * closed and removed once all rows are read.
+   *
+   * @return the row or null if there are no rows left in the file
+   */
+  private RowTempFile readTempFile( List<DataInputStream> inputs, int fileNumber ) throws KettleException {
+    int rowsLeft = data.bufferSizes.get( fileNumber );
+    if ( rowsLeft == 0 ) {
+      FileObject fileObject = data.files.get( fileNumber );
       try {
-        for ( int f = 0; f < data.files.size() && !isStopped(); f++ ) {
-          FileObject fileObject = data.files.get( f );
-          String filename = KettleVFS.getFilename( fileObject );
-          if ( log.isDetailed() ) {
-            logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
-          }
-          InputStream fi = KettleVFS.getInputStream( fileObject );
-          DataInputStream di;
-          data.fis.add( fi );
-          if ( data.compressFiles ) {
-            di = getDataInputStream( new GZIPInputStream( new BufferedInputStream( fi ) ) );
-          } else {
-            di = new DataInputStream( new BufferedInputStream( fi, 50000 ) );
-          }
-          data.dis.add( di );
+        inputs.get( fileNumber ).close();
+        fileObject.delete();
+      } catch ( IOException e ) {
+        throw new KettleException( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", fileNumber,
+            fileObject.toString() ), e );
+      }
+      return null;
+    }
+    data.bufferSizes.set( fileNumber, rowsLeft - 1 );
+    try {
+      return newRowTempFile( data.outputRowMeta.readData( inputs.get( fileNumber ) ), fileNumber );
+    } catch ( SocketTimeoutException e ) {
+      throw new KettleValueException( e ); // should never happen on local files
+    }
+  }
+
+  /**
+   * Merge the oldest temp-files into one new temp-file until the remaining files can be merged at once. The first
+   * merge only takes as many files as needed to get to the limit, later ones take the maximum number of files.
+   */
+  private void limitOpenFiles() throws KettleException {
+    while ( data.maxOpenFiles > 1 && data.files.size() > data.maxOpenFiles && !isStopped() ) {
+      mergeTempFiles( Math.min( data.maxOpenFiles, data.files.size() - data.maxOpenFiles + 1 ) );
+    }
+  }
 
-          // How long is the buffer?
-          int buffersize = data.bufferSizes.get( f );
+  private void mergeTempFiles( int nrFiles ) throws KettleException {
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.MergingTempFiles", nrFiles ) );
+    }
 
-          if ( log.isDetailed() ) {
-            logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.FromFileExpectingRows",
-                filename, buffersize ) );
-          }
+    // Register the new file right away so that it is removed in case of trouble
+    FileObject fileObject = createTempFile();
+    data.files.add( fileObject );
+    data.bufferSizes.add( 0 );
 
-          if ( buffersize > 0 ) {
-            Object[] row = data.outputRowMeta.readData( di );
-            data.rowbuffer.add( row ); // new row from input stream
-            data.tempRows.add( new RowTempFile( row, f ) );
-          }
+    List<DataInputStream> inputs = new ArrayList<DataInputStream>( nrFiles );
+    int nrRows = 0;
+    try {
+      LoserTree<RowTempFile> tree = openTempFiles( nrFiles, inputs );
+      DataOutputStream dos = getDataOutputStream( fileObject );
+      try {
+        for ( RowTempFile next = tree.winner(); next != null; next = tree.winner() ) {
+          data.outputRowMeta.writeData( dos, next.row );
+          nrRows++;
+          tree.replaceWinner( readTempFile( inputs, next.fileNumber ) );
         }
+      } finally {
+        BaseStep.closeQuietly( dos );
+      }
+    } finally {
+      for ( DataInputStream input : inputs ) {
+        BaseStep.closeQuietly( input );
+      }
+    }
 
-        // Sort the data row buffer
-        Collections.sort( data.tempRows, data.comparator );
-      } catch ( Exception e ) {
-        logError( BaseMessages.getString( PKG, "SortRows.Error.ErrorReadingBackTempFiles" ), e );
+    data.bufferSizes.set( data.bufferSizes.size() - 1, nrRows );
+    data.files.subList( 0, nrFiles ).clear();
+    data.bufferSizes.subList( 0, nrFiles ).clear();
+  }
+
+  // get sorted rows from available files in iterative manner.
+  // that means call to this method will continue to return rows
+  // till all temp files will not be read to the end.
+  Object[] getBuffer() throws KettleException {
+    Object[] retval;
+
+    // Open all files at once and read one row from each file...
+    if ( data.files.size() > 0 && data.mergeTree == null ) {
+      limitOpenFiles();
+
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
       }
+      data.mergeTree = openTempFiles( data.files.size(), data.dis );
     }
 
     if ( data.files.size() == 0 ) {
@@ -297,76 +456,16 @@ public class SortRows extends BaseStep implements StepInterface {
         retval = null;
       }
     } else {
-      // read from disk processing
+      // read from disk processing: the loser tree knows which file has the smallest row
 
-      if ( data.rowbuffer.size() == 0 ) {
+      RowTempFile rowTempFile = data.mergeTree.winner();
+      if ( rowTempFile == null ) {
         retval = null;
       } else {
-        // We now have "filenr" rows waiting: which one is the smallest?
-        //
-        if ( log.isRowLevel() ) {
-          for ( int i = 0; i < data.rowbuffer.size() && !isStopped(); i++ ) {
-            Object[] b = data.rowbuffer.get( i );
-            logRowlevel( BaseMessages
-                .getString( PKG, "SortRows.RowLevel.PrintRow", i, data.outputRowMeta.getString( b ) ) );
-          }
-        }
-
-        RowTempFile rowTempFile = data.tempRows.remove( 0 );
         retval = rowTempFile.row;
-        int smallest = rowTempFile.fileNumber;
-
-        // now get another Row for position smallest
-
-        FileObject file = data.files.get( smallest );
-        DataInputStream di = data.dis.get( smallest );
-        InputStream fi = data.fis.get( smallest );
-
-        try {
-          Object[] row2 = data.outputRowMeta.readData( di );
-          RowTempFile extra = new RowTempFile( row2, smallest );
-
-          int index = Collections.binarySearch( data.tempRows, extra, data.comparator );
-          if ( index < 0 ) {
-            data.tempRows.add( index * ( -1 ) - 1, extra );
-          } else {
-            data.tempRows.add( index, extra );
-          }
-        } catch ( KettleFileException fe ) { // empty file or EOF mostly
-          GZIPInputStream gzfi = ( data.compressFiles ) ? data.gzis.get( smallest ) : null;
-          try {
-            di.close();
-            fi.close();
-            if ( gzfi != null ) {
-              gzfi.close();
-            }
-            file.delete();
-          } catch ( IOException e ) {
-            logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", smallest, file.toString() ) );
-            setErrors( 1 );
-            stopAll();
-            return null;
-          }
-
-          data.files.remove( smallest );
-          data.dis.remove( smallest );
-          data.fis.remove( smallest );
-
-          if ( gzfi != null ) {
-            data.gzis.remove( smallest );
-          }
 
-          // Also update all file numbers in in data.tempRows if they are larger
-          // than smallest.
-          //
-          for ( RowTempFile rtf : data.tempRows ) {
-            if ( rtf.fileNumber > smallest ) {
-              rtf.fileNumber--;
-            }
-          }
-        } catch ( SocketTimeoutException e ) {
-          throw new KettleValueException( e ); // should never happen on local files
-        }
+        // now get another Row from the same file
+        data.mergeTree.replaceWinner( readTempFile( data.dis, rowTempFile.fileNumber ) );
       }
     }
     return retval;
@@ -438,6 +537,10 @@ public class SortRows extends BaseStep implements StepInterface {
         i++;
       }
       data.rowComparator = new RowObjectArrayComparator( data.outputRowMeta, data.fieldnrs );
+      if ( data.normalizedKeys && SortKeyEncoder.isSupported( data.outputRowMeta, data.fieldnrs ) ) {
+        data.keyEncoder = new SortKeyEncoder( data.outputRowMeta, data.fieldnrs );
+        data.comparator = new RowTempFileKeyComparator();
+      }
     } // end if first
 
     // it is not first row and it is null
@@ -564,16 +667,19 @@ public class SortRows extends BaseStep implements StepInterface {
     //
     data.buffer = new ArrayList<Object[]>( 5000 );
 
-    // Buffer for reading from disk
-    //
-    data.rowbuffer = new ArrayList<Object[]>( 5000 );
-
     data.compressFiles = getBooleanValueOfVariable( meta.getCompressFilesVariable(), meta.getCompressFiles() );
 
-    data.tempRows = new ArrayList<RowTempFile>();
-
     data.minSortSize = 5000;
 
+    data.parallelSort = !"N".equalsIgnoreCase( getVariable( Const.KETTLE_SORT_ROWS_PARALLEL ) );
+    data.normalizedKeys = "Y".equalsIgnoreCase( getVariable( Const.KETTLE_SORT_ROWS_NORMALIZED_KEYS ) );
+    data.lz4Compression = "LZ4".equalsIgnoreCase( getVariable( Const.KETTLE_SORT_ROWS_COMPRESSION_CODEC ) );
+    data.readBufferSize = Const.toInt( getVariable( Const.KETTLE_SORT_ROWS_READ_BUFFER_SIZE ), 50000 );
+    if ( data.readBufferSize <= 0 ) {
+      data.readBufferSize = 50000;
+    }
+    data.maxOpenFiles = Const.toInt( getVariable( Const.KETTLE_SORT_ROWS_MAX_OPEN_FILES ), 0 );
+
     return true;
   }
 
@@ -585,22 +691,27 @@ public class SortRows extends BaseStep implements StepInterface {
 
   private void clearBuffers() {
 
+    // Let the buffer being written in the background finish before removing the files
+    if ( data.runWriter != null ) {
+      try {
+        data.runWriter.get();
+      } catch ( Exception e ) {
+        logError( e.getLocalizedMessage(), e );
+      }
+      data.runWriter = null;
+    }
+
     // Clean out the sort buffer
     data.buffer.clear();
     data.getBufferIndex = 0;
-    data.rowbuffer.clear();
+    data.mergeTree = null;
 
-    // close any open DataInputStream objects
+    // close any open DataInputStream objects, along with the streams they wrap
     if ( ( data.dis != null ) && ( data.dis.size() > 0 ) ) {
       for ( DataInputStream dis : data.dis ) {
         BaseStep.closeQuietly( dis );
       }
-    }
-    // close any open InputStream objects
-    if ( ( data.fis != null ) && ( data.fis.size() > 0 ) ) {
-      for ( InputStream is : data.fis ) {
-        BaseStep.closeQuietly( is );
-      }
+      data.dis.clear();
     }
     // remove temp files
     for ( int f = 0; f < data.files.size(); f++ ) {
@@ -613,6 +724,8 @@ public class SortRows extends BaseStep implements StepInterface {
         logError( e.getLocalizedMessage(), e );
       }
     }
+    data.files.clear();
+    data.bufferSizes.clear();
   }
 
   /**
@@ -620,19 +733,61 @@ public class SortRows extends BaseStep implements StepInterface {
    */
   void quickSort( List<Object[]> elements ) throws KettleException {
     if ( elements.size() > 0 ) {
-      Collections.sort( elements, data.rowComparator );
-
-      long nrConversions = 0L;
-      for ( ValueMetaInterface valueMeta : data.outputRowMeta.getValueMetaList() ) {
-        nrConversions += valueMeta.getNumberOfBinaryStringConversions();
-        valueMeta.setNumberOfBinaryStringConversions( 0L );
-      }
-      if ( log.isDetailed() ) {
-        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.ReportNumberOfBinaryStringConv", nrConversions ) );
+      if ( data.keyEncoder != null ) {
+        sortOnKeys( elements );
+      } else if ( data.parallelSort ) {
+        // Fork/join merge sort over all cores, stable just like Collections.sort()
+        Object[][] rows = elements.toArray( new Object[elements.size()][] );
+        Arrays.parallelSort( rows, data.rowComparator );
+        for ( int i = 0; i < rows.length; i++ ) {
+          elements.set( i, rows[i] );
+        }
+      } else {
+        Collections.sort( elements, data.rowComparator );
       }
     }
   }
 
+  /**
+   * Report and reset the number of binary string conversions done while sorting. This is only called from the step
+   * thread, once the sort of the buffer is done.
+   */
+  private void reportBinaryStringConversions() {
+    long nrConversions = 0L;
+    for ( ValueMetaInterface valueMeta : data.outputRowMeta.getValueMetaList() ) {
+      nrConversions += valueMeta.getNumberOfBinaryStringConversions();
+      valueMeta.setNumberOfBinaryStringConversions( 0L );
+    }
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.ReportNumberOfBinaryStringConv", nrConversions ) );
+    }
+  }
+
+  /**
+   * Sort the rows on their normalized sort keys: every row is encoded once, after that only byte arrays are compared.
+   */
+  private void sortOnKeys( List<Object[]> elements ) throws KettleException {
+    RowTempFile[] rows = new RowTempFile[elements.size()];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] = newRowTempFile( elements.get( i ), -1 );
+    }
+    if ( data.parallelSort ) {
+      Arrays.parallelSort( rows, data.comparator );
+    } else {
+      Arrays.sort( rows, data.comparator );
+    }
+    for ( int i = 0; i < rows.length; i++ ) {
+      elements.set( i, rows[i].row );
+    }
+  }
+
+  private RowTempFile newRowTempFile( Object[] row, int fileNumber ) throws KettleValueException {
+    if ( data.keyEncoder == null ) {
+      return new RowTempFile( row, fileNumber );
+    }
+    return new RowTempFile( row, data.keyEncoder.encode( row ), fileNumber );
+  }
+
   /**
    * Calling this method will alert the step that we finished passing records to the step. Specifically for steps like
    * "Sort Rows" it means that the buffered rows can be sorted and passed on.
@@ -648,9 +803,13 @@ public class SortRows extends BaseStep implements StepInterface {
     if ( data.files.size() > 0 ) {
       // dump to dist and then read from disk
       sortExternalRows();
+      waitForRun();
     } else {
       // sort in memory
       quickSort( data.buffer );
+      if ( !data.buffer.isEmpty() ) {
+        reportBinaryStringConversions();
+      }
     }
   }
 
@@ -697,6 +856,13 @@ public class SortRows extends BaseStep implements StepInterface {
     }
   }
 
+  private static class RowTempFileKeyComparator implements Comparator<RowTempFile> {
+    @Override
+    public int compare( RowTempFile o1, RowTempFile o2 ) {
+      return SortKeyEncoder.compare( o1.key, o2.key );
+    }
+  }
+
   private class RowObjectArrayComparator extends SortRowsComparator implements Comparator<Object[]> {
     RowObjectArrayComparator( RowMetaInterface rowMeta, int[] fieldNrs ) {
       super( rowMeta, fieldNrs );
@@ -23,11 +23,10 @@
 package org.pentaho.di.trans.steps.sort;
 
 import java.io.DataInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.Future;
 
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -43,14 +42,11 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public List<Object[]> buffer;
   public int getBufferIndex;
 
-  public List<InputStream> fis;
-  public List<GZIPInputStream> gzis;
   public List<DataInputStream> dis;
-  public List<Object[]> rowbuffer;
   public List<Integer> bufferSizes;
 
-  // To store rows and file references
-  public List<RowTempFile> tempRows;
+  // To store rows and file references: the current row of every temp-file
+  public LoserTree<RowTempFile> mergeTree;
 
   public int[] fieldnrs; // the corresponding field numbers;
   public FileObject fil;
@@ -69,6 +65,25 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public int freeMemoryPctLimit;
   public int memoryReporting;
 
+  /** Sort the buffers on all cores and write them to disk in the background */
+  public boolean parallelSort;
+  /** The buffer being sorted and written in the background, null if there is none */
+  public Future<?> runWriter;
+  /** The number of rows in the buffer being sorted and written in the background */
+  public int runSize;
+
+  /** Compare the rows on their normalized sort keys if the data types of the sort fields allow it */
+  public boolean normalizedKeys;
+  /** Encodes the normalized sort keys, null if the rows are compared field by field */
+  public SortKeyEncoder keyEncoder;
+
+  /** Compress the temp-files with LZ4 rather than GZIP */
+  public boolean lz4Compression;
+  /** The size of the read buffer of every temp-file that is merged */
+  public int readBufferSize;
+  /** The maximum number of temp-files to merge at once, 0 for no limit */
+  public int maxOpenFiles;
+
   /*
    * Group Fields Implementation heroic
    */
@@ -80,8 +95,6 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
     super();
 
     files = new ArrayList<FileObject>();
-    fis = new ArrayList<InputStream>();
-    gzis = new ArrayList<GZIPInputStream>();
     dis = new ArrayList<DataInputStream>();
     bufferSizes = new ArrayList<Integer>();
 
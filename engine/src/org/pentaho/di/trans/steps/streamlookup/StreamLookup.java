@@ -33,6 +33,7 @@ import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashIndex;
+import org.pentaho.di.core.hash.ByteArraySlabHashIndex;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -198,6 +199,14 @@ public class StreamLookup extends BaseStep implements StepInterface {
 
         data.cacheKeyMeta = cacheKeyMeta;
         data.cacheValueMeta = cacheValueMeta;
+
+        // Slab storage replaces the hash map and the byte array hash index, not the other algorithms
+        String storage = getVariable( Const.KETTLE_STREAM_LOOKUP_STORAGE );
+        boolean slabStorage = "HEAP".equalsIgnoreCase( storage ) || "OFF_HEAP".equalsIgnoreCase( storage );
+        if ( slabStorage
+          && !( meta.isMemoryPreservationActive() && ( meta.isUsingSortedList() || meta.isUsingIntegerPair() ) ) ) {
+          data.slabIndex = new ByteArraySlabHashIndex( "OFF_HEAP".equalsIgnoreCase( storage ) );
+        }
       }
 
       Object[] keyData = new Object[keyNrs.length];
@@ -218,6 +227,13 @@ public class StreamLookup extends BaseStep implements StepInterface {
       rowData = getRowFrom( rowSet );
     }
 
+    if ( data.slabIndex != null && log.isDetailed() ) {
+      long bytes = data.slabIndex.getMemoryUsage();
+      int size = data.slabIndex.getSize();
+      logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.SlabStorageUsage", size, bytes,
+        size == 0 ? 0 : bytes / size, data.slabIndex.isOffHeap() ? "off-heap" : "heap" ) );
+    }
+
     return true;
   }
 
@@ -294,7 +310,9 @@ public class StreamLookup extends BaseStep implements StepInterface {
 
   private void addToCache( RowMetaInterface keyMeta, Object[] keyData, RowMetaInterface valueMeta,
     Object[] valueData ) throws KettleValueException {
-    if ( meta.isMemoryPreservationActive() ) {
+    if ( data.slabIndex != null ) {
+      data.slabIndex.put( RowMeta.extractData( keyMeta, keyData ), RowMeta.extractData( valueMeta, valueData ) );
+    } else if ( meta.isMemoryPreservationActive() ) {
       if ( meta.isUsingSortedList() ) {
         KeyValue keyValue = new KeyValue( keyData, valueData );
         int idx = Collections.binarySearch( data.list, keyValue, data.comparator );
@@ -336,7 +354,13 @@ public class StreamLookup extends BaseStep implements StepInterface {
   }
 
   private Object[] getFromCache( RowMetaInterface keyMeta, Object[] keyData ) throws KettleValueException {
-    if ( meta.isMemoryPreservationActive() ) {
+    if ( data.slabIndex != null ) {
+      byte[] value = data.slabIndex.get( RowMeta.extractData( keyMeta, keyData ) );
+      if ( value == null ) {
+        return null;
+      }
+      return RowMeta.getRow( data.cacheValueMeta, value );
+    } else if ( meta.isMemoryPreservationActive() ) {
       if ( meta.isUsingSortedList() ) {
         KeyValue keyValue = new KeyValue( keyData, null );
         int idx = Collections.binarySearch( data.list, keyValue, data.comparator );
@@ -480,6 +504,7 @@ public class StreamLookup extends BaseStep implements StepInterface {
     data.list = null;
     data.hashIndex = null;
     data.longIndex = null;
+    data.slabIndex = null; // off-heap slabs are freed once collected
 
     super.dispose( smi, sdi );
   }
@@ -23,6 +23,9 @@
 package org.pentaho.di.trans.steps.tableinput;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.RowMetaAndData;
@@ -142,7 +145,7 @@ public class TableInput extends BaseStep implements StepInterface {
     } else {
       if ( data.thisrow != null ) { // We can expect more rows
 
-        data.nextrow = data.db.getRow( data.rs, meta.isLazyConversionActive() );
+        data.nextrow = getRowFromResultSet();
         if ( data.nextrow != null ) {
           incrementLinesInput();
         }
@@ -199,13 +202,61 @@ public class TableInput extends BaseStep implements StepInterface {
     return true;
   }
 
-  private void closePreviousQuery() throws KettleDatabaseException {
+  private Object[] getRowFromResultSet() throws KettleDatabaseException {
+    Object[] row;
+    if ( data.prefetcher != null ) {
+      row = data.prefetcher.getRow();
+    } else {
+      row = data.db.getRow( data.rs, meta.isLazyConversionActive() );
+    }
+    if ( row != null && data.partitionedQuery != null && !data.partitionedQuery.readRow( data.rowLimit ) ) {
+      // The copies of the step together read the rows of the limit
+      return null;
+    }
+    return row;
+  }
+
+  private void closePreviousQuery() throws KettleException {
+    if ( data.prefetcher != null ) {
+      // The reader has to let go of the result set before we close it
+      TableInputPrefetcher prefetcher = data.prefetcher;
+      data.prefetcher = null;
+      prefetcher.close();
+    }
     if ( data.db != null ) {
       data.db.closeQuery( data.rs );
     }
   }
 
-  private boolean doQuery( RowMetaInterface parametersMeta, Object[] parameters ) throws KettleDatabaseException {
+  /**
+   * Read the rows of the query in the background. The fetch size is adapted to the width of the rows, except on MySQL
+   * where the driver either streams the rows one by one or reads them all at once.
+   */
+  private void startPrefetcher() {
+    if ( !meta.getDatabaseMeta().isMySQLVariant() && meta.getDatabaseMeta().isFetchSizeSupported()
+      && data.rowMeta != null ) {
+      int fetchSize = TableInputPrefetcher.getAdaptiveFetchSize( data.rowMeta );
+      int rowLimit = Const.toInt( environmentSubstitute( meta.getRowLimit() ), 0 );
+      if ( rowLimit > 0 ) {
+        fetchSize = Math.min( fetchSize, rowLimit );
+      }
+      try {
+        data.rs.setFetchSize( fetchSize );
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "TableInput.Log.FetchSize", fetchSize ) );
+        }
+      } catch ( SQLException e ) {
+        // Not every driver can change the fetch size of an open result set, keep the one of the statement
+        if ( log.isDebug() ) {
+          logDebug( "Unable to change the fetch size of the result set: " + e.getMessage() );
+        }
+      }
+    }
+    data.prefetcher =
+      new TableInputPrefetcher( data.db, data.rs, meta.isLazyConversionActive(), data.prefetchSize );
+  }
+
+  private boolean doQuery( RowMetaInterface parametersMeta, Object[] parameters ) throws KettleException {
     boolean success = true;
 
     // Open the query with the optional parameters received from the source steps.
@@ -216,6 +267,36 @@ public class TableInput extends BaseStep implements StepInterface {
       sql = meta.getSQL();
     }
 
+    if ( data.partitioner != null ) {
+      // Only read the slice of this step copy
+      data.partitionedQuery = getPartitionedQuery( sql, parametersMeta, parameters );
+      if ( TableInputMeta.PARTITION_METHOD_RANGE.equals( meta.getPartitionMethod() ) ) {
+        final String minMaxSQL = data.partitioner.getMinMaxSQL( sql );
+        final RowMetaInterface minMaxParametersMeta = parametersMeta;
+        final Object[] minMaxParameters = parameters;
+        RowMetaAndData minMax = data.partitionedQuery.getMinMax( new Callable<RowMetaAndData>() {
+          @Override
+          public RowMetaAndData call() throws Exception {
+            return getMinMax( minMaxSQL, minMaxParametersMeta, minMaxParameters );
+          }
+        } );
+        ValueMetaInterface boundaryMeta = minMax.getRowMeta().getValueMeta( 0 );
+        Object[] boundaries =
+          data.partitioner.getRangeBoundaries( boundaryMeta, minMax.getData()[0], minMax.getData()[1] );
+        Object[] rangeParameters = data.partitioner.getRangeParameters( boundaries );
+
+        RowMetaInterface rangeParametersMeta = parametersMeta.clone();
+        for ( int i = 0; i < rangeParameters.length; i++ ) {
+          rangeParametersMeta.addValueMeta( boundaryMeta.clone() );
+        }
+        parameters = RowDataUtil.addRowData( parameters, parametersMeta.size(), rangeParameters );
+        parametersMeta = rangeParametersMeta;
+        sql = data.partitioner.getRangeSQL( sql, boundaries );
+      } else {
+        sql = data.partitioner.getModuloSQL( sql );
+      }
+    }
+
     if ( log.isDetailed() ) {
       logDetailed( "SQL query : " + sql );
     }
@@ -242,11 +323,15 @@ public class TableInput extends BaseStep implements StepInterface {
         }
       }
 
+      if ( data.prefetchSize > 0 ) {
+        startPrefetcher();
+      }
+
       // Get the first row...
-      data.thisrow = data.db.getRow( data.rs );
+      data.thisrow = getRowFromResultSet();
       if ( data.thisrow != null ) {
         incrementLinesInput();
-        data.nextrow = data.db.getRow( data.rs );
+        data.nextrow = getRowFromResultSet();
         if ( data.nextrow != null ) {
           incrementLinesInput();
         }
@@ -255,6 +340,53 @@ public class TableInput extends BaseStep implements StepInterface {
     return success;
   }
 
+  /**
+   * Get the query that the copies of this step in the transformation run together. The first copy hands it out to the
+   * others, until they all have it.
+   */
+  private TableInputPartitionedQuery getPartitionedQuery( String sql, RowMetaInterface parametersMeta,
+    Object[] parameters ) throws KettleException {
+    StepDataInterface firstCopyData = getTrans().getStepDataInterface( getStepname(), 0 );
+    if ( !( firstCopyData instanceof TableInputData ) ) {
+      return new TableInputPartitionedQuery( 1 );
+    }
+    Map<String, TableInputPartitionedQuery> queries = ( (TableInputData) firstCopyData ).partitionedQueries;
+    String key = parametersMeta.isEmpty() ? sql : sql + Const.CR + parametersMeta.getString( parameters );
+    synchronized ( queries ) {
+      TableInputPartitionedQuery query = queries.get( key );
+      if ( query == null ) {
+        query = new TableInputPartitionedQuery( getStepMeta().getCopies() );
+        queries.put( key, query );
+      }
+      if ( query.join() ) {
+        queries.remove( key );
+      }
+      return query;
+    }
+  }
+
+  /**
+   * Look up the minimum and maximum of the partition column in the result of the query.
+   */
+  private RowMetaAndData getMinMax( String minMaxSQL, RowMetaInterface parametersMeta, Object[] parameters )
+    throws KettleDatabaseException {
+    if ( log.isDetailed() ) {
+      logDetailed( "SQL query : " + minMaxSQL );
+    }
+    ResultSet rs;
+    if ( parametersMeta.isEmpty() ) {
+      rs = data.db.openQuery( minMaxSQL, null, null, ResultSet.FETCH_FORWARD, false );
+    } else {
+      rs = data.db.openQuery( minMaxSQL, parametersMeta, parameters, ResultSet.FETCH_FORWARD, false );
+    }
+    try {
+      Object[] row = data.db.getRow( rs );
+      return new RowMetaAndData( data.db.getReturnRowMeta(), row == null ? new Object[2] : row );
+    } finally {
+      data.db.closeQuery( rs );
+    }
+  }
+
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     if ( log.isBasic() ) {
       logBasic( "Finished reading query, closing connection." );
@@ -318,7 +450,30 @@ public class TableInput extends BaseStep implements StepInterface {
       data.db = new Database( this, meta.getDatabaseMeta() );
       data.db.shareVariablesWith( this );
 
-      data.db.setQueryLimit( Const.toInt( environmentSubstitute( meta.getRowLimit() ), 0 ) );
+      data.rowLimit = Const.toInt( environmentSubstitute( meta.getRowLimit() ), 0 );
+      data.db.setQueryLimit( data.rowLimit );
+      data.prefetchSize = Const.toInt( environmentSubstitute( meta.getPrefetchSize() ), 0 );
+
+      if ( meta.isPartitioned() && getUniqueStepCountAcrossSlaves() > 1 ) {
+        String partitionColumn = environmentSubstitute( meta.getPartitionColumn() );
+        data.partitioner =
+          new TableInputPartitioner( meta.getDatabaseMeta(), partitionColumn, getUniqueStepNrAcrossSlaves(),
+            getUniqueStepCountAcrossSlaves() );
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "TableInput.Log.Partition", getUniqueStepNrAcrossSlaves() + 1,
+            getUniqueStepCountAcrossSlaves(), partitionColumn ) );
+        }
+
+        // The query becomes a sub-select, where ORDER BY only sorts the slice or isn't allowed at all
+        String sql = meta.isVariableReplacementActive() ? environmentSubstitute( meta.getSQL() ) : meta.getSQL();
+        if ( TableInputPartitioner.hasOrderBy( sql ) ) {
+          if ( !data.partitioner.isOrderBySupported() ) {
+            logError( BaseMessages.getString( PKG, "TableInput.Exception.PartitionOrderBy" ) );
+            return false;
+          }
+          logBasic( BaseMessages.getString( PKG, "TableInput.Log.PartitionOrderBy" ) );
+        }
+      }
 
       try {
         if ( getTransMeta().isUsingUniqueConnections() ) {
@@ -23,6 +23,8 @@
 package org.pentaho.di.trans.steps.tableinput;
 
 import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.database.Database;
@@ -46,6 +48,26 @@ public class TableInputData extends BaseStepData implements StepDataInterface {
   public boolean isCanceled;
   public StreamInterface infoStream;
 
+  /** The number of rows to read ahead, 0 to read in the step thread */
+  public int prefetchSize;
+  public TableInputPrefetcher prefetcher;
+
+  /** Splits the query over the step copies, null if every copy reads all of it */
+  public TableInputPartitioner partitioner;
+
+  /** The query that the copies of the step run together, null if every copy reads all of it */
+  public TableInputPartitionedQuery partitionedQuery;
+
+  /** The maximum number of rows to read, by all the copies together when the query is split, 0 for no limit */
+  public int rowLimit;
+
+  /**
+   * The partitioned queries that the copies of the step run together, by query and parameter values. Only the data of
+   * the first copy holds them.
+   */
+  public final Map<String, TableInputPartitionedQuery> partitionedQueries =
+    new HashMap<String, TableInputPartitionedQuery>();
+
   public TableInputData() {
     super();
 
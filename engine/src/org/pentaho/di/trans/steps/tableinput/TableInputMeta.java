@@ -70,6 +70,18 @@ import java.util.List;
 public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
   private static Class<?> PKG = TableInputMeta.class; // for i18n purposes, needed by Translator2!!
 
+  public static final String PARTITION_METHOD_NONE = "none";
+  public static final String PARTITION_METHOD_RANGE = "range";
+  public static final String PARTITION_METHOD_MODULO = "modulo";
+
+  public static final String[] partitionMethodCodes = {
+    PARTITION_METHOD_NONE, PARTITION_METHOD_RANGE, PARTITION_METHOD_MODULO, };
+
+  public static final String[] partitionMethodDescriptions = {
+    BaseMessages.getString( PKG, "TableInputMeta.PartitionMethod.None" ),
+    BaseMessages.getString( PKG, "TableInputMeta.PartitionMethod.Range" ),
+    BaseMessages.getString( PKG, "TableInputMeta.PartitionMethod.Modulo" ), };
+
   private DatabaseMeta databaseMeta;
   private String sql;
   private String rowLimit;
@@ -81,6 +93,15 @@ public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
 
   private boolean lazyConversionActive;
 
+  /** The number of rows to read ahead on a separate thread, 0 to read in the step thread */
+  private String prefetchSize;
+
+  /** How the step copies split the query between them, see {@link #partitionMethodCodes} */
+  private String partitionMethod;
+
+  /** The numeric or date column the copies split the query on */
+  private String partitionColumn;
+
   public TableInputMeta() {
     super();
   }
@@ -167,6 +188,9 @@ public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
       executeEachInputRow = "Y".equals( XMLHandler.getTagValue( stepnode, "execute_each_row" ) );
       variableReplacementActive = "Y".equals( XMLHandler.getTagValue( stepnode, "variables_active" ) );
       lazyConversionActive = "Y".equals( XMLHandler.getTagValue( stepnode, "lazy_conversion_active" ) );
+      prefetchSize = XMLHandler.getTagValue( stepnode, "prefetch_size" );
+      partitionMethod = XMLHandler.getTagValue( stepnode, "partition_method" );
+      partitionColumn = XMLHandler.getTagValue( stepnode, "partition_column" );
     } catch ( Exception e ) {
       throw new KettleXMLException( "Unable to load step info from XML", e );
     }
@@ -176,6 +200,9 @@ public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
     databaseMeta = null;
     sql = "SELECT <values> FROM <table name> WHERE <conditions>";
     rowLimit = "0";
+    prefetchSize = "0";
+    partitionMethod = PARTITION_METHOD_NONE;
+    partitionColumn = null;
   }
 
   protected Database getDatabase() {
@@ -277,6 +304,9 @@ public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
     retval.append( "    " + XMLHandler.addTagValue( "execute_each_row", executeEachInputRow ) );
     retval.append( "    " + XMLHandler.addTagValue( "variables_active", variableReplacementActive ) );
     retval.append( "    " + XMLHandler.addTagValue( "lazy_conversion_active", lazyConversionActive ) );
+    retval.append( "    " + XMLHandler.addTagValue( "prefetch_size", prefetchSize ) );
+    retval.append( "    " + XMLHandler.addTagValue( "partition_method", partitionMethod ) );
+    retval.append( "    " + XMLHandler.addTagValue( "partition_column", partitionColumn ) );
 
     return retval.toString();
   }
@@ -298,6 +328,9 @@ public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
       executeEachInputRow = rep.getStepAttributeBoolean( id_step, "execute_each_row" );
       variableReplacementActive = rep.getStepAttributeBoolean( id_step, "variables_active" );
       lazyConversionActive = rep.getStepAttributeBoolean( id_step, "lazy_conversion_active" );
+      prefetchSize = rep.getStepAttributeString( id_step, "prefetch_size" );
+      partitionMethod = rep.getStepAttributeString( id_step, "partition_method" );
+      partitionColumn = rep.getStepAttributeString( id_step, "partition_column" );
     } catch ( Exception e ) {
       throw new KettleException( "Unexpected error reading step information from the repository", e );
     }
@@ -313,6 +346,9 @@ public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
       rep.saveStepAttribute( id_transformation, id_step, "execute_each_row", executeEachInputRow );
       rep.saveStepAttribute( id_transformation, id_step, "variables_active", variableReplacementActive );
       rep.saveStepAttribute( id_transformation, id_step, "lazy_conversion_active", lazyConversionActive );
+      rep.saveStepAttribute( id_transformation, id_step, "prefetch_size", prefetchSize );
+      rep.saveStepAttribute( id_transformation, id_step, "partition_method", partitionMethod );
+      rep.saveStepAttribute( id_transformation, id_step, "partition_column", partitionColumn );
 
       // Also, save the step-database relationship!
       if ( databaseMeta != null ) {
@@ -520,6 +556,59 @@ public class TableInputMeta extends BaseStepMeta implements StepMetaInterface {
     this.lazyConversionActive = lazyConversionActive;
   }
 
+  /**
+   * @return the number of rows to read ahead on a separate thread, 0 to read in the step thread
+   */
+  public String getPrefetchSize() {
+    return prefetchSize;
+  }
+
+  /**
+   * @param prefetchSize
+   *          the number of rows to read ahead on a separate thread, 0 to read in the step thread
+   */
+  public void setPrefetchSize( String prefetchSize ) {
+    this.prefetchSize = prefetchSize;
+  }
+
+  /**
+   * @return how the step copies split the query between them, one of {@link #partitionMethodCodes}
+   */
+  public String getPartitionMethod() {
+    return partitionMethod;
+  }
+
+  /**
+   * @param partitionMethod
+   *          how the step copies split the query between them, one of {@link #partitionMethodCodes}
+   */
+  public void setPartitionMethod( String partitionMethod ) {
+    this.partitionMethod = partitionMethod;
+  }
+
+  /**
+   * @return the numeric or date column the copies split the query on
+   */
+  public String getPartitionColumn() {
+    return partitionColumn;
+  }
+
+  /**
+   * @param partitionColumn
+   *          the numeric or date column the copies split the query on
+   */
+  public void setPartitionColumn( String partitionColumn ) {
+    this.partitionColumn = partitionColumn;
+  }
+
+  /**
+   * @return true if the step copies each read a slice of the query instead of all of it
+   */
+  public boolean isPartitioned() {
+    return !Const.isEmpty( partitionColumn )
+      && ( PARTITION_METHOD_RANGE.equals( partitionMethod ) || PARTITION_METHOD_MODULO.equals( partitionMethod ) );
+  }
+
   /**
    * Returns the Input/Output metadata for this step. The generator step only produces output, does not accept input!
    */
@@ -46,7 +46,10 @@ public class TableInputMetaInjection implements StepMetaInjectionInterface {
       LAZY_CONVERSION( ValueMetaInterface.TYPE_STRING, "Enable lazy conversion? (Y/N)" ),
       REPLACE_VARIABLES( ValueMetaInterface.TYPE_STRING, "Replace variables in script? (Y/N)" ),
       EXECUTE_FOR_EACH_ROW( ValueMetaInterface.TYPE_STRING, "Execute for each row?? (Y/N)" ),
-      LIMIT( ValueMetaInterface.TYPE_STRING, "Limit size" );
+      LIMIT( ValueMetaInterface.TYPE_STRING, "Limit size" ),
+      PREFETCH_SIZE( ValueMetaInterface.TYPE_STRING, "Number of rows to read ahead" ),
+      PARTITION_METHOD( ValueMetaInterface.TYPE_STRING, "Split the query over the step copies (none, range, modulo)" ),
+      PARTITION_COLUMN( ValueMetaInterface.TYPE_STRING, "Column to split the query on" );
 
     private int valueType;
     private String description;
@@ -87,7 +90,8 @@ public class TableInputMetaInjection implements StepMetaInjectionInterface {
 
     Entry[] topEntries =
       new Entry[] {
-        Entry.SQL, Entry.LAZY_CONVERSION, Entry.REPLACE_VARIABLES, Entry.EXECUTE_FOR_EACH_ROW, Entry.LIMIT, };
+        Entry.SQL, Entry.LAZY_CONVERSION, Entry.REPLACE_VARIABLES, Entry.EXECUTE_FOR_EACH_ROW, Entry.LIMIT,
+        Entry.PREFETCH_SIZE, Entry.PARTITION_METHOD, Entry.PARTITION_COLUMN, };
     for ( Entry topEntry : topEntries ) {
       all.add( new StepInjectionMetaEntry( topEntry.name(), topEntry.getValueType(), topEntry.getDescription() ) );
     }
@@ -121,6 +125,15 @@ public class TableInputMetaInjection implements StepMetaInjectionInterface {
         case LIMIT:
           meta.setRowLimit( lookValue );
           break;
+        case PREFETCH_SIZE:
+          meta.setPrefetchSize( lookValue );
+          break;
+        case PARTITION_METHOD:
+          meta.setPartitionMethod( lookValue );
+          break;
+        case PARTITION_COLUMN:
+          meta.setPartitionColumn( lookValue );
+          break;
         default:
           break;
       }
@@ -135,6 +148,9 @@ public class TableInputMetaInjection implements StepMetaInjectionInterface {
     list.add( StepInjectionUtil.getEntry( Entry.REPLACE_VARIABLES, meta.isVariableReplacementActive() ) );
     list.add( StepInjectionUtil.getEntry( Entry.EXECUTE_FOR_EACH_ROW, meta.isExecuteEachInputRow() ) );
     list.add( StepInjectionUtil.getEntry( Entry.LIMIT, meta.getRowLimit() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.PREFETCH_SIZE, meta.getPrefetchSize() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.PARTITION_METHOD, meta.getPartitionMethod() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.PARTITION_COLUMN, meta.getPartitionColumn() ) );
 
     return list;
   }
@@ -0,0 +1,111 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableinput;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * A query that the copies of a partitioned Table Input step in a transformation run together, every copy for its own
+ * slice. The minimum and maximum of the partition column are looked up only once, by the copy that needs them first,
+ * and the other copies wait for that result. This way all the copies split the rows on the same boundaries, even when
+ * rows are added to the source while they start.<br>
+ * <br>
+ * The copies also share the row limit of the step: which rows are read within the limit depends on which copies read
+ * them first.
+ */
+public class TableInputPartitionedQuery {
+
+  private final int nrCopies;
+  private int nrCopiesJoined;
+  private FutureTask<RowMetaAndData> minMax;
+  private final AtomicLong nrRowsRead = new AtomicLong();
+
+  /**
+   * @param nrCopies
+   *          the number of copies of the step in this transformation that run the query
+   */
+  public TableInputPartitionedQuery( int nrCopies ) {
+    this.nrCopies = nrCopies;
+  }
+
+  /**
+   * Register a copy that runs the query.
+   *
+   * @return true if all the copies have joined, so the query doesn't have to be handed out anymore
+   */
+  public synchronized boolean join() {
+    return ++nrCopiesJoined >= nrCopies;
+  }
+
+  /**
+   * Count a row that one of the copies read.
+   *
+   * @param rowLimit
+   *          the maximum number of rows that the copies read together, 0 for no limit
+   * @return false if the copies already read the rows of the limit
+   */
+  public boolean readRow( long rowLimit ) {
+    return rowLimit <= 0 || nrRowsRead.incrementAndGet() <= rowLimit;
+  }
+
+  /**
+   * Get the minimum and maximum of the partition column, look them up if no other copy did so yet.
+   *
+   * @param lookup
+   *          looks up the minimum and maximum, on the connection of the calling copy
+   * @return the minimum and maximum of the partition column
+   * @throws KettleException
+   *           in case the lookup failed, in that case it failed for all the copies
+   */
+  public RowMetaAndData getMinMax( Callable<RowMetaAndData> lookup ) throws KettleException {
+    FutureTask<RowMetaAndData> task;
+    boolean owner = false;
+    synchronized ( this ) {
+      if ( minMax == null ) {
+        minMax = new FutureTask<RowMetaAndData>( lookup );
+        owner = true;
+      }
+      task = minMax;
+    }
+    if ( owner ) {
+      task.run();
+    }
+
+    try {
+      return task.get();
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof KettleException ) {
+        throw (KettleException) e.getCause();
+      }
+      throw new KettleException( e.getCause() );
+    } catch ( InterruptedException e ) {
+      throw new KettleException( e );
+    }
+  }
+}
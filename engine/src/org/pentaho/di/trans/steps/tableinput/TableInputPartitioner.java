@@ -0,0 +1,279 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableinput;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.database.MSSQLServerDatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * Splits the query of a Table Input step over its copies. Every copy wraps the query in a sub-select with a predicate
+ * on the partition column that selects its own slice of the rows, so that the copies read disjoint slices in parallel
+ * over their own connections.<br>
+ * <br>
+ * With the range method the minimum and maximum of the column are looked up once for all the copies in the
+ * transformation, see {@link TableInputPartitionedQuery}, and that interval is split in equal parts. The copies on the
+ * other slave servers of a clustered transformation look them up on their own: there the range method needs a source
+ * that doesn't change while the copies start, otherwise they can split on different boundaries and read rows twice or
+ * not at all. With the modulo method the copies take the rows where the column modulo the number of copies equals
+ * their copy number. Rows with a null partition column are read by the first copy.<br>
+ * <br>
+ * The row limit of the step applies to all the copies in a transformation together, on every slave server of a
+ * clustered transformation. Since the query becomes a sub-select, a final ORDER BY only sorts the rows of every copy.
+ * SQL Server doesn't allow it at all.
+ */
+public class TableInputPartitioner {
+
+  private static final String ALIAS = "kettle_partition";
+
+  private static final Pattern ORDER_BY = Pattern.compile( "\\bORDER\\s+BY\\b", Pattern.CASE_INSENSITIVE );
+
+  private final DatabaseMeta databaseMeta;
+  private final String column;
+  private final int partitionNr;
+  private final int nrPartitions;
+
+  /**
+   * @param databaseMeta
+   *          the database the query runs on
+   * @param column
+   *          the numeric or date column to split the query on
+   * @param partitionNr
+   *          the number of this step copy, 0 based
+   * @param nrPartitions
+   *          the number of step copies that share the query
+   */
+  public TableInputPartitioner( DatabaseMeta databaseMeta, String column, int partitionNr, int nrPartitions ) {
+    this.databaseMeta = databaseMeta;
+    this.column = databaseMeta.quoteField( column );
+    this.partitionNr = partitionNr;
+    this.nrPartitions = nrPartitions;
+  }
+
+  /**
+   * @return the query that looks up the minimum and maximum of the partition column
+   */
+  public String getMinMaxSQL( String sql ) {
+    return "SELECT MIN(" + column + "), MAX(" + column + ") FROM " + getSubSelect( sql );
+  }
+
+  /**
+   * @return the query that reads the rows where the partition column modulo the number of copies is the copy number
+   */
+  public String getModuloSQL( String sql ) {
+    String modulo;
+    if ( databaseMeta.getDatabaseInterface() instanceof MSSQLServerDatabaseMeta ) {
+      modulo = "ABS(" + column + ") % " + nrPartitions;
+    } else {
+      modulo = "MOD(ABS(" + column + "), " + nrPartitions + ")";
+    }
+    String predicate = modulo + " = " + partitionNr;
+    if ( partitionNr == 0 ) {
+      predicate = "(" + predicate + " OR " + column + " IS NULL)";
+    }
+    return getPartitionSQL( sql, predicate );
+  }
+
+  /**
+   * Get the query that reads the rows between the boundaries of this copy. The query has a parameter for every
+   * boundary it uses, see {@link #getRangeParameters(Object[])}.
+   *
+   * @param sql
+   *          the query to split
+   * @param boundaries
+   *          the boundaries between the slices, as calculated by {@link #getRangeBoundaries(ValueMetaInterface, Object,
+   *          Object)}, or null if the partition column only has nulls
+   * @return the query for this copy
+   */
+  public String getRangeSQL( String sql, Object[] boundaries ) {
+    String predicate;
+    if ( boundaries == null ) {
+      // Nothing to split, the first copy reads it all
+      predicate = partitionNr == 0 ? "1 = 1" : "1 = 0";
+    } else if ( partitionNr == 0 ) {
+      predicate = "(" + column + " < ? OR " + column + " IS NULL)";
+    } else if ( partitionNr == nrPartitions - 1 ) {
+      predicate = column + " >= ?";
+    } else {
+      predicate = column + " >= ? AND " + column + " < ?";
+    }
+    return getPartitionSQL( sql, predicate );
+  }
+
+  /**
+   * @return the values of the parameters of {@link #getRangeSQL(String, Object[])}
+   */
+  public Object[] getRangeParameters( Object[] boundaries ) {
+    if ( boundaries == null ) {
+      return new Object[0];
+    } else if ( partitionNr == 0 ) {
+      return new Object[] { boundaries[0] };
+    } else if ( partitionNr == nrPartitions - 1 ) {
+      return new Object[] { boundaries[partitionNr - 1] };
+    } else {
+      return new Object[] { boundaries[partitionNr - 1], boundaries[partitionNr] };
+    }
+  }
+
+  /**
+   * Split the interval between the minimum and the maximum of the partition column in equal slices.
+   *
+   * @param valueMeta
+   *          the metadata of the minimum and maximum
+   * @param min
+   *          the minimum, null if the partition column only has nulls
+   * @param max
+   *          the maximum
+   * @return the nrPartitions-1 boundaries between the slices or null if there is nothing to split
+   * @throws KettleException
+   *           in case the partition column isn't numeric or a date
+   */
+  public Object[] getRangeBoundaries( ValueMetaInterface valueMeta, Object min, Object max )
+    throws KettleException {
+    if ( valueMeta.isNull( min ) || valueMeta.isNull( max ) ) {
+      return null;
+    }
+
+    Object[] boundaries = new Object[nrPartitions - 1];
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        BigInteger minInteger = BigInteger.valueOf( valueMeta.getInteger( min ) );
+        BigInteger rangeInteger = BigInteger.valueOf( valueMeta.getInteger( max ) ).subtract( minInteger );
+        for ( int i = 1; i < nrPartitions; i++ ) {
+          boundaries[i - 1] =
+            minInteger.add( rangeInteger.multiply( BigInteger.valueOf( i ) ).divide(
+              BigInteger.valueOf( nrPartitions ) ) ).longValue();
+        }
+        break;
+      case ValueMetaInterface.TYPE_NUMBER:
+        double minNumber = valueMeta.getNumber( min );
+        double rangeNumber = valueMeta.getNumber( max ) - minNumber;
+        for ( int i = 1; i < nrPartitions; i++ ) {
+          boundaries[i - 1] = minNumber + rangeNumber * i / nrPartitions;
+        }
+        break;
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        BigDecimal minBigNumber = valueMeta.getBigNumber( min );
+        BigDecimal rangeBigNumber = valueMeta.getBigNumber( max ).subtract( minBigNumber );
+        for ( int i = 1; i < nrPartitions; i++ ) {
+          boundaries[i - 1] =
+            minBigNumber.add( rangeBigNumber.multiply( BigDecimal.valueOf( i ) ).divide(
+              BigDecimal.valueOf( nrPartitions ), BigDecimal.ROUND_HALF_EVEN ) );
+        }
+        break;
+      case ValueMetaInterface.TYPE_DATE:
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        long minTime = getTime( valueMeta, min );
+        long rangeTime = getTime( valueMeta, max ) - minTime;
+        for ( int i = 1; i < nrPartitions; i++ ) {
+          long time = minTime + rangeTime / nrPartitions * i + rangeTime % nrPartitions * i / nrPartitions;
+          if ( valueMeta.getType() == ValueMetaInterface.TYPE_TIMESTAMP ) {
+            boundaries[i - 1] = new Timestamp( time );
+          } else {
+            boundaries[i - 1] = new Date( time );
+          }
+        }
+        break;
+      default:
+        throw new KettleException( "Unable to split the query on column " + column + " of type "
+          + valueMeta.getTypeDesc() + ", only numeric and date columns have a range" );
+    }
+    return boundaries;
+  }
+
+  /**
+   * @return false if the database doesn't allow ORDER BY in a sub-select
+   */
+  public boolean isOrderBySupported() {
+    return !( databaseMeta.getDatabaseInterface() instanceof MSSQLServerDatabaseMeta );
+  }
+
+  /**
+   * See if a query sorts its result, that is if it has an ORDER BY outside of parentheses, literals and comments.
+   */
+  public static boolean hasOrderBy( String sql ) {
+    if ( sql == null ) {
+      return false;
+    }
+    StringBuilder outer = new StringBuilder( sql.length() );
+    int depth = 0;
+    for ( int i = 0; i < sql.length(); i++ ) {
+      char c = sql.charAt( i );
+      int end = -1;
+      if ( c == '\'' || c == '"' || c == '`' ) {
+        end = sql.indexOf( c, i + 1 );
+      } else if ( c == '[' ) {
+        end = sql.indexOf( ']', i + 1 );
+      } else if ( c == '-' && sql.startsWith( "--", i ) ) {
+        end = sql.indexOf( '\n', i );
+      } else if ( c == '/' && sql.startsWith( "/*", i ) ) {
+        end = sql.indexOf( "*/", i + 2 );
+        if ( end >= 0 ) {
+          end++;
+        }
+      } else if ( c == '(' ) {
+        depth++;
+        continue;
+      } else if ( c == ')' ) {
+        depth--;
+        continue;
+      } else {
+        outer.append( depth == 0 ? c : ' ' );
+        continue;
+      }
+      // Skip the literal, quoted name or comment
+      outer.append( ' ' );
+      if ( end < 0 ) {
+        break;
+      }
+      i = end;
+    }
+    return ORDER_BY.matcher( outer ).find();
+  }
+
+  private static long getTime( ValueMetaInterface valueMeta, Object value ) throws KettleValueException {
+    return valueMeta.getDate( value ).getTime();
+  }
+
+  private String getPartitionSQL( String sql, String predicate ) {
+    return "SELECT * FROM " + getSubSelect( sql ) + " WHERE " + predicate;
+  }
+
+  private static String getSubSelect( String sql ) {
+    // A trailing semicolon isn't allowed in a sub-select
+    String query = Const.rtrim( sql );
+    while ( query.endsWith( ";" ) ) {
+      query = Const.rtrim( query.substring( 0, query.length() - 1 ) );
+    }
+    return "(" + Const.CR + query + Const.CR + ") " + ALIAS;
+  }
+}
@@ -0,0 +1,195 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableinput;
+
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.util.ExecutorUtil;
+
+/**
+ * Reads the rows of a result set on a separate thread into a bounded buffer. The step thread takes the rows from the
+ * buffer while the reader fetches and decodes the next ones, so the time spent waiting on the database overlaps with
+ * the time spent passing rows on.<br>
+ * <br>
+ * Once the prefetcher is started, the result set and its database must only be used through the prefetcher until it
+ * is closed.
+ */
+public class TableInputPrefetcher {
+
+  /** The number of bytes of rows we aim to receive per round trip */
+  public static final int FETCH_BUFFER_SIZE = 4 * 1024 * 1024;
+
+  public static final int MIN_FETCH_SIZE = 100;
+  public static final int MAX_FETCH_SIZE = 50000;
+
+  private static final Object[] END = new Object[0];
+
+  private final BlockingQueue<Object[]> queue;
+  private final Deque<Object[]> taken;
+  private final Future<Void> reader;
+
+  private volatile boolean stopped;
+  private volatile KettleDatabaseException error;
+  private boolean finished;
+
+  /**
+   * Start reading.
+   *
+   * @param db
+   *          the database the query was opened on
+   * @param rs
+   *          the result set to read
+   * @param lazyConversion
+   *          true if strings need to have lazy conversion enabled
+   * @param bufferSize
+   *          the maximum number of rows read ahead
+   */
+  public TableInputPrefetcher( final Database db, final ResultSet rs, final boolean lazyConversion,
+    int bufferSize ) {
+    queue = new ArrayBlockingQueue<Object[]>( Math.max( bufferSize, 1 ) );
+    taken = new ArrayDeque<Object[]>();
+
+    reader = ExecutorUtil.getExecutor().submit( new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try {
+          Object[] row = db.getRow( rs, lazyConversion );
+          while ( row != null && !stopped ) {
+            put( row );
+            row = db.getRow( rs, lazyConversion );
+          }
+        } catch ( KettleDatabaseException e ) {
+          error = e;
+        } catch ( RuntimeException e ) {
+          error = new KettleDatabaseException( "Unexpected error reading the next row", e );
+        } finally {
+          put( END );
+        }
+        return null;
+      }
+    } );
+  }
+
+  private void put( Object[] row ) throws InterruptedException {
+    while ( !stopped ) {
+      if ( queue.offer( row, 100, TimeUnit.MILLISECONDS ) ) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the next row of the result set or null at the end of it
+   * @throws KettleDatabaseException
+   *           in case the reader couldn't fetch the next row
+   */
+  public Object[] getRow() throws KettleDatabaseException {
+    if ( finished ) {
+      return null;
+    }
+    if ( taken.isEmpty() ) {
+      try {
+        taken.add( queue.take() );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleDatabaseException( "Interrupted while waiting for the next row", e );
+      }
+      // Take whatever else is waiting as well, that saves locking the buffer for every row
+      queue.drainTo( taken );
+    }
+    Object[] row = taken.poll();
+    if ( row == END ) {
+      finished = true;
+      if ( error != null ) {
+        throw error;
+      }
+      return null;
+    }
+    return row;
+  }
+
+  /**
+   * Stop the reader and wait for it to let go of the result set.
+   */
+  public void close() throws KettleException {
+    stopped = true;
+    queue.clear();
+    try {
+      reader.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( "Interrupted while stopping the row reader", e );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( "Unexpected error in the row reader", e.getCause() );
+    } finally {
+      queue.clear();
+      taken.clear();
+      finished = true;
+    }
+  }
+
+  /**
+   * Calculate a fetch size that brings in about {@link #FETCH_BUFFER_SIZE} bytes of rows per round trip: many narrow
+   * rows at once, fewer wide ones.
+   *
+   * @param rowMeta
+   *          the layout of the rows of the result set
+   * @return the number of rows to fetch per round trip
+   */
+  public static int getAdaptiveFetchSize( RowMetaInterface rowMeta ) {
+    long rowSize = 16;
+    for ( ValueMetaInterface valueMeta : rowMeta.getValueMetaList() ) {
+      rowSize += estimateSize( valueMeta );
+    }
+    long fetchSize = FETCH_BUFFER_SIZE / rowSize;
+    return (int) Math.max( MIN_FETCH_SIZE, Math.min( MAX_FETCH_SIZE, fetchSize ) );
+  }
+
+  private static long estimateSize( ValueMetaInterface valueMeta ) {
+    int length = valueMeta.getLength();
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_STRING:
+        // Strings without a known length (CLOBs, MySQL) are assumed to be short
+        return 40 + 2L * ( length > 0 ? Math.min( length, 4000 ) : 128 );
+      case ValueMetaInterface.TYPE_BINARY:
+        return 16 + ( length > 0 ? Math.min( length, 65536 ) : 1024 );
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return 48;
+      default:
+        return 24;
+    }
+  }
+}
@@ -25,11 +25,13 @@ package org.pentaho.di.trans.steps.tableoutput;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.database.BulkLoadChannel;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseInterface;
 import org.pentaho.di.core.exception.KettleDatabaseBatchException;
@@ -112,13 +114,26 @@ public class TableOutput extends BaseStep implements StepInterface {
           }
         }
       }
+
+      if ( data.useBulkLoad ) {
+        openBulkLoad();
+      }
+      if ( data.useWriterPool ) {
+        openWriterPool();
+      }
     }
 
     try {
-      Object[] outputRowData = writeToTable( getInputRowMeta(), r );
-      if ( outputRowData != null ) {
-        putRow( data.outputRowMeta, outputRowData ); // in case we want it go further...
-        incrementLinesOutput();
+      if ( data.useBulkLoad ) {
+        writeToBulkLoad( r );
+      } else if ( data.writerPool != null ) {
+        writeToWriterPool( r );
+      } else {
+        Object[] outputRowData = writeToTable( getInputRowMeta(), r );
+        if ( outputRowData != null ) {
+          putRow( data.outputRowMeta, outputRowData ); // in case we want it go further...
+          incrementLinesOutput();
+        }
       }
 
       if ( checkFeedback( getLinesRead() ) ) {
@@ -330,16 +345,7 @@ public class TableOutput extends BaseStep implements StepInterface {
       } else {
         data.db.clearBatch( insertStatement );
         data.db.rollback();
-        StringBuilder msg = new StringBuilder( "Error batch inserting rows into table [" + tableName + "]." );
-        msg.append( Const.CR );
-        msg.append( "Errors encountered (first 10):" ).append( Const.CR );
-        for ( int x = 0; x < be.getExceptionsList().size() && x < 10; x++ ) {
-          Exception exception = be.getExceptionsList().get( x );
-          if ( exception.getMessage() != null ) {
-            msg.append( exception.getMessage() ).append( Const.CR );
-          }
-        }
-        throw new KettleException( msg.toString(), be );
+        throw new KettleException( getBatchErrorMessage( tableName, be ), be );
       }
     } catch ( KettleDatabaseException dbe ) {
       if ( getStepMeta().isDoingErrorHandling() ) {
@@ -391,7 +397,7 @@ public class TableOutput extends BaseStep implements StepInterface {
           data.batchBuffer.add( outputRowData );
           outputRowData = null;
 
-          processBatchException( errorMessage, updateCounts, exceptionsList );
+          processBatchException( errorMessage, updateCounts, exceptionsList, data.batchBuffer );
         } else {
           // Simply add this row to the error row
           putError( rowMeta, r, 1L, errorMessage, null, "TOP001" );
@@ -421,18 +427,191 @@ public class TableOutput extends BaseStep implements StepInterface {
     return outputRowData;
   }
 
+  private String getBatchErrorMessage( String tableName, KettleDatabaseBatchException be ) {
+    StringBuilder msg = new StringBuilder( "Error batch inserting rows into table [" + tableName + "]." );
+    msg.append( Const.CR );
+    msg.append( "Errors encountered (first 10):" ).append( Const.CR );
+    for ( int x = 0; x < be.getExceptionsList().size() && x < 10; x++ ) {
+      Exception exception = be.getExceptionsList().get( x );
+      if ( exception.getMessage() != null ) {
+        msg.append( exception.getMessage() ).append( Const.CR );
+      }
+    }
+    return msg.toString();
+  }
+
+  /**
+   * @return the values to insert of a row for a single table
+   */
+  private Object[] getInsertRowData( Object[] r ) throws KettleException {
+    Object[] insertRowData = r;
+    if ( meta.specifyFields() ) {
+      insertRowData = new Object[data.valuenrs.length];
+      for ( int idx = 0; idx < data.valuenrs.length; idx++ ) {
+        insertRowData[idx] = r[data.valuenrs[idx]];
+      }
+    }
+    if ( isRowLevel() ) {
+      logRowlevel( "Written row: " + data.insertRowMeta.getString( insertRowData ) );
+    }
+    return insertRowData;
+  }
+
+  /**
+   * Start the first bulk load, fall back to inserts if the connection doesn't offer one after all.
+   */
+  private void openBulkLoad() throws KettleException {
+    try {
+      data.bulkLoadChannel =
+        data.db.openBulkLoadChannel( environmentSubstitute( meta.getSchemaName() ), data.tableName,
+          data.insertRowMeta );
+    } catch ( KettleDatabaseException e ) {
+      data.db.rollback();
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "TableOutput.Log.BulkLoadUnavailable", e.getMessage() ) );
+      }
+    }
+    data.useBulkLoad = data.bulkLoadChannel != null;
+  }
+
+  /**
+   * Stream a row to the bulk load, finish the load and commit every commit size rows.
+   */
+  private void writeToBulkLoad( Object[] r ) throws KettleException {
+    if ( data.bulkLoadChannel == null ) {
+      data.bulkLoadChannel =
+        data.db.openBulkLoadChannel( environmentSubstitute( meta.getSchemaName() ), data.tableName,
+          data.insertRowMeta );
+    }
+    data.bulkLoadChannel.writeRow( getInsertRowData( r ) );
+    data.batchBuffer.add( r );
+    if ( data.batchBuffer.size() >= data.commitSize ) {
+      endBulkLoad();
+    }
+  }
+
+  /**
+   * Finish the current bulk load, commit and pass on its rows.
+   */
+  private void endBulkLoad() throws KettleException {
+    BulkLoadChannel channel = data.bulkLoadChannel;
+    data.bulkLoadChannel = null;
+    long nrRows = channel.endLoad();
+    data.db.commit();
+    if ( log.isDetailed() ) {
+      logDetailed( "Bulk loaded " + nrRows + " rows into table [" + data.tableName + "]" );
+    }
+
+    for ( Object[] row : data.batchBuffer ) {
+      putRow( data.outputRowMeta, row );
+      incrementLinesOutput();
+    }
+    data.batchBuffer.clear();
+  }
+
+  /**
+   * Open the extra connections and start writing batches in the background.
+   */
+  private void openWriterPool() throws KettleException {
+    String sql =
+      data.db.getInsertStatement( environmentSubstitute( meta.getSchemaName() ), data.tableName, data.insertRowMeta );
+    if ( log.isDetailed() ) {
+      logDetailed( "Prepared statement : " + sql );
+    }
+
+    List<Database> connections = new ArrayList<Database>( data.writerConnections );
+    try {
+      for ( int i = 0; i < data.writerConnections; i++ ) {
+        Database db = new Database( this, meta.getDatabaseMeta() );
+        db.shareVariablesWith( this );
+        connections.add( db );
+        db.connect( getPartitionID() );
+        db.setCommit( data.commitSize );
+      }
+      data.writerPool =
+        new TableOutputWriterPool( connections, sql, data.insertRowMeta, getStepMeta().isDoingErrorHandling() );
+    } catch ( KettleException e ) {
+      for ( Database db : connections ) {
+        db.disconnect();
+      }
+      throw e;
+    }
+    data.writerBatch = new TableOutputWriterPool.Batch();
+
+    if ( log.isBasic() ) {
+      logBasic( BaseMessages.getString( PKG, "TableOutput.Log.WriterConnections", data.writerConnections ) );
+    }
+  }
+
+  /**
+   * Add a row to the current batch, hand the batch to the writers once it holds commit size rows and pass on the rows
+   * of the batches that are written in the meantime.
+   */
+  private void writeToWriterPool( Object[] r ) throws KettleException {
+    Object[] insertRowData = getInsertRowData( r );
+    data.writerBatch.addRow( insertRowData, r );
+    if ( data.writerBatch.size() >= data.commitSize ) {
+      data.writerPool.submit( data.writerBatch );
+      data.writerBatch = new TableOutputWriterPool.Batch();
+    }
+    processWrittenBatches( false );
+  }
+
+  /**
+   * Hand the last rows to the writers and wait for all batches to be written.
+   */
+  private void writeLastBatch() throws KettleException {
+    if ( data.writerBatch.size() > 0 ) {
+      data.writerPool.submit( data.writerBatch );
+      data.writerBatch = new TableOutputWriterPool.Batch();
+    }
+    processWrittenBatches( true );
+  }
+
+  /**
+   * Pass on the rows of the written batches in the order in which they were submitted, the rows of a failed batch go
+   * to the error handling.
+   *
+   * @param wait
+   *          true to wait for all submitted batches, false to stop at the first one that is still being written
+   */
+  private void processWrittenBatches( boolean wait ) throws KettleException {
+    TableOutputWriterPool.Batch batch;
+    while ( ( batch = data.writerPool.nextWrittenBatch( wait ) ) != null ) {
+      KettleDatabaseException error = batch.getError();
+      if ( error == null ) {
+        for ( Object[] row : batch.getOutputRows() ) {
+          putRow( data.outputRowMeta, row );
+          incrementLinesOutput();
+        }
+      } else if ( error instanceof KettleDatabaseBatchException ) {
+        KettleDatabaseBatchException be = (KettleDatabaseBatchException) error;
+        if ( !getStepMeta().isDoingErrorHandling() ) {
+          throw new KettleException( getBatchErrorMessage( data.tableName, be ), be );
+        }
+        processBatchException( be.toString(), be.getUpdateCounts(), be.getExceptionsList(), batch.getOutputRows() );
+      } else {
+        if ( !getStepMeta().isDoingErrorHandling() ) {
+          throw new KettleException( "Error batch inserting rows into table [" + data.tableName + "]", error );
+        }
+        processBatchException( error.toString(), null, null, batch.getOutputRows() );
+      }
+    }
+  }
+
   public boolean isRowLevel() {
     return log.isRowLevel();
   }
 
-  private void processBatchException( String errorMessage, int[] updateCounts, List<Exception> exceptionsList ) throws KettleException {
+  private void processBatchException( String errorMessage, int[] updateCounts, List<Exception> exceptionsList,
+    List<Object[]> rows ) throws KettleException {
     // There was an error with the commit
     // We should put all the failing rows out there...
     //
     if ( updateCounts != null ) {
       int errNr = 0;
       for ( int i = 0; i < updateCounts.length; i++ ) {
-        Object[] row = data.batchBuffer.get( i );
+        Object[] row = rows.get( i );
         if ( updateCounts[i] > 0 ) {
           // send the error foward
           putRow( data.outputRowMeta, row );
@@ -451,14 +630,14 @@ public class TableOutput extends BaseStep implements StepInterface {
       // If we don't have update counts, it probably means the DB doesn't support it.
       // In this case we don't have a choice but to consider all inserted rows to be error rows.
       //
-      for ( int i = 0; i < data.batchBuffer.size(); i++ ) {
-        Object[] row = data.batchBuffer.get( i );
+      for ( int i = 0; i < rows.size(); i++ ) {
+        Object[] row = rows.get( i );
         putError( data.outputRowMeta, row, 1L, errorMessage, null, "TOP0003" );
       }
     }
 
     // Clear the buffer afterwards...
-    data.batchBuffer.clear();
+    rows.clear();
   }
 
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
@@ -545,6 +724,28 @@ public class TableOutput extends BaseStep implements StepInterface {
           }
         }
 
+        // Write the batches over extra connections in the background, only for batch inserts into a single table
+        //
+        // Stream the rows over the bulk load protocol of the database, it fails the load as a whole on a bad row
+        //
+        if ( meta.useBulkLoad() ) {
+          data.useBulkLoad =
+            data.batchMode && data.tableName != null && !getStepMeta().isDoingErrorHandling()
+              && data.databaseMeta.supportsBulkLoadChannel();
+          if ( !data.useBulkLoad && log.isBasic() ) {
+            logBasic( BaseMessages.getString( PKG, "TableOutput.Log.BulkLoadIgnored" ) );
+          }
+        }
+
+        data.writerConnections = Const.toInt( environmentSubstitute( meta.getWriterConnections() ), 0 );
+        if ( data.writerConnections > 0 ) {
+          data.useWriterPool =
+            !data.useBulkLoad && data.db.getUseBatchInsert( data.batchMode ) && data.tableName != null;
+          if ( !data.useWriterPool && log.isBasic() ) {
+            logBasic( BaseMessages.getString( PKG, "TableOutput.Log.WriterConnectionsIgnored" ) );
+          }
+        }
+
         return true;
       } catch ( KettleException e ) {
         logError( "An error occurred intialising this step: " + e.getMessage() );
@@ -559,6 +760,51 @@ public class TableOutput extends BaseStep implements StepInterface {
     meta = (TableOutputMeta) smi;
     data = (TableOutputData) sdi;
 
+    if ( data.bulkLoadChannel != null ) {
+      try {
+        if ( getErrors() == 0 ) {
+          endBulkLoad();
+        } else {
+          try {
+            data.bulkLoadChannel.cancel();
+          } catch ( KettleDatabaseException e ) {
+            // The load failed already, that error was reported
+          }
+        }
+      } catch ( KettleException e ) {
+        logError( "Unexpected error finishing the bulk load.", e );
+        setErrors( 1 );
+        stopAll();
+      } finally {
+        // Rows of a load that didn't make it don't go further
+        data.bulkLoadChannel = null;
+        data.batchBuffer.clear();
+      }
+    }
+
+    if ( data.writerPool != null ) {
+      try {
+        // All input is in, unless the step stopped: write what is left
+        //
+        if ( getErrors() == 0 ) {
+          writeLastBatch();
+        }
+      } catch ( KettleException e ) {
+        logError( "Because of an error, this step can't continue: ", e );
+        setErrors( 1 );
+        stopAll();
+      } finally {
+        try {
+          data.writerPool.close( getErrors() > 0 );
+        } catch ( KettleException e ) {
+          logError( "Unexpected error closing the writer connections.", e );
+          setErrors( 1 );
+          stopAll();
+        }
+        data.writerPool = null;
+      }
+    }
+
     if ( data.db != null ) {
       try {
         for ( String schemaTable : data.preparedStatements.keySet() ) {
@@ -585,7 +831,7 @@ public class TableOutput extends BaseStep implements StepInterface {
           // Right at the back we are experiencing a batch commit problem...
           // OK, we have the numbers...
           try {
-            processBatchException( be.toString(), be.getUpdateCounts(), be.getExceptionsList() );
+            processBatchException( be.toString(), be.getUpdateCounts(), be.getExceptionsList(), data.batchBuffer );
           } catch ( KettleException e ) {
             logError( "Unexpected error processing batch error", e );
             setErrors( 1 );
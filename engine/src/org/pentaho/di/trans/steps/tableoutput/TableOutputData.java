@@ -31,6 +31,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
+import org.pentaho.di.core.database.BulkLoadChannel;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -78,6 +79,16 @@ public class TableOutputData extends BaseStepData implements StepDataInterface {
 
   public int commitSize;
 
+  /** Write the batches over extra connections in the background? */
+  public boolean useWriterPool;
+  public int writerConnections;
+  public TableOutputWriterPool writerPool;
+  public TableOutputWriterPool.Batch writerBatch;
+
+  /** Stream the rows over the bulk load protocol of the database? */
+  public boolean useBulkLoad;
+  public BulkLoadChannel bulkLoadChannel;
+
   public TableOutputData() {
     super();
 
@@ -77,6 +77,12 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
   private boolean ignoreErrors;
   private boolean useBatchUpdate;
 
+  /** The number of extra connections that write the batches in the background, 0 to write them in the step */
+  private String writerConnections;
+
+  /** Stream the rows over the bulk load protocol of the database if it has one */
+  private boolean useBulkLoad;
+
   private boolean partitioningEnabled;
   private String partitioningField;
   private boolean partitioningDaily;
@@ -240,6 +246,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     super(); // allocate BaseStepMeta
     useBatchUpdate = true;
     commitSize = "1000";
+    writerConnections = "0";
 
     fieldStream = new String[0];
     fieldDatabase = new String[0];
@@ -400,6 +407,36 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     return useBatchUpdate;
   }
 
+  /**
+   * @return the number of extra connections that write the batches in the background, 0 to write them in the step
+   */
+  public String getWriterConnections() {
+    return writerConnections;
+  }
+
+  /**
+   * @param writerConnections
+   *          the number of extra connections that write the batches in the background, 0 to write them in the step
+   */
+  public void setWriterConnections( String writerConnections ) {
+    this.writerConnections = writerConnections;
+  }
+
+  /**
+   * @return true to stream the rows over the bulk load protocol of the database if it has one
+   */
+  public boolean useBulkLoad() {
+    return useBulkLoad;
+  }
+
+  /**
+   * @param useBulkLoad
+   *          true to stream the rows over the bulk load protocol of the database if it has one
+   */
+  public void setUseBulkLoad( boolean useBulkLoad ) {
+    this.useBulkLoad = useBulkLoad;
+  }
+
   private void readData( Node stepnode, List<? extends SharedObjectInterface> databases ) throws KettleXMLException {
     try {
       String con = XMLHandler.getTagValue( stepnode, "connection" );
@@ -410,6 +447,8 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       truncateTable = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "truncate" ) );
       ignoreErrors = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "ignore_errors" ) );
       useBatchUpdate = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "use_batch" ) );
+      writerConnections = XMLHandler.getTagValue( stepnode, "writer_connections" );
+      useBulkLoad = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "use_bulk_load" ) );
 
       // If not present it will be false to be compatible with pre-v3.2
       specifyFields = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "specify_fields" ) );
@@ -446,6 +485,7 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     databaseMeta = null;
     tableName = "";
     commitSize = "1000";
+    writerConnections = "0";
 
     partitioningEnabled = false;
     partitioningMonthly = true;
@@ -468,6 +508,8 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
     retval.append( "    " + XMLHandler.addTagValue( "truncate", truncateTable ) );
     retval.append( "    " + XMLHandler.addTagValue( "ignore_errors", ignoreErrors ) );
     retval.append( "    " + XMLHandler.addTagValue( "use_batch", useBatchUpdate ) );
+    retval.append( "    " + XMLHandler.addTagValue( "writer_connections", writerConnections ) );
+    retval.append( "    " + XMLHandler.addTagValue( "use_bulk_load", useBulkLoad ) );
     retval.append( "    " + XMLHandler.addTagValue( "specify_fields", specifyFields ) );
 
     retval.append( "    " + XMLHandler.addTagValue( "partitioning_enabled", partitioningEnabled ) );
@@ -504,6 +546,8 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       truncateTable = rep.getStepAttributeBoolean( id_step, "truncate" );
       ignoreErrors = rep.getStepAttributeBoolean( id_step, "ignore_errors" );
       useBatchUpdate = rep.getStepAttributeBoolean( id_step, "use_batch" );
+      writerConnections = rep.getStepAttributeString( id_step, "writer_connections" );
+      useBulkLoad = rep.getStepAttributeBoolean( id_step, "use_bulk_load" );
       specifyFields = rep.getStepAttributeBoolean( id_step, "specify_fields" );
 
       partitioningEnabled = rep.getStepAttributeBoolean( id_step, "partitioning_enabled" );
@@ -542,6 +586,8 @@ public class TableOutputMeta extends BaseStepMeta implements StepMetaInterface,
       rep.saveStepAttribute( id_transformation, id_step, "truncate", truncateTable );
       rep.saveStepAttribute( id_transformation, id_step, "ignore_errors", ignoreErrors );
       rep.saveStepAttribute( id_transformation, id_step, "use_batch", useBatchUpdate );
+      rep.saveStepAttribute( id_transformation, id_step, "writer_connections", writerConnections );
+      rep.saveStepAttribute( id_transformation, id_step, "use_bulk_load", useBulkLoad );
       rep.saveStepAttribute( id_transformation, id_step, "specify_fields", specifyFields );
 
       rep.saveStepAttribute( id_transformation, id_step, "partitioning_enabled", partitioningEnabled );
@@ -48,6 +48,8 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
       SPECIFY_DATABASE_FIELDS( ValueMetaInterface.TYPE_STRING, "Specify database fields? (Y/N)" ),
       IGNORE_INSERT_ERRORS( ValueMetaInterface.TYPE_STRING, "Ignore insert errors? (Y/N)" ),
       USE_BATCH_UPDATE( ValueMetaInterface.TYPE_STRING, "Use batch update for inserts? (Y/N)" ),
+      WRITER_CONNECTIONS( ValueMetaInterface.TYPE_STRING, "Number of connections writing batches in the background" ),
+      USE_BULK_LOAD( ValueMetaInterface.TYPE_STRING, "Use the bulk load protocol of the database? (Y/N)" ),
 
       PARTITION_OVER_TABLES( ValueMetaInterface.TYPE_STRING, "Partition data over tables? (Y/N)" ),
       PARTITIONING_FIELD( ValueMetaInterface.TYPE_STRING, "Partitioning field" ),
@@ -106,7 +108,7 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
     Entry[] topEntries =
       new Entry[] {
         Entry.TARGET_SCHEMA, Entry.TARGET_TABLE, Entry.COMMIT_SIZE, Entry.TRUNCATE_TABLE,
-        Entry.SPECIFY_DATABASE_FIELDS, Entry.IGNORE_INSERT_ERRORS, Entry.USE_BATCH_UPDATE,
+        Entry.SPECIFY_DATABASE_FIELDS, Entry.IGNORE_INSERT_ERRORS, Entry.USE_BATCH_UPDATE, Entry.WRITER_CONNECTIONS, Entry.USE_BULK_LOAD,
         Entry.PARTITION_OVER_TABLES, Entry.PARTITIONING_FIELD, Entry.PARTITION_DATA_PER,
         Entry.TABLE_NAME_DEFINED_IN_FIELD, Entry.TABLE_NAME_FIELD, Entry.STORE_TABLE_NAME,
         Entry.RETURN_AUTO_GENERATED_KEY, Entry.AUTO_GENERATED_KEY_FIELD, };
@@ -203,6 +205,12 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
         case USE_BATCH_UPDATE:
           meta.setUseBatchUpdate( "Y".equalsIgnoreCase( lookValue ) );
           break;
+        case WRITER_CONNECTIONS:
+          meta.setWriterConnections( lookValue );
+          break;
+        case USE_BULK_LOAD:
+          meta.setUseBulkLoad( "Y".equalsIgnoreCase( lookValue ) );
+          break;
         case PARTITION_OVER_TABLES:
           meta.setPartitioningEnabled( "Y".equalsIgnoreCase( lookValue ) );
           break;
@@ -251,6 +259,8 @@ public class TableOutputMetaInjection implements StepMetaInjectionInterface {
     list.add( StepInjectionUtil.getEntry( Entry.SPECIFY_DATABASE_FIELDS, meta.specifyFields() ) );
     list.add( StepInjectionUtil.getEntry( Entry.IGNORE_INSERT_ERRORS, meta.ignoreErrors() ) );
     list.add( StepInjectionUtil.getEntry( Entry.USE_BATCH_UPDATE, meta.useBatchUpdate() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.WRITER_CONNECTIONS, meta.getWriterConnections() ) );
+    list.add( StepInjectionUtil.getEntry( Entry.USE_BULK_LOAD, meta.useBulkLoad() ) );
 
     list.add( StepInjectionUtil.getEntry( Entry.PARTITION_OVER_TABLES, meta.isPartitioningEnabled() ) );
     list.add( StepInjectionUtil.getEntry( Entry.PARTITIONING_FIELD, meta.getPartitioningField() ) );
@@ -0,0 +1,256 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.tableoutput;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.util.ExecutorUtil;
+
+/**
+ * Inserts the batches of a Table Output step copy over a number of database connections in the background. Every
+ * connection has a writer that takes the next batch from a bounded queue, executes it and commits it, while the step
+ * thread fills the next batch. The step picks up the written batches in the order in which it submitted them, so rows
+ * and errors leave the step in the order in which they came in.<br>
+ * <br>
+ * Every batch is a transaction of its own: a failing batch doesn't roll back the batches written on the other
+ * connections.
+ */
+public class TableOutputWriterPool {
+
+  /**
+   * The rows of one batch and, once it is written, the outcome.
+   */
+  public static class Batch {
+    private final List<Object[]> insertRows = new ArrayList<Object[]>();
+    private final List<Object[]> outputRows = new ArrayList<Object[]>();
+    private final CountDownLatch written = new CountDownLatch( 1 );
+    private KettleDatabaseException error;
+
+    /**
+     * @param insertRow
+     *          the values to insert
+     * @param outputRow
+     *          the row to pass on once the batch is committed
+     */
+    public void addRow( Object[] insertRow, Object[] outputRow ) {
+      insertRows.add( insertRow );
+      outputRows.add( outputRow );
+    }
+
+    public int size() {
+      return insertRows.size();
+    }
+
+    public List<Object[]> getOutputRows() {
+      return outputRows;
+    }
+
+    /**
+     * @return the error that made the batch fail, or null if all its rows were committed
+     */
+    public KettleDatabaseException getError() {
+      return error;
+    }
+
+    boolean isWritten() {
+      return written.getCount() == 0;
+    }
+  }
+
+  /** Tells a writer to stop */
+  private static final Batch END = new Batch();
+
+  private final List<Database> connections;
+  private final RowMetaInterface insertRowMeta;
+  private final boolean doingErrorHandling;
+
+  private final List<PreparedStatement> statements;
+  private final BlockingQueue<Batch> queue;
+  private final Deque<Batch> submitted;
+  private final List<Future<Void>> writers;
+
+  /**
+   * Prepare the insert statement on every connection and start the writers.
+   *
+   * @param connections
+   *          the connected databases to write with, closed by {@link #close(boolean)}
+   * @param sql
+   *          the insert statement
+   * @param insertRowMeta
+   *          the layout of the rows to insert
+   * @param doingErrorHandling
+   *          true to commit the rows that made it when a batch fails, false to roll the batch back
+   * @throws KettleDatabaseException
+   *           in case a statement can't be prepared
+   */
+  public TableOutputWriterPool( List<Database> connections, String sql, RowMetaInterface insertRowMeta,
+    boolean doingErrorHandling ) throws KettleDatabaseException {
+    this.connections = connections;
+    this.insertRowMeta = insertRowMeta;
+    this.doingErrorHandling = doingErrorHandling;
+
+    statements = new ArrayList<PreparedStatement>( connections.size() );
+    for ( Database db : connections ) {
+      statements.add( db.prepareSQL( sql ) );
+    }
+
+    // One batch waiting per connection on top of the one it is writing
+    queue = new ArrayBlockingQueue<Batch>( connections.size() );
+    submitted = new ArrayDeque<Batch>();
+    writers = new ArrayList<Future<Void>>( connections.size() );
+    for ( int i = 0; i < connections.size(); i++ ) {
+      final Database db = connections.get( i );
+      final PreparedStatement statement = statements.get( i );
+      writers.add( ExecutorUtil.getExecutor().submit( new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for ( Batch batch = queue.take(); batch != END; batch = queue.take() ) {
+            write( db, statement, batch );
+          }
+          return null;
+        }
+      } ) );
+    }
+  }
+
+  /**
+   * @return the number of connections that write batches
+   */
+  public int getNrConnections() {
+    return connections.size();
+  }
+
+  /**
+   * Hand a batch to the writers, this waits while all of them are busy and have a batch waiting.
+   */
+  public void submit( Batch batch ) throws KettleException {
+    try {
+      queue.put( batch );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( "Interrupted while handing a batch to the table writers", e );
+    }
+    submitted.add( batch );
+  }
+
+  /**
+   * Get the oldest submitted batch once it is written.
+   *
+   * @param wait
+   *          true to wait for the batch to be written
+   * @return the batch or null if there is no submitted batch or, when not waiting, it isn't written yet
+   */
+  public Batch nextWrittenBatch( boolean wait ) throws KettleException {
+    Batch batch = submitted.peek();
+    if ( batch == null || ( !wait && !batch.isWritten() ) ) {
+      return null;
+    }
+    try {
+      batch.written.await();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( "Interrupted while waiting for the table writers", e );
+    }
+    return submitted.poll();
+  }
+
+  private void write( Database db, PreparedStatement statement, Batch batch ) {
+    try {
+      for ( Object[] row : batch.insertRows ) {
+        db.setValues( insertRowMeta, row, statement );
+        statement.addBatch();
+      }
+      statement.executeBatch();
+      db.commit();
+      statement.clearBatch();
+    } catch ( SQLException ex ) {
+      batch.error = Database.createKettleDatabaseBatchException( "Error updating batch", ex );
+    } catch ( Exception ex ) {
+      batch.error = new KettleDatabaseException( "Unexpected error inserting rows", ex );
+    } finally {
+      if ( batch.error != null ) {
+        try {
+          db.clearBatch( statement );
+          if ( doingErrorHandling ) {
+            db.commit( true );
+          } else {
+            db.rollback();
+          }
+        } catch ( KettleDatabaseException e ) {
+          // The batch already failed, that is the error to report
+        }
+      }
+      batch.written.countDown();
+    }
+  }
+
+  /**
+   * Stop the writers once they are done and close the connections.
+   *
+   * @param discardPending
+   *          true to drop the submitted batches that no writer picked up yet
+   */
+  public void close( boolean discardPending ) throws KettleException {
+    if ( discardPending ) {
+      List<Batch> pending = new ArrayList<Batch>();
+      queue.drainTo( pending );
+      submitted.removeAll( pending );
+    }
+    try {
+      for ( int i = 0; i < writers.size(); i++ ) {
+        queue.put( END );
+      }
+      for ( Future<Void> writer : writers ) {
+        writer.get();
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( "Interrupted while stopping the table writers", e );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( "Unexpected error in a table writer", e.getCause() );
+    } finally {
+      for ( int i = 0; i < connections.size(); i++ ) {
+        try {
+          connections.get( i ).closePreparedStatement( statements.get( i ) );
+        } catch ( KettleDatabaseException e ) {
+          // Closing the connection cleans up the statement as well
+        }
+        connections.get( i ).disconnect();
+      }
+    }
+  }
+}
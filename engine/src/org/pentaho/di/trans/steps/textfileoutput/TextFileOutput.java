@@ -43,6 +43,9 @@ import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.fileinput.CharsetToolkit;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.ColumnVector;
+import org.pentaho.di.core.row.batch.RowBatch;
+import org.pentaho.di.core.row.batch.StringColumnVector;
 import org.pentaho.di.core.util.EnvUtil;
 import org.pentaho.di.core.util.StreamLogger;
 import org.pentaho.di.core.variables.VariableSpace;
@@ -75,6 +78,7 @@ public class TextFileOutput extends BaseStep implements StepInterface {
   public TextFileOutput( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
       Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+    setAcceptingRowBatches( true );
   }
 
   public synchronized boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
@@ -90,7 +94,16 @@ public class TextFileOutput extends BaseStep implements StepInterface {
 
     boolean result = true;
     boolean bEndedLineWrote = false;
-    Object[] r = getRow(); // This also waits for a row to be finished.
+    // Column batches are only written to a single file
+    //
+    RowBatch batch = null;
+    Object[] r;
+    if ( isColumnarBatchMode() && !log.isRowLevel() && !meta.isFileNameInField() && meta.getSplitEvery() <= 0 ) {
+      batch = getRowBatch( ROW_BATCH_SIZE );
+      r = batch == null ? null : batch.getRow( 0 );
+    } else {
+      r = getRow(); // This also waits for a row to be finished.
+    }
 
     if ( r != null && first ) {
       first = false;
@@ -183,6 +196,19 @@ public class TextFileOutput extends BaseStep implements StepInterface {
       return false;
     }
 
+    if ( batch != null ) {
+      writeRowBatchToFile( data.outputRowMeta, batch );
+      putRowBatch( data.outputRowMeta, batch ); // in case we want it to go further...
+
+      long linesOutput = getLinesOutput() - batch.size();
+      for ( int i = 0; i < batch.size(); i++ ) {
+        if ( checkFeedback( ++linesOutput ) ) {
+          logBasic( "linenr " + linesOutput );
+        }
+      }
+      return result;
+    }
+
     // First handle the file name in field
     // Write a header line as well if needed
     //
@@ -272,6 +298,71 @@ public class TextFileOutput extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Write a batch of rows to the current file. String values are formatted once for every distinct value in the
+   * batch.
+   */
+  private void writeRowBatchToFile( RowMetaInterface rowMeta, RowBatch batch ) throws KettleStepException {
+    int[] fieldnrs;
+    byte[][] nullStrings;
+    if ( meta.getOutputFields() == null || meta.getOutputFields().length == 0 ) {
+      fieldnrs = new int[rowMeta.size()];
+      for ( int i = 0; i < fieldnrs.length; i++ ) {
+        fieldnrs[i] = i;
+      }
+      nullStrings = new byte[fieldnrs.length][]; // no special null values
+    } else {
+      fieldnrs = data.fieldnrs;
+      nullStrings = data.binaryNullValue;
+    }
+
+    StringColumnVector[] dictionaries = new StringColumnVector[fieldnrs.length];
+    byte[][][] formatted = new byte[fieldnrs.length][][];
+    if ( !meta.isFastDump() ) {
+      for ( int i = 0; i < fieldnrs.length; i++ ) {
+        ValueMetaInterface v = rowMeta.getValueMeta( fieldnrs[i] );
+        if ( v.isString() && !v.isStorageBinaryString() ) {
+          ColumnVector column = batch.getColumn( fieldnrs[i] );
+          if ( column instanceof StringColumnVector ) {
+            dictionaries[i] = (StringColumnVector) column;
+            formatted[i] = new byte[dictionaries[i].getDictionarySize()][];
+          }
+        }
+      }
+    }
+
+    try {
+      for ( int r = 0; r < batch.size(); r++ ) {
+        for ( int i = 0; i < fieldnrs.length; i++ ) {
+          if ( i > 0 && data.binarySeparator.length > 0 ) {
+            data.writer.write( data.binarySeparator );
+          }
+          ValueMetaInterface v = rowMeta.getValueMeta( fieldnrs[i] );
+          byte[] str;
+          StringColumnVector dictionary = dictionaries[i];
+          if ( dictionary != null && !dictionary.isNull( r ) ) {
+            int code = dictionary.getCode( r );
+            str = formatted[i][code];
+            if ( str == null ) {
+              str = getFieldBytes( v, dictionary.getDictionary()[code], nullStrings[i] );
+              formatted[i][code] = str;
+            }
+          } else {
+            str = getFieldBytes( v, batch.getValue( r, fieldnrs[i] ), nullStrings[i] );
+          }
+          writeFieldBytes( v, str );
+        }
+        data.writer.write( data.binaryNewline );
+      }
+    } catch ( Exception e ) {
+      throw new KettleStepException( "Error writing line", e );
+    }
+
+    for ( int r = 0; r < batch.size(); r++ ) {
+      incrementLinesOutput();
+    }
+  }
+
   private byte[] formatField( ValueMetaInterface v, Object valueData ) throws KettleValueException {
     if ( v.isString() ) {
       if ( v.isStorageBinaryString() && v.getTrimType() == ValueMetaInterface.TRIM_TYPE_NONE && v.getLength() < 0
@@ -372,65 +463,66 @@ public class TextFileOutput extends BaseStep implements StepInterface {
 
   private void writeField( ValueMetaInterface v, Object valueData, byte[] nullString ) throws KettleStepException {
     try {
-      byte[] str;
+      writeFieldBytes( v, getFieldBytes( v, valueData, nullString ) );
+    } catch ( Exception e ) {
+      throw new KettleStepException( "Error writing field content to file", e );
+    }
+  }
 
-      // First check whether or not we have a null string set
-      // These values should be set when a null value passes
-      //
-      if ( nullString != null && v.isNull( valueData ) ) {
-        str = nullString;
-      } else {
-        if ( meta.isFastDump() ) {
-          if ( valueData instanceof byte[] ) {
-            str = (byte[]) valueData;
-          } else {
-            str = getBinaryString( ( valueData == null ) ? "" : valueData.toString() );
-          }
-        } else {
-          str = formatField( v, valueData );
-        }
+  private byte[] getFieldBytes( ValueMetaInterface v, Object valueData, byte[] nullString ) throws KettleException {
+    // First check whether or not we have a null string set
+    // These values should be set when a null value passes
+    //
+    if ( nullString != null && v.isNull( valueData ) ) {
+      return nullString;
+    }
+    if ( meta.isFastDump() ) {
+      if ( valueData instanceof byte[] ) {
+        return (byte[]) valueData;
       }
+      return getBinaryString( ( valueData == null ) ? "" : valueData.toString() );
+    }
+    return formatField( v, valueData );
+  }
 
-      if ( str != null && str.length > 0 ) {
-        List<Integer> enclosures = null;
-        boolean writeEnclosures = false;
-
-        if ( v.isString() ) {
-          if ( meta.isEnclosureForced() && !meta.isPadded() ) {
-            writeEnclosures = true;
-          } else if ( !meta.isEnclosureFixDisabled()
-              && containsSeparatorOrEnclosure( str, data.binarySeparator, data.binaryEnclosure ) ) {
-            writeEnclosures = true;
-          }
+  private void writeFieldBytes( ValueMetaInterface v, byte[] str ) throws IOException {
+    if ( str != null && str.length > 0 ) {
+      List<Integer> enclosures = null;
+      boolean writeEnclosures = false;
+
+      if ( v.isString() ) {
+        if ( meta.isEnclosureForced() && !meta.isPadded() ) {
+          writeEnclosures = true;
+        } else if ( !meta.isEnclosureFixDisabled()
+            && containsSeparatorOrEnclosure( str, data.binarySeparator, data.binaryEnclosure ) ) {
+          writeEnclosures = true;
         }
+      }
 
-        if ( writeEnclosures ) {
-          data.writer.write( data.binaryEnclosure );
-          enclosures = getEnclosurePositions( str );
-        }
+      if ( writeEnclosures ) {
+        data.writer.write( data.binaryEnclosure );
+        enclosures = getEnclosurePositions( str );
+      }
 
-        if ( enclosures == null ) {
-          data.writer.write( str );
-        } else {
-          // Skip the enclosures, double them instead...
-          int from = 0;
-          for ( int i = 0; i < enclosures.size(); i++ ) {
-            int position = enclosures.get( i );
-            data.writer.write( str, from, position + data.binaryEnclosure.length - from );
-            data.writer.write( data.binaryEnclosure ); // write enclosure a second time
-            from = position + data.binaryEnclosure.length;
-          }
-          if ( from < str.length ) {
-            data.writer.write( str, from, str.length - from );
-          }
+      if ( enclosures == null ) {
+        data.writer.write( str );
+      } else {
+        // Skip the enclosures, double them instead...
+        int from = 0;
+        for ( int i = 0; i < enclosures.size(); i++ ) {
+          int position = enclosures.get( i );
+          data.writer.write( str, from, position + data.binaryEnclosure.length - from );
+          data.writer.write( data.binaryEnclosure ); // write enclosure a second time
+          from = position + data.binaryEnclosure.length;
         }
-
-        if ( writeEnclosures ) {
-          data.writer.write( data.binaryEnclosure );
+        if ( from < str.length ) {
+          data.writer.write( str, from, str.length - from );
         }
       }
-    } catch ( Exception e ) {
-      throw new KettleStepException( "Error writing field content to file", e );
+
+      if ( writeEnclosures ) {
+        data.writer.write( data.binaryEnclosure );
+      }
     }
   }
 
@@ -23,6 +23,10 @@
 package org.pentaho.di.trans.steps.transexecutor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.pentaho.di.core.Const;
@@ -37,15 +41,20 @@ import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.job.DelegationListener;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.SingleThreadedTransExecutor;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransExecutionConfiguration;
 import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaDataCombi;
 import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.steps.TransStepUtil;
+import org.pentaho.di.trans.steps.rowsfromresult.RowsFromResult;
 
 /**
  * Execute a transformation for every input row, set parameters.
@@ -84,6 +93,7 @@ public class TransExecutor extends BaseStep implements StepInterface {
       Object[] row = getRow();
       if ( row == null ) {
         executeTransformation();
+        disposeSingleThreadedTrans();
         setOutputDone();
         return false;
       }
@@ -187,13 +197,29 @@ public class TransExecutor extends BaseStep implements StepInterface {
     }
     transExecutorData.groupTimeStart = System.currentTimeMillis();
 
+    Result result;
+    if ( transExecutorData.getExecutorTransMeta().getTransformationType() == TransformationType.SingleThreaded ) {
+      result = executeSingleThreadedTrans();
+    } else {
+      result = executeNewTrans();
+    }
+
+    collectTransResults( result );
+    collectExecutionResults( result );
+    collectExecutionResultFiles( result );
+
+    transExecutorData.groupBuffer.clear();
+  }
+
+  private Result executeNewTrans() throws KettleException {
+    TransExecutorData transExecutorData = getData();
     discardLogLines( transExecutorData );
 
     Trans executorTrans = createInternalTrans();
     transExecutorData.setExecutorTrans( executorTrans );
 
     // Pass parameter values
-    passParametersToTrans();
+    passParametersToTrans( getParameterValues() );
 
     // keep track for drill down in Spoon...
     getTrans().getActiveSubtransformations().put( getStepname(), executorTrans );
@@ -224,12 +250,139 @@ public class TransExecutor extends BaseStep implements StepInterface {
       result.setResult( false );
       result.setNrErrors( 1 );
     }
+    return result;
+  }
 
-    collectTransResults( result );
-    collectExecutionResults( result );
-    collectExecutionResultFiles( result );
+  /**
+   * A transformation that uses the single threaded engine is prepared once and then kept to run all the groups, each
+   * group as one batch. The rows of the group are injected in the "Get rows from result" steps, the "Copy rows to
+   * result" steps hand them back at the end of the batch. This avoids creating new steps, row sets and threads for
+   * every group. A new transformation is only prepared when the parameter values change or after an error.
+   */
+  private Result executeSingleThreadedTrans() throws KettleException {
+    TransExecutorData transExecutorData = getData();
 
-    transExecutorData.groupBuffer.clear();
+    String[] parameterValues = getParameterValues();
+    if ( transExecutorData.singleThreadedTransExecutor != null
+      && !Arrays.equals( parameterValues, transExecutorData.executorTransParameterValues ) ) {
+      disposeSingleThreadedTrans();
+    }
+
+    Result result = new Result();
+    result.setRows( transExecutorData.groupBuffer );
+
+    try {
+      if ( transExecutorData.singleThreadedTransExecutor == null ) {
+        discardLogLines( transExecutorData );
+        prepareSingleThreadedTrans( parameterValues );
+      } else {
+        // Only keep the log lines of this group
+        KettleLogStore.discardLines( transExecutorData.getExecutorTrans().getLogChannelId(), false );
+      }
+      Trans executorTrans = transExecutorData.getExecutorTrans();
+      executorTrans.setPreviousResult( result );
+
+      Result previous = executorTrans.getResult();
+      for ( RowMetaAndData row : transExecutorData.groupBuffer ) {
+        for ( RowProducer rowProducer : transExecutorData.rowProducers ) {
+          rowProducer.putRow( row.getRowMeta(), row.getData() );
+        }
+      }
+      transExecutorData.singleThreadedTransExecutor.oneIteration();
+
+      result = getGroupResult( executorTrans, previous );
+    } catch ( KettleException e ) {
+      log.logError( "An error occurred executing the transformation: ", e );
+      result.setResult( false );
+      result.setNrErrors( 1 );
+    }
+
+    if ( !result.getResult() ) {
+      // The steps can't recover, use a new transformation for the next group
+      disposeSingleThreadedTrans();
+    }
+    return result;
+  }
+
+  private void prepareSingleThreadedTrans( String[] parameterValues ) throws KettleException {
+    TransExecutorData transExecutorData = getData();
+
+    Trans executorTrans = createInternalTrans();
+    transExecutorData.setExecutorTrans( executorTrans );
+    passParametersToTrans( parameterValues );
+
+    // keep track for drill down in Spoon...
+    getTrans().getActiveSubtransformations().put( getStepname(), executorTrans );
+
+    executorTrans.prepareExecution( getTrans().getArguments() );
+
+    List<RowProducer> rowProducers = new ArrayList<RowProducer>();
+    for ( StepMetaDataCombi combi : executorTrans.getSteps() ) {
+      if ( combi.step instanceof RowsFromResult ) {
+        rowProducers.add( executorTrans.addRowProducer( combi.stepname, combi.copy ) );
+      }
+    }
+    executorTrans.startThreads();
+
+    SingleThreadedTransExecutor executor = new SingleThreadedTransExecutor( executorTrans );
+    if ( !executor.init() ) {
+      executor.dispose();
+      throw new KettleException( BaseMessages.getString(
+        PKG, "TransExecutor.Exception.UnableToInitSingleThreadedTransformation" ) );
+    }
+
+    for ( DelegationListener delegationListener : getTrans().getDelegationListeners() ) {
+      delegationListener.transformationDelegationStarted( executorTrans, new TransExecutionConfiguration() );
+    }
+
+    transExecutorData.singleThreadedTransExecutor = executor;
+    transExecutorData.rowProducers = rowProducers;
+    transExecutorData.executorTransParameterValues = parameterValues;
+  }
+
+  /**
+   * @return the result of the last batch: the counters of the steps minus the ones before the batch
+   */
+  private static Result getGroupResult( Trans executorTrans, Result previous ) {
+    Result result = executorTrans.getResult();
+    result.setNrLinesRead( result.getNrLinesRead() - previous.getNrLinesRead() );
+    result.setNrLinesWritten( result.getNrLinesWritten() - previous.getNrLinesWritten() );
+    result.setNrLinesInput( result.getNrLinesInput() - previous.getNrLinesInput() );
+    result.setNrLinesOutput( result.getNrLinesOutput() - previous.getNrLinesOutput() );
+    result.setNrLinesUpdated( result.getNrLinesUpdated() - previous.getNrLinesUpdated() );
+    result.setNrLinesRejected( result.getNrLinesRejected() - previous.getNrLinesRejected() );
+
+    Iterator<Map.Entry<String, ResultFile>> files = result.getResultFiles().entrySet().iterator();
+    while ( files.hasNext() ) {
+      Map.Entry<String, ResultFile> file = files.next();
+      if ( previous.getResultFiles().get( file.getKey() ) == file.getValue() ) {
+        files.remove();
+      }
+    }
+
+    result.setRows( new ArrayList<RowMetaAndData>( executorTrans.getResultRows() ) );
+    executorTrans.getResultRows().clear();
+
+    if ( result.getNrErrors() > 0 || result.isStopped() ) {
+      result.setResult( false );
+    }
+    return result;
+  }
+
+  private void disposeSingleThreadedTrans() {
+    TransExecutorData transExecutorData = getData();
+    if ( transExecutorData.singleThreadedTransExecutor == null ) {
+      return;
+    }
+    try {
+      transExecutorData.singleThreadedTransExecutor.dispose();
+    } catch ( KettleException e ) {
+      log.logError( "Error disposing of the transformation: ", e );
+    }
+    getTrans().getActiveSubtransformations().remove( getStepname() );
+    transExecutorData.singleThreadedTransExecutor = null;
+    transExecutorData.rowProducers = null;
+    transExecutorData.executorTransParameterValues = null;
   }
 
   @VisibleForTesting
@@ -265,17 +418,14 @@ public class TransExecutor extends BaseStep implements StepInterface {
     return executorTrans;
   }
 
-  private void passParametersToTrans() throws KettleException {
-    // Set parameters, when fields are used take the first row in the set.
+  /**
+   * @return the values of the parameters for the current group, when fields are used take the first row in the set.
+   */
+  private String[] getParameterValues() throws KettleException {
     TransExecutorParameters parameters = meta.getParameters();
 
-    Trans internalTrans = getData().getExecutorTrans();
-
-    internalTrans.clearParameters();
-
-    String[] parameterNames = internalTrans.listParameters();
-    for ( int i = 0; i < parameters.getVariable().length; i++ ) {
-      String variable = parameters.getVariable()[ i ];
+    String[] values = new String[ parameters.getVariable().length ];
+    for ( int i = 0; i < values.length; i++ ) {
       String fieldName = parameters.getField()[ i ];
       String inputValue = parameters.getInput()[ i ];
 
@@ -292,12 +442,27 @@ public class TransExecutor extends BaseStep implements StepInterface {
       } else {
         value = environmentSubstitute( inputValue );
       }
+      values[ i ] = Const.NVL( value, "" );
+    }
+    return values;
+  }
+
+  private void passParametersToTrans( String[] values ) throws KettleException {
+    TransExecutorParameters parameters = meta.getParameters();
+
+    Trans internalTrans = getData().getExecutorTrans();
+
+    internalTrans.clearParameters();
+
+    String[] parameterNames = internalTrans.listParameters();
+    for ( int i = 0; i < parameters.getVariable().length; i++ ) {
+      String variable = parameters.getVariable()[ i ];
 
       // See if this is a parameter or just a variable...
       if ( Const.indexOfString( variable, parameterNames ) < 0 ) {
-        internalTrans.setVariable( variable, Const.NVL( value, "" ) );
+        internalTrans.setVariable( variable, values[ i ] );
       } else {
-        internalTrans.setParameterValue( variable, Const.NVL( value, "" ) );
+        internalTrans.setParameterValue( variable, values[ i ] );
       }
     }
 
@@ -436,6 +601,7 @@ public class TransExecutor extends BaseStep implements StepInterface {
   }
 
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    disposeSingleThreadedTrans();
     TransExecutorData transExecutorData = getData();
     transExecutorData.groupBuffer = null;
     super.dispose( smi, sdi );
@@ -28,6 +28,8 @@ import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.SingleThreadedTransExecutor;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -64,6 +66,11 @@ public class TransExecutorData extends BaseStepData implements StepDataInterface
   private RowSet resultFilesRowSet;
   private RowSet executionResultRowSet;
 
+  /** Runs all the groups in the same executor transformation when it uses the single threaded engine */
+  public SingleThreadedTransExecutor singleThreadedTransExecutor;
+  public List<RowProducer> rowProducers;
+  public String[] executorTransParameterValues;
+
   public TransExecutorData() {
     super();
   }
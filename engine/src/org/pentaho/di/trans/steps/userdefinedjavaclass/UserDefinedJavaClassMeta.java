@@ -22,18 +22,16 @@
 
 package org.pentaho.di.trans.steps.userdefinedjavaclass;
 
-import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.codehaus.janino.ClassBodyEvaluator;
 import org.codehaus.janino.CompileException;
-import org.codehaus.janino.Parser.ParseException;
 import org.codehaus.janino.Scanner;
-import org.codehaus.janino.Scanner.ScanException;
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.Const;
@@ -44,6 +42,7 @@ import org.pentaho.di.core.exception.KettleXMLException;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.util.JaninoClassCache;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.i18n.BaseMessages;
@@ -116,32 +115,39 @@ public class UserDefinedJavaClassMeta extends BaseStepMeta implements StepMetaIn
     usageParameters = new ArrayList<UsageParameter>();
   }
 
-  private Class<?> cookClass( UserDefinedJavaClassDef def ) throws CompileException, ParseException,
-    ScanException, IOException, RuntimeException, KettleStepException {
+  private Class<?> cookClass( final UserDefinedJavaClassDef def ) throws Exception {
 
     if ( Thread.currentThread().getContextClassLoader() == null ) {
       Thread.currentThread().setContextClassLoader( this.getClass().getClassLoader() );
     }
 
-    ClassBodyEvaluator cbe = new ClassBodyEvaluator();
-    cbe.setParentClassLoader( Thread.currentThread().getContextClassLoader() );
-    cbe.setClassName( def.getClassName() );
-
-    StringReader sr;
-    if ( def.isTransformClass() ) {
-      cbe.setExtendedType( TransformClassBase.class );
-      sr = new StringReader( def.getTransformedSource() );
-    } else {
-      sr = new StringReader( def.getSource() );
-    }
+    final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    final boolean transformClass = def.isTransformClass();
+    final String source = transformClass ? def.getTransformedSource() : def.getSource();
+
+    // The same class compiled against the same class loader is reused by all steps and runs, unless it has static
+    // fields: those would be shared by all the transformations using the class
+    String description = "class|" + def.getClassName() + "|" + transformClass + "|" + source;
+    return JaninoClassCache.get( classLoader, description, new Callable<Class<?>>() {
+      @Override
+      public Class<?> call() throws Exception {
+        ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+        cbe.setParentClassLoader( classLoader );
+        cbe.setClassName( def.getClassName() );
+
+        if ( transformClass ) {
+          cbe.setExtendedType( TransformClassBase.class );
+        }
 
-    cbe.setDefaultImports( new String[] {
-      "org.pentaho.di.trans.steps.userdefinedjavaclass.*", "org.pentaho.di.trans.step.*",
-      "org.pentaho.di.core.row.*", "org.pentaho.di.core.*", "org.pentaho.di.core.exception.*" } );
+        cbe.setDefaultImports( new String[] {
+          "org.pentaho.di.trans.steps.userdefinedjavaclass.*", "org.pentaho.di.trans.step.*",
+          "org.pentaho.di.core.row.*", "org.pentaho.di.core.*", "org.pentaho.di.core.exception.*" } );
 
-    cbe.cook( new Scanner( null, sr ) );
+        cbe.cook( new Scanner( null, new StringReader( source ) ) );
 
-    return cbe.getClazz();
+        return cbe.getClazz();
+      }
+    } );
   }
 
   @SuppressWarnings( "unchecked" )
@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.codehaus.janino.ExpressionEvaluator;
+import org.codehaus.janino.Scanner;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JaninoClassCacheTest {
+
+  private final AtomicInteger compilations = new AtomicInteger();
+
+  @Before
+  public void setUp() {
+    JaninoClassCache.clear();
+    compilations.set( 0 );
+  }
+
+  @Test
+  public void testCompiledOnce() throws Exception {
+    ClassLoader classLoader = getClass().getClassLoader();
+    ExpressionEvaluator first = JaninoClassCache.get( classLoader, "a + b", compiler( "a + b" ) );
+    ExpressionEvaluator second = JaninoClassCache.get( classLoader, "a + b", compiler( "a + b" ) );
+    assertSame( first, second );
+    assertEquals( 1, compilations.get() );
+    assertEquals( 3, first.evaluate( new Object[] { 1, 2 } ) );
+
+    // Another source or another class loader is compiled again
+    ExpressionEvaluator other = JaninoClassCache.get( classLoader, "a * b", compiler( "a * b" ) );
+    assertEquals( 2, other.evaluate( new Object[] { 1, 2 } ) );
+    ExpressionEvaluator otherLoader = JaninoClassCache.get( new ClassLoader( classLoader ) {
+    }, "a + b", compiler( "a + b" ) );
+    assertNotSame( first, otherLoader );
+    assertEquals( 3, compilations.get() );
+    assertEquals( 3, JaninoClassCache.size() );
+  }
+
+  @Test
+  public void testFailuresAreNotCached() throws Exception {
+    ClassLoader classLoader = getClass().getClassLoader();
+    for ( int i = 0; i < 2; i++ ) {
+      try {
+        JaninoClassCache.get( classLoader, "a +", compiler( "a +" ) );
+        fail( "Expected a compile error" );
+      } catch ( Exception e ) {
+        // expected
+      }
+    }
+    assertEquals( 2, compilations.get() );
+    assertEquals( 0, JaninoClassCache.size() );
+  }
+
+  @Test
+  public void testClassesWithStaticStateAreNotCached() throws Exception {
+    ClassLoader classLoader = getClass().getClassLoader();
+    String constants = "static final int X = 1; static final String S = \"s\"; Class c() { return String.class; }";
+    Class<?> first = JaninoClassCache.get( classLoader, constants, classCompiler( constants ) );
+    assertSame( first, JaninoClassCache.get( classLoader, constants, classCompiler( constants ) ) );
+
+    for ( String source : new String[] { "static int counter;", "static final java.util.List list = null;",
+      "static class Nested { static int counter; }" } ) {
+      Class<?> clazz = JaninoClassCache.get( classLoader, source, classCompiler( source ) );
+      assertNotSame( clazz, JaninoClassCache.get( classLoader, source, classCompiler( source ) ) );
+    }
+    assertEquals( 7, compilations.get() );
+    assertEquals( 1, JaninoClassCache.size() );
+  }
+
+  private Callable<Class<?>> classCompiler( final String source ) {
+    return new Callable<Class<?>>() {
+      @Override
+      public Class<?> call() throws Exception {
+        compilations.incrementAndGet();
+        ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+        cbe.setParentClassLoader( getClass().getClassLoader() );
+        cbe.cook( new Scanner( null, new StringReader( source ) ) );
+        return cbe.getClazz();
+      }
+    };
+  }
+
+  private Callable<ExpressionEvaluator> compiler( final String expression ) {
+    return new Callable<ExpressionEvaluator>() {
+      @Override
+      public ExpressionEvaluator call() throws Exception {
+        compilations.incrementAndGet();
+        ExpressionEvaluator evaluator = new ExpressionEvaluator();
+        evaluator.setParameters( new String[] { "a", "b" }, new Class<?>[] { int.class, int.class } );
+        evaluator.setReturnType( Object.class );
+        evaluator.cook( expression );
+        return evaluator;
+      }
+    };
+  }
+}
@@ -57,8 +57,10 @@ import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaBase;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.batch.RowBatch;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.BasePartitioner;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.steps.mock.StepMockHelper;
 import org.pentaho.di.www.SocketRepository;
 
@@ -365,4 +367,222 @@ public class BaseStepTest {
     verify( socketRepositoryMock ).releaseSocket( 0 );
   }
 
+  @Test
+  public void putRowsAndGetRowsUpdateCountersAndListenersOncePerRow() throws Exception {
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      mockHelper.logChannelInterface );
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    Object[][] rows = new Object[5][];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] = new Object[] { (long) i };
+    }
+
+    RowSet rowSet = new BlockingRowSet( 10 );
+    final List<Object[]> written = new ArrayList<Object[]>();
+    final List<Object[]> read = new ArrayList<Object[]>();
+    RowAdapter listener = new RowAdapter() {
+      @Override
+      public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) {
+        written.add( row );
+      }
+
+      @Override
+      public void rowReadEvent( RowMetaInterface rowMeta, Object[] row ) {
+        read.add( row );
+      }
+    };
+
+    BaseStep producer =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    producer.setStopped( false );
+    producer.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    producer.setOutputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+    producer.addRowListener( listener );
+    producer.putRows( rowMeta, rows );
+
+    assertEquals( rows.length, producer.getLinesWritten() );
+    assertEquals( rows.length, written.size() );
+    assertEquals( rows.length, rowSet.size() );
+    rowSet.setDone();
+
+    BaseStep consumer =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    consumer.init( mockHelper.initStepMetaInterface, mockHelper.initStepDataInterface );
+    consumer.setStopped( false );
+    consumer.setInputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+    consumer.addRowListener( listener );
+
+    Object[][] batch = consumer.getRows( 3 );
+    assertEquals( 3, batch.length );
+    assertSame( rows[0], batch[0] );
+    assertSame( rows[2], batch[2] );
+    batch = consumer.getRows( 3 );
+    assertEquals( 2, batch.length );
+    assertSame( rows[4], batch[1] );
+    assertNull( consumer.getRows( 3 ) );
+
+    assertEquals( rows.length, consumer.getLinesRead() );
+    assertEquals( rows.length, read.size() );
+  }
+
+  @Test
+  public void rowBatchIsHandedOverAsAWholeToAStepTakingBatches() throws Exception {
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      mockHelper.logChannelInterface );
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    when( mockHelper.transMeta.getSizeRowset() ).thenReturn( 10000 );
+    when( mockHelper.transMeta.getTransformationType() ).thenReturn( TransformationType.Normal );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    Object[][] rows = new Object[5][];
+    for ( int i = 0; i < rows.length; i++ ) {
+      rows[i] = new Object[] { (long) i };
+    }
+
+    RowSet rowSet = new BlockingRowSet( 10000 );
+    rowSet.setThreadNameFromToCopy( "producer", 0, "consumer", 0 );
+
+    BaseStep consumer =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    consumer.init( mockHelper.initStepMetaInterface, mockHelper.initStepDataInterface );
+    consumer.setStopped( false );
+    consumer.setInputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+    when( mockHelper.trans.findStepInterface( "consumer", 0 ) ).thenReturn( consumer );
+
+    BaseStep producer =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    producer.setStopped( false );
+    producer.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    producer.setOutputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+
+    // A step that doesn't take batches gets rows
+    producer.putRowBatch( rowMeta, new RowBatch( rowMeta, rows ) );
+    assertEquals( rows.length, rowSet.size() );
+    assertEquals( rows.length, consumer.getRows( 10 ).length );
+
+    consumer.setColumnarBatchMode( true );
+    consumer.setAcceptingRowBatches( true );
+    producer = new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta,
+      mockHelper.trans );
+    producer.setStopped( false );
+    producer.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    producer.setOutputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+
+    RowBatch batch = new RowBatch( rowMeta, rows );
+    producer.putRowBatch( rowMeta, batch );
+    assertEquals( 1, rowSet.size() );
+    assertEquals( rows.length, producer.getLinesWritten() );
+    assertSame( batch, consumer.getRowBatch( 2 ) );
+    assertEquals( 2 * rows.length, consumer.getLinesRead() );
+
+    // Steps asking for rows get the rows of the batch in order
+    producer.putRowBatch( rowMeta, batch );
+    producer.putRows( rowMeta, new Object[][] { { 5L } } );
+    rowSet.setDone();
+    Object[][] read = consumer.getRows( 3 );
+    assertEquals( 3, read.length );
+    assertSame( rows[0], read[0] );
+    assertSame( rows[2], read[2] );
+    assertSame( rows[3], consumer.getRow() );
+    read = consumer.getRows( 3 );
+    assertEquals( 2, read.length );
+    assertSame( rows[4], read[0] );
+    assertEquals( 5L, read[1][0] );
+    assertNull( consumer.getRow() );
+    assertEquals( 3 * rows.length + 1, consumer.getLinesRead() );
+  }
+
+  @Test
+  public void getRowWithRowSetSignallingWaitsForAnyInputRowSet() throws Exception {
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      mockHelper.logChannelInterface );
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+
+    final RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    final RowSet first = new BlockingRowSet( 10 );
+    final RowSet second = new BlockingRowSet( 10 );
+
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.init( mockHelper.initStepMetaInterface, mockHelper.initStepDataInterface );
+    baseStep.setStopped( false );
+    baseStep.setUsingRowSetSignalling( true );
+    baseStep.setInputRowSets( new ArrayList<RowSet>( Arrays.asList( first, second ) ) );
+
+    final Object[] row = new Object[] { 1L };
+    Thread producer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep( 50 );
+        } catch ( InterruptedException e ) {
+          // Ignore
+        }
+        second.putRow( rowMeta, row );
+        first.setDone();
+        second.setDone();
+      }
+    } );
+    producer.start();
+
+    assertSame( row, baseStep.getRow() );
+    assertNull( baseStep.getRow() );
+    assertEquals( 1, baseStep.getLinesRead() );
+    producer.join();
+  }
+
+  @Test
+  public void statusCountersAreNotLostUnderConcurrentUpdates() throws Exception {
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      mockHelper.logChannelInterface );
+    final BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+
+    final int nrIncrements = 10000;
+    Thread[] threads = new Thread[4];
+    for ( int i = 0; i < threads.length; i++ ) {
+      threads[i] = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          for ( int j = 0; j < nrIncrements; j++ ) {
+            baseStep.incrementLinesRead();
+            baseStep.incrementLinesWritten();
+            baseStep.incrementLinesOutput();
+          }
+        }
+      } );
+      threads[i].start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+    baseStep.incrementLinesInput();
+    baseStep.incrementLinesUpdated();
+    baseStep.incrementLinesSkipped();
+    baseStep.incrementLinesRejected();
+    baseStep.setErrors( 2 );
+
+    StepCounters counters = baseStep.getStatusCounters();
+    assertEquals( threads.length * nrIncrements, counters.getLinesRead() );
+    assertEquals( threads.length * nrIncrements, counters.getLinesWritten() );
+    assertEquals( threads.length * nrIncrements, counters.getLinesOutput() );
+    assertEquals( 1, counters.getLinesInput() );
+    assertEquals( 1, counters.getLinesUpdated() );
+    assertEquals( 1, counters.getLinesSkipped() );
+    assertEquals( 1, counters.getLinesRejected() );
+    assertEquals( 2, counters.getErrors() );
+
+    StepStatus status = new StepStatus( baseStep );
+    assertEquals( threads.length * nrIncrements, status.getLinesRead() );
+    assertEquals( 2, status.getErrors() );
+
+    baseStep.setLinesRead( 5 );
+    assertEquals( 5, baseStep.getLinesRead() );
+    assertEquals( 4, baseStep.decrementLinesRead() );
+  }
 }
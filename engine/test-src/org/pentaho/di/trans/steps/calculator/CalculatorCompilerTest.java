@@ -0,0 +1,212 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.calculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+public class CalculatorCompilerTest {
+
+  private static final String[] INPUT_FIELDS = { "i1", "i2", "n1", "n2", "s1" };
+  private static final int[] INPUT_TYPES = {
+    ValueMetaInterface.TYPE_INTEGER, ValueMetaInterface.TYPE_INTEGER, ValueMetaInterface.TYPE_NUMBER,
+    ValueMetaInterface.TYPE_NUMBER, ValueMetaInterface.TYPE_STRING };
+
+  private static final int[] CALC_TYPES = {
+    CalculatorMetaFunction.CALC_COPY_OF_FIELD, CalculatorMetaFunction.CALC_ADD, CalculatorMetaFunction.CALC_SUBTRACT,
+    CalculatorMetaFunction.CALC_MULTIPLY, CalculatorMetaFunction.CALC_DIVIDE, CalculatorMetaFunction.CALC_SQUARE,
+    CalculatorMetaFunction.CALC_ABS, CalculatorMetaFunction.CALC_CONSTANT, CalculatorMetaFunction.CALC_ROUND_1,
+    CalculatorMetaFunction.CALC_NVL, CalculatorMetaFunction.CALC_ADD3 };
+
+  private StepMockHelper<CalculatorMeta, CalculatorData> smh;
+
+  @BeforeClass
+  public static void init() throws KettleException {
+    KettleEnvironment.init( false );
+  }
+
+  @Before
+  public void setUp() {
+    smh =
+      new StepMockHelper<CalculatorMeta, CalculatorData>( "Calculator", CalculatorMeta.class,
+        CalculatorData.class );
+    when( smh.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      smh.logChannelInterface );
+    when( smh.trans.isRunning() ).thenReturn( true );
+  }
+
+  @Test
+  public void testTemporaryResultsStayPrimitive() throws KettleException {
+    CalculatorMetaFunction[] functions = {
+      function( "sum", CalculatorMetaFunction.CALC_ADD, "i1", "i2", ValueMetaInterface.TYPE_INTEGER, true ),
+      function( "ten", CalculatorMetaFunction.CALC_CONSTANT, "10", null, ValueMetaInterface.TYPE_INTEGER, true ),
+      function( "product", CalculatorMetaFunction.CALC_MULTIPLY, "sum", "ten", ValueMetaInterface.TYPE_INTEGER,
+        false ),
+      function( "upper", CalculatorMetaFunction.CALC_UPPER_CASE, "s1", null, ValueMetaInterface.TYPE_STRING, false ),
+    };
+    CalculatorData data = new CalculatorData();
+    Calculator calculator = start( functions, data, new Object[] { 2L, 3L, 1.0, 2.0, "abc" } );
+
+    String source = new CalculatorCompiler( calculator, functions, data, INPUT_FIELDS.length ).generate();
+    // The sum is never boxed, the constant is converted once, upper case is left to the step
+    assertFalse( source, source.contains( "c[5] =" ) );
+    assertTrue( source, source.contains( "c[6] = constants[0];" ) );
+    assertTrue( source, source.contains( "v7 = n7 ? 0L : v5 * v6;" ) );
+    assertTrue( source, source.contains( "calcFunction( 3, 8, c );" ) );
+
+    assertNotNull( data.getProgram() );
+    Object[] row = data.getProgram().calc( new Object[] { 1L, 2L, 3.0, 4.0, "xyz" } );
+    assertEquals( "[1, 2, 3.0, 4.0, xyz, 30, XYZ]", Arrays.toString( Arrays.copyOf( row, 7 ) ) );
+    row = data.getProgram().calc( new Object[] { null, 2L, 3.0, 4.0, null } );
+    assertEquals( "[null, 2, 3.0, 4.0, null, null, null]", Arrays.toString( Arrays.copyOf( row, 7 ) ) );
+  }
+
+  /**
+   * Random chains of calculations, including conversions, forward references and errors, give the same result
+   * whether they are generated or not.
+   */
+  @Test
+  public void testRandomCalculations() throws KettleException {
+    Random random = new Random( 42 );
+    for ( int chain = 0; chain < 200; chain++ ) {
+      int nrFunctions = 1 + random.nextInt( 12 );
+      List<String> names = new ArrayList<String>( Arrays.asList( INPUT_FIELDS ) );
+      List<Integer> types = new ArrayList<Integer>();
+      for ( int type : INPUT_TYPES ) {
+        types.add( type );
+      }
+
+      CalculatorMetaFunction[] functions = new CalculatorMetaFunction[nrFunctions];
+      StringBuilder description = new StringBuilder();
+      for ( int i = 0; i < nrFunctions; i++ ) {
+        int calcType = CALC_TYPES[random.nextInt( CALC_TYPES.length )];
+        int a = random.nextInt( names.size() );
+        String fieldA =
+          calcType == CalculatorMetaFunction.CALC_CONSTANT ? new String[] { "7", "2.5", "x" }[random.nextInt( 3 )]
+            : random.nextInt( 10 ) == 0 ? "f" + random.nextInt( nrFunctions ) : names.get( a );
+        String fieldB = names.get( random.nextInt( names.size() ) );
+        int valueType;
+        if ( random.nextInt( 5 ) > 0 && calcType != CalculatorMetaFunction.CALC_CONSTANT ) {
+          valueType = types.get( a );
+        } else {
+          valueType = INPUT_TYPES[random.nextInt( INPUT_TYPES.length )];
+        }
+        functions[i] = function( "f" + i, calcType, fieldA, fieldB, valueType, random.nextInt( 3 ) == 0 );
+        functions[i].setFieldC( names.get( random.nextInt( names.size() ) ) );
+        description.append( functions[i].getXML() );
+        names.add( "f" + i );
+        types.add( valueType );
+      }
+
+      CalculatorData data = new CalculatorData();
+      Calculator calculator = start( functions, data, randomRow( random ) );
+      assertNotNull( data.getProgram() );
+      for ( int row = 0; row < 50; row++ ) {
+        Object[] r = randomRow( random );
+        String expected = calculate( calculator, null, r );
+        String actual = calculate( calculator, data.getProgram(), r );
+        assertEquals( description + Arrays.toString( r ), expected, actual );
+      }
+    }
+  }
+
+  private static String calculate( Calculator calculator, CalculatorProgram program, Object[] r ) {
+    Object[] row = Arrays.copyOf( r, r.length );
+    try {
+      return Arrays.toString( program == null ? calculator.calcFields( inputRowMeta(), row ) : program.calc( row ) );
+    } catch ( Exception e ) {
+      return "error";
+    }
+  }
+
+  private static Object[] randomRow( Random random ) {
+    return new Object[] {
+      random.nextInt( 5 ) == 0 ? null : Long.valueOf( random.nextInt( 7 ) - 3 ),
+      random.nextInt( 5 ) == 0 ? null : Long.valueOf( random.nextInt( 7 ) - 3 ),
+      random.nextInt( 5 ) == 0 ? null : Double.valueOf( ( random.nextInt( 13 ) - 6 ) / 2.0 ),
+      random.nextInt( 5 ) == 0 ? null : Double.valueOf( ( random.nextInt( 13 ) - 6 ) / 2.0 ),
+      random.nextInt( 5 ) == 0 ? null : new String[] { "1", "a" }[random.nextInt( 2 )] };
+  }
+
+  private static RowMeta inputRowMeta() {
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "i1" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "i2" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "n1" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "n2" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "s1" ) );
+    return rowMeta;
+  }
+
+  private static CalculatorMetaFunction function( String name, int calcType, String fieldA, String fieldB,
+    int valueType, boolean removedFromResult ) {
+    return new CalculatorMetaFunction( name, calcType, fieldA, fieldB, null, valueType, 0, 0, removedFromResult, "",
+      "", "", "" );
+  }
+
+  /**
+   * Process a first row to let the step set up its data and generate the code.
+   */
+  private Calculator start( CalculatorMetaFunction[] functions, CalculatorData data, Object[] firstRow )
+    throws KettleException {
+    RowMeta inputRowMeta = inputRowMeta();
+    RowSet inputRowSet = smh.getMockInputRowSet( new Object[][] { firstRow } );
+    inputRowSet.setRowMeta( inputRowMeta );
+
+    Calculator calculator = new Calculator( smh.stepMeta, smh.stepDataInterface, 0, smh.transMeta, smh.trans );
+    calculator.getInputRowSets().add( inputRowSet );
+    calculator.setInputRowMeta( inputRowMeta );
+    calculator.init( smh.initStepMetaInterface, smh.initStepDataInterface );
+
+    CalculatorMeta meta = new CalculatorMeta();
+    meta.setCalculation( functions );
+    try {
+      calculator.processRow( meta, data );
+    } catch ( Exception e ) {
+      // The first row can fail just like any other
+    }
+    return calculator;
+  }
+}
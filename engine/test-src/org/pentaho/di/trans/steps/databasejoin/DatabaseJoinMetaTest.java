@@ -51,7 +51,7 @@ public class DatabaseJoinMetaTest implements InitializerInterface<StepMetaInterf
     KettleEnvironment.init();
     PluginRegistry.init( true );
     List<String> attributes =
-        Arrays.asList( "sql", "rowLimit", "outerJoin", "variableReplace", "databaseMeta", "parameterField", "parameterType" );
+        Arrays.asList( "sql", "rowLimit", "batchSize", "outerJoin", "variableReplace", "databaseMeta", "parameterField", "parameterType" );
 
     Map<String, String> getterMap = new HashMap<String, String>();
     Map<String, String> setterMap = new HashMap<String, String>();
@@ -0,0 +1,180 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databasejoin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+import org.pentaho.metastore.api.IMetaStore;
+
+public class DatabaseJoinTest {
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    KettleEnvironment.init();
+  }
+
+  @Test
+  public void testBatchJoin() throws Exception {
+    final Map<Long, List<String>> table = new HashMap<Long, List<String>>();
+    table.put( 1L, Arrays.asList( "a", "b", "c" ) );
+    table.put( 2L, Arrays.asList( "d" ) );
+
+    DatabaseJoinMeta meta = spy( new DatabaseJoinMeta() );
+    meta.setDefault();
+    meta.setSql( "SELECT name FROM t WHERE id = ?" );
+    meta.allocate( 1 );
+    meta.setParameterField( new String[] { "id" } );
+    meta.setParameterType( new int[] { ValueMetaInterface.TYPE_INTEGER } );
+    meta.setRowLimit( 2 );
+    meta.setOuterJoin( true );
+    meta.setBatchSize( 3 );
+    doReturn( new RowMeta() ).when( meta ).getTableFields();
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) {
+        ( (RowMetaInterface) invocation.getArguments()[0] ).addValueMeta( new ValueMetaString( "name" ) );
+        return null;
+      }
+    } ).when( meta ).getFields( any( RowMetaInterface.class ), anyString(), any( RowMetaInterface[].class ),
+      any( StepMeta.class ), any( VariableSpace.class ), any( Repository.class ), any( IMetaStore.class ) );
+
+    RowMeta returnRowMeta = new RowMeta();
+    returnRowMeta.addValueMeta( new ValueMetaInteger( "KETTLE_BATCH_ROW_NR" ) );
+    returnRowMeta.addValueMeta( new ValueMetaString( "name" ) );
+
+    // The rows of the last part of the query come first
+    final Queue<Object[]> found = new LinkedList<Object[]>();
+    Database db = mock( Database.class );
+    PreparedStatement partialStatement = mock( PreparedStatement.class );
+    when( db.prepareSQL( anyString() ) ).thenReturn( mock( PreparedStatement.class ), partialStatement );
+    when( db.getReturnRowMeta() ).thenReturn( returnRowMeta );
+    when( db.openQuery( any( PreparedStatement.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+      .thenAnswer( new Answer<ResultSet>() {
+        @Override
+        public ResultSet answer( InvocationOnMock invocation ) {
+          Object[] parameters = (Object[]) invocation.getArguments()[2];
+          for ( int i = parameters.length - 1; i >= 0; i-- ) {
+            if ( table.containsKey( parameters[i] ) ) {
+              for ( String name : table.get( parameters[i] ) ) {
+                found.add( new Object[] { (long) i, name } );
+              }
+            }
+          }
+          return mock( ResultSet.class );
+        }
+      } );
+    when( db.getRow( any( ResultSet.class ) ) ).thenAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) {
+        return found.poll();
+      }
+    } );
+
+    StepMockHelper<DatabaseJoinMeta, DatabaseJoinData> mockHelper =
+      new StepMockHelper<DatabaseJoinMeta, DatabaseJoinData>( "join", DatabaseJoinMeta.class, DatabaseJoinData.class );
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) )
+      .thenReturn( mockHelper.logChannelInterface );
+    DatabaseJoin step =
+      spy( new DatabaseJoin( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta,
+        mockHelper.trans ) );
+    RowMeta input = new RowMeta();
+    input.addValueMeta( new ValueMetaInteger( "id" ) );
+    step.setInputRowMeta( input );
+
+    final Queue<Object[]> rows = new LinkedList<Object[]>( Arrays.asList( new Object[] { 1L }, new Object[] { 2L },
+      new Object[] { 3L }, new Object[] { 1L } ) );
+    doAnswer( new Answer<Object[]>() {
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) {
+        return rows.poll();
+      }
+    } ).when( step ).getRow();
+    final List<Object[]> output = new ArrayList<Object[]>();
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) {
+        output.add( (Object[]) invocation.getArguments()[1] );
+        return null;
+      }
+    } ).when( step ).putRow( any( RowMetaInterface.class ), any( Object[].class ) );
+
+    // What init does without a database to connect to
+    DatabaseJoinData data = new DatabaseJoinData();
+    data.db = db;
+    data.batchSize = 3;
+    data.batchRows = new ArrayList<Object[]>();
+    while ( step.processRow( meta, data ) ) {
+      // keep going
+    }
+
+    String part = " AS KETTLE_BATCH_ROW_NR, q.* FROM ( SELECT name FROM t WHERE id = ? ) q";
+    String union = Const.CR + "UNION ALL" + Const.CR;
+    verify( db ).prepareSQL( "SELECT 0" + part + union + "SELECT 1" + part + union + "SELECT 2" + part );
+    verify( db ).prepareSQL( "SELECT 0" + part );
+    verify( db ).closePreparedStatement( partialStatement );
+    // The last row already had all its rows: the third one was not fetched
+    assertEquals( 1, found.size() );
+
+    Object[][] expected = { { 1L, "a" }, { 1L, "b" }, { 2L, "d" }, { 3L, null }, { 1L, "a" }, { 1L, "b" } };
+    assertEquals( expected.length, output.size() );
+    for ( int i = 0; i < expected.length; i++ ) {
+      assertArrayEquals( expected[i], Arrays.copyOf( output.get( i ), 2 ) );
+    }
+  }
+}
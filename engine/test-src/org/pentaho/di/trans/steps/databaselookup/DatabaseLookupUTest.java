@@ -52,15 +52,25 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyBoolean;
@@ -255,6 +265,27 @@ public class DatabaseLookupUTest {
     assertArrayEquals( dataFromCache, add1 );
   }
 
+  @Test
+  public void boundedCacheEvictsAndCounts() throws KettleException {
+    DatabaseLookupData lookData = new DatabaseLookupData();
+    lookData.allEquals = true;
+    RowMeta lookupMeta = new RowMeta();
+    lookupMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    lookData.lookupMeta = lookupMeta;
+
+    DefaultCache cache = DefaultCache.newCache( lookData, 10, 0L, false );
+    for ( long i = 0; i < 20; i++ ) {
+      cache.storeRowInCache( null, lookupMeta, new Object[] { i }, new Object[] { i * 10 } );
+    }
+    assertEquals( 10, cache.size() );
+    assertEquals( 10, cache.getEvictions() );
+
+    assertNull( cache.getRowFromCache( lookupMeta, new Object[] { 0L } ) );
+    assertArrayEquals( new Object[] { 190L }, cache.getRowFromCache( lookupMeta, new Object[] { 19L } ) );
+    assertEquals( 1, cache.getHits() );
+    assertEquals( 1, cache.getMisses() );
+  }
+
 
   @Test
   public void createsReadOnlyCache_WhenReadAll_AndNotAllEquals() throws Exception {
@@ -355,4 +386,138 @@ public class DatabaseLookupUTest {
     assertNotNull( data.cache.getRowFromCache( data.lookupMeta, new Object[] { 1L } ) );
     assertNotNull( data.cache.getRowFromCache( data.lookupMeta, new Object[] { 2L } ) );
   }
+
+  @Test
+  public void batchLookupQueriesTheKeysOfSeveralRowsAtOnce() throws Exception {
+    final Map<Long, String> table = new HashMap<Long, String>();
+    table.put( 1L, "one" );
+    table.put( 2L, "two" );
+    table.put( 3L, "three" );
+
+    DatabaseMeta dbMeta = mockBatchDatabaseMeta();
+    DatabaseLookupMeta meta = createBatchLookupMeta( dbMeta, 4 );
+    RowMeta returnRowMeta = new RowMeta();
+    returnRowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    returnRowMeta.addValueMeta( new ValueMetaInteger( ID_FIELD ) );
+
+    final List<Object[]> parameters = new ArrayList<Object[]>();
+    final Queue<Object[]> found = new LinkedList<Object[]>();
+    Database db = mock( Database.class );
+    when( db.getTableFields( anyString() ) ).thenReturn( createBatchTableFields() );
+    when( db.getReturnRowMeta() ).thenReturn( returnRowMeta );
+    when( db.prepareSQL( anyString() ) ).thenReturn( mock( PreparedStatement.class ) );
+    when( db.openQuery( any( PreparedStatement.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+      .thenAnswer( new Answer<ResultSet>() {
+        @Override public ResultSet answer( InvocationOnMock invocation ) {
+          Object[] keys = (Object[]) invocation.getArguments()[ 2 ];
+          parameters.add( keys );
+          for ( Object key : new LinkedHashSet<Object>( Arrays.asList( keys ) ) ) {
+            if ( table.containsKey( key ) ) {
+              found.add( new Object[] { table.get( key ), key } );
+            }
+          }
+          return mock( ResultSet.class );
+        }
+      } );
+    when( db.getRow( any( ResultSet.class ) ) ).thenAnswer( new Answer<Object[]>() {
+      @Override public Object[] answer( InvocationOnMock invocation ) {
+        return found.poll();
+      }
+    } );
+
+    StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper = createMockHelper();
+    DatabaseLookupData data = new DatabaseLookupData();
+    DatabaseLookup step = spyLookup( mockHelper, db, dbMeta );
+    RowMeta input = new RowMeta();
+    input.addValueMeta( new ValueMetaInteger( "Test" ) );
+    step.setInputRowMeta( input );
+    final Queue<Object[]> rows = new LinkedList<Object[]>( Arrays.asList( new Object[] { 1L }, new Object[] { 2L },
+      new Object[] { 4L }, new Object[] { 1L }, new Object[] { null }, new Object[] { 3L } ) );
+    doAnswer( new Answer<Object[]>() {
+      @Override public Object[] answer( InvocationOnMock invocation ) {
+        return rows.poll();
+      }
+    } ).when( step ).getRow();
+    final List<Object[]> output = new ArrayList<Object[]>();
+    doAnswer( new Answer<Void>() {
+      @Override public Void answer( InvocationOnMock invocation ) {
+        output.add( (Object[]) invocation.getArguments()[ 1 ] );
+        return null;
+      }
+    } ).when( step ).putRow( any( RowMetaInterface.class ), any( Object[].class ) );
+
+    assertTrue( step.init( meta, data ) );
+    while ( step.processRow( meta, data ) ) {
+      // keep going
+    }
+
+    verify( db ).prepareSQL( "SELECT name, id FROM lookup WHERE id IN ( ?, ?, ?, ? )" );
+    verify( db, never() ).getLookup( anyBoolean(), anyBoolean() );
+    assertEquals( 2, parameters.size() );
+    assertArrayEquals( new Object[] { 1L, 2L, 4L, 1L }, parameters.get( 0 ) );
+    assertArrayEquals( new Object[] { 3L, 3L, 3L, 3L }, parameters.get( 1 ) );
+
+    String[] expected = { "one", "two", null, "one", null, "three" };
+    assertEquals( expected.length, output.size() );
+    for ( int i = 0; i < expected.length; i++ ) {
+      assertEquals( expected[ i ], output.get( i )[ 1 ] );
+    }
+  }
+
+  @Test
+  public void batchLookupKeepsTheNumberOfKeysWithinTheLimitsOfTheDatabases() throws Exception {
+    DatabaseMeta dbMeta = mockBatchDatabaseMeta();
+    DatabaseLookupMeta meta = createBatchLookupMeta( dbMeta, 5000 );
+
+    Database db = mock( Database.class );
+    when( db.getTableFields( anyString() ) ).thenReturn( createBatchTableFields() );
+    when( db.prepareSQL( anyString() ) ).thenReturn( mock( PreparedStatement.class ) );
+
+    DatabaseLookupData data = new DatabaseLookupData();
+    DatabaseLookup step = spyLookup( createMockHelper(), db, dbMeta );
+    RowMeta input = new RowMeta();
+    input.addValueMeta( new ValueMetaInteger( "Test" ) );
+    step.setInputRowMeta( input );
+    doReturn( new Object[] { 1L } ).when( step ).getRow();
+
+    assertTrue( step.init( meta, data ) );
+    assertTrue( step.processRow( meta, data ) );
+    assertEquals( DatabaseLookup.MAX_BATCH_IN_LIST, data.batchSize );
+  }
+
+  private DatabaseMeta mockBatchDatabaseMeta() {
+    DatabaseMeta dbMeta = mock( DatabaseMeta.class );
+    when( dbMeta.quoteField( anyString() ) ).thenAnswer( new Answer<String>() {
+      @Override public String answer( InvocationOnMock invocation ) {
+        return (String) invocation.getArguments()[ 0 ];
+      }
+    } );
+    when( dbMeta.getQuotedSchemaTableCombination( anyString(), anyString() ) ).thenReturn( "lookup" );
+    return dbMeta;
+  }
+
+  private DatabaseLookupMeta createBatchLookupMeta( DatabaseMeta dbMeta, int batchSize ) {
+    DatabaseLookupMeta meta = new DatabaseLookupMeta();
+    meta.setDatabaseMeta( dbMeta );
+    meta.setTablename( "lookup" );
+    meta.setLookupBatchSize( batchSize );
+    meta.allocate( 1, 1 );
+    meta.setStreamKeyField1( new String[] { "Test" } );
+    meta.setStreamKeyField2( new String[] { "" } );
+    meta.setTableKeyField( new String[] { ID_FIELD } );
+    meta.setKeyCondition( new String[] { "=" } );
+    meta.setReturnValueField( new String[] { "name" } );
+    meta.setReturnValueNewName( new String[] { "name" } );
+    meta.setReturnValueDefault( new String[] { "" } );
+    meta.setReturnValueDefaultType( new int[] { ValueMetaInterface.TYPE_STRING } );
+    meta.setOrderByClause( "" );
+    return meta;
+  }
+
+  private RowMeta createBatchTableFields() {
+    RowMeta tableFields = new RowMeta();
+    tableFields.addValueMeta( new ValueMetaInteger( ID_FIELD ) );
+    tableFields.addValueMeta( new ValueMetaString( "name" ) );
+    return tableFields;
+  }
 }
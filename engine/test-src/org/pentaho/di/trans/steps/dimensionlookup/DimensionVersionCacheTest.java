@@ -0,0 +1,148 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.dimensionlookup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class DimensionVersionCacheTest {
+
+  private static final long DAY = 24 * 3600 * 1000L;
+
+  private DimensionVersionCache cache;
+
+  @Before
+  public void setUp() {
+    RowMetaInterface keyRowMeta = new RowMeta();
+    keyRowMeta.addValueMeta( new ValueMetaString( "customer_id" ) );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "customer_tk" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "version" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "city" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "date_from" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "date_to" ) );
+
+    cache = new DimensionVersionCache( keyRowMeta, rowMeta );
+  }
+
+  @Test
+  public void testLookupVersions() {
+    // Versions of a key are added out of order, the first one open at the start
+    //
+    byte[] key = key( "C1" );
+    cache.addVersion( key, 12L, 2L, date( 10 ), date( 20 ), new Object[] { "Ghent" } );
+    cache.addVersion( key, 11L, 1L, null, date( 10 ), new Object[] { "Brussels" } );
+    cache.addVersion( key, 13L, 3L, date( 20 ), null, new Object[] { "Orlando" } );
+    cache.addVersion( key( "C2" ), 21L, 1L, date( 0 ), date( 100 ), new Object[] { null } );
+
+    assertEquals( 2, cache.getNrKeys() );
+    assertEquals( 4, cache.getNrVersions() );
+
+    assertEquals( 11L, cache.getTechnicalKey( cache.lookup( key, date( -1000 ) ) ) );
+    assertEquals( 12L, cache.getTechnicalKey( cache.lookup( key, date( 10 ) ) ) );
+    assertEquals( 12L, cache.getTechnicalKey( cache.lookup( key, date( 19 ) ) ) );
+    assertEquals( 13L, cache.getTechnicalKey( cache.lookup( key, date( 20 ) ) ) );
+    assertEquals( 13L, cache.getTechnicalKey( cache.lookup( key, date( 5000 ) ) ) );
+    assertEquals( -1, cache.lookup( key( "C2" ), date( 100 ) ) );
+    assertEquals( -1, cache.lookup( key( "C3" ), date( 10 ) ) );
+    assertEquals( 5, cache.getHits() );
+    assertEquals( 2, cache.getMisses() );
+
+    Object[] row = cache.getRow( cache.lookup( key, date( 15 ) ) );
+    assertEquals( 12L, row[0] );
+    assertEquals( 2L, row[1] );
+    assertEquals( "Ghent", row[2] );
+    assertEquals( date( 10 ), row[3] );
+    assertEquals( date( 20 ), row[4] );
+
+    row = cache.getRow( cache.lookup( key, date( 0 ) ) );
+    assertNull( row[3] );
+    row = cache.getRow( cache.lookup( key( "C2" ), date( 0 ) ) );
+    assertNull( row[2] );
+
+    assertTrue( cache.getMemoryUsage() > 0 );
+  }
+
+  @Test
+  public void testNewVersion() {
+    // What a type 2 change does: close the current version and add the next one
+    //
+    byte[] key = key( "C1" );
+    cache.addVersion( key, 1L, 1L, date( 0 ), null, new Object[] { "Ghent" } );
+
+    int previous = cache.findVersion( key, 1L );
+    cache.setDateTo( previous, date( 30 ) );
+    cache.addVersion( key, 2L, 2L, date( 30 ), null, new Object[] { "Antwerp" } );
+    assertEquals( 1L, cache.getTechnicalKey( cache.lookup( key, date( 29 ) ) ) );
+    assertEquals( 2L, cache.getTechnicalKey( cache.lookup( key, date( 30 ) ) ) );
+
+    // A type 1 change updates the values in place
+    //
+    cache.setValues( cache.findVersion( key, 2L ), new Object[] { "Mechelen" } );
+    assertEquals( "Mechelen", cache.getRow( cache.lookup( key, date( 40 ) ) )[2] );
+    assertEquals( "Ghent", cache.getValues( previous )[0] );
+
+    // All versions of a key, in the order of their dates
+    //
+    int version = cache.getFirstVersion( key );
+    assertEquals( 1L, cache.getVersionNr( version ) );
+    version = cache.getNextVersion( version );
+    assertEquals( 2L, cache.getVersionNr( version ) );
+    assertEquals( -1, cache.getNextVersion( version ) );
+  }
+
+  @Test
+  public void testManyKeys() {
+    for ( int i = 0; i < 5000; i++ ) {
+      for ( int v = 3; v >= 1; v-- ) {
+        cache.addVersion( key( "C" + i ), i * 10L + v, v, date( v * 10 ), date( v * 10 + 10 ), new Object[] { "city "
+          + i } );
+      }
+    }
+    assertEquals( 5000, cache.getNrKeys() );
+    assertEquals( 15000, cache.getNrVersions() );
+    for ( int i = 0; i < 5000; i++ ) {
+      assertEquals( i * 10L + 2, cache.getTechnicalKey( cache.lookup( key( "C" + i ), date( 25 ) ) ) );
+    }
+  }
+
+  private byte[] key( String customerId ) {
+    return cache.getKey( new Object[] { customerId } );
+  }
+
+  private static Date date( long day ) {
+    return new Date( day * DAY );
+  }
+}
@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.hashjoin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.loadsave.LoadSaveTester;
+import org.pentaho.di.trans.steps.loadsave.validator.FieldLoadSaveValidator;
+
+public class HashJoinMetaTest {
+
+  @Test
+  public void testSerialization() throws KettleException {
+    List<String> attributes =
+      Arrays.asList( "joinType", "keyFields1", "keyFields2", "maxRows", "freeMemoryLimit", "directory", "prefix" );
+
+    Map<String, String> getterMap = new HashMap<String, String>();
+    Map<String, String> setterMap = new HashMap<String, String>();
+    for ( String attribute : attributes ) {
+      String name = Character.toUpperCase( attribute.charAt( 0 ) ) + attribute.substring( 1 );
+      getterMap.put( attribute, "get" + name );
+      setterMap.put( attribute, "set" + name );
+    }
+
+    LoadSaveTester loadSaveTester =
+      new LoadSaveTester( HashJoinMeta.class, attributes, getterMap, setterMap,
+        new HashMap<String, FieldLoadSaveValidator<?>>(), new HashMap<String, FieldLoadSaveValidator<?>>() );
+    loadSaveTester.testSerialization();
+  }
+
+  @Test
+  public void testGetFields() throws Exception {
+    RowMeta inputRow1 = new RowMeta();
+    inputRow1.addValueMeta( new ValueMetaInteger( "field1" ) );
+    inputRow1.addValueMeta( new ValueMetaString( "field2" ) );
+
+    RowMeta inputRow2 = new RowMeta();
+    inputRow2.addValueMeta( new ValueMetaInteger( "field1" ) );
+    inputRow2.addValueMeta( new ValueMetaString( "field3" ) );
+
+    HashJoinMeta meta = new HashJoinMeta();
+    meta.setDefault();
+    StepMeta stepMeta = new StepMeta( "Hash", meta );
+
+    RowMeta outputRowMeta = new RowMeta();
+    meta.getFields( outputRowMeta, "Hash Join", new RowMetaInterface[] { inputRow1, inputRow2 }, stepMeta,
+      new Variables(), null, null );
+    assertEquals( Arrays.asList( "field1", "field2", "field1_1", "field3" ), Arrays.asList( outputRowMeta
+      .getFieldNames() ) );
+
+    // An anti join only passes the rows of the first stream
+    meta.setJoinType( "ANTI" );
+    outputRowMeta = new RowMeta();
+    meta.getFields( outputRowMeta, "Hash Join", new RowMetaInterface[] { inputRow1, inputRow2 }, stepMeta,
+      new Variables(), null, null );
+    assertEquals( Arrays.asList( "field1", "field2" ), Arrays.asList( outputRowMeta.getFieldNames() ) );
+  }
+}
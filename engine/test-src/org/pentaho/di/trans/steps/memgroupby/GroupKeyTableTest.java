@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class GroupKeyTableTest {
+
+  @Test
+  public void testSingleIntegerKey() throws Exception {
+    RowMetaInterface groupMeta = new RowMeta();
+    groupMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    GroupKeyTable table = GroupKeyTable.create( groupMeta, new int[] { 1 } );
+    assertTrue( table instanceof LongGroupKeyTable );
+
+    // Enough groups to grow the table a few times
+    for ( int i = 0; i < 10000; i++ ) {
+      assertEquals( i, table.findOrAdd( new Object[] { "x", Long.valueOf( i ) } ) );
+    }
+    assertEquals( 10000, table.findOrAdd( new Object[] { "x", null } ) );
+    for ( int i = 0; i < 10000; i++ ) {
+      assertEquals( i, table.findOrAdd( new Object[] { "y", Long.valueOf( i ) } ) );
+    }
+    assertEquals( 10000, table.findOrAdd( new Object[] { "y", null } ) );
+    assertEquals( 10001, table.size() );
+
+    assertArrayEquals( new Object[] { 1234L }, table.getGroupData( 1234 ) );
+    assertArrayEquals( new Object[] { null }, table.getGroupData( 10000 ) );
+
+    table.clear();
+    assertEquals( 0, table.size() );
+    assertEquals( 0, table.findOrAdd( new Object[] { "x", 5L } ) );
+  }
+
+  @Test
+  public void testSerializedKey() throws Exception {
+    RowMetaInterface groupMeta = new RowMeta();
+    groupMeta.addValueMeta( new ValueMetaString( "country" ) );
+    groupMeta.addValueMeta( new ValueMetaNumber( "rate" ) );
+    GroupKeyTable table = GroupKeyTable.create( groupMeta, new int[] { 0, 1 } );
+    assertTrue( table instanceof SerializedGroupKeyTable );
+
+    assertEquals( 0, table.findOrAdd( new Object[] { "BE", 1.5 } ) );
+    assertEquals( 1, table.findOrAdd( new Object[] { "BE", 2.5 } ) );
+    assertEquals( 2, table.findOrAdd( new Object[] { "Ελλάδα", 1.5 } ) );
+    assertEquals( 3, table.findOrAdd( new Object[] { null, null } ) );
+    assertEquals( 0, table.findOrAdd( new Object[] { "BE", 1.5 } ) );
+    assertEquals( 2, table.findOrAdd( new Object[] { "Ελλάδα", 1.5 } ) );
+    assertEquals( 3, table.findOrAdd( new Object[] { null, null } ) );
+
+    assertArrayEquals( new Object[] { "Ελλάδα", 1.5 }, table.getGroupData( 2 ) );
+    Object[] nulls = table.getGroupData( 3 );
+    assertNull( nulls[0] );
+    assertNull( nulls[1] );
+  }
+
+  @Test
+  public void testUnsupportedKey() {
+    RowMetaInterface groupMeta = new RowMeta();
+    groupMeta.addValueMeta( new ValueMetaString( "country" ) );
+    groupMeta.addValueMeta( new ValueMetaDate( "date" ) );
+    assertNull( GroupKeyTable.create( groupMeta, new int[] { 0, 1 } ) );
+  }
+
+  @Test
+  public void testAccumulators() throws Exception {
+    ValueMetaInteger subjMeta = new ValueMetaInteger( "amount" );
+    Accumulator sum = Accumulator.create( MemoryGroupByMeta.TYPE_GROUP_SUM, subjMeta, false );
+    Accumulator min = Accumulator.create( MemoryGroupByMeta.TYPE_GROUP_MIN, subjMeta, false );
+    Accumulator minNull = Accumulator.create( MemoryGroupByMeta.TYPE_GROUP_MIN, subjMeta, true );
+    Accumulator count = Accumulator.create( MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL, subjMeta, false );
+    Accumulator[] accumulators = { sum, min, minNull, count };
+
+    Object[] values = { 5L, null, 3L, 8L };
+    for ( Accumulator accumulator : accumulators ) {
+      accumulator.ensureCapacity( 2 );
+      for ( Object value : values ) {
+        accumulator.add( 0, subjMeta, value );
+      }
+      accumulator.add( 1, subjMeta, null );
+    }
+
+    assertEquals( 16.0, sum.getResult( 0 ) );
+    assertEquals( 3L, min.getResult( 0 ) );
+    assertNull( minNull.getResult( 0 ) );
+    assertEquals( 3L, count.getResult( 0 ) );
+
+    assertNull( sum.getResult( 1 ) );
+    assertNull( min.getResult( 1 ) );
+    assertEquals( 0L, count.getResult( 1 ) );
+
+    assertNull( Accumulator.create( MemoryGroupByMeta.TYPE_GROUP_MEDIAN, subjMeta, false ) );
+  }
+}
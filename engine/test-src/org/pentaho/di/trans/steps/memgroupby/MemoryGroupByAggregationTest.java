@@ -41,10 +41,12 @@ import org.mockito.ArgumentCaptor;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogLevel;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.trans.Trans;
@@ -58,6 +60,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -200,7 +203,25 @@ public class MemoryGroupByAggregationTest {
     assertThat( output.getInteger( "value_count_distinct" ), is( 3L ) );
   }
 
+  @Test
+  public void testColumnarBatchModeGivesSameResults() throws Exception {
+    addColumn( new ValueMetaInteger( "intg" ), 0L, 1L, 1L, 10L );
+    addColumn( new ValueMetaInteger( "nul" ) );
+    addColumn( new ValueMetaInteger( "mix" ), null, -2L, null, 7L );
+    addColumn( new ValueMetaNumber( "num" ), 1.5, null, 2.25, -1.0 );
+
+    RowMetaAndData rowByRow = runStep();
+    RowMetaAndData columnar = runStep( true );
+
+    assertThat( columnar.getRowMeta().getFieldNames(), is( rowByRow.getRowMeta().getFieldNames() ) );
+    assertThat( columnar.getData(), is( rowByRow.getData() ) );
+  }
+
   private RowMetaAndData runStep() throws KettleException {
+    return runStep( false );
+  }
+
+  private RowMetaAndData runStep( boolean columnarBatchMode ) throws KettleException {
     // Allocate meta
     List<String> aggKeys = ImmutableList.copyOf( aggregates.keySet() );
     MemoryGroupByMeta meta = new MemoryGroupByMeta();
@@ -233,9 +254,17 @@ public class MemoryGroupByAggregationTest {
 
     // Process rows
     doReturn( rowMeta ).when( step ).getInputRowMeta();
-    for ( Object[] row : getRows() ) {
-      doReturn( row ).when( step ).getRow();
+    if ( columnarBatchMode ) {
+      step.setLogLevel( LogLevel.BASIC );
+      step.setColumnarBatchMode( true );
+      doReturn( FluentIterable.from( getRows() ).toArray( Object[].class ) ).when( step ).getRows( anyInt() );
       assertThat( step.processRow( meta, data ), is( true ) );
+      doReturn( null ).when( step ).getRows( anyInt() );
+    } else {
+      for ( Object[] row : getRows() ) {
+        doReturn( row ).when( step ).getRow();
+        assertThat( step.processRow( meta, data ), is( true ) );
+      }
     }
     verify( step, never() ).putRow( (RowMetaInterface) any(), (Object[]) any() );
 
@@ -0,0 +1,85 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.scriptvalues_mod;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.pentaho.di.trans.TransMeta;
+
+public class ScriptValuesScriptCacheTest {
+
+  private Context cx;
+  private TransMeta transMeta;
+
+  @Before
+  public void setUp() {
+    ScriptValuesScriptCache.clear();
+    cx = ContextFactory.getGlobal().enterContext();
+    transMeta = new TransMeta();
+  }
+
+  @After
+  public void tearDown() {
+    Context.exit();
+    ScriptValuesScriptCache.clear();
+  }
+
+  @Test
+  public void testScriptsAreShared() {
+    String source = "var result = value * 2;";
+    cx.setOptimizationLevel( 9 );
+    Script script = ScriptValuesScriptCache.getScript( transMeta, cx, source, "script" );
+    assertSame( script, ScriptValuesScriptCache.getScript( transMeta, cx, new String( source ), "script" ) );
+    assertNotSame( script, ScriptValuesScriptCache.getScript( transMeta, cx, source, "trans_Start" ) );
+
+    cx.setOptimizationLevel( -1 );
+    Script interpreted = ScriptValuesScriptCache.getScript( transMeta, cx, source, "script" );
+    assertNotSame( script, interpreted );
+    assertEquals( 3, ScriptValuesScriptCache.size( transMeta ) );
+
+    // Every transformation has scripts of its own
+    TransMeta otherTransMeta = new TransMeta();
+    assertNotSame( interpreted, ScriptValuesScriptCache.getScript( otherTransMeta, cx, source, "script" ) );
+    assertEquals( 1, ScriptValuesScriptCache.size( otherTransMeta ) );
+
+    // The same script runs in separate scopes
+    for ( Script s : new Script[] { script, interpreted } ) {
+      Scriptable scope1 = cx.initStandardObjects( null, false );
+      Scriptable scope2 = cx.initStandardObjects( null, false );
+      scope1.put( "value", scope1, 1 );
+      scope2.put( "value", scope2, 21 );
+      s.exec( cx, scope1 );
+      s.exec( cx, scope2 );
+      assertEquals( 2, Context.toNumber( scope1.get( "result", scope1 ) ), 0 );
+      assertEquals( 42, Context.toNumber( scope2.get( "result", scope2 ) ), 0 );
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class SortKeyEncoderTest {
+
+  private static final String[] STRINGS = { "a", "A", "ab", "aB", "abc", "b", "é", "É", "中", "\u0000",
+    "z\u007f", "z\u0080", "z䁾", "z䁿", "￿" };
+
+  private static final double[] NUMBERS = { -Double.MAX_VALUE, -1.5, -0.0, 0.0, Double.MIN_VALUE, 2.25,
+    Double.POSITIVE_INFINITY, Double.NaN };
+
+  @Test
+  public void testKeysCompareLikeRows() throws Exception {
+    Random random = new Random( 42 );
+    for ( int variant = 0; variant < 4; variant++ ) {
+      RowMetaInterface rowMeta = new RowMeta();
+      rowMeta.addValueMeta( new ValueMetaString( "str" ) );
+      rowMeta.addValueMeta( new ValueMetaInteger( "int" ) );
+      rowMeta.addValueMeta( new ValueMetaNumber( "num" ) );
+      rowMeta.addValueMeta( new ValueMetaDate( "date" ) );
+      rowMeta.addValueMeta( new ValueMetaBoolean( "bool" ) );
+      for ( int i = 0; i < rowMeta.size(); i++ ) {
+        ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+        valueMeta.setSortedDescending( ( variant & 1 ) != 0 && i % 2 == 0 );
+        valueMeta.setCaseInsensitive( ( variant & 2 ) != 0 );
+      }
+      int[] fieldnrs = { 0, 1, 2, 3, 4 };
+      SortKeyEncoder encoder = new SortKeyEncoder( rowMeta, fieldnrs );
+
+      Object[][] rows = new Object[200][];
+      for ( int r = 0; r < rows.length; r++ ) {
+        rows[r] = new Object[] {
+          random.nextInt( 8 ) == 0 ? null : STRINGS[random.nextInt( STRINGS.length )],
+          random.nextInt( 8 ) == 0 ? null : Long.valueOf( random.nextInt( 5 ) - 2 ) * Long.MAX_VALUE / 2,
+          random.nextInt( 8 ) == 0 ? null : NUMBERS[random.nextInt( NUMBERS.length )],
+          random.nextInt( 8 ) == 0 ? null : new Date( random.nextInt( 3 ) - 1 ),
+          random.nextInt( 8 ) == 0 ? null : random.nextBoolean() };
+      }
+
+      for ( Object[] row1 : rows ) {
+        for ( Object[] row2 : rows ) {
+          int expected = Integer.signum( rowMeta.compare( row1, row2, fieldnrs ) );
+          int actual = Integer.signum( SortKeyEncoder.compare( encoder.encode( row1 ), encoder.encode( row2 ) ) );
+          assertEquals( rowMeta.getString( row1 ) + " <> " + rowMeta.getString( row2 ), expected, actual );
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSupportedTypes() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "str" ) );
+    rowMeta.addValueMeta( new ValueMetaBinary( "bin" ) );
+
+    assertTrue( SortKeyEncoder.isSupported( rowMeta, new int[] { 0 } ) );
+    assertFalse( SortKeyEncoder.isSupported( rowMeta, new int[] { 0, 1 } ) );
+  }
+}
@@ -33,6 +33,7 @@ import junit.framework.Assert;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
@@ -158,7 +159,15 @@ public class StreamLookupTest {
   }
 
   private void doTest( boolean memoryPreservationActive, boolean binaryLookupStream, boolean binaryDataStream ) throws KettleException {
+    doTest( memoryPreservationActive, binaryLookupStream, binaryDataStream, null );
+  }
+
+  private void doTest( boolean memoryPreservationActive, boolean binaryLookupStream, boolean binaryDataStream,
+    String storage ) throws KettleException {
     StreamLookup step = new StreamLookup( smh.stepMeta, smh.stepDataInterface, 0, smh.transMeta, smh.trans );
+    if ( storage != null ) {
+      step.setVariable( Const.KETTLE_STREAM_LOOKUP_STORAGE, storage );
+    }
     step.init( smh.initStepMetaInterface, smh.initStepDataInterface );
     step.getInputRowSets().add( mockLookupRowSet( binaryLookupStream ) );
     step.getInputRowSets().add( mockDataRowSet( binaryDataStream ) );
@@ -190,6 +199,7 @@ public class StreamLookupTest {
     }
 
     Assert.assertEquals( "Incorrect output row number", 2, rowNumber );
+    Assert.assertEquals( "Slab storage", storage != null, data.slabIndex != null );
   }
 
   @Test
@@ -231,4 +241,14 @@ public class StreamLookupTest {
   public void testMemoryPreservationWithBinaryStreams() throws KettleException {
     doTest( true, false, true );
   }
+
+  @Test
+  public void testHeapSlabStorageWithBinaryStreams() throws KettleException {
+    doTest( false, true, true, "HEAP" );
+  }
+
+  @Test
+  public void testOffHeapSlabStorageWithNormalStreams() throws KettleException {
+    doTest( true, false, false, "OFF_HEAP" );
+  }
 }
@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableinput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+
+public class TableInputPartitionedQueryTest {
+
+  @Test
+  public void testMinMaxIsLookedUpOnce() throws Exception {
+    final TableInputPartitionedQuery query = new TableInputPartitionedQuery( 4 );
+    final AtomicInteger lookups = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch( 1 );
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    List<Future<RowMetaAndData>> results = new ArrayList<Future<RowMetaAndData>>();
+    for ( int i = 0; i < 4; i++ ) {
+      results.add( executor.submit( new Callable<RowMetaAndData>() {
+        @Override
+        public RowMetaAndData call() throws Exception {
+          start.await();
+          return query.getMinMax( new Callable<RowMetaAndData>() {
+            @Override
+            public RowMetaAndData call() throws Exception {
+              lookups.incrementAndGet();
+              Thread.sleep( 50 );
+              return new RowMetaAndData( new RowMeta(), new Object[] { 1L, 100L } );
+            }
+          } );
+        }
+      } ) );
+    }
+    start.countDown();
+
+    RowMetaAndData minMax = results.get( 0 ).get();
+    for ( Future<RowMetaAndData> result : results ) {
+      assertSame( minMax, result.get() );
+    }
+    assertEquals( 1, lookups.get() );
+    executor.shutdown();
+
+    assertFalse( query.join() );
+    assertFalse( query.join() );
+    assertFalse( query.join() );
+    assertTrue( query.join() );
+  }
+
+  @Test
+  public void testCopiesShareTheRowLimit() {
+    TableInputPartitionedQuery query = new TableInputPartitionedQuery( 2 );
+    assertTrue( query.readRow( 3 ) );
+    assertTrue( query.readRow( 3 ) );
+    assertTrue( query.readRow( 3 ) );
+    assertFalse( query.readRow( 3 ) );
+
+    TableInputPartitionedQuery unlimited = new TableInputPartitionedQuery( 2 );
+    for ( int i = 0; i < 10; i++ ) {
+      assertTrue( unlimited.readRow( 0 ) );
+    }
+  }
+
+  @Test
+  public void testFailedLookupFailsForAllCopies() throws Exception {
+    TableInputPartitionedQuery query = new TableInputPartitionedQuery( 2 );
+    Callable<RowMetaAndData> failing = new Callable<RowMetaAndData>() {
+      @Override
+      public RowMetaAndData call() throws Exception {
+        throw new KettleException( "no connection" );
+      }
+    };
+    for ( int i = 0; i < 2; i++ ) {
+      try {
+        query.getMinMax( failing );
+        fail( "Expected the lookup to fail" );
+      } catch ( KettleException e ) {
+        assertTrue( e.getMessage().contains( "no connection" ) );
+      }
+    }
+  }
+}
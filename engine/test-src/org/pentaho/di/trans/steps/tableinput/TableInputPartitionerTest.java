@@ -0,0 +1,145 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableinput;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.database.MSSQLServerDatabaseMeta;
+import org.pentaho.di.core.database.PostgreSQLDatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class TableInputPartitionerTest {
+
+  private static final String SQL = "SELECT id, name FROM customer;";
+  private static final String SUB_SELECT = "SELECT * FROM (\nSELECT id, name FROM customer\n) kettle_partition WHERE ";
+
+  private DatabaseMeta databaseMeta;
+
+  @Before
+  public void setUp() {
+    databaseMeta = mock( DatabaseMeta.class );
+    when( databaseMeta.getDatabaseInterface() ).thenReturn( new PostgreSQLDatabaseMeta() );
+    when( databaseMeta.quoteField( anyString() ) ).thenAnswer( new Answer<String>() {
+      @Override
+      public String answer( InvocationOnMock invocation ) throws Throwable {
+        return "\"" + invocation.getArguments()[0] + "\"";
+      }
+    } );
+  }
+
+  @Test
+  public void testModuloSQL() {
+    assertEquals( SUB_SELECT + "(MOD(ABS(\"id\"), 3) = 0 OR \"id\" IS NULL)",
+      new TableInputPartitioner( databaseMeta, "id", 0, 3 ).getModuloSQL( SQL ) );
+    assertEquals( SUB_SELECT + "MOD(ABS(\"id\"), 3) = 2",
+      new TableInputPartitioner( databaseMeta, "id", 2, 3 ).getModuloSQL( SQL ) );
+
+    when( databaseMeta.getDatabaseInterface() ).thenReturn( new MSSQLServerDatabaseMeta() );
+    assertEquals( SUB_SELECT + "ABS(\"id\") % 3 = 1",
+      new TableInputPartitioner( databaseMeta, "id", 1, 3 ).getModuloSQL( SQL ) );
+  }
+
+  @Test
+  public void testRangeSQL() throws KettleException {
+    ValueMetaInterface valueMeta = new ValueMeta( "MIN", ValueMetaInterface.TYPE_INTEGER );
+    TableInputPartitioner first = new TableInputPartitioner( databaseMeta, "id", 0, 4 );
+    TableInputPartitioner second = new TableInputPartitioner( databaseMeta, "id", 1, 4 );
+    TableInputPartitioner last = new TableInputPartitioner( databaseMeta, "id", 3, 4 );
+
+    assertEquals( "SELECT MIN(\"id\"), MAX(\"id\") FROM (\nSELECT id, name FROM customer\n) kettle_partition",
+      first.getMinMaxSQL( SQL ) );
+
+    Object[] boundaries = first.getRangeBoundaries( valueMeta, 1L, 1001L );
+    assertArrayEquals( new Object[] { 251L, 501L, 751L }, boundaries );
+
+    assertEquals( SUB_SELECT + "(\"id\" < ? OR \"id\" IS NULL)", first.getRangeSQL( SQL, boundaries ) );
+    assertArrayEquals( new Object[] { 251L }, first.getRangeParameters( boundaries ) );
+    assertEquals( SUB_SELECT + "\"id\" >= ? AND \"id\" < ?", second.getRangeSQL( SQL, boundaries ) );
+    assertArrayEquals( new Object[] { 251L, 501L }, second.getRangeParameters( boundaries ) );
+    assertEquals( SUB_SELECT + "\"id\" >= ?", last.getRangeSQL( SQL, boundaries ) );
+    assertArrayEquals( new Object[] { 751L }, last.getRangeParameters( boundaries ) );
+
+    // Only nulls: the first copy reads everything
+    assertNull( first.getRangeBoundaries( valueMeta, null, null ) );
+    assertEquals( SUB_SELECT + "1 = 1", first.getRangeSQL( SQL, null ) );
+    assertEquals( SUB_SELECT + "1 = 0", last.getRangeSQL( SQL, null ) );
+    assertEquals( 0, last.getRangeParameters( null ).length );
+  }
+
+  @Test
+  public void testRangeBoundaries() throws KettleException {
+    TableInputPartitioner partitioner = new TableInputPartitioner( databaseMeta, "value", 0, 2 );
+
+    assertArrayEquals( new Object[] { Long.MAX_VALUE / 2 }, partitioner.getRangeBoundaries( new ValueMeta( "v",
+      ValueMetaInterface.TYPE_INTEGER ), -1L, Long.MAX_VALUE ) );
+    assertArrayEquals( new Object[] { 1.5 }, partitioner.getRangeBoundaries( new ValueMeta( "v",
+      ValueMetaInterface.TYPE_NUMBER ), 1.0, 2.0 ) );
+    assertArrayEquals( new Object[] { new BigDecimal( "15.0" ) }, partitioner.getRangeBoundaries( new ValueMeta(
+      "v", ValueMetaInterface.TYPE_BIGNUMBER ), new BigDecimal( "10.0" ), new BigDecimal( "20.0" ) ) );
+    assertArrayEquals( new Object[] { new Date( 5000L ) }, partitioner.getRangeBoundaries( new ValueMeta( "v",
+      ValueMetaInterface.TYPE_DATE ), new Date( 0L ), new Date( 10000L ) ) );
+  }
+
+  @Test( expected = KettleException.class )
+  public void testRangeNeedsNumberOrDate() throws KettleException {
+    new TableInputPartitioner( databaseMeta, "name", 0, 2 ).getRangeBoundaries( new ValueMeta( "v",
+      ValueMetaInterface.TYPE_STRING ), "a", "z" );
+  }
+
+  @Test
+  public void testHasOrderBy() {
+    assertTrue( TableInputPartitioner.hasOrderBy( "SELECT * FROM t ORDER BY id" ) );
+    assertTrue( TableInputPartitioner.hasOrderBy( "select *\nfrom t\norder\n  by id desc" ) );
+    assertFalse( TableInputPartitioner.hasOrderBy( SQL ) );
+    assertFalse( TableInputPartitioner.hasOrderBy( null ) );
+    assertFalse( TableInputPartitioner.hasOrderBy( "SELECT * FROM (SELECT * FROM t ORDER BY id) s" ) );
+    assertFalse( TableInputPartitioner.hasOrderBy( "SELECT ROW_NUMBER() OVER (ORDER BY id) FROM t" ) );
+    assertFalse( TableInputPartitioner.hasOrderBy( "SELECT 'order by' AS \"order by\" FROM t -- order by\n" ) );
+    assertFalse( TableInputPartitioner.hasOrderBy( "SELECT [order by] FROM t /* order by */" ) );
+    assertFalse( TableInputPartitioner.hasOrderBy( "SELECT * FROM border_byte" ) );
+  }
+
+  @Test
+  public void testOrderBySupported() {
+    assertTrue( new TableInputPartitioner( databaseMeta, "id", 0, 2 ).isOrderBySupported() );
+    when( databaseMeta.getDatabaseInterface() ).thenReturn( new MSSQLServerDatabaseMeta() );
+    assertFalse( new TableInputPartitioner( databaseMeta, "id", 0, 2 ).isOrderBySupported() );
+  }
+}
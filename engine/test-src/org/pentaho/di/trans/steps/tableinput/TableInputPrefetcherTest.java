@@ -0,0 +1,119 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.tableinput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+public class TableInputPrefetcherTest {
+
+  @Test
+  public void testRowsComeBackInOrder() throws Exception {
+    Database db = mock( Database.class );
+    ResultSet rs = mock( ResultSet.class );
+    when( db.getRow( rs, false ) ).thenAnswer( new Answer<Object[]>() {
+      private long nr = 0;
+
+      @Override
+      public Object[] answer( InvocationOnMock invocation ) throws Throwable {
+        return nr < 1000 ? new Object[] { nr++ } : null;
+      }
+    } );
+
+    TableInputPrefetcher prefetcher = new TableInputPrefetcher( db, rs, false, 10 );
+    for ( long i = 0; i < 1000; i++ ) {
+      assertEquals( i, prefetcher.getRow()[0] );
+    }
+    assertNull( prefetcher.getRow() );
+    assertNull( prefetcher.getRow() );
+    prefetcher.close();
+  }
+
+  @Test
+  public void testErrorIsPassedOn() throws Exception {
+    Database db = mock( Database.class );
+    ResultSet rs = mock( ResultSet.class );
+    Object[] row = new Object[] { "row" };
+    KettleDatabaseException error = new KettleDatabaseException( "Couldn't get row from result set" );
+    when( db.getRow( rs, true ) ).thenReturn( row ).thenThrow( error );
+
+    TableInputPrefetcher prefetcher = new TableInputPrefetcher( db, rs, true, 10 );
+    assertSame( row, prefetcher.getRow() );
+    try {
+      prefetcher.getRow();
+      fail( "Expected the error of the reader" );
+    } catch ( KettleDatabaseException e ) {
+      assertSame( error, e );
+    }
+    prefetcher.close();
+  }
+
+  @Test
+  public void testCloseStopsReader() throws Exception {
+    Database db = mock( Database.class );
+    ResultSet rs = mock( ResultSet.class );
+    when( db.getRow( rs, false ) ).thenReturn( new Object[] { "row" } );
+
+    // The reader fills up the buffer and waits, closing it must not hang
+    TableInputPrefetcher prefetcher = new TableInputPrefetcher( db, rs, false, 5 );
+    prefetcher.getRow();
+    prefetcher.close();
+    assertNull( prefetcher.getRow() );
+  }
+
+  @Test
+  public void testAdaptiveFetchSize() {
+    RowMetaInterface narrow = new RowMeta();
+    narrow.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+    assertEquals( TableInputPrefetcher.MAX_FETCH_SIZE, TableInputPrefetcher.getAdaptiveFetchSize( narrow ) );
+
+    RowMetaInterface wide = new RowMeta();
+    for ( int i = 0; i < 20; i++ ) {
+      wide.addValueMeta( new ValueMeta( "description" + i, ValueMetaInterface.TYPE_STRING, 4000, -1 ) );
+    }
+    assertEquals( TableInputPrefetcher.MIN_FETCH_SIZE, TableInputPrefetcher.getAdaptiveFetchSize( wide ) );
+
+    RowMetaInterface medium = new RowMeta();
+    medium.addValueMeta( new ValueMeta( "id", ValueMetaInterface.TYPE_INTEGER ) );
+    medium.addValueMeta( new ValueMeta( "name", ValueMetaInterface.TYPE_STRING, 100, -1 ) );
+    medium.addValueMeta( new ValueMeta( "created", ValueMetaInterface.TYPE_DATE ) );
+    int fetchSize = TableInputPrefetcher.getAdaptiveFetchSize( medium );
+    assertEquals( TableInputPrefetcher.FETCH_BUFFER_SIZE / ( 16 + 24 + 240 + 24 ), fetchSize );
+  }
+}
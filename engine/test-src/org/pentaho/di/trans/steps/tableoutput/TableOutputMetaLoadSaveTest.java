@@ -49,6 +49,7 @@ public class TableOutputMetaLoadSaveTest implements InitializerInterface<StepMet
     PluginRegistry.init( true );
     List<String> attributes =
         Arrays.asList( "databaseMeta", "schemaName", "tableName", "commitSize", "truncateTable", "ignoreErrors", "useBatchUpdate",
+            "writerConnections", "useBulkLoad",
             "partitioningEnabled", "partitioningField", "partitioningDaily", "partitioningMonthly", "tableNameInField", "tableNameField",
             "tableNameInTable", "returningGeneratedKeys", "generatedKeyField", "specifyFields", "fieldStream", "fieldDatabase" );
 
@@ -57,6 +58,7 @@ public class TableOutputMetaLoadSaveTest implements InitializerInterface<StepMet
         put( "truncateTable", "truncateTable" );
         put( "ignoreErrors", "ignoreErrors" );
         put( "useBatchUpdate", "useBatchUpdate" );
+        put( "useBulkLoad", "useBulkLoad" );
         put( "specifyFields", "specifyFields" );
       }
     };
@@ -146,6 +146,8 @@ public class TableOutputMetaTest {
     assertFalse( tableOutputMeta.ignoreErrors() );
     assertFalse( tableOutputMeta.isPartitioningEnabled() );
     assertTrue( tableOutputMeta.useBatchUpdate() );
+    assertEquals( "2", tableOutputMeta.getWriterConnections() );
+    assertTrue( tableOutputMeta.useBulkLoad() );
     assertFalse( tableOutputMeta.isTableNameInField() );
     assertTrue( tableOutputMeta.isTableNameInTable() );
     assertFalse( tableOutputMeta.isReturningGeneratedKeys() );
@@ -157,6 +159,8 @@ public class TableOutputMetaTest {
       + "    <truncate>Y</truncate>\n"
       + "    <ignore_errors>N</ignore_errors>\n"
       + "    <use_batch>Y</use_batch>\n"
+      + "    <writer_connections>2</writer_connections>\n"
+      + "    <use_bulk_load>Y</use_bulk_load>\n"
       + "    <specify_fields>Y</specify_fields>\n"
       + "    <partitioning_enabled>N</partitioning_enabled>\n"
       + "    <partitioning_field/>\n"
@@ -200,6 +204,8 @@ public class TableOutputMetaTest {
     verify( rep ).saveStepAttribute( id_transformation, id_step, "truncate", true );
     verify( rep ).saveStepAttribute( id_transformation, id_step, "ignore_errors", false );
     verify( rep ).saveStepAttribute( id_transformation, id_step, "use_batch", true );
+    verify( rep ).saveStepAttribute( id_transformation, id_step, "writer_connections", "2" );
+    verify( rep ).saveStepAttribute( id_transformation, id_step, "use_bulk_load", true );
     verify( rep ).saveStepAttribute( id_transformation, id_step, "specify_fields", true );
 
     verify( rep ).saveStepAttribute( id_transformation, id_step, "partitioning_enabled", false );
@@ -285,6 +291,8 @@ public class TableOutputMetaTest {
         + "    <truncate>Y</truncate>\n"
         + "    <ignore_errors>N</ignore_errors>\n"
         + "    <use_batch>Y</use_batch>\n"
+        + "    <writer_connections>2</writer_connections>\n"
+        + "    <use_bulk_load>Y</use_bulk_load>\n"
         + "    <specify_fields>Y</specify_fields>\n"
         + "    <partitioning_enabled>N</partitioning_enabled>\n"
         + "    <partitioning_field/>\n"
@@ -0,0 +1,134 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.tableoutput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.database.Database;
+import org.pentaho.di.core.exception.KettleDatabaseBatchException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+public class TableOutputWriterPoolTest {
+
+  @Test
+  public void testBatchesComeBackInOrder() throws Exception {
+    List<Database> connections = new ArrayList<Database>();
+    List<PreparedStatement> statements = new ArrayList<PreparedStatement>();
+    for ( int i = 0; i < 3; i++ ) {
+      Database db = mock( Database.class );
+      PreparedStatement statement = mock( PreparedStatement.class );
+      when( db.prepareSQL( anyString() ) ).thenReturn( statement );
+      connections.add( db );
+      statements.add( statement );
+    }
+    TableOutputWriterPool pool =
+      new TableOutputWriterPool( connections, "INSERT", mock( RowMetaInterface.class ), false );
+    assertEquals( 3, pool.getNrConnections() );
+
+    List<Object[]> written = new ArrayList<Object[]>();
+    int nr = 0;
+    for ( int b = 0; b < 20; b++ ) {
+      TableOutputWriterPool.Batch batch = new TableOutputWriterPool.Batch();
+      for ( int i = 0; i < 5; i++ ) {
+        Object[] row = new Object[] { Long.valueOf( nr++ ) };
+        batch.addRow( row, row );
+      }
+      pool.submit( batch );
+      collect( pool, written, false );
+    }
+    collect( pool, written, true );
+    assertNull( pool.nextWrittenBatch( true ) );
+
+    assertEquals( 100, written.size() );
+    for ( int i = 0; i < written.size(); i++ ) {
+      assertEquals( Long.valueOf( i ), written.get( i )[0] );
+    }
+
+    pool.close( false );
+    for ( int i = 0; i < connections.size(); i++ ) {
+      verify( connections.get( i ) ).closePreparedStatement( statements.get( i ) );
+      verify( connections.get( i ) ).disconnect();
+    }
+  }
+
+  @Test
+  public void testFailedBatch() throws Exception {
+    Database db = mock( Database.class );
+    PreparedStatement statement = mock( PreparedStatement.class );
+    when( db.prepareSQL( anyString() ) ).thenReturn( statement );
+    when( statement.executeBatch() ).thenReturn( new int[] { 1, 1 } ).thenThrow(
+      new BatchUpdateException( new int[] { 1, Statement.EXECUTE_FAILED } ) );
+    List<Database> connections = new ArrayList<Database>();
+    connections.add( db );
+
+    TableOutputWriterPool pool =
+      new TableOutputWriterPool( connections, "INSERT", mock( RowMetaInterface.class ), false );
+    TableOutputWriterPool.Batch good = newBatch( 2 );
+    TableOutputWriterPool.Batch bad = newBatch( 2 );
+    pool.submit( good );
+    pool.submit( bad );
+
+    assertSame( good, pool.nextWrittenBatch( true ) );
+    assertNull( good.getError() );
+    assertSame( bad, pool.nextWrittenBatch( true ) );
+    assertTrue( bad.getError() instanceof KettleDatabaseBatchException );
+    int[] updateCounts = ( (KettleDatabaseBatchException) bad.getError() ).getUpdateCounts();
+    assertEquals( 2, updateCounts.length );
+    assertEquals( Statement.EXECUTE_FAILED, updateCounts[1] );
+
+    pool.close( false );
+    verify( db ).rollback();
+    verify( db, never() ).commit( true );
+  }
+
+  private static TableOutputWriterPool.Batch newBatch( int nrRows ) {
+    TableOutputWriterPool.Batch batch = new TableOutputWriterPool.Batch();
+    for ( int i = 0; i < nrRows; i++ ) {
+      Object[] row = new Object[] { Long.valueOf( i ) };
+      batch.addRow( row, row );
+    }
+    return batch;
+  }
+
+  private static void collect( TableOutputWriterPool pool, List<Object[]> written, boolean wait ) throws Exception {
+    TableOutputWriterPool.Batch batch;
+    while ( ( batch = pool.nextWrittenBatch( wait ) ) != null ) {
+      assertNull( batch.getError() );
+      written.addAll( batch.getOutputRows() );
+    }
+  }
+}
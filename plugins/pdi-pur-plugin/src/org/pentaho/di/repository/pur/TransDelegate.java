@@ -103,6 +103,8 @@ public class TransDelegate extends AbstractDelegate implements ITransformer, ISh
 
   private static final String PROP_USING_THREAD_PRIORITIES = "USING_THREAD_PRIORITIES";
 
+  private static final String PROP_USING_ROWSET_SIGNALLING = "USING_ROWSET_SIGNALLING";
+
   static final String PROP_FEEDBACK_SIZE = "FEEDBACK_SIZE";
 
   private static final String PROP_FEEDBACK_SHOWN = "FEEDBACK_SHOWN";
@@ -569,6 +571,11 @@ public class TransDelegate extends AbstractDelegate implements ITransformer, ISh
       usingThreadPriorityManagement = rootNode.getProperty( PROP_USING_THREAD_PRIORITIES ).getBoolean();
     }
     transMeta.setUsingThreadPriorityManagment( usingThreadPriorityManagement );
+    boolean usingRowSetSignalling = false;
+    if ( rootNode.hasProperty( PROP_USING_ROWSET_SIGNALLING ) ) {
+      usingRowSetSignalling = rootNode.getProperty( PROP_USING_ROWSET_SIGNALLING ).getBoolean();
+    }
+    transMeta.setUsingRowSetSignalling( usingRowSetSignalling );
     transMeta.setSharedObjectsFile( getString( rootNode, PROP_SHARED_FILE ) );
     String transTypeCode = getString( rootNode, PROP_TRANSFORMATION_TYPE );
     transMeta.setTransformationType( TransformationType.getTransformationTypeByCode( transTypeCode ) );
@@ -785,6 +792,7 @@ public class TransDelegate extends AbstractDelegate implements ITransformer, ISh
     rootNode.setProperty( PROP_FEEDBACK_SHOWN, transMeta.isFeedbackShown() );
     rootNode.setProperty( PROP_FEEDBACK_SIZE, transMeta.getFeedbackSize() );
     rootNode.setProperty( PROP_USING_THREAD_PRIORITIES, transMeta.isUsingThreadPriorityManagment() );
+    rootNode.setProperty( PROP_USING_ROWSET_SIGNALLING, transMeta.isUsingRowSetSignalling() );
     rootNode.setProperty( PROP_SHARED_FILE, transMeta.getSharedObjectsFile() );
 
     rootNode.setProperty( PROP_CAPTURE_STEP_PERFORMANCE, transMeta.isCapturingStepPerformanceSnapShots() );
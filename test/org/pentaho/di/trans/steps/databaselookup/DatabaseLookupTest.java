@@ -22,6 +22,7 @@
 
 package org.pentaho.di.trans.steps.databaselookup;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -653,4 +654,125 @@ public class DatabaseLookupTest {
 
   }
 
+  /**
+   * Lookup of the keys of several rows with one query: the first row in the order by clause, keys that are not found,
+   * keys that come back in the same batch and null keys.
+   */
+  @Test
+  public void batchedDatabaseLookup() throws Exception {
+    DatabaseLookupMeta dbl = createBatchLookupMeta( 3 );
+    dbl.setOrderByClause( "ID DESC" );
+    dbl.setTableKeyField( new String[] { "CODE" } );
+    dbl.setKeyCondition( new String[] { "=" } );
+    dbl.setStreamKeyField1( new String[] { "int_field" } );
+    dbl.setStreamKeyField2( new String[] { "" } );
+
+    RowMetaInterface rm = createRowMetaInterface();
+    List<RowMetaAndData> inputList = new ArrayList<RowMetaAndData>();
+    inputList.add( new RowMetaAndData( rm, new Object[] { 101L, "a" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { 102L, "b" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { 999L, "c" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { 101L, "d" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { null, "e" } ) );
+
+    RowMetaInterface resultMeta = createResultRowMetaInterface();
+    List<RowMetaAndData> goldRows = new ArrayList<RowMetaAndData>();
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 101L, "a", 8L, "8" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 102L, "b", 12L, "12" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 999L, "c", -1L, "UNDEF" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 101L, "d", 8L, "8" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { null, "e", -1L, "UNDEF" } ) );
+
+    checkRows( goldRows, runBatchLookup( dbl, inputList ) );
+  }
+
+  /**
+   * Lookup of the keys of several rows with one query on two key fields, one of them converted to the type of the
+   * table, with a cache.
+   */
+  @Test
+  public void batchedDatabaseLookupCompoundKey() throws Exception {
+    DatabaseLookupMeta dbl = createBatchLookupMeta( 2 );
+    dbl.setCached( true );
+    dbl.setCacheSize( 1 );
+    dbl.setTableKeyField( new String[] { "ID", "CODE" } );
+    dbl.setKeyCondition( new String[] { "=", "=" } );
+    dbl.setStreamKeyField1( new String[] { "int_field", "str_field" } );
+    dbl.setStreamKeyField2( new String[] { "", "" } );
+
+    RowMetaInterface rm = createRowMetaInterface();
+    List<RowMetaAndData> inputList = new ArrayList<RowMetaAndData>();
+    inputList.add( new RowMetaAndData( rm, new Object[] { 5L, "101" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { 5L, "100" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { 9L, "102" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { 5L, "101" } ) );
+    inputList.add( new RowMetaAndData( rm, new Object[] { 9L, "102" } ) );
+
+    RowMetaInterface resultMeta = createResultRowMetaInterface();
+    List<RowMetaAndData> goldRows = new ArrayList<RowMetaAndData>();
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 5L, "101", 5L, "5" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 5L, "100", -1L, "UNDEF" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 9L, "102", 9L, "9" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 5L, "101", 5L, "5" } ) );
+    goldRows.add( new RowMetaAndData( resultMeta, new Object[] { 9L, "102", 9L, "9" } ) );
+
+    checkRows( goldRows, runBatchLookup( dbl, inputList ) );
+  }
+
+  private DatabaseLookupMeta createBatchLookupMeta( int batchSize ) throws Exception {
+    DatabaseLookupMeta dbl = new DatabaseLookupMeta();
+    dbl.setDatabaseMeta( new DatabaseMeta( databasesXML[0] ) );
+    dbl.setTablename( lookup_table );
+    dbl.setCached( false );
+    dbl.setEatingRowOnLookupFailure( false );
+    dbl.setFailingOnMultipleResults( false );
+    dbl.setOrderByClause( "" );
+    dbl.setLookupBatchSize( batchSize );
+
+    dbl.setReturnValueField( new String[] { "ID", "STRING" } );
+    dbl.setReturnValueDefaultType( new int[] { ValueMeta.TYPE_INTEGER, ValueMeta.TYPE_STRING } );
+    dbl.setReturnValueDefault( new String[] { "-1", "UNDEF" } );
+    dbl.setReturnValueNewName( new String[] { "RET_CODE", "RET_STRING" } );
+    return dbl;
+  }
+
+  private List<RowMetaAndData> runBatchLookup( DatabaseLookupMeta dbl, List<RowMetaAndData> inputList )
+    throws Exception {
+    KettleEnvironment.init();
+
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName( "transname" );
+    transMeta.addDatabase( dbl.getDatabaseMeta() );
+    PluginRegistry registry = PluginRegistry.getInstance();
+
+    String injectorStepname = "injector step";
+    InjectorMeta im = new InjectorMeta();
+    String injectorPid = registry.getPluginId( StepPluginType.class, im );
+    StepMeta injectorStep = new StepMeta( injectorPid, injectorStepname, im );
+    transMeta.addStep( injectorStep );
+
+    String lookupName = "look up from [" + lookup_table + "]";
+    String lookupId = registry.getPluginId( StepPluginType.class, dbl );
+    StepMeta lookupStep = new StepMeta( lookupId, lookupName, dbl );
+    transMeta.addStep( lookupStep );
+    transMeta.addTransHop( new TransHopMeta( injectorStep, lookupStep ) );
+
+    Trans trans = new Trans( transMeta );
+    trans.prepareExecution( null );
+
+    StepInterface si = trans.getStepInterface( lookupName, 0 );
+    RowStepCollector rc = new RowStepCollector();
+    si.addRowListener( rc );
+
+    RowProducer rp = trans.addRowProducer( injectorStepname, 0 );
+    trans.startThreads();
+    for ( RowMetaAndData rm : inputList ) {
+      rp.putRow( rm.getRowMeta(), rm.getData() );
+    }
+    rp.finished();
+    trans.waitUntilFinished();
+
+    assertEquals( 0, trans.getErrors() );
+    return rc.getRowsWritten();
+  }
 }
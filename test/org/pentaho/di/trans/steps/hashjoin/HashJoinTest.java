@@ -0,0 +1,229 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.hashjoin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.core.plugins.StepPluginType;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.RowStepCollector;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.injector.InjectorMeta;
+
+public class HashJoinTest {
+
+  private static final String FIRST_STEPNAME = "first";
+  private static final String SECOND_STEPNAME = "second";
+  private static final String JOIN_STEPNAME = "hash join";
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleEnvironment.init();
+  }
+
+  private RowMetaInterface createFirstRowMeta() {
+    RowMetaInterface rm = new RowMeta();
+    rm.addValueMeta( new ValueMetaInteger( "key" ) );
+    rm.addValueMeta( new ValueMetaString( "value" ) );
+    return rm;
+  }
+
+  private RowMetaInterface createSecondRowMeta() {
+    RowMetaInterface rm = new RowMeta();
+    rm.addValueMeta( new ValueMetaInteger( "id" ) );
+    rm.addValueMeta( new ValueMetaString( "name" ) );
+    return rm;
+  }
+
+  /**
+   * Random keys with duplicates on both sides, nulls and keys that only exist on one side.
+   */
+  private List<Object[]> createRows( Random random, int nrRows, int nrKeys, String prefix ) {
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( int i = 0; i < nrRows; i++ ) {
+      Long key = random.nextInt( 50 ) == 0 ? null : Long.valueOf( random.nextInt( nrKeys ) );
+      rows.add( new Object[] { key, prefix + i } );
+    }
+    return rows;
+  }
+
+  /**
+   * The join the slow way, a row as a string for every output row.
+   */
+  private List<String> expectedJoin( List<Object[]> first, List<Object[]> second, String joinType ) {
+    List<String> result = new ArrayList<String>();
+    for ( Object[] one : first ) {
+      boolean matched = false;
+      for ( Object[] two : second ) {
+        if ( one[0] != null && one[0].equals( two[0] ) ) {
+          matched = true;
+          if ( !"ANTI".equals( joinType ) ) {
+            result.add( Arrays.asList( one[0], one[1], two[0], two[1] ).toString() );
+          }
+        }
+      }
+      if ( !matched && "LEFT OUTER".equals( joinType ) ) {
+        result.add( Arrays.asList( one[0], one[1], null, null ).toString() );
+      } else if ( !matched && "ANTI".equals( joinType ) ) {
+        result.add( Arrays.asList( one[0], one[1] ).toString() );
+      }
+    }
+    Collections.sort( result );
+    return result;
+  }
+
+  private List<String> runJoin( List<Object[]> first, List<Object[]> second, String joinType, String maxRows,
+    File directory ) throws Exception {
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName( "hashjoin" );
+    PluginRegistry registry = PluginRegistry.getInstance();
+
+    InjectorMeta im1 = new InjectorMeta();
+    StepMeta firstStep = new StepMeta( registry.getPluginId( StepPluginType.class, im1 ), FIRST_STEPNAME, im1 );
+    transMeta.addStep( firstStep );
+    InjectorMeta im2 = new InjectorMeta();
+    StepMeta secondStep = new StepMeta( registry.getPluginId( StepPluginType.class, im2 ), SECOND_STEPNAME, im2 );
+    transMeta.addStep( secondStep );
+
+    HashJoinMeta hjm = new HashJoinMeta();
+    hjm.setDefault();
+    hjm.setJoinType( joinType );
+    hjm.setKeyFields1( new String[] { "key" } );
+    hjm.setKeyFields2( new String[] { "id" } );
+    hjm.setMaxRows( maxRows );
+    hjm.setFreeMemoryLimit( "" );
+    hjm.setDirectory( directory.getAbsolutePath() );
+    hjm.getStepIOMeta().getInfoStreams().get( 0 ).setStepMeta( firstStep );
+    hjm.getStepIOMeta().getInfoStreams().get( 1 ).setStepMeta( secondStep );
+    StepMeta joinStep = new StepMeta( registry.getPluginId( StepPluginType.class, hjm ), JOIN_STEPNAME, hjm );
+    transMeta.addStep( joinStep );
+
+    transMeta.addTransHop( new TransHopMeta( firstStep, joinStep ) );
+    transMeta.addTransHop( new TransHopMeta( secondStep, joinStep ) );
+
+    Trans trans = new Trans( transMeta );
+    trans.prepareExecution( null );
+
+    StepInterface si = trans.getStepInterface( JOIN_STEPNAME, 0 );
+    RowStepCollector rc = new RowStepCollector();
+    si.addRowListener( rc );
+
+    RowProducer rp1 = trans.addRowProducer( FIRST_STEPNAME, 0 );
+    RowProducer rp2 = trans.addRowProducer( SECOND_STEPNAME, 0 );
+    trans.startThreads();
+
+    RowMetaInterface secondMeta = createSecondRowMeta();
+    for ( Object[] row : second ) {
+      rp2.putRow( secondMeta, row );
+    }
+    rp2.finished();
+    RowMetaInterface firstMeta = createFirstRowMeta();
+    for ( Object[] row : first ) {
+      rp1.putRow( firstMeta, row );
+    }
+    rp1.finished();
+
+    trans.waitUntilFinished();
+    assertEquals( 0, trans.getErrors() );
+
+    List<String> result = new ArrayList<String>();
+    for ( RowMetaAndData row : rc.getRowsWritten() ) {
+      result.add( Arrays.asList( row.getData() ).subList( 0, row.getRowMeta().size() ).toString() );
+    }
+    Collections.sort( result );
+    return result;
+  }
+
+  private void doTest( String joinType, String maxRows ) throws Exception {
+    Random random = new Random( 42 );
+    List<Object[]> first = createRows( random, 3000, 700, "v" );
+    List<Object[]> second = createRows( random, 2000, 500, "n" );
+
+    File directory = File.createTempFile( "hashjoin", "" );
+    directory.delete();
+    directory.mkdirs();
+    try {
+      assertEquals( expectedJoin( first, second, joinType ), runJoin( first, second, joinType, maxRows, directory ) );
+      // All temporary files are cleaned up
+      assertEquals( 0, directory.list().length );
+    } finally {
+      for ( File file : directory.listFiles() ) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testInnerJoin() throws Exception {
+    doTest( "INNER", "" );
+  }
+
+  @Test
+  public void testLeftOuterJoin() throws Exception {
+    doTest( "LEFT OUTER", "" );
+  }
+
+  @Test
+  public void testAntiJoin() throws Exception {
+    doTest( "ANTI", "" );
+  }
+
+  /**
+   * The second stream doesn't fit: both streams are spilled, the partitions are split up again at the next level.
+   */
+  @Test
+  public void testInnerJoinSpilled() throws Exception {
+    doTest( "INNER", "10" );
+  }
+
+  @Test
+  public void testLeftOuterJoinSpilled() throws Exception {
+    doTest( "LEFT OUTER", "10" );
+  }
+
+  @Test
+  public void testAntiJoinSpilled() throws Exception {
+    doTest( "ANTI", "10" );
+  }
+}
@@ -25,6 +25,7 @@ package org.pentaho.di.trans.steps.memgroupby;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Assert;
@@ -41,6 +42,7 @@ import org.pentaho.di.core.row.value.ValueMetaBigNumber;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.TransTestFactory;
 import org.pentaho.di.trans.steps.groupby.GroupByMeta;
@@ -175,4 +177,50 @@ public class MemoryGroupByIntTest {
         rmd.getData()[4] );*/
   }
 
+  /**
+   * The groups that don't fit in memory are written to temporary files and aggregated afterwards, the result only
+   * differs in the order of the groups.
+   */
+  @Test
+  public void testMemoryGroupBySpillToDisk() throws KettleException {
+    MemoryGroupByMeta meta = new MemoryGroupByMeta();
+    meta.setSubjectField( new String[] { KEY2, KEY3, KEY1 } );
+    meta.setAggregateField( new String[] { OUT1, OUT2, OUT3 } );
+    meta.setGroupField( new String[] { KEY1 } );
+    meta.setAggregateType( new int[] { GroupByMeta.TYPE_GROUP_SUM, GroupByMeta.TYPE_GROUP_MAX,
+      GroupByMeta.TYPE_GROUP_CONCAT_COMMA } );
+
+    RowMetaInterface rm = new RowMeta();
+    rm.addValueMeta( new ValueMetaString( KEY1 ) );
+    rm.addValueMeta( new ValueMetaInteger( KEY2 ) );
+    rm.addValueMeta( new ValueMetaNumber( KEY3 ) );
+    List<RowMetaAndData> inputList = new ArrayList<RowMetaAndData>();
+    for ( int i = 0; i < 1000; i++ ) {
+      inputList.add( new RowMetaAndData( rm, "g" + ( i % 97 ), (long) i, i % 13 == 0 ? null : i / 7.0 ) );
+    }
+
+    List<String> inMemory = getSortedOutput( meta, inputList, "0" );
+    List<String> spilled = getSortedOutput( meta, inputList, "5" );
+
+    Assert.assertEquals( 97, inMemory.size() );
+    Assert.assertEquals( inMemory, spilled );
+  }
+
+  private List<String> getSortedOutput( MemoryGroupByMeta meta, List<RowMetaAndData> inputList, String maxGroups )
+    throws KettleException {
+    Variables variables = new Variables();
+    variables.setVariable( Const.KETTLE_MEMORY_GROUP_BY_MAX_GROUPS, maxGroups );
+
+    TransMeta transMeta = TransTestFactory.generateTestTransformation( variables, meta, stepName );
+    List<RowMetaAndData> result =
+      TransTestFactory.executeTestTransformation( transMeta, TransTestFactory.INJECTOR_STEPNAME, stepName,
+        TransTestFactory.DUMMY_STEPNAME, inputList, variables, null );
+
+    List<String> rows = new ArrayList<String>();
+    for ( RowMetaAndData row : result ) {
+      rows.add( row.getRowMeta().getString( row.getData() ) );
+    }
+    Collections.sort( rows );
+    return rows;
+  }
 }
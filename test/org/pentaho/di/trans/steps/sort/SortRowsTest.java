@@ -36,6 +36,7 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.pentaho.di.TestUtilities;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleException;
@@ -48,6 +49,7 @@ import org.pentaho.di.core.row.value.ValueMetaDate;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.row.value.ValueMetaTimestamp;
+import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.TransTestFactory;
 
@@ -276,6 +278,103 @@ public class SortRowsTest {
     checkStringRows( ret, true );
   }
 
+  /**
+   * Test case for sorting step .. ascending order on a single thread.
+   */
+  @Test
+  public void testSortRowsSingleThreaded() throws Exception {
+    SortRowsMeta srm = new SortRowsMeta();
+    srm.setSortSize( Integer.toString( MAX_COUNT / 10 ) );
+    String[] sortFields = { "KEY1", "KEY2" };
+    boolean[] ascendingFields = { true, true };
+    boolean[] caseSensitive = { true, true };
+    boolean[] presortedFields = { false, false };
+    srm.setFieldName( sortFields );
+    srm.setAscending( ascendingFields );
+    srm.setCaseSensitive( caseSensitive );
+    srm.setPreSortedField( presortedFields );
+    srm.setPrefix( "SortRowsTest" );
+    srm.setDirectory( "." );
+
+    Variables variables = new Variables();
+    variables.setVariable( Const.KETTLE_SORT_ROWS_PARALLEL, "N" );
+    TransMeta transMeta = TransTestFactory.generateTestTransformation( variables, srm, sortRowsStepname );
+
+    // add rows
+    List<RowMetaAndData> inputList = createStringData();
+    List<RowMetaAndData> ret =
+        TransTestFactory.executeTestTransformation( transMeta, TransTestFactory.INJECTOR_STEPNAME, sortRowsStepname,
+            TransTestFactory.DUMMY_STEPNAME, inputList, variables, null );
+
+    checkStringRows( ret, true );
+  }
+
+  /**
+   * Test case for sorting step .. descending order comparing normalized sort keys.
+   */
+  @Test
+  public void testSortRowsNormalizedKeys() throws Exception {
+    SortRowsMeta srm = new SortRowsMeta();
+    srm.setSortSize( Integer.toString( MAX_COUNT / 10 ) );
+    String[] sortFields = { "KEY1", "KEY2" };
+    boolean[] ascendingFields = { false, false };
+    boolean[] caseSensitive = { true, true };
+    boolean[] presortedFields = { false, false };
+    srm.setFieldName( sortFields );
+    srm.setAscending( ascendingFields );
+    srm.setCaseSensitive( caseSensitive );
+    srm.setPreSortedField( presortedFields );
+    srm.setPrefix( "SortRowsTest" );
+    srm.setDirectory( "." );
+
+    Variables variables = new Variables();
+    variables.setVariable( Const.KETTLE_SORT_ROWS_NORMALIZED_KEYS, "Y" );
+    TransMeta transMeta = TransTestFactory.generateTestTransformation( variables, srm, sortRowsStepname );
+
+    // add rows
+    List<RowMetaAndData> inputList = createStringData();
+    List<RowMetaAndData> ret =
+        TransTestFactory.executeTestTransformation( transMeta, TransTestFactory.INJECTOR_STEPNAME, sortRowsStepname,
+            TransTestFactory.DUMMY_STEPNAME, inputList, variables, null );
+
+    checkStringRows( ret, false );
+  }
+
+  /**
+   * Test case for sorting step .. LZ4 compressed temp-files merged in several passes.
+   */
+  @Test
+  public void testSortRowsMultiPassMerge() throws Exception {
+    SortRowsMeta srm = new SortRowsMeta();
+    srm.setSortSize( Integer.toString( MAX_COUNT / 10 ) );
+    String[] sortFields = { "KEY1", "KEY2" };
+    boolean[] ascendingFields = { true, true };
+    boolean[] caseSensitive = { true, true };
+    boolean[] presortedFields = { false, false };
+    srm.setFieldName( sortFields );
+    srm.setAscending( ascendingFields );
+    srm.setCaseSensitive( caseSensitive );
+    srm.setPreSortedField( presortedFields );
+    srm.setPrefix( "SortRowsTest" );
+    srm.setDirectory( "." );
+    srm.setCompressFiles( true );
+
+    Variables variables = new Variables();
+    variables.setVariable( Const.KETTLE_SORT_ROWS_COMPRESSION_CODEC, "LZ4" );
+    variables.setVariable( Const.KETTLE_SORT_ROWS_MAX_OPEN_FILES, "3" );
+    variables.setVariable( Const.KETTLE_SORT_ROWS_READ_BUFFER_SIZE, "1000" );
+    TransMeta transMeta = TransTestFactory.generateTestTransformation( variables, srm, sortRowsStepname );
+
+    // add rows
+    List<RowMetaAndData> inputList = createStringData();
+    List<RowMetaAndData> ret =
+        TransTestFactory.executeTestTransformation( transMeta, TransTestFactory.INJECTOR_STEPNAME, sortRowsStepname,
+            TransTestFactory.DUMMY_STEPNAME, inputList, variables, null );
+
+    Assert.assertEquals( MAX_COUNT, ret.size() );
+    checkStringRows( ret, true );
+  }
+
   /**
    * Test case for sorting step .. descending order on "numeric" data.
    */
@@ -35,6 +35,9 @@ public class TableInputMetaInjectionTest extends TestCase {
   public static boolean REPLACE_VARIABLES = true;
   public static boolean EXECUTE_FOR_EACH_ROW = true;
   public static String LIMIT = "10";
+  public static String PREFETCH_SIZE = "1000";
+  public static String PARTITION_METHOD = TableInputMeta.PARTITION_METHOD_RANGE;
+  public static String PARTITION_COLUMN = "id";
 
   public void testInjectionExtraction() throws Exception {
 
@@ -47,7 +50,7 @@ public class TableInputMetaInjectionTest extends TestCase {
 
     List<StepInjectionMetaEntry> entries = meta.extractStepMetadataEntries();
 
-    assertEquals( 5, entries.size() );
+    assertEquals( 8, entries.size() );
 
     TableInputMeta newMeta = new TableInputMeta();
     newMeta.getStepMetaInjectionInterface().injectStepMetadataEntries( entries );
@@ -61,13 +64,16 @@ public class TableInputMetaInjectionTest extends TestCase {
   public void testInjectionEntries() throws Exception {
     TableInputMeta meta = populateTableInputMeta();
     List<StepInjectionMetaEntry> entries = meta.getStepMetaInjectionInterface().getStepInjectionMetadataEntries();
-    assertEquals( 5, entries.size() );
+    assertEquals( 8, entries.size() );
 
     assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.SQL ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.LAZY_CONVERSION ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.REPLACE_VARIABLES ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.EXECUTE_FOR_EACH_ROW ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.LIMIT ) );
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.PREFETCH_SIZE ) );
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.PARTITION_METHOD ) );
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableInputMetaInjection.Entry.PARTITION_COLUMN ) );
   }
 
   private TableInputMeta populateTableInputMeta() {
@@ -78,6 +84,9 @@ public class TableInputMetaInjectionTest extends TestCase {
     meta.setVariableReplacementActive( REPLACE_VARIABLES );
     meta.setExecuteEachInputRow( EXECUTE_FOR_EACH_ROW );
     meta.setRowLimit( LIMIT );
+    meta.setPrefetchSize( PREFETCH_SIZE );
+    meta.setPartitionMethod( PARTITION_METHOD );
+    meta.setPartitionColumn( PARTITION_COLUMN );
 
     return meta;
   }
@@ -38,6 +38,8 @@ public class TableOutputMetaInjectionTest extends TestCase {
   public static boolean SPECIFY_DATABASE_FIELDS = true;
   public static boolean IGNORE_INSERT_ERRORS = true;
   public static boolean USE_BATCH_UPDATE = true;
+  public static String WRITER_CONNECTIONS = "4";
+  public static boolean USE_BULK_LOAD = true;
 
   public static boolean PARTITION_OVER_TABLES = true;
   public static String PARTITIONING_FIELD = "partitioningField";
@@ -67,7 +69,7 @@ public class TableOutputMetaInjectionTest extends TestCase {
 
     List<StepInjectionMetaEntry> entries = meta.extractStepMetadataEntries();
 
-    assertEquals( 16, entries.size() );
+    assertEquals( 18, entries.size() );
 
     TableOutputMeta newMeta = new TableOutputMeta();
     newMeta.getStepMetaInjectionInterface().injectStepMetadataEntries( entries );
@@ -81,7 +83,7 @@ public class TableOutputMetaInjectionTest extends TestCase {
   public void testInjectionEntries() throws Exception {
     TableOutputMeta meta = populateTableOutputMeta();
     List<StepInjectionMetaEntry> entries = meta.getStepMetaInjectionInterface().getStepInjectionMetadataEntries();
-    assertEquals( 16, entries.size() );
+    assertEquals( 18, entries.size() );
 
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.TARGET_SCHEMA ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.TARGET_TABLE ) );
@@ -90,6 +92,8 @@ public class TableOutputMetaInjectionTest extends TestCase {
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.SPECIFY_DATABASE_FIELDS ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.IGNORE_INSERT_ERRORS ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.USE_BATCH_UPDATE ) );
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.WRITER_CONNECTIONS ) );
+    assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.USE_BULK_LOAD ) );
 
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.PARTITION_OVER_TABLES ) );
     assertNotNull( StepInjectionUtil.findEntry( entries, TableOutputMetaInjection.Entry.PARTITIONING_FIELD ) );
@@ -124,6 +128,8 @@ public class TableOutputMetaInjectionTest extends TestCase {
     meta.setTruncateTable( TRUNCATE_TABLE );
     meta.setIgnoreErrors( IGNORE_INSERT_ERRORS );
     meta.setUseBatchUpdate( USE_BATCH_UPDATE );
+    meta.setWriterConnections( WRITER_CONNECTIONS );
+    meta.setUseBulkLoad( USE_BULK_LOAD );
     meta.setSpecifyFields( SPECIFY_DATABASE_FIELDS );
 
     meta.setPartitioningEnabled( PARTITION_OVER_TABLES );
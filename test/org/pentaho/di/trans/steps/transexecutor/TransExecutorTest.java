@@ -24,6 +24,10 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -36,9 +40,13 @@ import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMeta;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.job.DelegationListener;
+import org.pentaho.di.job.Job;
+import org.pentaho.di.job.JobExecutionConfiguration;
 import org.pentaho.di.trans.RowProducer;
 import org.pentaho.di.trans.RowStepCollector;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransExecutionConfiguration;
 import org.pentaho.di.trans.TransHopMeta;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.StepInterface;
@@ -52,6 +60,8 @@ public class TransExecutorTest {
   private static final int EXPECTED_SUBTRANS_OUTPUT_AMOUNT = 10;
 
   private static final String SUBTRANS_PATH = "testfiles/org/pentaho/di/trans/steps/transexecutor/subtrans.ktr";
+  private static final String SINGLE_THREADED_SUBTRANS_PATH =
+    "testfiles/org/pentaho/di/trans/steps/transexecutor/subtrans-single-threaded.ktr";
 
 
   @BeforeClass
@@ -209,4 +219,49 @@ public class TransExecutorTest {
     assertNotNull( endRc.getRowsWritten().get( 0 ).getData()[ 0 ] );
   }
 
+
+  @Test
+  public void singleThreadedSubTransIsKeptForAllGroups() throws Exception {
+    TransExecutorMeta executorMeta = getExecutorMeta( transExecutor );
+    executorMeta.setFileName( SINGLE_THREADED_SUBTRANS_PATH );
+    executorMeta.setGroupSize( "2" );
+    executorMeta.setOutputRowsSourceStepMeta( dummy );
+
+    Trans trans = createTrans( transMeta );
+    final AtomicInteger subTransStarted = new AtomicInteger();
+    trans.addDelegationListener( new DelegationListener() {
+      @Override
+      public void jobDelegationStarted( Job delegatedJob, JobExecutionConfiguration jobExecutionConfiguration ) {
+      }
+
+      @Override
+      public void transformationDelegationStarted( Trans delegatedTrans,
+        TransExecutionConfiguration transExecutionConfiguration ) {
+        subTransStarted.incrementAndGet();
+      }
+    } );
+    RowStepCollector endRc = listenExecutor( trans );
+    RowProducer rp = trans.addRowProducer( injector.getName(), 0 );
+
+    trans.startThreads();
+
+    RowMetaInterface rowMeta = createRowMetaForOneField();
+    for ( String value : new String[] { "a", "b", "c", "d", "e" } ) {
+      rp.putRow( rowMeta, new Object[] { value } );
+    }
+    rp.finished();
+
+    trans.waitUntilFinished();
+
+    assertEquals( 0, trans.getErrors() );
+    assertEquals( 1, subTransStarted.get() );
+
+    // The rows of every group are sorted separately, in descending order
+    List<String> output = new ArrayList<String>();
+    for ( RowMetaAndData row : endRc.getRowsWritten() ) {
+      output.add( row.getString( 0, null ) );
+    }
+    assertEquals( asList( "b", "a", "d", "c", "e" ), output );
+  }
+
 }
@@ -199,6 +199,8 @@ public class TransDialog extends Dialog {
 
   private Button wManageThreads;
 
+  private Button wRowSetSignalling;
+
   private boolean directoryChangeAllowed;
 
   private Label wlDirectory;
@@ -1950,6 +1952,26 @@ public class TransDialog extends Dialog {
     fdManageThreads.right = new FormAttachment( 100, 0 );
     wManageThreads.setLayoutData( fdManageThreads );
 
+    // Wake up waiting steps with a signal?
+    Label wlRowSetSignalling = new Label( wMiscComp, SWT.RIGHT );
+    wlRowSetSignalling.setText( BaseMessages.getString( PKG, "TransDialog.RowSetSignalling.Label" ) );
+    wlRowSetSignalling.setToolTipText( BaseMessages.getString( PKG, "TransDialog.RowSetSignalling.Tooltip" ) );
+    props.setLook( wlRowSetSignalling );
+    FormData fdlRowSetSignalling = new FormData();
+    fdlRowSetSignalling.left = new FormAttachment( 0, 0 );
+    fdlRowSetSignalling.top = new FormAttachment( wManageThreads, margin );
+    fdlRowSetSignalling.right = new FormAttachment( middle, -margin );
+    wlRowSetSignalling.setLayoutData( fdlRowSetSignalling );
+    wRowSetSignalling = new Button( wMiscComp, SWT.CHECK );
+    wRowSetSignalling.setToolTipText( BaseMessages.getString( PKG, "TransDialog.RowSetSignalling.Tooltip" ) );
+    wRowSetSignalling.addSelectionListener( lsModSel );
+    props.setLook( wRowSetSignalling );
+    FormData fdRowSetSignalling = new FormData();
+    fdRowSetSignalling.left = new FormAttachment( middle, 0 );
+    fdRowSetSignalling.top = new FormAttachment( wManageThreads, margin );
+    fdRowSetSignalling.right = new FormAttachment( 100, 0 );
+    wRowSetSignalling.setLayoutData( fdRowSetSignalling );
+
     // Single threaded option ...
     Label wlTransformationType = new Label( wMiscComp, SWT.RIGHT );
     wlTransformationType.setText( BaseMessages.getString( PKG, "TransDialog.TransformationType.Label" ) );
@@ -1959,7 +1981,7 @@ public class TransDialog extends Dialog {
     FormData fdlTransformationType = new FormData();
     fdlTransformationType.left = new FormAttachment( 0, 0 );
     fdlTransformationType.right = new FormAttachment( middle, -margin );
-    fdlTransformationType.top = new FormAttachment( wManageThreads, margin );
+    fdlTransformationType.top = new FormAttachment( wRowSetSignalling, margin );
     wlTransformationType.setLayoutData( fdlTransformationType );
     wTransformationType = new CCombo( wMiscComp, SWT.NORMAL );
     wTransformationType.setToolTipText( BaseMessages.getString(
@@ -1968,7 +1990,7 @@ public class TransDialog extends Dialog {
     props.setLook( wTransformationType );
     FormData fdTransformationType = new FormData();
     fdTransformationType.left = new FormAttachment( middle, 0 );
-    fdTransformationType.top = new FormAttachment( wManageThreads, margin );
+    fdTransformationType.top = new FormAttachment( wRowSetSignalling, margin );
     fdTransformationType.right = new FormAttachment( 100, 0 );
     wTransformationType.setLayoutData( fdTransformationType );
     wTransformationType.setItems( TransformationType.getTransformationTypesDescriptions() );
@@ -2176,6 +2198,7 @@ public class TransDialog extends Dialog {
     wFeedbackSize.setText( Integer.toString( transMeta.getFeedbackSize() ) );
     wSharedObjectsFile.setText( Const.NVL( transMeta.getSharedObjectsFile(), "" ) );
     wManageThreads.setSelection( transMeta.isUsingThreadPriorityManagment() );
+    wRowSetSignalling.setSelection( transMeta.isUsingRowSetSignalling() );
     wTransformationType.setText( transMeta.getTransformationType().getDescription() );
 
     wFields.setRowNums();
@@ -2312,6 +2335,7 @@ public class TransDialog extends Dialog {
     transMeta.setFeedbackSize( Const.toInt( wFeedbackSize.getText(), Const.ROWS_UPDATE ) );
     transMeta.setSharedObjectsFile( wSharedObjectsFile.getText() );
     transMeta.setUsingThreadPriorityManagment( wManageThreads.getSelection() );
+    transMeta.setUsingRowSetSignalling( wRowSetSignalling.getSelection() );
     transMeta.setTransformationType( TransformationType.values()[Const.indexOfString( wTransformationType
       .getText(), TransformationType.getTransformationTypesDescriptions() )] );
 
@@ -85,6 +85,10 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
   private Text wLimit;
   private FormData fdlLimit, fdLimit;
 
+  private Label wlBatchSize;
+  private Text wBatchSize;
+  private FormData fdlBatchSize, fdBatchSize;
+
   private Label wlOuter;
   private Button wOuter;
   private FormData fdlOuter, fdOuter;
@@ -254,6 +258,26 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
     fdLimit.top = new FormAttachment( wlPosition, margin );
     wLimit.setLayoutData( fdLimit );
 
+    // Join a batch of rows with a single query
+    wlBatchSize = new Label( shell, SWT.RIGHT );
+    wlBatchSize.setText( BaseMessages.getString( PKG, "DatabaseJoinDialog.BatchSize.Label" ) );
+    wlBatchSize.setToolTipText( BaseMessages.getString( PKG, "DatabaseJoinDialog.BatchSize.Tooltip" ) );
+    props.setLook( wlBatchSize );
+    fdlBatchSize = new FormData();
+    fdlBatchSize.left = new FormAttachment( 0, 0 );
+    fdlBatchSize.right = new FormAttachment( middle, -margin );
+    fdlBatchSize.top = new FormAttachment( wLimit, margin );
+    wlBatchSize.setLayoutData( fdlBatchSize );
+    wBatchSize = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wBatchSize );
+    wBatchSize.setToolTipText( wlBatchSize.getToolTipText() );
+    wBatchSize.addModifyListener( lsMod );
+    fdBatchSize = new FormData();
+    fdBatchSize.left = new FormAttachment( middle, 0 );
+    fdBatchSize.right = new FormAttachment( 100, 0 );
+    fdBatchSize.top = new FormAttachment( wLimit, margin );
+    wBatchSize.setLayoutData( fdBatchSize );
+
     // Outer join?
     wlOuter = new Label( shell, SWT.RIGHT );
     wlOuter.setText( BaseMessages.getString( PKG, "DatabaseJoinDialog.Outerjoin.Label" ) );
@@ -262,14 +286,14 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
     fdlOuter = new FormData();
     fdlOuter.left = new FormAttachment( 0, 0 );
     fdlOuter.right = new FormAttachment( middle, -margin );
-    fdlOuter.top = new FormAttachment( wLimit, margin );
+    fdlOuter.top = new FormAttachment( wBatchSize, margin );
     wlOuter.setLayoutData( fdlOuter );
     wOuter = new Button( shell, SWT.CHECK );
     props.setLook( wOuter );
     wOuter.setToolTipText( wlOuter.getToolTipText() );
     fdOuter = new FormData();
     fdOuter.left = new FormAttachment( middle, 0 );
-    fdOuter.top = new FormAttachment( wLimit, margin );
+    fdOuter.top = new FormAttachment( wBatchSize, margin );
     wOuter.setLayoutData( fdOuter );
     wOuter.addSelectionListener( new SelectionAdapter() {
       public void widgetSelected( SelectionEvent e ) {
@@ -396,6 +420,7 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
 
     wStepname.addSelectionListener( lsDef );
     wLimit.addSelectionListener( lsDef );
+    wBatchSize.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
     shell.addShellListener( new ShellAdapter() {
@@ -462,6 +487,7 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
 
     wSQL.setText( Const.NVL( input.getSql(), "" ) );
     wLimit.setText( "" + input.getRowLimit() );
+    wBatchSize.setText( "" + input.getBatchSize() );
     wOuter.setSelection( input.isOuterJoin() );
     wuseVars.setSelection( input.isVariableReplace() );
     if ( input.getParameterField() != null ) {
@@ -505,6 +531,7 @@ public class DatabaseJoinDialog extends BaseStepDialog implements StepDialogInte
     input.allocate( nrparam );
 
     input.setRowLimit( Const.toInt( wLimit.getText(), 0 ) );
+    input.setBatchSize( Const.toInt( wBatchSize.getText(), 0 ) );
     input.setSql( wSQL.getText() );
 
     input.setOuterJoin( wOuter.getSelection() );
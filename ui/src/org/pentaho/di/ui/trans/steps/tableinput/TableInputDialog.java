@@ -93,6 +93,18 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
   private TextVar wLimit;
   private FormData fdlLimit, fdLimit;
 
+  private Label wlPrefetchSize;
+  private TextVar wPrefetchSize;
+  private FormData fdlPrefetchSize, fdPrefetchSize;
+
+  private Label wlPartitionMethod;
+  private CCombo wPartitionMethod;
+  private FormData fdlPartitionMethod, fdPartitionMethod;
+
+  private Label wlPartitionColumn;
+  private TextVar wPartitionColumn;
+  private FormData fdlPartitionColumn, fdPartitionColumn;
+
   private Label wlEachRow;
   private Button wEachRow;
   private FormData fdlEachRow, fdEachRow;
@@ -183,6 +195,69 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
 
     setButtonPositions( new Button[] { wOK, wPreview, wCancel }, margin, null );
 
+    // Partition column...
+    wlPartitionColumn = new Label( shell, SWT.RIGHT );
+    wlPartitionColumn.setText( BaseMessages.getString( PKG, "TableInputDialog.PartitionColumn.Label" ) );
+    props.setLook( wlPartitionColumn );
+    fdlPartitionColumn = new FormData();
+    fdlPartitionColumn.left = new FormAttachment( 0, 0 );
+    fdlPartitionColumn.right = new FormAttachment( middle, -margin );
+    fdlPartitionColumn.bottom = new FormAttachment( wOK, -2 * margin );
+    wlPartitionColumn.setLayoutData( fdlPartitionColumn );
+    wPartitionColumn = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wPartitionColumn );
+    wPartitionColumn.setToolTipText( BaseMessages.getString( PKG, "TableInputDialog.PartitionColumn.Tooltip" ) );
+    wPartitionColumn.addModifyListener( lsMod );
+    fdPartitionColumn = new FormData();
+    fdPartitionColumn.left = new FormAttachment( middle, 0 );
+    fdPartitionColumn.right = new FormAttachment( 100, 0 );
+    fdPartitionColumn.bottom = new FormAttachment( wOK, -2 * margin );
+    wPartitionColumn.setLayoutData( fdPartitionColumn );
+
+    // Partition method...
+    wlPartitionMethod = new Label( shell, SWT.RIGHT );
+    wlPartitionMethod.setText( BaseMessages.getString( PKG, "TableInputDialog.PartitionMethod.Label" ) );
+    props.setLook( wlPartitionMethod );
+    fdlPartitionMethod = new FormData();
+    fdlPartitionMethod.left = new FormAttachment( 0, 0 );
+    fdlPartitionMethod.right = new FormAttachment( middle, -margin );
+    fdlPartitionMethod.bottom = new FormAttachment( wPartitionColumn, -margin );
+    wlPartitionMethod.setLayoutData( fdlPartitionMethod );
+    wPartitionMethod = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wPartitionMethod );
+    wPartitionMethod.setItems( TableInputMeta.partitionMethodDescriptions );
+    wPartitionMethod.setToolTipText( BaseMessages.getString( PKG, "TableInputDialog.PartitionMethod.Tooltip" ) );
+    wPartitionMethod.addModifyListener( lsMod );
+    wPartitionMethod.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setPartitionFlags();
+      }
+    } );
+    fdPartitionMethod = new FormData();
+    fdPartitionMethod.left = new FormAttachment( middle, 0 );
+    fdPartitionMethod.right = new FormAttachment( 100, 0 );
+    fdPartitionMethod.bottom = new FormAttachment( wPartitionColumn, -margin );
+    wPartitionMethod.setLayoutData( fdPartitionMethod );
+
+    // Prefetch size...
+    wlPrefetchSize = new Label( shell, SWT.RIGHT );
+    wlPrefetchSize.setText( BaseMessages.getString( PKG, "TableInputDialog.PrefetchSize.Label" ) );
+    props.setLook( wlPrefetchSize );
+    fdlPrefetchSize = new FormData();
+    fdlPrefetchSize.left = new FormAttachment( 0, 0 );
+    fdlPrefetchSize.right = new FormAttachment( middle, -margin );
+    fdlPrefetchSize.bottom = new FormAttachment( wPartitionMethod, -margin );
+    wlPrefetchSize.setLayoutData( fdlPrefetchSize );
+    wPrefetchSize = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wPrefetchSize );
+    wPrefetchSize.setToolTipText( BaseMessages.getString( PKG, "TableInputDialog.PrefetchSize.Tooltip" ) );
+    wPrefetchSize.addModifyListener( lsMod );
+    fdPrefetchSize = new FormData();
+    fdPrefetchSize.left = new FormAttachment( middle, 0 );
+    fdPrefetchSize.right = new FormAttachment( 100, 0 );
+    fdPrefetchSize.bottom = new FormAttachment( wPartitionMethod, -margin );
+    wPrefetchSize.setLayoutData( fdPrefetchSize );
+
     // Limit input ...
     wlLimit = new Label( shell, SWT.RIGHT );
     wlLimit.setText( BaseMessages.getString( PKG, "TableInputDialog.LimitSize" ) );
@@ -190,7 +265,7 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
     fdlLimit = new FormData();
     fdlLimit.left = new FormAttachment( 0, 0 );
     fdlLimit.right = new FormAttachment( middle, -margin );
-    fdlLimit.bottom = new FormAttachment( wOK, -2 * margin );
+    fdlLimit.bottom = new FormAttachment( wPrefetchSize, -margin );
     wlLimit.setLayoutData( fdlLimit );
     wLimit = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
     props.setLook( wLimit );
@@ -198,7 +273,7 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
     fdLimit = new FormData();
     fdLimit.left = new FormAttachment( middle, 0 );
     fdLimit.right = new FormAttachment( 100, 0 );
-    fdLimit.bottom = new FormAttachment( wOK, -2 * margin );
+    fdLimit.bottom = new FormAttachment( wPrefetchSize, -margin );
     wLimit.setLayoutData( fdLimit );
 
     // Execute for each row?
@@ -415,6 +490,8 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
 
     wStepname.addSelectionListener( lsDef );
     wLimit.addSelectionListener( lsDef );
+    wPrefetchSize.addSelectionListener( lsDef );
+    wPartitionColumn.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
     shell.addShellListener( new ShellAdapter() {
@@ -472,6 +549,11 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
       wConnection.setText( input.getDatabaseMeta().getName() );
     }
     wLimit.setText( Const.NVL( input.getRowLimit(), "" ) );
+    wPrefetchSize.setText( Const.NVL( input.getPrefetchSize(), "" ) );
+    int partitionMethod = Const.indexOfString( input.getPartitionMethod(), TableInputMeta.partitionMethodCodes );
+    wPartitionMethod.select( partitionMethod < 0 ? 0 : partitionMethod );
+    wPartitionColumn.setText( Const.NVL( input.getPartitionColumn(), "" ) );
+    setPartitionFlags();
 
     StreamInterface infoStream = input.getStepIOMeta().getInfoStreams().get( 0 );
     if ( infoStream.getStepMeta() != null ) {
@@ -517,6 +599,10 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
     meta.setSQL( preview && !Const.isEmpty( wSQL.getSelectionText() ) ? wSQL.getSelectionText() : wSQL.getText() );
     meta.setDatabaseMeta( transMeta.findDatabase( wConnection.getText() ) );
     meta.setRowLimit( wLimit.getText() );
+    meta.setPrefetchSize( wPrefetchSize.getText() );
+    int partitionMethod = wPartitionMethod.getSelectionIndex();
+    meta.setPartitionMethod( TableInputMeta.partitionMethodCodes[partitionMethod < 0 ? 0 : partitionMethod] );
+    meta.setPartitionColumn( wPartitionColumn.getText() );
     StreamInterface infoStream = input.getStepIOMeta().getInfoStreams().get( 0 );
     infoStream.setStepMeta( transMeta.findStep( wDatefrom.getText() ) );
     meta.setExecuteEachInputRow( wEachRow.getSelection() );
@@ -524,6 +610,12 @@ public class TableInputDialog extends BaseStepDialog implements StepDialogInterf
     meta.setLazyConversionActive( wLazyConversion.getSelection() );
   }
 
+  private void setPartitionFlags() {
+    boolean partitioned = wPartitionMethod.getSelectionIndex() > 0;
+    wlPartitionColumn.setEnabled( partitioned );
+    wPartitionColumn.setEnabled( partitioned );
+  }
+
   private void ok() {
     if ( Const.isEmpty( wStepname.getText() ) ) {
       return;
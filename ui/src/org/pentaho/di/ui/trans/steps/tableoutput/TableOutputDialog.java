@@ -133,6 +133,14 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
   private Button wBatch;
   private FormData fdlBatch, fdBatch;
 
+  private Label wlBulkLoad;
+  private Button wBulkLoad;
+  private FormData fdlBulkLoad, fdBulkLoad;
+
+  private Label wlWriterConnections;
+  private TextVar wWriterConnections;
+  private FormData fdlWriterConnections, fdWriterConnections;
+
   private Label wlUsePart;
   private Button wUsePart;
   private FormData fdlUsePart, fdUsePart;
@@ -563,20 +571,58 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
       }
     } );
 
+    // Bulk load
+    wlBulkLoad = new Label( wMainComp, SWT.RIGHT );
+    wlBulkLoad.setText( BaseMessages.getString( PKG, "TableOutputDialog.BulkLoad.Label" ) );
+    props.setLook( wlBulkLoad );
+    fdlBulkLoad = new FormData();
+    fdlBulkLoad.left = new FormAttachment( 0, 0 );
+    fdlBulkLoad.top = new FormAttachment( wBatch, margin );
+    fdlBulkLoad.right = new FormAttachment( middle, -margin );
+    wlBulkLoad.setLayoutData( fdlBulkLoad );
+    wBulkLoad = new Button( wMainComp, SWT.CHECK );
+    wBulkLoad.setToolTipText( BaseMessages.getString( PKG, "TableOutputDialog.BulkLoad.Tooltip" ) );
+    props.setLook( wBulkLoad );
+    fdBulkLoad = new FormData();
+    fdBulkLoad.left = new FormAttachment( middle, 0 );
+    fdBulkLoad.top = new FormAttachment( wBatch, margin );
+    fdBulkLoad.right = new FormAttachment( 100, 0 );
+    wBulkLoad.setLayoutData( fdBulkLoad );
+    wBulkLoad.addSelectionListener( lsSelMod );
+
+    // Writer connections
+    wlWriterConnections = new Label( wMainComp, SWT.RIGHT );
+    wlWriterConnections.setText( BaseMessages.getString( PKG, "TableOutputDialog.WriterConnections.Label" ) );
+    props.setLook( wlWriterConnections );
+    fdlWriterConnections = new FormData();
+    fdlWriterConnections.left = new FormAttachment( 0, 0 );
+    fdlWriterConnections.top = new FormAttachment( wBulkLoad, margin );
+    fdlWriterConnections.right = new FormAttachment( middle, -margin );
+    wlWriterConnections.setLayoutData( fdlWriterConnections );
+    wWriterConnections = new TextVar( transMeta, wMainComp, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wWriterConnections.setToolTipText( BaseMessages.getString( PKG, "TableOutputDialog.WriterConnections.Tooltip" ) );
+    props.setLook( wWriterConnections );
+    wWriterConnections.addModifyListener( lsMod );
+    fdWriterConnections = new FormData();
+    fdWriterConnections.left = new FormAttachment( middle, 0 );
+    fdWriterConnections.top = new FormAttachment( wBulkLoad, margin );
+    fdWriterConnections.right = new FormAttachment( 100, 0 );
+    wWriterConnections.setLayoutData( fdWriterConnections );
+
     // NameInField
     wlNameInField = new Label( wMainComp, SWT.RIGHT );
     wlNameInField.setText( BaseMessages.getString( PKG, "TableOutputDialog.NameInField.Label" ) );
     props.setLook( wlNameInField );
     fdlNameInField = new FormData();
     fdlNameInField.left = new FormAttachment( 0, 0 );
-    fdlNameInField.top = new FormAttachment( wBatch, margin * 5 );
+    fdlNameInField.top = new FormAttachment( wWriterConnections, margin * 5 );
     fdlNameInField.right = new FormAttachment( middle, -margin );
     wlNameInField.setLayoutData( fdlNameInField );
     wNameInField = new Button( wMainComp, SWT.CHECK );
     props.setLook( wNameInField );
     fdNameInField = new FormData();
     fdNameInField.left = new FormAttachment( middle, 0 );
-    fdNameInField.top = new FormAttachment( wBatch, margin * 5 );
+    fdNameInField.top = new FormAttachment( wWriterConnections, margin * 5 );
     fdNameInField.right = new FormAttachment( 100, 0 );
     wNameInField.setLayoutData( fdNameInField );
     wNameInField.addSelectionListener( new SelectionAdapter() {
@@ -847,6 +893,7 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
 
     wStepname.addSelectionListener( lsDef );
     wCommit.addSelectionListener( lsDef );
+    wWriterConnections.addSelectionListener( lsDef );
     wSchema.addSelectionListener( lsDef );
     wTable.addSelectionListener( lsDef );
     wPartField.addSelectionListener( lsDef );
@@ -1195,6 +1242,13 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     wlBatch.setEnabled( enableBatch );
     wBatch.setEnabled( enableBatch );
 
+    // Bulk load and the writer connections only take batches into a single table
+    boolean enableWriterConnections = useBatch && !usePartitioning && !isTableNameInField;
+    wlWriterConnections.setEnabled( enableWriterConnections );
+    wWriterConnections.setEnabled( enableWriterConnections );
+    wlBulkLoad.setEnabled( enableWriterConnections );
+    wBulkLoad.setEnabled( enableWriterConnections );
+
     boolean specifyFields = wSpecifyFields.getSelection();
     wFields.setEnabled( specifyFields );
     wGetFields.setEnabled( specifyFields );
@@ -1242,6 +1296,8 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     wBatch.setSelection( input.useBatchUpdate() );
 
     wCommit.setText( input.getCommitSize() );
+    wWriterConnections.setText( Const.NVL( input.getWriterConnections(), "" ) );
+    wBulkLoad.setSelection( input.useBulkLoad() );
 
     wUsePart.setSelection( input.isPartitioningEnabled() );
     wPartDaily.setSelection( input.isPartitioningDaily() );
@@ -1293,6 +1349,8 @@ public class TableOutputDialog extends BaseStepDialog implements StepDialogInter
     info.setTruncateTable( wTruncate.getSelection() );
     info.setIgnoreErrors( wIgnore.getSelection() );
     info.setUseBatchUpdate( wBatch.getSelection() );
+    info.setWriterConnections( wWriterConnections.getText() );
+    info.setUseBulkLoad( wBulkLoad.getSelection() );
     info.setPartitioningEnabled( wUsePart.getSelection() );
     info.setPartitioningField( wPartField.getText() );
     info.setPartitioningDaily( wPartDaily.getSelection() );